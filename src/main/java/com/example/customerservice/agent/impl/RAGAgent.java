@@ -1,20 +1,33 @@
 package com.example.customerservice.agent.impl;
 
 import com.example.customerservice.agent.core.*;
+import com.example.customerservice.service.KnowledgeCategoryService;
 import com.example.customerservice.service.RAGService;
+import com.example.customerservice.service.VectorStoreService;
 import com.example.customerservice.dto.RAGSearchResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * RAG Agent实现
  * 处理检索增强生成相关任务
  * 
+ * 检索类任务均支持过滤参数：category（分类ID或名称，包含子分类）、
+ * status（文档状态，逗号分隔）、tags（标签，逗号分隔或列表）
+ * 
+ * 多个不带过滤条件的vector_search任务同时排队时，由先拿到批处理锁的任务把队列中的查询
+ * 合并为一次批量检索（一次向量化调用、一次矩阵扫描），其余任务直接取回各自的结果
+ * 
  * @author AI Customer Service Team
  * @since 1.0.0
  */
@@ -24,6 +37,22 @@ public class RAGAgent extends AbstractAgent {
     @Autowired
     private RAGService ragService;
     
+    @Autowired
+    private KnowledgeCategoryService categoryService;
+    
+    @Autowired
+    private VectorStoreService vectorStoreService;
+    
+    @Value("${rag.search.batch.coalesce-max:32}")
+    private int maxCoalescedQueries;
+    
+    /**
+     * 等待合并执行的向量搜索
+     */
+    private final BlockingQueue<PendingVectorSearch> pendingVectorSearches = new LinkedBlockingQueue<>();
+    
+    private final Object vectorSearchBatchLock = new Object();
+    
     private AgentCapabilities capabilities;
     
     public RAGAgent() {
@@ -97,7 +126,7 @@ public class RAGAgent extends AbstractAgent {
         logger.debug("执行RAG搜索: query={}, maxResults={}", query, maxResults);
         // 注意：当前版本的RAGService.retrieveAndGenerate()方法内部已经处理了结果数量限制
         // 未来版本将支持通过maxResults参数动态控制搜索结果数量
-        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query), query, "RAG搜索");
+        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query, buildSearchFilter(task)), query, "RAG搜索");
     }
 
     /**
@@ -108,9 +137,64 @@ public class RAGAgent extends AbstractAgent {
         int topK = task.getParameter("topK", 10);
 
         logger.debug("执行向量搜索: query={}, topK={}", query, topK);
-        // 注意：当前版本使用RAGService的默认配置进行向量搜索
-        // 未来版本将支持通过topK参数动态控制返回结果数量
-        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query), query, "向量搜索");
+        VectorStoreService.SearchFilter filter = buildSearchFilter(task);
+        // 带过滤条件的检索单独执行，其余与同时排队的任务合并为一次批量检索
+        List<VectorStoreService.SimilaritySearchResult> searchResults = filter.isEmpty()
+            ? coalescedVectorSearch(query, topK)
+            : vectorStoreService.searchSimilar(query, topK, filter);
+        return convertToRAGSearchResults(searchResults, query, "向量搜索");
+    }
+
+    /**
+     * 合并排队中的向量搜索
+     * 任务先入队再竞争批处理锁：拿到锁时若自己的结果尚未产生，就把队列中的查询一起检索；
+     * 等锁期间已被前一批带走的任务直接返回结果
+     */
+    private List<VectorStoreService.SimilaritySearchResult> coalescedVectorSearch(String query, int topK) {
+        PendingVectorSearch pending = new PendingVectorSearch(query, topK);
+        pendingVectorSearches.add(pending);
+        synchronized (vectorSearchBatchLock) {
+            while (!pending.result.isDone()) {
+                runPendingVectorSearches();
+            }
+        }
+        return pending.result.join();
+    }
+
+    /**
+     * 取出一批排队的向量搜索并一次执行（调用方持有批处理锁）
+     */
+    private void runPendingVectorSearches() {
+        List<PendingVectorSearch> batch = new ArrayList<>();
+        pendingVectorSearches.drainTo(batch, Math.max(maxCoalescedQueries, 1));
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<String> queries = new ArrayList<>(batch.size());
+        int maxTopK = 0;
+        for (PendingVectorSearch pending : batch) {
+            queries.add(pending.query);
+            maxTopK = Math.max(maxTopK, pending.topK);
+        }
+        if (batch.size() > 1) {
+            logger.debug("合并执行 {} 个排队的向量搜索", batch.size());
+        }
+
+        try {
+            List<List<VectorStoreService.SimilaritySearchResult>> results =
+                vectorStoreService.searchSimilarBatch(queries, maxTopK);
+            for (int i = 0; i < batch.size(); i++) {
+                PendingVectorSearch pending = batch.get(i);
+                List<VectorStoreService.SimilaritySearchResult> queryResults = results.get(i);
+                pending.result.complete(new ArrayList<>(
+                    queryResults.subList(0, Math.min(Math.max(pending.topK, 0), queryResults.size()))));
+            }
+        } catch (Exception e) {
+            for (PendingVectorSearch pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+        }
     }
 
     /**
@@ -123,7 +207,7 @@ public class RAGAgent extends AbstractAgent {
         logger.debug("执行混合搜索: query={}, topK={}", query, topK);
         // 注意：当前版本使用RAGService的默认配置进行混合搜索
         // 未来版本将支持通过topK参数动态控制返回结果数量
-        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query), query, "混合搜索");
+        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query, buildSearchFilter(task)), query, "混合搜索");
     }
 
     /**
@@ -131,14 +215,63 @@ public class RAGAgent extends AbstractAgent {
      */
     private List<RAGSearchResult> performDocumentRetrieval(AgentTask task) {
         String query = task.getParameter("query", "");
-        String category = task.getParameter("category", null);
+        Object category = task.getParameter("category", null);
         int maxResults = task.getParameter("maxResults", 10);
 
         logger.debug("执行文档检索: query={}, category={}, maxResults={}", query, category, maxResults);
-        // 目前使用通用的检索方法，未来可以根据category进行过滤
+        // 按category过滤在向量索引内部完成（包含子分类）
         // 当前版本的RAGService.retrieveAndGenerate()方法内部已经处理了结果数量限制
-        // 未来版本将支持按分类过滤和动态控制结果数量
-        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query), query, "文档检索");
+        return convertToRAGSearchResults(ragService.retrieveAndGenerate(query, buildSearchFilter(task)), query, "文档检索");
+    }
+
+    /**
+     * 从任务参数构建检索过滤条件
+     * category可以是分类ID或分类名称；tags可以是逗号分隔的字符串或字符串列表
+     * 
+     * @throws IllegalArgumentException 当分类不存在时抛出
+     */
+    private VectorStoreService.SearchFilter buildSearchFilter(AgentTask task) {
+        Object category = task.getParameter("category", null);
+        Object status = task.getParameter("status", null);
+        Object tags = task.getParameter("tags", null);
+
+        Long categoryId = null;
+        if (category instanceof Number number) {
+            categoryId = number.longValue();
+        } else if (category != null && !category.toString().trim().isEmpty()) {
+            String value = category.toString().trim();
+            if (value.chars().allMatch(Character::isDigit)) {
+                categoryId = Long.parseLong(value);
+            } else {
+                categoryId = categoryService.findByName(value)
+                    .orElseThrow(() -> new IllegalArgumentException("分类不存在: " + value))
+                    .getId();
+            }
+        }
+
+        return VectorStoreService.SearchFilter.of(categoryId, joinValues(status), joinValues(tags));
+    }
+
+    /**
+     * 将列表参数转换为逗号分隔的字符串
+     */
+    private String joinValues(Object value) {
+        if (value instanceof Collection<?> values) {
+            return String.join(",", values.stream().map(String::valueOf).toList());
+        }
+        return value != null ? value.toString() : null;
+    }
+
+    /**
+     * 将向量搜索结果转换为RAGSearchResult列表
+     */
+    private List<RAGSearchResult> convertToRAGSearchResults(List<VectorStoreService.SimilaritySearchResult> searchResults,
+                                                            String query, String searchType) {
+        double averageSimilarity = searchResults.stream()
+            .mapToDouble(VectorStoreService.SimilaritySearchResult::getSimilarity)
+            .average()
+            .orElse(0.0);
+        return convertToRAGSearchResults(new RAGService.RAGContext("", searchResults, averageSimilarity), query, searchType);
     }
 
     /**
@@ -147,7 +280,7 @@ public class RAGAgent extends AbstractAgent {
     private List<RAGSearchResult> convertToRAGSearchResults(com.example.customerservice.service.RAGService.RAGContext ragContext, String query, String searchType) {
         List<RAGSearchResult> results = new ArrayList<>();
 
-        if (ragContext != null && !ragContext.getContext().isEmpty()) {
+        if (ragContext != null && !ragContext.getSearchResults().isEmpty()) {
             // 创建一个包含检索结果的RAGSearchResult
             RAGSearchResult result = new RAGSearchResult();
             result.setQuery(query);
@@ -188,7 +321,7 @@ public class RAGAgent extends AbstractAgent {
         // 使用RAG服务检索相关内容
         // 注意：当前版本的RAGService.retrieveAndGenerate()方法内部已经处理了分块数量限制
         // 未来版本将支持通过maxChunks参数动态控制检索数量
-        com.example.customerservice.service.RAGService.RAGContext ragContext = ragService.retrieveAndGenerate(query);
+        com.example.customerservice.service.RAGService.RAGContext ragContext = ragService.retrieveAndGenerate(query, buildSearchFilter(task));
 
         // 构建增强上下文
         StringBuilder enhancedContext = new StringBuilder(context != null ? context : "");
@@ -224,7 +357,7 @@ public class RAGAgent extends AbstractAgent {
         // 使用RAG服务进行检索
         // 注意：当前版本的RAGService.retrieveAndGenerate()方法内部已经处理了结果数量限制
         // 未来版本将支持通过maxResults参数动态控制返回结果数量
-        com.example.customerservice.service.RAGService.RAGContext ragContext = ragService.retrieveAndGenerate(query);
+        com.example.customerservice.service.RAGService.RAGContext ragContext = ragService.retrieveAndGenerate(query, buildSearchFilter(task));
         List<RAGSearchResult> results = convertToRAGSearchResults(ragContext, query, "知识查询");
 
         Map<String, Object> response = new java.util.HashMap<>();
@@ -309,4 +442,18 @@ public class RAGAgent extends AbstractAgent {
         
         return stats;
     }
+    
+    /**
+     * 排队中的向量搜索
+     */
+    private static final class PendingVectorSearch {
+        private final String query;
+        private final int topK;
+        private final CompletableFuture<List<VectorStoreService.SimilaritySearchResult>> result = new CompletableFuture<>();
+        
+        PendingVectorSearch(String query, int topK) {
+            this.query = query;
+            this.topK = topK;
+        }
+    }
 }
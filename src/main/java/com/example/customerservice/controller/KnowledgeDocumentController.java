@@ -488,7 +488,8 @@ public class KnowledgeDocumentController {
 
             return ResponseEntity.ok(Map.of(
                 "success", true,
-                "data", documents
+                "data", documents,
+                "staleness", searchService.getRelatedDocumentsStatus(documentId)
             ));
         } catch (Exception e) {
             logger.error("获取相关文档时发生错误", e);
@@ -1,14 +1,19 @@
 package com.example.customerservice.controller;
 
 import com.example.customerservice.service.RAGService;
+import com.example.customerservice.service.EmbeddingMigrationService;
 import com.example.customerservice.service.EmbeddingService;
+import com.example.customerservice.service.VectorIndexService;
 import com.example.customerservice.service.VectorStoreService;
+import com.example.customerservice.vector.RecallEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -38,20 +43,37 @@ public class RAGController {
     @Autowired
     private VectorStoreService vectorStoreService;
 
+    @Autowired
+    private EmbeddingMigrationService embeddingMigrationService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Value("${rag.search.batch.max-queries:100}")
+    private int maxBatchQueries;
+
     /**
      * 测试RAG检索功能
      * 
      * @param query 查询文本
      * @param maxResults 最大结果数
+     * @param categoryId 分类ID，包含其全部子分类（可选）
+     * @param status 文档状态，多个用逗号分隔（可选）
+     * @param tags 标签，多个用逗号分隔，命中任一即可（可选）
      * @return 检索结果
      */
     @PostMapping("/search")
     public ResponseEntity<?> searchSimilar(@RequestParam String query,
-                                         @RequestParam(defaultValue = "5") int maxResults) {
-        logger.debug("RAG搜索请求: {}, maxResults: {}", query, maxResults);
+                                         @RequestParam(defaultValue = "5") int maxResults,
+                                         @RequestParam(required = false) Long categoryId,
+                                         @RequestParam(required = false) String status,
+                                         @RequestParam(required = false) String tags) {
+        logger.debug("RAG搜索请求: {}, maxResults: {}, categoryId: {}, status: {}, tags: {}",
+            query, maxResults, categoryId, status, tags);
 
         try {
-            RAGService.RAGContext context = ragService.retrieveAndGenerate(query);
+            RAGService.RAGContext context = ragService.retrieveAndGenerate(
+                query, VectorStoreService.SearchFilter.of(categoryId, status, tags));
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -74,6 +96,12 @@ public class RAGController {
                         .toList()
                 )
             ));
+        } catch (IllegalArgumentException e) {
+            logger.warn("RAG搜索参数无效: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             logger.error("RAG搜索失败", e);
             return ResponseEntity.internalServerError().body(Map.of(
@@ -88,16 +116,23 @@ public class RAGController {
      * 
      * @param query 查询文本
      * @param topK 返回结果数
+     * @param categoryId 分类ID，包含其全部子分类（可选）
+     * @param status 文档状态，多个用逗号分隔（可选）
+     * @param tags 标签，多个用逗号分隔，命中任一即可（可选）
      * @return 相似度搜索结果
      */
     @PostMapping("/vector-search")
     public ResponseEntity<?> vectorSearch(@RequestParam String query,
-                                        @RequestParam(defaultValue = "10") int topK) {
-        logger.debug("向量搜索请求: {}, topK: {}", query, topK);
+                                        @RequestParam(defaultValue = "10") int topK,
+                                        @RequestParam(required = false) Long categoryId,
+                                        @RequestParam(required = false) String status,
+                                        @RequestParam(required = false) String tags) {
+        logger.debug("向量搜索请求: {}, topK: {}, categoryId: {}, status: {}, tags: {}",
+            query, topK, categoryId, status, tags);
 
         try {
-            List<VectorStoreService.SimilaritySearchResult> results = 
-                vectorStoreService.searchSimilar(query, topK);
+            List<VectorStoreService.SimilaritySearchResult> results = vectorStoreService.searchSimilar(
+                query, topK, VectorStoreService.SearchFilter.of(categoryId, status, tags));
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
@@ -116,6 +151,12 @@ public class RAGController {
                         .toList()
                 )
             ));
+        } catch (IllegalArgumentException e) {
+            logger.warn("向量搜索参数无效: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             logger.error("向量搜索失败", e);
             return ResponseEntity.internalServerError().body(Map.of(
@@ -125,27 +166,117 @@ public class RAGController {
         }
     }
 
+    /**
+     * 批量向量搜索
+     * 所有查询一次向量化并在向量矩阵上一起打分，适合评估或离线批处理场景
+     * 
+     * @param queries 查询文本列表
+     * @param topK 每个查询返回的结果数量
+     * @param categoryId 分类ID，包含其全部子分类（可选）
+     * @param status 文档状态，多个用逗号分隔（可选）
+     * @param tags 标签，多个用逗号分隔，命中任一即可（可选）
+     * @return 与查询一一对应的搜索结果
+     */
+    @PostMapping("/batch-search")
+    public ResponseEntity<?> batchSearch(@RequestBody List<String> queries,
+                                       @RequestParam(defaultValue = "10") int topK,
+                                       @RequestParam(required = false) Long categoryId,
+                                       @RequestParam(required = false) String status,
+                                       @RequestParam(required = false) String tags) {
+        logger.debug("批量向量搜索请求: {} 个查询, topK: {}, categoryId: {}, status: {}, tags: {}",
+            queries != null ? queries.size() : 0, topK, categoryId, status, tags);
+
+        try {
+            if (queries == null || queries.isEmpty()) {
+                throw new IllegalArgumentException("查询列表不能为空");
+            }
+            if (queries.size() > maxBatchQueries) {
+                throw new IllegalArgumentException("单次批量查询数量不能超过" + maxBatchQueries);
+            }
+
+            List<List<VectorStoreService.SimilaritySearchResult>> results = vectorStoreService.searchSimilarBatch(
+                queries, topK, VectorStoreService.SearchFilter.of(categoryId, status, tags));
+
+            List<Map<String, Object>> items = new ArrayList<>(queries.size());
+            for (int i = 0; i < queries.size(); i++) {
+                List<VectorStoreService.SimilaritySearchResult> queryResults = results.get(i);
+                items.add(Map.of(
+                    "query", queries.get(i) != null ? queries.get(i) : "",
+                    "resultCount", queryResults.size(),
+                    "results", queryResults.stream()
+                        .map(result -> Map.of(
+                            "chunkId", result.getChunk().getId(),
+                            "documentId", result.getChunk().getDocument().getId(),
+                            "documentTitle", result.getChunk().getDocument().getTitle(),
+                            "chunkIndex", result.getChunk().getChunkIndex(),
+                            "content", result.getChunk().getContent(),
+                            "similarity", result.getSimilarity()
+                        ))
+                        .toList()
+                ));
+            }
+
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", Map.of(
+                    "queryCount", queries.size(),
+                    "results", items
+                )
+            ));
+        } catch (IllegalArgumentException e) {
+            logger.warn("批量向量搜索参数无效: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            logger.error("批量向量搜索失败", e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                "success", false,
+                "message", "批量向量搜索失败: " + e.getMessage()
+            ));
+        }
+    }
+
     /**
      * 混合搜索（向量+关键词）
      * 
      * @param query 查询文本
      * @param topK 返回结果数
+     * @param categoryId 分类ID，包含其全部子分类（可选）
+     * @param status 文档状态，多个用逗号分隔（可选）
+     * @param tags 标签，多个用逗号分隔，命中任一即可（可选）
      * @return 混合搜索结果
      */
     @PostMapping("/hybrid-search")
     public ResponseEntity<?> hybridSearch(@RequestParam String query,
-                                        @RequestParam(defaultValue = "10") int topK) {
-        logger.debug("混合搜索请求: {}, topK: {}", query, topK);
+                                        @RequestParam(defaultValue = "10") int topK,
+                                        @RequestParam(required = false) Long categoryId,
+                                        @RequestParam(required = false) String status,
+                                        @RequestParam(required = false) String tags) {
+        logger.debug("混合搜索请求: {}, topK: {}, categoryId: {}, status: {}, tags: {}",
+            query, topK, categoryId, status, tags);
 
         try {
-            List<VectorStoreService.SimilaritySearchResult> results = 
-                vectorStoreService.hybridSearch(query, topK);
+            VectorStoreService.HybridSearchResult hybridResult = vectorStoreService.hybridSearchDetailed(
+                query, topK, VectorStoreService.SearchFilter.of(categoryId, status, tags));
+            List<VectorStoreService.SimilaritySearchResult> results = hybridResult.getResults();
             
             return ResponseEntity.ok(Map.of(
                 "success", true,
                 "data", Map.of(
                     "query", query,
                     "resultCount", results.size(),
+                    "partial", hybridResult.isPartial(),
+                    "elapsedMillis", hybridResult.getElapsedMillis(),
+                    "legs", hybridResult.getLegs().stream()
+                        .map(leg -> Map.of(
+                            "leg", leg.getLeg(),
+                            "status", leg.getStatus().name(),
+                            "elapsedMillis", leg.getElapsedMillis(),
+                            "hitCount", leg.getHitCount()
+                        ))
+                        .toList(),
                     "results", results.stream()
                         .map(result -> Map.of(
                             "chunkId", result.getChunk().getId(),
@@ -155,11 +286,18 @@ public class RAGController {
                             "content", result.getChunk().getContent().length() > 300 ? 
                                 result.getChunk().getContent().substring(0, 300) + "..." : 
                                 result.getChunk().getContent(),
-                            "similarity", result.getSimilarity()
+                            "similarity", result.getSimilarity(),
+                            "fusedScore", hybridResult.getFusedScore(result.getChunk().getId())
                         ))
                         .toList()
                 )
             ));
+        } catch (IllegalArgumentException e) {
+            logger.warn("混合搜索参数无效: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
         } catch (Exception e) {
             logger.error("混合搜索失败", e);
             return ResponseEntity.internalServerError().body(Map.of(
@@ -203,6 +341,13 @@ public class RAGController {
                         "embeddingChunks", embeddingStats.getEmbeddingChunks(),
                         "avgChunkSize", embeddingStats.getAvgChunkSize(),
                         "avgDimension", embeddingStats.getAvgDimension()
+                    ),
+                    "vectorIndex", Map.of(
+                        "engine", vectorIndexService.getEngineName(),
+                        "size", vectorIndexService.size(),
+                        "dimension", vectorIndexService.dimension(),
+                        "storage", vectorIndexService.getStorageStatus(),
+                        "memory", vectorIndexService.getMemoryUsage()
                     )
                 )
             ));
@@ -240,6 +385,90 @@ public class RAGController {
         }
     }
 
+    /**
+     * 将文本格式或未归一化的历史向量迁移为归一化二进制格式
+     * 
+     * @return 迁移结果
+     */
+    @PostMapping("/migrate-embeddings")
+    public ResponseEntity<?> migrateEmbeddings() {
+        logger.info("向量格式迁移请求");
+
+        try {
+            EmbeddingMigrationService.MigrationResult result = embeddingMigrationService.migrateAll();
+            
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", Map.of(
+                    "migratedChunks", result.getMigratedChunks(),
+                    "failedChunks", result.getFailedChunks(),
+                    "migratedIndexes", result.getMigratedIndexes(),
+                    "failedIndexes", result.getFailedIndexes(),
+                    "elapsedMs", result.getElapsedMs()
+                )
+            ));
+        } catch (Exception e) {
+            logger.error("向量格式迁移失败", e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                "success", false,
+                "message", "迁移失败: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * 向量检索召回率报告
+     * 以索引中随机抽样的分块向量作为查询，对比当前引擎（或预过滤检索）与暴力精确检索的结果
+     * 
+     * @param sampleSize 抽样查询数量
+     * @param topK 每次检索返回数量
+     * @param stage 评估对象：engine（当前引擎）、binary（符号签名预过滤+全精度重打分）或 prefix（截断维度前缀+完整向量重打分）
+     * @return 召回率与平均耗时
+     */
+    @GetMapping("/recall-report")
+    public ResponseEntity<?> recallReport(@RequestParam(defaultValue = "100") int sampleSize,
+                                          @RequestParam(defaultValue = "10") int topK,
+                                          @RequestParam(defaultValue = "engine") String stage) {
+        logger.info("向量检索召回率评估请求: sampleSize={}, topK={}, stage={}", sampleSize, topK, stage);
+
+        try {
+            RecallEvaluator.RecallReport report;
+            if ("binary".equalsIgnoreCase(stage)) {
+                report = vectorIndexService.evaluateBinaryPrefilterRecall(sampleSize, topK);
+            } else if ("prefix".equalsIgnoreCase(stage)) {
+                report = vectorIndexService.evaluatePrefixPrefilterRecall(sampleSize, topK);
+            } else if ("engine".equalsIgnoreCase(stage)) {
+                report = vectorIndexService.evaluateRecall(sampleSize, topK);
+            } else {
+                throw new IllegalArgumentException("无效的评估对象: " + stage);
+            }
+            
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "data", Map.of(
+                    "engine", report.getEngine(),
+                    "indexSize", report.getIndexSize(),
+                    "queries", report.getQueries(),
+                    "topK", report.getTopK(),
+                    "recall", report.getRecall(),
+                    "avgEngineLatencyMs", report.getAvgEngineLatencyMs(),
+                    "avgExactLatencyMs", report.getAvgExactLatencyMs()
+                )
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            logger.error("召回率评估失败", e);
+            return ResponseEntity.internalServerError().body(Map.of(
+                "success", false,
+                "message", "评估失败: " + e.getMessage()
+            ));
+        }
+    }
+
     /**
      * 评估查询匹配度
      * 
@@ -1,5 +1,7 @@
 package com.example.customerservice.entity;
 
+import com.example.customerservice.vector.EmbeddingCodec;
+import com.example.customerservice.vector.VectorMath;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
@@ -43,13 +45,22 @@ public class KnowledgeSearchIndex {
     private String keywords;
 
     /**
-     * 向量化表示
-     * 存储文档的向量化表示（Embedding），用于语义搜索
+     * 向量化表示（旧版文本格式）
      * 格式为JSON数组字符串，如：[0.1, 0.2, 0.3, ...]
+     * 仅保留用于历史数据迁移，新数据写入embeddingVector
      */
     @Column(columnDefinition = "TEXT")
     private String embedding;
 
+    /**
+     * 向量化表示（二进制格式）
+     * 存储文档的向量化表示（Embedding），用于语义搜索
+     * 小端序float32数组，带版本和维度头部，格式见EmbeddingCodec
+     */
+    @Lob
+    @Column(name = "embedding_vector")
+    private byte[] embeddingVector;
+
     /**
      * 向量维度
      * 记录向量的维度大小，便于验证和处理
@@ -57,6 +68,13 @@ public class KnowledgeSearchIndex {
     @Column(name = "embedding_dimension")
     private Integer embeddingDimension;
 
+    /**
+     * 原始向量的L2范数
+     * 向量在写入时归一化后存储，原始范数保存在此字段；为null表示历史数据未归一化
+     */
+    @Column(name = "embedding_norm")
+    private Float embeddingNorm;
+
     /**
      * 索引版本
      * 用于跟踪索引的版本，当文档更新时递增
@@ -202,53 +220,75 @@ public class KnowledgeSearchIndex {
 
     /**
      * 获取向量化表示的浮点数组
+     * 优先读取二进制格式，不存在时回退到旧版文本格式
      * 
      * @return 向量数组，如果解析失败返回null
      */
     public float[] getEmbeddingArray() {
-        if (embedding == null || embedding.trim().isEmpty()) {
-            return null;
-        }
-        
-        try {
-            // 移除方括号并按逗号分割
-            String cleanEmbedding = embedding.trim().replaceAll("^\\[|\\]$", "");
-            String[] parts = cleanEmbedding.split(",");
-            float[] result = new float[parts.length];
-            
-            for (int i = 0; i < parts.length; i++) {
-                result[i] = Float.parseFloat(parts[i].trim());
+        if (embeddingVector != null) {
+            try {
+                return EmbeddingCodec.decode(embeddingVector);
+            } catch (IllegalArgumentException e) {
+                return null;
             }
-            
-            return result;
-        } catch (Exception e) {
-            return null;
         }
+        return EmbeddingCodec.parseText(embedding);
     }
 
     /**
      * 设置向量化表示
+     * 归一化为单位向量后以二进制格式存储，原始范数单独保存，同时清除旧版文本格式
      * 
      * @param embeddingArray 向量数组
      */
     public void setEmbeddingArray(float[] embeddingArray) {
+        this.embedding = null;
         if (embeddingArray == null || embeddingArray.length == 0) {
-            this.embedding = null;
+            this.embeddingVector = null;
             this.embeddingDimension = null;
+            this.embeddingNorm = null;
             return;
         }
         
-        StringBuilder sb = new StringBuilder("[");
-        for (int i = 0; i < embeddingArray.length; i++) {
-            if (i > 0) {
-                sb.append(",");
-            }
-            sb.append(embeddingArray[i]);
-        }
-        sb.append("]");
-        
-        this.embedding = sb.toString();
+        float[] normalized = VectorMath.normalize(embeddingArray);
+        this.embeddingVector = EmbeddingCodec.encode(normalized != null ? normalized : embeddingArray);
         this.embeddingDimension = embeddingArray.length;
+        this.embeddingNorm = VectorMath.norm(embeddingArray);
+    }
+
+    /**
+     * 判断存储的向量是否已归一化
+     * 
+     * @return true如果已归一化
+     */
+    public boolean isEmbeddingNormalized() {
+        return embeddingVector != null && embeddingNorm != null && embeddingNorm > 0.0f;
+    }
+
+    /**
+     * 判断是否有向量表示（任一格式）
+     * 
+     * @return true如果有向量，false否则
+     */
+    public boolean hasEmbedding() {
+        return embeddingVector != null || (embedding != null && !embedding.trim().isEmpty());
+    }
+
+    /**
+     * 将旧版文本格式或未归一化的二进制向量迁移为归一化的二进制格式
+     * 
+     * @return true如果发生了迁移，false如果无需迁移或向量无法解析
+     */
+    public boolean migrateEmbeddingToBinary() {
+        if (embeddingNorm != null || !hasEmbedding()) {
+            return false;
+        }
+        float[] vector = getEmbeddingArray();
+        if (vector == null || vector.length == 0) {
+            return false;
+        }
+        setEmbeddingArray(vector);
+        return true;
     }
 
     // Getter和Setter方法
@@ -285,6 +325,14 @@ public class KnowledgeSearchIndex {
         this.embedding = embedding;
     }
 
+    public byte[] getEmbeddingVector() {
+        return embeddingVector;
+    }
+
+    public void setEmbeddingVector(byte[] embeddingVector) {
+        this.embeddingVector = embeddingVector;
+    }
+
     public Integer getEmbeddingDimension() {
         return embeddingDimension;
     }
@@ -293,6 +341,14 @@ public class KnowledgeSearchIndex {
         this.embeddingDimension = embeddingDimension;
     }
 
+    public Float getEmbeddingNorm() {
+        return embeddingNorm;
+    }
+
+    public void setEmbeddingNorm(Float embeddingNorm) {
+        this.embeddingNorm = embeddingNorm;
+    }
+
     public Integer getVersion() {
         return version;
     }
@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -66,7 +67,8 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
      * 
      * @return 已就绪的分块列表
      */
-    @Query("SELECT dc FROM DocumentChunk dc WHERE dc.status = 'READY' AND dc.embedding IS NOT NULL")
+    @Query("SELECT dc FROM DocumentChunk dc WHERE dc.status = 'READY' AND " +
+           "(dc.embeddingVector IS NOT NULL OR dc.embedding IS NOT NULL)")
     List<DocumentChunk> findReadyChunksWithEmbedding();
 
     /**
@@ -75,9 +77,110 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
      * @param pageable 分页参数
      * @return 已就绪的分块分页结果
      */
-    @Query("SELECT dc FROM DocumentChunk dc WHERE dc.status = 'READY' AND dc.embedding IS NOT NULL ORDER BY dc.createdAt DESC")
+    @Query("SELECT dc FROM DocumentChunk dc WHERE dc.status = 'READY' AND " +
+           "(dc.embeddingVector IS NOT NULL OR dc.embedding IS NOT NULL) ORDER BY dc.createdAt DESC")
     Page<DocumentChunk> findReadyChunksWithEmbedding(Pageable pageable);
 
+    /**
+     * 按ID游标分批读取已就绪分块的向量
+     * 仅投影分块ID、文档ID和向量列，用于构建内存向量索引
+     * 
+     * @param afterId 上一批次的最大分块ID
+     * @param pageable 分页参数（仅使用批次大小）
+     * @return 每行为 [chunkId, documentId, embeddingVector, embedding]
+     */
+    @Query("SELECT dc.id, dc.document.id, dc.embeddingVector, dc.embedding FROM DocumentChunk dc " +
+           "WHERE dc.status = 'READY' AND (dc.embeddingVector IS NOT NULL OR dc.embedding IS NOT NULL) " +
+           "AND dc.id > :afterId ORDER BY dc.id ASC")
+    List<Object[]> findReadyEmbeddingsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 按ID游标分批读取已就绪分块的正文
+     * 仅投影分块ID、文档ID和正文，用于构建分块关键词倒排索引
+     * 
+     * @param afterId 上一批次的最大分块ID
+     * @param pageable 分页参数（仅使用批次大小）
+     * @return 每行为 [chunkId, documentId, content]
+     */
+    @Query("SELECT dc.id, dc.document.id, dc.content FROM DocumentChunk dc " +
+           "WHERE dc.status = 'READY' AND dc.id > :afterId ORDER BY dc.id ASC")
+    List<Object[]> findReadyContentsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 统计ID不大于指定值的已就绪向量分块数量
+     * 用于校验磁盘向量段与数据库是否一致
+     * 
+     * @param maxId 最大分块ID（含）
+     * @return 分块数量
+     */
+    @Query("SELECT COUNT(dc) FROM DocumentChunk dc WHERE dc.status = 'READY' " +
+           "AND (dc.embeddingVector IS NOT NULL OR dc.embedding IS NOT NULL) AND dc.id <= :maxId")
+    long countReadyEmbeddingsUpTo(@Param("maxId") Long maxId);
+
+    /**
+     * 读取全部已就绪分块的排序特征
+     * 
+     * @return 每行为 [chunkId, documentId, chunkSize]
+     */
+    @Query("SELECT dc.id, dc.document.id, dc.chunkSize FROM DocumentChunk dc WHERE dc.status = 'READY'")
+    List<Object[]> findReadyChunkSizes();
+
+    /**
+     * 按ID批量读取检索结果展示所需的字段
+     * 只投影分块正文、序号和文档标题、摘要、分类，不加载向量列和文档正文
+     * 
+     * @param chunkIds 分块ID集合
+     * @return 每行为 [chunkId, chunkIndex, content, chunkSize, documentId, documentTitle, category, documentSummary]
+     */
+    @Query("SELECT dc.id, dc.chunkIndex, dc.content, dc.chunkSize, d.id, d.title, c, d.summary FROM DocumentChunk dc " +
+           "JOIN dc.document d LEFT JOIN d.category c WHERE dc.id IN :chunkIds")
+    List<Object[]> findSearchViewsByIds(@Param("chunkIds") Collection<Long> chunkIds);
+
+    /**
+     * 按分块ID批量读取向量列
+     * 用于量化索引对候选结果进行全精度重排序
+     * 
+     * @param chunkIds 分块ID列表
+     * @return 每行为 [chunkId, embeddingVector, embedding]
+     */
+    @Query("SELECT dc.id, dc.embeddingVector, dc.embedding FROM DocumentChunk dc WHERE dc.id IN :chunkIds")
+    List<Object[]> findEmbeddingsByIds(@Param("chunkIds") Collection<Long> chunkIds);
+
+    /**
+     * 按 (文档ID, 分块序号) 批量读取上下文扩展所需的字段
+     * 条件为两个集合的笛卡尔积，调用方需按实际需要的位置再筛选一次；不加载向量列
+     *
+     * @param documentIds 文档ID集合
+     * @param chunkIndexes 分块序号集合
+     * @return 每行为 [chunkId, documentId, chunkIndex, content, chunkSize]
+     */
+    @Query("SELECT dc.id, dc.document.id, dc.chunkIndex, dc.content, dc.chunkSize FROM DocumentChunk dc " +
+           "WHERE dc.document.id IN :documentIds AND dc.chunkIndex IN :chunkIndexes")
+    List<Object[]> findChunkViewsByPositions(@Param("documentIds") Collection<Long> documentIds,
+                                             @Param("chunkIndexes") Collection<Integer> chunkIndexes);
+
+    /**
+     * 按ID游标分批查找需要迁移的分块：仍使用旧版文本格式，或二进制向量尚未归一化
+     * 
+     * @param afterId 上一批次的最大分块ID
+     * @param pageable 分页参数（仅使用批次大小）
+     * @return 待迁移的分块列表
+     */
+    @Query("SELECT dc FROM DocumentChunk dc WHERE " +
+           "(dc.embedding IS NOT NULL OR dc.embeddingVector IS NOT NULL) AND dc.embeddingNorm IS NULL " +
+           "AND dc.id > :afterId " +
+           "ORDER BY dc.id ASC")
+    List<DocumentChunk> findLegacyEmbeddingChunks(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * 统计需要迁移（文本格式或未归一化）的分块数量
+     * 
+     * @return 分块数量
+     */
+    @Query("SELECT COUNT(dc) FROM DocumentChunk dc WHERE " +
+           "(dc.embedding IS NOT NULL OR dc.embeddingVector IS NOT NULL) AND dc.embeddingNorm IS NULL")
+    long countLegacyEmbeddingChunks();
+
     /**
      * 查找需要处理的分块
      * 包括状态为PENDING或处理超时的PROCESSING状态分块
@@ -161,21 +264,25 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
      * 更新分块的向量表示
      * 
      * @param chunkId 分块ID
-     * @param embedding 向量表示
+     * @param embeddingVector 二进制向量表示（已归一化）
      * @param dimension 向量维度
+     * @param norm 原始向量的L2范数
      * @return 更新的记录数
      */
     @Modifying
     @Query("UPDATE DocumentChunk dc SET " +
-           "dc.embedding = :embedding, " +
+           "dc.embeddingVector = :embeddingVector, " +
+           "dc.embedding = null, " +
            "dc.embeddingDimension = :dimension, " +
+           "dc.embeddingNorm = :norm, " +
            "dc.status = 'READY', " +
            "dc.errorMessage = null, " +
            "dc.updatedAt = CURRENT_TIMESTAMP " +
            "WHERE dc.id = :chunkId")
     int updateEmbedding(@Param("chunkId") Long chunkId, 
-                       @Param("embedding") String embedding,
-                       @Param("dimension") Integer dimension);
+                       @Param("embeddingVector") byte[] embeddingVector,
+                       @Param("dimension") Integer dimension,
+                       @Param("norm") Float norm);
 
     /**
      * 标记分块处理失败
@@ -231,7 +338,7 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
            "COUNT(CASE WHEN dc.status = 'PENDING' THEN 1 END) as pendingCount, " +
            "COUNT(CASE WHEN dc.status = 'PROCESSING' THEN 1 END) as processingCount, " +
            "COUNT(CASE WHEN dc.status = 'ERROR' THEN 1 END) as errorCount, " +
-           "COUNT(CASE WHEN dc.embedding IS NOT NULL THEN 1 END) as embeddingCount, " +
+           "COUNT(CASE WHEN dc.embeddingVector IS NOT NULL OR dc.embedding IS NOT NULL THEN 1 END) as embeddingCount, " +
            "AVG(dc.chunkSize) as avgChunkSize, " +
            "AVG(dc.embeddingDimension) as avgDimension " +
            "FROM DocumentChunk dc")
@@ -175,4 +175,12 @@ public interface KnowledgeCategoryRepository extends JpaRepository<KnowledgeCate
      */
     @Query("DELETE FROM KnowledgeCategory c WHERE c.categoryPath LIKE CONCAT(:categoryPath, '%')")
     int deleteByCategory(@Param("categoryPath") String categoryPath);
+
+    /**
+     * 读取全部分类的父子关系
+     * 
+     * @return 每行为 [categoryId, parentId]
+     */
+    @Query("SELECT c.id, c.parentId FROM KnowledgeCategory c")
+    List<Object[]> findAllParentLinks();
 }
@@ -56,6 +56,18 @@ public interface KnowledgeDocumentRepository extends JpaRepository<KnowledgeDocu
      */
     List<KnowledgeDocument> findByStatus(KnowledgeDocument.DocumentStatus status);
 
+    /**
+     * 按文档ID游标分页查找指定状态的文档
+     * 用于批量重建搜索索引，每批只加载一页文档
+     *
+     * @param status 文档状态
+     * @param afterId 起始文档ID（不含）
+     * @param pageable 分页参数（仅使用批次大小）
+     * @return 文档列表，按文档ID升序
+     */
+    List<KnowledgeDocument> findByStatusAndIdGreaterThanOrderByIdAsc(KnowledgeDocument.DocumentStatus status,
+                                                                     Long afterId, Pageable pageable);
+
     /**
      * 根据文档状态查找文档（分页）
      *
@@ -263,4 +275,22 @@ public interface KnowledgeDocumentRepository extends JpaRepository<KnowledgeDocu
            "SUM(d.likeCount) as totalLikes " +
            "FROM KnowledgeDocument d")
     Object[] getDocumentStatistics();
+
+    /**
+     * 读取全部文档的过滤属性
+     * 仅投影ID、分类、状态和标签，用于构建向量检索的过滤位图
+     * 
+     * @return 每行为 [documentId, categoryId, status, tags]
+     */
+    @Query("SELECT d.id, d.category.id, d.status, d.tags FROM KnowledgeDocument d")
+    List<Object[]> findFilterAttributes();
+
+    /**
+     * 读取全部文档的排序特征
+     * 仅投影ID、访问次数、点赞数和优先级，用于向量检索结果的重排序
+     * 
+     * @return 每行为 [documentId, viewCount, likeCount, priority]
+     */
+    @Query("SELECT d.id, d.viewCount, d.likeCount, d.priority FROM KnowledgeDocument d")
+    List<Object[]> findRankingFeatures();
 }
@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -73,6 +74,51 @@ public interface KnowledgeSearchIndexRepository extends JpaRepository<KnowledgeS
            "LOWER(si.keywords) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<KnowledgeSearchIndex> findByKeywordsContaining(@Param("keyword") String keyword);
 
+    /**
+     * 按文档ID分页读取索引就绪文档的文本字段
+     * 用于启动时构建内存倒排索引，只投影需要分词的字段
+     *
+     * @param afterId 起始文档ID（不含）
+     * @param pageable 分页参数
+     * @return 每行为 [documentId, title, content, summary, tags]，按文档ID升序
+     */
+    @Query("SELECT d.id, d.title, d.content, d.summary, d.tags FROM KnowledgeSearchIndex si JOIN si.document d " +
+           "WHERE si.status = 'READY' AND d.id > :afterId ORDER BY d.id ASC")
+    List<Object[]> findReadyDocumentTextsAfter(@Param("afterId") Long afterId,
+                                               org.springframework.data.domain.Pageable pageable);
+
+    /**
+     * 读取指定时间之后更新过的索引及其文档的文本字段
+     * 用于从磁盘段文件加载关键词倒排索引后，补齐最近一次提交之后的变更
+     *
+     * @param since 起始时间（不含）
+     * @param maxId 最大文档ID（含），更大的文档由按ID游标的加载覆盖
+     * @return 每行为 [documentId, status, title, content, summary, tags]，按文档ID升序
+     */
+    @Query("SELECT d.id, si.status, d.title, d.content, d.summary, d.tags FROM KnowledgeSearchIndex si " +
+           "JOIN si.document d WHERE si.updatedAt > :since AND d.id <= :maxId ORDER BY d.id ASC")
+    List<Object[]> findDocumentTextsUpdatedSince(@Param("since") LocalDateTime since,
+                                                 @Param("maxId") Long maxId);
+
+    /**
+     * 统计文档ID不大于指定值的就绪索引数量
+     * 用于校验磁盘关键词段与数据库是否一致
+     *
+     * @param maxId 最大文档ID（含）
+     * @return 索引数量
+     */
+    @Query("SELECT COUNT(si) FROM KnowledgeSearchIndex si WHERE si.status = 'READY' AND si.document.id <= :maxId")
+    long countReadyUpTo(@Param("maxId") Long maxId);
+
+    /**
+     * 按文档ID批量查找搜索索引
+     *
+     * @param documentIds 文档ID列表
+     * @return 搜索索引列表
+     */
+    @Query("SELECT si FROM KnowledgeSearchIndex si WHERE si.document.id IN :documentIds")
+    List<KnowledgeSearchIndex> findByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+
     /**
      * 查找有向量化表示的索引
      * 用于语义搜索
@@ -81,10 +127,24 @@ public interface KnowledgeSearchIndexRepository extends JpaRepository<KnowledgeS
      */
     @Query("SELECT si FROM KnowledgeSearchIndex si WHERE " +
            "si.status = 'READY' AND " +
-           "si.embedding IS NOT NULL AND " +
+           "(si.embeddingVector IS NOT NULL OR si.embedding IS NOT NULL) AND " +
            "si.embeddingDimension IS NOT NULL")
     List<KnowledgeSearchIndex> findIndexesWithEmbedding();
 
+    /**
+     * 按ID游标分批查找需要迁移的索引：仍使用旧版文本格式，或二进制向量尚未归一化
+     * 
+     * @param afterId 上一批次的最大索引ID
+     * @param pageable 分页参数（仅使用批次大小）
+     * @return 待迁移的索引列表
+     */
+    @Query("SELECT si FROM KnowledgeSearchIndex si WHERE " +
+           "(si.embedding IS NOT NULL OR si.embeddingVector IS NOT NULL) AND si.embeddingNorm IS NULL " +
+           "AND si.id > :afterId " +
+           "ORDER BY si.id ASC")
+    List<KnowledgeSearchIndex> findLegacyEmbeddingIndexes(@Param("afterId") Long afterId,
+                                                          org.springframework.data.domain.Pageable pageable);
+
     /**
      * 统计各状态的索引数量
      * 
@@ -137,19 +197,23 @@ public interface KnowledgeSearchIndexRepository extends JpaRepository<KnowledgeS
      * 更新索引的向量化表示
      * 
      * @param indexId 索引ID
-     * @param embedding 向量化表示
+     * @param embeddingVector 二进制向量化表示（已归一化）
      * @param dimension 向量维度
+     * @param norm 原始向量的L2范数
      * @return 更新的记录数
      */
     @Modifying
     @Query("UPDATE KnowledgeSearchIndex si SET " +
-           "si.embedding = :embedding, " +
+           "si.embeddingVector = :embeddingVector, " +
+           "si.embedding = null, " +
            "si.embeddingDimension = :dimension, " +
+           "si.embeddingNorm = :norm, " +
            "si.updatedAt = CURRENT_TIMESTAMP " +
            "WHERE si.id = :indexId")
     int updateEmbedding(@Param("indexId") Long indexId, 
-                       @Param("embedding") String embedding,
-                       @Param("dimension") Integer dimension);
+                       @Param("embeddingVector") byte[] embeddingVector,
+                       @Param("dimension") Integer dimension,
+                       @Param("norm") Float norm);
 
     /**
      * 批量删除指定文档的索引
@@ -193,7 +257,7 @@ public interface KnowledgeSearchIndexRepository extends JpaRepository<KnowledgeS
            "COUNT(CASE WHEN si.status = 'READY' THEN 1 END) as readyCount, " +
            "COUNT(CASE WHEN si.status = 'BUILDING' THEN 1 END) as buildingCount, " +
            "COUNT(CASE WHEN si.status = 'ERROR' THEN 1 END) as errorCount, " +
-           "COUNT(CASE WHEN si.embedding IS NOT NULL THEN 1 END) as embeddingCount, " +
+           "COUNT(CASE WHEN si.embeddingVector IS NOT NULL OR si.embedding IS NOT NULL THEN 1 END) as embeddingCount, " +
            "AVG(si.embeddingDimension) as avgDimension " +
            "FROM KnowledgeSearchIndex si")
     Object[] getIndexStatistics();
@@ -0,0 +1,278 @@
+package com.example.customerservice.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.IntConsumer;
+
+/**
+ * 双数组字典树（Double-Array Trie）
+ *
+ * 用两个int数组表示字典树：状态s经字符c转移到 t = base[s] + code(c)，当且仅当 check[t] == base[s]，
+ * 其中 code(c) = c + 1，0号编码表示词尾。词尾状态的base为负数，编码该词在有序词表中的下标。
+ * 每次转移只做一次数组寻址和一次比较，查询不创建任何对象，适合分词时在字符缓冲区上逐位置做最长匹配。
+ *
+ * 按 darts 的方式构建：词表排序后逐层取出同一前缀下的子节点，为每组兄弟节点寻找一个不冲突的base。
+ * 构建完成后只读，可在多个线程间共享。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class DoubleArrayTrie {
+
+    private static final int INITIAL_CAPACITY = 65536 + 2;
+
+    private int[] base;
+    private int[] check;
+    private boolean[] used;
+    private int size;
+    private int nextCheckPos;
+
+    private final String[] keys;
+
+    /**
+     * 构建字典树，空串和重复的词被忽略
+     *
+     * @param words 词表
+     */
+    public DoubleArrayTrie(Collection<String> words) {
+        TreeSet<String> sorted = new TreeSet<>();
+        for (String word : words) {
+            if (word != null && !word.isEmpty()) {
+                sorted.add(word);
+            }
+        }
+        this.keys = sorted.toArray(new String[0]);
+        this.base = new int[INITIAL_CAPACITY];
+        this.check = new int[INITIAL_CAPACITY];
+        this.used = new boolean[INITIAL_CAPACITY];
+        if (keys.length > 0) {
+            int rootBase = insert(fetch(new Node(0, 0, 0, keys.length)));
+            base[0] = rootBase;
+        }
+        // 构建完成后收缩数组（查询时越界即视为无转移），used只在构建时使用
+        int length = Math.max(size, 1);
+        this.base = Arrays.copyOf(base, length);
+        this.check = Arrays.copyOf(check, length);
+        this.used = null;
+    }
+
+    /**
+     * 精确匹配 buffer[start, end)
+     *
+     * @return 该词在有序词表中的下标，不在词表中时返回-1
+     */
+    public int exactMatch(char[] buffer, int start, int end) {
+        if (keys.length == 0 || start >= end) {
+            return -1;
+        }
+        int state = base[0];
+        for (int i = start; i < end; i++) {
+            int next = state + buffer[i] + 1;
+            if (next >= check.length || check[next] != state) {
+                return -1;
+            }
+            state = base[next];
+        }
+        if (state < check.length && check[state] == state && base[state] < 0) {
+            return -base[state] - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 精确匹配整个字符串
+     *
+     * @return 该词在有序词表中的下标，不在词表中时返回-1
+     */
+    public int exactMatch(String word) {
+        return word == null ? -1 : exactMatch(word.toCharArray(), 0, word.length());
+    }
+
+    /**
+     * 从start开始在 buffer[start, end) 中查找最长的词
+     *
+     * @return 最长匹配的长度，没有任何词以此位置开头时返回0
+     */
+    public int longestPrefixLength(char[] buffer, int start, int end) {
+        if (keys.length == 0) {
+            return 0;
+        }
+        int longest = 0;
+        int state = base[0];
+        for (int i = start; i < end; i++) {
+            int next = state + buffer[i] + 1;
+            if (next >= check.length || check[next] != state) {
+                return longest;
+            }
+            state = base[next];
+            // 经过的状态存在词尾转移时记录一次匹配
+            if (state < check.length && check[state] == state && base[state] < 0) {
+                longest = i - start + 1;
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * 从start开始在 buffer[start, end) 中查找所有作为前缀出现的词（common prefix search）
+     *
+     * @param consumer 按长度升序接收每个匹配词在有序词表中的下标
+     */
+    public void forEachPrefixMatch(char[] buffer, int start, int end, IntConsumer consumer) {
+        if (keys.length == 0) {
+            return;
+        }
+        int state = base[0];
+        for (int i = start; i < end; i++) {
+            int next = state + buffer[i] + 1;
+            if (next >= check.length || check[next] != state) {
+                return;
+            }
+            state = base[next];
+            if (state < check.length && check[state] == state && base[state] < 0) {
+                consumer.accept(-base[state] - 1);
+            }
+        }
+    }
+
+    /**
+     * 获取词表中的词数
+     *
+     * @return 词数
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * 获取有序词表中下标对应的词
+     *
+     * @param index 下标
+     * @return 词
+     */
+    public String key(int index) {
+        return keys[index];
+    }
+
+    /**
+     * 获取双数组占用的字节数
+     *
+     * @return 字节数
+     */
+    public long memoryBytes() {
+        return (long) (base.length + check.length) * Integer.BYTES;
+    }
+
+    /**
+     * 取出父节点下的全部子节点，同一编码的连续词合并为一个子节点
+     */
+    private List<Node> fetch(Node parent) {
+        List<Node> siblings = new ArrayList<>();
+        int previous = -1;
+        for (int i = parent.left; i < parent.right; i++) {
+            String key = keys[i];
+            if (key.length() < parent.depth) {
+                continue;
+            }
+            int code = key.length() != parent.depth ? key.charAt(parent.depth) + 1 : 0;
+            if (code != previous || siblings.isEmpty()) {
+                if (!siblings.isEmpty()) {
+                    siblings.get(siblings.size() - 1).right = i;
+                }
+                siblings.add(new Node(code, parent.depth + 1, i, 0));
+            }
+            previous = code;
+        }
+        if (!siblings.isEmpty()) {
+            siblings.get(siblings.size() - 1).right = parent.right;
+        }
+        return siblings;
+    }
+
+    /**
+     * 为一组兄弟节点寻找不冲突的base并递归插入其子节点
+     *
+     * @return 选定的base
+     */
+    private int insert(List<Node> siblings) {
+        int firstCode = siblings.get(0).code;
+        int lastCode = siblings.get(siblings.size() - 1).code;
+        int position = Math.max(firstCode + 1, nextCheckPos) - 1;
+        int nonZero = 0;
+        boolean first = true;
+        int begin;
+
+        outer:
+        while (true) {
+            position++;
+            ensureCapacity(position + 1);
+            if (check[position] != 0) {
+                nonZero++;
+                continue;
+            }
+            if (first) {
+                nextCheckPos = position;
+                first = false;
+            }
+            begin = position - firstCode;
+            ensureCapacity(begin + lastCode + 1);
+            if (used[begin]) {
+                continue;
+            }
+            for (int i = 1; i < siblings.size(); i++) {
+                if (check[begin + siblings.get(i).code] != 0) {
+                    continue outer;
+                }
+            }
+            break;
+        }
+
+        // 已占用位置足够密集时跳过这一段，减少后续查找
+        if ((double) nonZero / (position - nextCheckPos + 1) >= 0.95) {
+            nextCheckPos = position;
+        }
+        used[begin] = true;
+        size = Math.max(size, begin + lastCode + 1);
+        for (Node sibling : siblings) {
+            check[begin + sibling.code] = begin;
+        }
+        for (Node sibling : siblings) {
+            List<Node> children = fetch(sibling);
+            // 递归插入可能扩容数组，先取得子节点的base再写入当前数组
+            int childBase = children.isEmpty() ? -sibling.left - 1 : insert(children);
+            base[begin + sibling.code] = childBase;
+        }
+        return begin;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= base.length) {
+            return;
+        }
+        int capacity = Math.max(required, base.length * 2);
+        base = Arrays.copyOf(base, capacity);
+        check = Arrays.copyOf(check, capacity);
+        used = Arrays.copyOf(used, capacity);
+    }
+
+    /**
+     * 构建时的字典树节点：编码、深度和对应的有序词表区间 [left, right)
+     */
+    private static final class Node {
+        final int code;
+        final int depth;
+        final int left;
+        int right;
+
+        Node(int code, int depth, int left, int right) {
+            this.code = code;
+            this.depth = depth;
+            this.left = left;
+            this.right = right;
+        }
+    }
+}
@@ -0,0 +1,802 @@
+package com.example.customerservice.search;
+
+import com.example.customerservice.vector.DocumentFilter;
+import com.example.customerservice.vector.GroupedTopKCollector;
+import com.example.customerservice.vector.TopKCollector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 常驻内存的BM25倒排索引
+ *
+ * 每个词项对应一个按内部序号升序排列的倒排表，表项为 (序号, 字段, 词频)；
+ * 同一条目在多个字段中出现时各字段一个表项，且相邻存放。倒排表以差分变长整数分块压缩存放，
+ * 带跳表指针，高频词项另有序号位图（见 {@link PostingsList}）。
+ * 每个条目另记各字段的词数（长度归一化用），并维护全部在用条目各字段的总词数，
+ * 检索时按BM25F打分：各字段词频先按字段长度归一化并乘以字段权重，合并后再做一次饱和，
+ * 因此同一词项出现在多个字段中不会被重复计分。
+ *
+ * 条目由调用方的ID（如文档ID、分块ID）和所属文档ID标识，内部按写入顺序分配连续序号，
+ * 倒排表只追加，保持有序。更新等价于删除旧条目后写入新条目；删除只做标记并减少词项的文档频率，
+ * 删除条目超过一半时整体压缩，重新分配序号并丢弃已删除表项和不再使用的词项。
+ *
+ * 检索按文档逐个合并（document-at-a-time）：同时推进各查询词项的倒排表游标，
+ * 每个条目在全部词项上打完分后直接提交到 {@link TopKCollector}，不需要按条目数量分配累加数组。
+ * 检索代价只与查询词项的倒排表长度有关，与索引中的条目总数无关。
+ * 计算查询覆盖度时，命中序号与各词项的倒排表求交：高频词项查序号位图，其余借助跳表前跳。
+ * 字典按字典序保存，查询词项可以展开为以它为前缀的词项（如 refund 匹配 refunds、refunded）。
+ * 持久化由 {@link KeywordSegmentStore} 负责，重启时按段批量载入，不需要重新分词。
+ *
+ * 读写通过读写锁保护：检索可并发执行，增删操作互斥。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class InvertedIndex {
+
+    /**
+     * BM25词频饱和参数默认值
+     */
+    public static final double DEFAULT_K1 = 1.2;
+
+    /**
+     * BM25长度归一化参数默认值
+     */
+    public static final double DEFAULT_B = 0.75;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 触发压缩的最少已删除条目数，避免小索引频繁压缩
+     */
+    private static final int MIN_COMPACT_DELETED = 1024;
+
+    /**
+     * 每个查询词项最多展开的前缀匹配词项数
+     */
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    /**
+     * 参与前缀展开的查询词项最小长度
+     */
+    static final int MIN_PREFIX_LENGTH = 2;
+
+    private final float[] fieldWeights;
+    private final double k1;
+    private final double b;
+
+    /**
+     * 词项字典，按字典序排列
+     */
+    private final TreeMap<String, PostingsList> terms = new TreeMap<>();
+
+    /**
+     * 调用方ID到内部序号
+     */
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] documentIds = new long[INITIAL_CAPACITY];
+
+    /**
+     * 各条目各字段的词数，下标为 序号 * 字段数 + 字段
+     */
+    private int[] fieldLengths;
+
+    /**
+     * 各条目包含的词项，删除时据此减少文档频率
+     */
+    private PostingsList[][] entryTerms = new PostingsList[INITIAL_CAPACITY][];
+
+    private final BitSet deleted = new BitSet();
+    private final long[] totalFieldLengths;
+    private int ordinalCount;
+    private int liveCount;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 构造函数，使用默认BM25参数
+     *
+     * @param fieldWeights 各字段权重，数组长度即字段数
+     */
+    public InvertedIndex(float... fieldWeights) {
+        this(DEFAULT_K1, DEFAULT_B, fieldWeights);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param k1 词频饱和参数，越大词频的影响越接近线性
+     * @param b 长度归一化参数，取值 [0, 1]，0为不做长度归一化
+     * @param fieldWeights 各字段权重，数组长度即字段数
+     */
+    public InvertedIndex(double k1, double b, float... fieldWeights) {
+        if (fieldWeights == null || fieldWeights.length == 0 || fieldWeights.length > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("字段数量必须在1到" + Byte.MAX_VALUE + "之间");
+        }
+        if (k1 < 0 || b < 0 || b > 1) {
+            throw new IllegalArgumentException("BM25参数无效: k1=" + k1 + ", b=" + b);
+        }
+        this.k1 = k1;
+        this.b = b;
+        this.fieldWeights = fieldWeights.clone();
+        this.fieldLengths = new int[INITIAL_CAPACITY * fieldWeights.length];
+        this.totalFieldLengths = new long[fieldWeights.length];
+    }
+
+    /**
+     * 写入或替换条目
+     *
+     * @param id 条目ID
+     * @param documentId 所属文档ID，用于文档过滤和按文档删除
+     * @param fieldTokens 各字段的词项序列（可重复，重复次数即词频），下标为字段序号，为null的字段视为空
+     * @throws IllegalArgumentException 当字段数量超过索引字段数时抛出
+     */
+    public void upsert(long id, long documentId, List<? extends Collection<String>> fieldTokens) {
+        if (fieldTokens.size() > fieldWeights.length) {
+            throw new IllegalArgumentException("字段数量不一致: 索引为 " + fieldWeights.length
+                    + "，实际为 " + fieldTokens.size());
+        }
+
+        // 在锁外统计各字段词频
+        Map<String, int[]> frequencies = new HashMap<>();
+        int[] lengths = new int[fieldWeights.length];
+        for (int field = 0; field < fieldTokens.size(); field++) {
+            Collection<String> tokens = fieldTokens.get(field);
+            if (tokens == null) {
+                continue;
+            }
+            for (String token : tokens) {
+                if (token == null || token.isEmpty()) {
+                    continue;
+                }
+                frequencies.computeIfAbsent(token, t -> new int[fieldWeights.length])[field]++;
+                lengths[field]++;
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = ordinals.get(id);
+            if (previous != null) {
+                delete(previous);
+            }
+            int ordinal = appendEntry(id, documentId, lengths);
+            PostingsList[] entryPostings = new PostingsList[frequencies.size()];
+            int termIndex = 0;
+            for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+                PostingsList postings = terms.computeIfAbsent(entry.getKey(), t -> new PostingsList());
+                int[] fieldFrequencies = entry.getValue();
+                for (int field = 0; field < fieldFrequencies.length; field++) {
+                    if (fieldFrequencies[field] > 0) {
+                        postings.add(ordinal, field, fieldFrequencies[field]);
+                    }
+                }
+                postings.liveEntries++;
+                entryPostings[termIndex++] = postings;
+            }
+            entryTerms[ordinal] = entryPostings;
+            if (previous != null) {
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量载入磁盘关键词段中未删除的条目，等价于逐条 {@link #upsert}，但不需要重新分词和统计词频：
+     * 段内条目按行号顺序分配新序号，段的倒排表按词项逐个追加到对应的倒排表
+     *
+     * @param segment 关键词段
+     * @param deletedRows 段中已删除的行
+     * @return 载入的条目数量
+     * @throws IllegalArgumentException 当段的字段数与索引不一致时抛出
+     */
+    int appendSegment(KeywordSegment segment, BitSet deletedRows) {
+        int fieldCount = fieldWeights.length;
+        if (segment.fieldCount() != fieldCount) {
+            throw new IllegalArgumentException("字段数量不一致: 索引为 " + fieldCount
+                    + "，段为 " + segment.fieldCount());
+        }
+
+        lock.writeLock().lock();
+        try {
+            int rows = segment.rows();
+            int[] rowOrdinals = new int[rows];
+            int[] lengths = new int[fieldCount];
+            int loaded = 0;
+            boolean replaced = false;
+            for (int row = 0; row < rows; row++) {
+                if (deletedRows.get(row)) {
+                    rowOrdinals[row] = -1;
+                    continue;
+                }
+                long id = segment.id(row);
+                Integer previous = ordinals.get(id);
+                if (previous != null) {
+                    delete(previous);
+                    replaced = true;
+                }
+                for (int field = 0; field < fieldCount; field++) {
+                    lengths[field] = segment.fieldLength(row, field);
+                }
+                rowOrdinals[row] = appendEntry(id, segment.documentId(row), lengths);
+                loaded++;
+            }
+
+            // 各行包含的词项，删除时据此减少文档频率
+            PostingsList[][] rowTerms = new PostingsList[rows][];
+            int[] rowTermCounts = new int[rows];
+            for (int i = 0; i < segment.termCount(); i++) {
+                PostingsList postings = null;
+                int lastRow = -1;
+                for (KeywordSegment.Cursor cursor = segment.cursor(i); cursor.row() != PostingsList.NO_MORE_DOCS;
+                     cursor.next()) {
+                    int row = cursor.row();
+                    int ordinal = rowOrdinals[row];
+                    if (ordinal < 0) {
+                        continue;
+                    }
+                    if (postings == null) {
+                        postings = terms.computeIfAbsent(segment.term(i), t -> new PostingsList());
+                    }
+                    postings.add(ordinal, cursor.field(), cursor.freq());
+                    if (row != lastRow) {
+                        postings.liveEntries++;
+                        PostingsList[] entryPostings = rowTerms[row];
+                        if (entryPostings == null) {
+                            entryPostings = rowTerms[row] = new PostingsList[8];
+                        } else if (rowTermCounts[row] == entryPostings.length) {
+                            entryPostings = rowTerms[row] = Arrays.copyOf(entryPostings, entryPostings.length * 2);
+                        }
+                        entryPostings[rowTermCounts[row]++] = postings;
+                        lastRow = row;
+                    }
+                }
+            }
+            for (int row = 0; row < rows; row++) {
+                if (rowOrdinals[row] >= 0) {
+                    entryTerms[rowOrdinals[row]] = rowTerms[row] == null
+                            ? new PostingsList[0] : Arrays.copyOf(rowTerms[row], rowTermCounts[row]);
+                }
+            }
+            if (replaced) {
+                compactIfNeeded();
+            }
+            return loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除条目
+     *
+     * @param id 条目ID
+     * @return 是否移除成功
+     */
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                return false;
+            }
+            delete(ordinal);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档的全部条目
+     *
+     * @param documentId 文档ID
+     * @return 移除的条目数量
+     */
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+                if (documentIds[ordinal] == documentId && !deleted.get(ordinal)) {
+                    delete(ordinal);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                compactIfNeeded();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            ordinals.clear();
+            deleted.clear();
+            Arrays.fill(entryTerms, 0, ordinalCount, null);
+            Arrays.fill(totalFieldLengths, 0L);
+            ordinalCount = 0;
+            liveCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * BM25检索
+     * 查询词项去重后参与打分，不在字典中的词项被忽略
+     *
+     * @param queryTerms 查询词项
+     * @param topK 返回结果数量
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 按分数降序排列的命中结果
+     */
+    public List<KeywordHit> search(Collection<String> queryTerms, int topK, DocumentFilter filter) {
+        return search(queryTerms, topK, 0, filter, 0.0);
+    }
+
+    /**
+     * 带前缀扩展、可按文档折叠的BM25检索
+     *
+     * 每个查询词项除精确匹配外，还匹配字典中以它为前缀的词项（最多 {@value #MAX_PREFIX_EXPANSIONS} 个，
+     * 词项长度至少为 {@value #MIN_PREFIX_LENGTH}），前缀匹配的得分乘以prefixWeight；
+     * 同一查询词项的多个匹配只取得分最高的一个，避免一个查询词因派生词多而被重复计分。
+     *
+     * 命中结果同时给出查询覆盖度（见 {@link KeywordHit#getCoverage()}）：
+     * 按逆文档频率加权的查询词项命中比例，精确匹配计1、前缀匹配计prefixWeight，取值 [0, 1]。
+     *
+     * @param queryTerms 查询词项
+     * @param topK 返回结果数量；按文档折叠时为文档数量
+     * @param perDocument 每个文档保留的条目数量，不大于0时不按文档折叠
+     * @param filter 文档过滤器，为null时不过滤
+     * @param prefixWeight 前缀匹配的权重，不大于0时只做精确匹配
+     * @return 按分数降序排列的命中结果
+     */
+    public List<KeywordHit> search(Collection<String> queryTerms, int topK, int perDocument, DocumentFilter filter,
+                                   double prefixWeight) {
+        if (queryTerms == null || queryTerms.isEmpty() || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return new ArrayList<>();
+            }
+            List<String> distinctTerms = new ArrayList<>();
+            for (String term : new LinkedHashSet<>(queryTerms)) {
+                if (term != null && !term.isEmpty()) {
+                    distinctTerms.add(term);
+                }
+            }
+
+            // 每个查询词项展开为一组子句：精确匹配权重为1，前缀匹配权重为prefixWeight
+            List<PostingsList> clausePostings = new ArrayList<>();
+            List<Integer> clauseGroups = new ArrayList<>();
+            List<Double> clauseWeights = new ArrayList<>();
+            double[] groupIdf = new double[distinctTerms.size()];
+            for (int group = 0; group < distinctTerms.size(); group++) {
+                String term = distinctTerms.get(group);
+                PostingsList exact = terms.get(term);
+                groupIdf[group] = idf(exact != null ? exact.liveEntries : 0);
+                if (exact != null && exact.liveEntries > 0) {
+                    clausePostings.add(exact);
+                    clauseGroups.add(group);
+                    clauseWeights.add(1.0);
+                }
+                if (prefixWeight > 0 && term.length() >= MIN_PREFIX_LENGTH) {
+                    int expansions = 0;
+                    for (Map.Entry<String, PostingsList> entry : terms.tailMap(term, false).entrySet()) {
+                        if (!entry.getKey().startsWith(term) || expansions >= MAX_PREFIX_EXPANSIONS) {
+                            break;
+                        }
+                        if (entry.getValue().liveEntries > 0) {
+                            clausePostings.add(entry.getValue());
+                            clauseGroups.add(group);
+                            clauseWeights.add(prefixWeight);
+                            expansions++;
+                        }
+                    }
+                }
+            }
+            if (clausePostings.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            int clauseCount = clausePostings.size();
+            PostingsList[] postings = clausePostings.toArray(new PostingsList[0]);
+            int[] groups = new int[clauseCount];
+            double[] weights = new double[clauseCount];
+            for (int i = 0; i < clauseCount; i++) {
+                groups[i] = clauseGroups.get(i);
+                weights[i] = clauseWeights.get(i);
+            }
+            return collect(postings, groups, weights, groupIdf, topK, perDocument, filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按文档逐个合并各子句的倒排表并打分，调用方需持有读锁
+     */
+    private List<KeywordHit> collect(PostingsList[] postings, int[] groups, double[] weights, double[] groupIdf,
+                                     int topK, int perDocument, DocumentFilter filter) {
+        int clauseCount = postings.length;
+        double[] clauseIdf = new double[clauseCount];
+        PostingsList.Cursor[] cursors = new PostingsList.Cursor[clauseCount];
+        for (int i = 0; i < clauseCount; i++) {
+            clauseIdf[i] = weights[i] * idf(postings[i].liveEntries);
+            cursors[i] = postings[i].cursor();
+        }
+        double[] inverseAverageLengths = inverseAverageLengths();
+
+        // 只保留前K个条目的序号，不为每个匹配条目创建结果对象
+        TopKCollector collector = perDocument > 0 ? null : new TopKCollector(Math.min(topK, liveCount));
+        GroupedTopKCollector grouped = perDocument > 0 ? new GroupedTopKCollector(topK, perDocument) : null;
+        double[] groupScores = new double[groupIdf.length];
+        while (true) {
+            // 各游标当前位置的最小序号即下一个待打分条目
+            int ordinal = PostingsList.NO_MORE_DOCS;
+            for (PostingsList.Cursor cursor : cursors) {
+                ordinal = Math.min(ordinal, cursor.doc());
+            }
+            if (ordinal == PostingsList.NO_MORE_DOCS) {
+                break;
+            }
+
+            if (deleted.get(ordinal) || (filter != null && !filter.accepts(documentIds[ordinal]))) {
+                // 不参与打分的条目只移动游标
+                for (PostingsList.Cursor cursor : cursors) {
+                    while (cursor.doc() == ordinal) {
+                        cursor.next();
+                    }
+                }
+                continue;
+            }
+            for (int i = 0; i < clauseCount; i++) {
+                double weightedFrequency = weightedFrequency(cursors[i], ordinal, inverseAverageLengths);
+                if (weightedFrequency > 0) {
+                    double clauseScore = saturate(clauseIdf[i], weightedFrequency);
+                    groupScores[groups[i]] = Math.max(groupScores[groups[i]], clauseScore);
+                }
+            }
+
+            double score = 0.0;
+            for (int group = 0; group < groupScores.length; group++) {
+                score += groupScores[group];
+                groupScores[group] = 0.0;
+            }
+            if (score > 0) {
+                if (grouped != null) {
+                    grouped.offer(ordinal, documentIds[ordinal], score);
+                } else {
+                    collector.offer(ordinal, score);
+                }
+            }
+        }
+
+        int resultCount = grouped != null ? grouped.sortDescending() : collector.sortDescending();
+        int[] ordinals = new int[resultCount];
+        for (int rank = 0; rank < resultCount; rank++) {
+            ordinals[rank] = (int) (grouped != null ? grouped.id(rank) : collector.id(rank));
+        }
+        double[] coverages = coverages(ordinals, postings, groups, weights, groupIdf);
+        List<KeywordHit> hits = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            int ordinal = ordinals[rank];
+            double score = grouped != null ? grouped.score(rank) : collector.score(rank);
+            hits.add(new KeywordHit(ids[ordinal], documentIds[ordinal], score, coverages[rank]));
+        }
+        return hits;
+    }
+
+    /**
+     * 消耗游标上属于该序号的全部表项，返回各字段词频按字段长度归一化并乘以字段权重后的和
+     */
+    private double weightedFrequency(PostingsList.Cursor cursor, int ordinal, double[] inverseAverageLengths) {
+        if (cursor.doc() != ordinal) {
+            return 0.0;
+        }
+        int lengthBase = ordinal * fieldWeights.length;
+        double weightedFrequency = 0.0;
+        while (cursor.doc() == ordinal) {
+            int field = cursor.field();
+            double norm = 1.0 - b + b * fieldLengths[lengthBase + field] * inverseAverageLengths[field];
+            weightedFrequency += fieldWeights[field] * cursor.freq() / norm;
+            cursor.next();
+        }
+        return weightedFrequency;
+    }
+
+    /**
+     * BM25词频饱和
+     */
+    private double saturate(double idf, double weightedFrequency) {
+        return idf * weightedFrequency * (k1 + 1) / (weightedFrequency + k1);
+    }
+
+    /**
+     * 各字段平均长度的倒数，调用方需持有读锁
+     */
+    private double[] inverseAverageLengths() {
+        double[] inverseAverageLengths = new double[fieldWeights.length];
+        for (int field = 0; field < fieldWeights.length; field++) {
+            double average = (double) totalFieldLengths[field] / liveCount;
+            inverseAverageLengths[field] = average > 0 ? 1.0 / average : 0.0;
+        }
+        return inverseAverageLengths;
+    }
+
+    /**
+     * 计算命中条目的查询覆盖度：命中的查询词项按逆文档频率加权求和后除以总权重，
+     * 每个查询词项取其命中子句中的最大权重。
+     * 命中序号排序后与各子句的倒排表求交：高频词项直接查位图，其余借助跳表前跳
+     */
+    private double[] coverages(int[] ordinals, PostingsList[] postings, int[] groups, double[] weights,
+                               double[] groupIdf) {
+        int count = ordinals.length;
+        int groupCount = groupIdf.length;
+        long[] sorted = new long[count];
+        for (int rank = 0; rank < count; rank++) {
+            sorted[rank] = (long) ordinals[rank] << 32 | rank;
+        }
+        Arrays.sort(sorted);
+
+        double[] matched = new double[count * groupCount];
+        for (int i = 0; i < postings.length; i++) {
+            RoaringBitmap bitmap = postings[i].docBitmap();
+            PostingsList.Cursor cursor = bitmap == null ? postings[i].cursor() : null;
+            for (long packed : sorted) {
+                int ordinal = (int) (packed >>> 32);
+                boolean contains;
+                if (bitmap != null) {
+                    contains = bitmap.contains(ordinal);
+                } else {
+                    cursor.advance(ordinal);
+                    contains = cursor.doc() == ordinal;
+                }
+                int slot = (int) packed * groupCount + groups[i];
+                if (contains && weights[i] > matched[slot]) {
+                    matched[slot] = weights[i];
+                }
+            }
+        }
+
+        double totalIdf = 0.0;
+        for (double idf : groupIdf) {
+            totalIdf += idf;
+        }
+        double[] coverages = new double[count];
+        for (int rank = 0; rank < count; rank++) {
+            double covered = 0.0;
+            for (int group = 0; group < groupCount; group++) {
+                covered += groupIdf[group] * matched[rank * groupCount + group];
+            }
+            coverages[rank] = Math.min(covered / totalIdf, 1.0);
+        }
+        return coverages;
+    }
+
+    /**
+     * BM25逆文档频率，文档频率越低分数越高，始终为正
+     */
+    private double idf(int documentFrequency) {
+        return Math.log(1.0 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * 判断索引中是否包含条目
+     *
+     * @param id 条目ID
+     * @return 是否包含
+     */
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return ordinals.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取词项的文档频率
+     *
+     * @param term 词项
+     * @return 包含该词项的在用条目数量
+     */
+    public int documentFrequency(String term) {
+        lock.readLock().lock();
+        try {
+            PostingsList postings = terms.get(term);
+            return postings != null ? postings.liveEntries : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取在用条目数量
+     *
+     * @return 条目数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取词项数量（含等待压缩清理的词项）
+     *
+     * @return 词项数量
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取倒排表项总数（含等待压缩清理的表项）
+     *
+     * @return 表项数量
+     */
+    public long postingCount() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (PostingsList postings : terms.values()) {
+                count += postings.size();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 释放倒排表的预留空间，批量加载结束后调用
+     */
+    public void trimToSize() {
+        lock.writeLock().lock();
+        try {
+            for (PostingsList postings : terms.values()) {
+                postings.trimToSize();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 获取倒排表占用的字节数（编码数据、跳表和高频词项的序号位图，不含词项字典）
+     *
+     * @return 字节数
+     */
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (PostingsList postings : terms.values()) {
+                bytes += postings.memoryBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追加条目并分配序号，调用方需持有写锁
+     */
+    private int appendEntry(long id, long documentId, int[] lengths) {
+        int fieldCount = fieldWeights.length;
+        if (ordinalCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            documentIds = Arrays.copyOf(documentIds, capacity);
+            fieldLengths = Arrays.copyOf(fieldLengths, capacity * fieldCount);
+            entryTerms = Arrays.copyOf(entryTerms, capacity);
+        }
+        int ordinal = ordinalCount++;
+        ids[ordinal] = id;
+        documentIds[ordinal] = documentId;
+        System.arraycopy(lengths, 0, fieldLengths, ordinal * fieldCount, fieldCount);
+        for (int field = 0; field < fieldCount; field++) {
+            totalFieldLengths[field] += lengths[field];
+        }
+        ordinals.put(id, ordinal);
+        liveCount++;
+        return ordinal;
+    }
+
+    /**
+     * 标记条目为已删除并更新统计，调用方需持有写锁
+     */
+    private void delete(int ordinal) {
+        deleted.set(ordinal);
+        ordinals.remove(ids[ordinal]);
+        for (PostingsList postings : entryTerms[ordinal]) {
+            postings.liveEntries--;
+        }
+        entryTerms[ordinal] = null;
+        int fieldCount = fieldWeights.length;
+        for (int field = 0; field < fieldCount; field++) {
+            totalFieldLengths[field] -= fieldLengths[ordinal * fieldCount + field];
+        }
+        liveCount--;
+    }
+
+    /**
+     * 已删除条目超过一半时压缩：在用条目按原顺序重新编号，倒排表丢弃已删除表项，
+     * 不再被任何在用条目使用的词项从字典中移除。调用方需持有写锁
+     */
+    private void compactIfNeeded() {
+        int deletedCount = ordinalCount - liveCount;
+        if (deletedCount < MIN_COMPACT_DELETED || deletedCount <= liveCount) {
+            return;
+        }
+
+        int fieldCount = fieldWeights.length;
+        int[] remap = new int[ordinalCount];
+        int next = 0;
+        for (int ordinal = 0; ordinal < ordinalCount; ordinal++) {
+            if (deleted.get(ordinal)) {
+                remap[ordinal] = -1;
+                continue;
+            }
+            remap[ordinal] = next;
+            ids[next] = ids[ordinal];
+            documentIds[next] = documentIds[ordinal];
+            System.arraycopy(fieldLengths, ordinal * fieldCount, fieldLengths, next * fieldCount, fieldCount);
+            entryTerms[next] = entryTerms[ordinal];
+            ordinals.put(ids[next], next);
+            next++;
+        }
+        Arrays.fill(entryTerms, next, ordinalCount, null);
+        ordinalCount = next;
+        deleted.clear();
+
+        Iterator<PostingsList> iterator = terms.values().iterator();
+        while (iterator.hasNext()) {
+            PostingsList postings = iterator.next();
+            if (postings.liveEntries == 0) {
+                iterator.remove();
+            } else {
+                postings.remap(remap);
+            }
+        }
+    }
+}
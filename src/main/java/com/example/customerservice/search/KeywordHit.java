@@ -0,0 +1,56 @@
+package com.example.customerservice.search;
+
+/**
+ * 关键词索引命中结果
+ *
+ * 仅包含条目ID、所属文档ID、BM25分数和查询覆盖度，实体数据在排序完成后再按ID加载。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class KeywordHit {
+
+    private final long id;
+    private final long documentId;
+    private final double score;
+    private final double coverage;
+
+    public KeywordHit(long id, long documentId, double score, double coverage) {
+        this.id = id;
+        this.documentId = documentId;
+        this.score = score;
+        this.coverage = coverage;
+    }
+
+    /**
+     * 条目ID：文档级索引中为文档ID，分块级索引中为分块ID
+     */
+    public long getId() {
+        return id;
+    }
+
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    /**
+     * BM25分数，用于排序，取值没有上界
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * 查询覆盖度：按逆文档频率加权的查询词项命中比例，取值 [0, 1]，可与相似度阈值比较
+     */
+    public double getCoverage() {
+        return coverage;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("KeywordHit{id=%d, documentId=%d, score=%.4f, coverage=%.4f}",
+            id, documentId, score, coverage);
+    }
+}
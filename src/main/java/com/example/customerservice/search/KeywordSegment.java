@@ -0,0 +1,471 @@
+package com.example.customerservice.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.zip.CRC32;
+
+/**
+ * 不可变的磁盘关键词段
+ *
+ * 文件格式（小端序）：
+ * <pre>
+ * [0..3]    魔数 "KSEG"
+ * [4..7]    格式版本 int32
+ * [8..11]   字段数 int32
+ * [12..15]  行数 int32
+ * [16..19]  词项数 int32
+ * [20..23]  词项字典字节数 int32
+ * [24..]    存储字段：条目ID int64 * rows、文档ID int64 * rows、各字段词数 int32 * rows * 字段数
+ * [..]      词项字典：按字典序，每个词项为 varint(UTF-8字节数)、UTF-8字节、varint(表项数)、varint(倒排表字节数)
+ * [..]      倒排表：按词项顺序首尾相接，编码与 {@link PostingsList} 相同（行号差分左移一位，最低位标记"字段0、词频1"）
+ * [..]      CRC32校验和 int64，覆盖之前的全部字节
+ * </pre>
+ * 打开时只读映射整个文件并校验CRC，词项字典解析到内存（词项和倒排表偏移），存储字段和倒排表留在映射中按需读取。
+ * 段写入后不再修改，删除由 {@link KeywordSegmentStore} 的墓碑位图记录。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class KeywordSegment {
+
+    /**
+     * 文件魔数 "KSEG"
+     */
+    public static final int MAGIC = 0x4745534B;
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int HEADER_BYTES = 24;
+
+    private static final int MAX_FIELD = 0x7F;
+
+    private final Path file;
+    private final int fieldCount;
+    private final int rows;
+    private final ByteBuffer data;
+    private final int documentIdsOffset;
+    private final int fieldLengthsOffset;
+    private final String[] terms;
+    private final int[] postingSizes;
+    private final int[] postingOffsets;
+
+    /**
+     * 按条目ID排序的行号，用于按ID定位
+     */
+    private final long[] sortedIds;
+    private final int[] sortedRows;
+
+    private KeywordSegment(Path file, int fieldCount, int rows, ByteBuffer data, String[] terms,
+                           int[] postingSizes, int[] postingOffsets) {
+        this.file = file;
+        this.fieldCount = fieldCount;
+        this.rows = rows;
+        this.data = data;
+        this.documentIdsOffset = HEADER_BYTES + rows * Long.BYTES;
+        this.fieldLengthsOffset = documentIdsOffset + rows * Long.BYTES;
+        this.terms = terms;
+        this.postingSizes = postingSizes;
+        this.postingOffsets = postingOffsets;
+
+        Integer[] order = new Integer[rows];
+        for (int row = 0; row < rows; row++) {
+            order[row] = row;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(id(a), id(b)));
+        this.sortedIds = new long[rows];
+        this.sortedRows = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            sortedRows[i] = order[i];
+            sortedIds[i] = id(order[i]);
+        }
+    }
+
+    /**
+     * 写入新的段文件
+     * 先写临时文件并刷盘，再原子重命名，避免崩溃后留下不完整的段
+     *
+     * @param file 目标文件
+     * @param fieldCount 字段数
+     * @param rows 行数
+     * @param ids 条目ID
+     * @param documentIds 文档ID
+     * @param fieldLengths 各行各字段的词数，下标为 行号 * 字段数 + 字段
+     * @param postings 按字典序排列的词项倒排表
+     * @throws IOException 写入失败时抛出
+     */
+    public static void write(Path file, int fieldCount, int rows, long[] ids, long[] documentIds,
+                             int[] fieldLengths, SortedMap<String, PostingsBuffer> postings) throws IOException {
+        if (fieldCount <= 0 || fieldCount > MAX_FIELD + 1 || rows < 0) {
+            throw new IllegalArgumentException("无效的段参数: fieldCount=" + fieldCount + ", rows=" + rows);
+        }
+
+        PostingsBuffer dictionary = new PostingsBuffer();
+        for (Map.Entry<String, PostingsBuffer> entry : postings.entrySet()) {
+            byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            dictionary.writeVarInt(term.length);
+            dictionary.writeBytes(term);
+            dictionary.writeVarInt(entry.getValue().size);
+            dictionary.writeVarInt(entry.getValue().length);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ChecksumWriter writer = new ChecksumWriter(channel);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(fieldCount).putInt(rows)
+                    .putInt(postings.size()).putInt(dictionary.length).flip();
+            writer.write(header);
+
+            for (long[] values : new long[][]{ids, documentIds}) {
+                for (int row = 0; row < rows; row++) {
+                    writer.putLong(values[row]);
+                }
+            }
+            for (int i = 0; i < rows * fieldCount; i++) {
+                writer.putInt(fieldLengths[i]);
+            }
+            writer.putBytes(dictionary.data, dictionary.length);
+            for (PostingsBuffer buffer : postings.values()) {
+                writer.putBytes(buffer.data, buffer.length);
+            }
+            writer.finish();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以只读内存映射方式打开段文件，校验CRC并解析词项字典
+     *
+     * @param file 段文件
+     * @return 关键词段
+     * @throws IOException 读取失败、文件格式无效或校验和不一致时抛出
+     */
+    public static KeywordSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES + Long.BYTES) {
+                throw new IOException("关键词段文件长度不足: " + file);
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("关键词段超过2GB，请减小合并结果的最大条目数: " + file);
+            }
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("不是关键词段文件: " + file);
+            }
+            if (mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("不支持的关键词段版本: " + mapped.getInt(4));
+            }
+            int checksumOffset = (int) fileSize - Long.BYTES;
+            CRC32 crc = new CRC32();
+            crc.update(mapped.duplicate().position(0).limit(checksumOffset));
+            if (crc.getValue() != mapped.getLong(checksumOffset)) {
+                throw new IOException("关键词段校验和不一致: " + file);
+            }
+
+            int fieldCount = mapped.getInt(8);
+            int rows = mapped.getInt(12);
+            int termCount = mapped.getInt(16);
+            int dictionaryBytes = mapped.getInt(20);
+            long dictionaryOffset = HEADER_BYTES + (long) rows * (2 * Long.BYTES + fieldCount * Integer.BYTES);
+            if (fieldCount <= 0 || rows < 0 || termCount < 0 || dictionaryBytes < 0
+                    || dictionaryOffset + dictionaryBytes > checksumOffset) {
+                throw new IOException("关键词段文件长度与头部不一致: " + file);
+            }
+
+            String[] terms = new String[termCount];
+            int[] postingSizes = new int[termCount];
+            int[] postingOffsets = new int[termCount + 1];
+            int[] position = {(int) dictionaryOffset};
+            int postingOffset = (int) dictionaryOffset + dictionaryBytes;
+            for (int i = 0; i < termCount; i++) {
+                byte[] term = new byte[readVarInt(mapped, position)];
+                mapped.get(position[0], term);
+                position[0] += term.length;
+                terms[i] = new String(term, StandardCharsets.UTF_8);
+                postingSizes[i] = readVarInt(mapped, position);
+                postingOffsets[i] = postingOffset;
+                postingOffset += readVarInt(mapped, position);
+            }
+            postingOffsets[termCount] = postingOffset;
+            if (position[0] != dictionaryOffset + dictionaryBytes || postingOffset != checksumOffset) {
+                throw new IOException("关键词段词项字典与倒排表长度不一致: " + file);
+            }
+            return new KeywordSegment(file, fieldCount, rows, mapped, terms, postingSizes, postingOffsets);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    public long id(int row) {
+        return data.getLong(HEADER_BYTES + row * Long.BYTES);
+    }
+
+    public long documentId(int row) {
+        return data.getLong(documentIdsOffset + row * Long.BYTES);
+    }
+
+    public int fieldLength(int row, int field) {
+        return data.getInt(fieldLengthsOffset + (row * fieldCount + field) * Integer.BYTES);
+    }
+
+    /**
+     * 第i个词项（按字典序）
+     *
+     * @param i 词项序号
+     * @return 词项
+     */
+    public String term(int i) {
+        return terms[i];
+    }
+
+    /**
+     * 第i个词项的表项数
+     *
+     * @param i 词项序号
+     * @return 表项数
+     */
+    public int postingsSize(int i) {
+        return postingSizes[i];
+    }
+
+    /**
+     * 按条目ID查找行号
+     *
+     * @param id 条目ID
+     * @return 行号，不存在时返回-1
+     */
+    public int rowOf(long id) {
+        int index = Arrays.binarySearch(sortedIds, id);
+        return index >= 0 ? sortedRows[index] : -1;
+    }
+
+    /**
+     * 创建第i个词项的倒排表游标，游标位于第一个表项
+     *
+     * @param i 词项序号
+     * @return 游标
+     */
+    Cursor cursor(int i) {
+        return new Cursor(postingOffsets[i], postingSizes[i]);
+    }
+
+    private static int readVarInt(ByteBuffer buffer, int[] position) {
+        int value = 0;
+        int shift = 0;
+        while (true) {
+            byte current = buffer.get(position[0]++);
+            value |= (current & 0x7F) << shift;
+            if (current >= 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * 段内倒排表游标，顺序解码表项
+     */
+    final class Cursor {
+        private final int[] position;
+        private final int size;
+        private int index = -1;
+        private int row;
+        private int field;
+        private int freq;
+
+        private Cursor(int offset, int size) {
+            this.position = new int[]{offset};
+            this.size = size;
+            next();
+        }
+
+        /**
+         * 当前表项的行号，耗尽后为 {@link PostingsList#NO_MORE_DOCS}
+         */
+        int row() {
+            return row;
+        }
+
+        int field() {
+            return field;
+        }
+
+        int freq() {
+            return freq;
+        }
+
+        void next() {
+            if (++index >= size) {
+                index = size;
+                row = PostingsList.NO_MORE_DOCS;
+                return;
+            }
+            int header = readVarInt(data, position);
+            row += header >>> 1;
+            if ((header & 1) != 0) {
+                field = 0;
+                freq = 1;
+            } else {
+                int code = readVarInt(data, position);
+                field = code & MAX_FIELD;
+                freq = (code >>> 7) + 1;
+            }
+        }
+    }
+
+    /**
+     * 写段时的倒排表缓冲：按行号升序追加表项，编码与段文件中相同
+     */
+    public static final class PostingsBuffer {
+        private byte[] data = new byte[16];
+        private int length;
+        private int size;
+        private int lastRow;
+
+        /**
+         * 追加表项，行号不得小于上一个表项的行号
+         *
+         * @param row 行号
+         * @param field 字段，取值 [0, 127]
+         * @param frequency 词频，至少为1
+         */
+        public void add(int row, int field, int frequency) {
+            if (size > 0 && row < lastRow) {
+                throw new IllegalArgumentException("倒排表行号必须升序追加: " + row + " < " + lastRow);
+            }
+            if (field < 0 || field > MAX_FIELD || frequency < 1) {
+                throw new IllegalArgumentException("表项无效: field=" + field + ", frequency=" + frequency);
+            }
+            int delta = size == 0 ? row : row - lastRow;
+            if (field == 0 && frequency == 1) {
+                writeVarInt(delta << 1 | 1);
+            } else {
+                writeVarInt(delta << 1);
+                writeVarInt((frequency - 1) << 7 | field);
+            }
+            lastRow = row;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length + (data.length >> 1), length + extra));
+            }
+        }
+    }
+
+    /**
+     * 经64KB缓冲写出并累计CRC32，结束时追加校验和
+     */
+    private static final class ChecksumWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        private final CRC32 crc = new CRC32();
+
+        ChecksumWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putLong(long value) throws IOException {
+            reserve(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putInt(int value) throws IOException {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putBytes(byte[] bytes, int length) throws IOException {
+            if (length <= buffer.remaining()) {
+                buffer.put(bytes, 0, length);
+                return;
+            }
+            drain();
+            write(ByteBuffer.wrap(bytes, 0, length));
+        }
+
+        void write(ByteBuffer source) throws IOException {
+            drain();
+            crc.update(source.duplicate());
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+
+        void finish() throws IOException {
+            drain();
+            ByteBuffer checksum = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            checksum.putLong(crc.getValue()).flip();
+            while (checksum.hasRemaining()) {
+                channel.write(checksum);
+            }
+        }
+
+        private void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
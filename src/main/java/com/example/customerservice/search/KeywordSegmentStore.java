@@ -0,0 +1,710 @@
+package com.example.customerservice.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 磁盘关键词段存储
+ *
+ * 按Lucene的思路把关键词倒排索引持久化为只追加的段：
+ * <ul>
+ *   <li>写入先进入内存中的可变尾段，{@link #commit()} 时刷写为新的不可变 {@link KeywordSegment}
+ *       （存储字段、词项字典和倒排表），检索始终由内存中的 {@link InvertedIndex} 提供，定时提交即可让变更在短时间内落盘；</li>
+ *   <li>更新和删除在已有段的墓碑位图中标记，提交时为有变化的段写入新的 "段名_代数.del" 文件，不修改旧文件；</li>
+ *   <li>提交点是清单文件 segments.manifest：段文件和墓碑文件先刷盘，清单写临时文件刷盘后原子替换，
+ *       崩溃后总能读到上一个完整的提交点，未被清单引用的文件在下次打开时清理；</li>
+ *   <li>{@link #maybeMerge()} 按 {@link TieredMergePolicy} 选出大小相近的段合并为一个新段，
+ *       合并在存储锁之外读写段文件，不阻塞写入和提交；合并期间发生的删除在切换前映射到新段。</li>
+ * </ul>
+ * 清单另记水位线（已刷盘的最大条目ID）和提交时间：重启时只需读取清单、映射段文件并批量载入内存索引，
+ * 水位线之后的条目和提交之后的变更由调用方从数据库补齐。
+ *
+ * 除 {@link #maybeMerge()} 外所有方法同步执行；检索不经过存储。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class KeywordSegmentStore {
+
+    private static final String MANIFEST = "segments.manifest";
+    private static final String SEGMENT_SUFFIX = ".kseg";
+    private static final String TOMBSTONE_SUFFIX = ".del";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final int fieldCount;
+    private final TieredMergePolicy mergePolicy;
+
+    private final List<KeywordSegment> segments = new ArrayList<>();
+    private final Map<KeywordSegment, BitSet> tombstones = new HashMap<>();
+
+    /**
+     * 各段在当前提交点中的墓碑文件，没有墓碑时不在表中
+     */
+    private final Map<KeywordSegment, Path> tombstoneFiles = new HashMap<>();
+
+    /**
+     * 自上次提交以来墓碑有变化的段
+     */
+    private final Set<KeywordSegment> dirtyTombstones = new HashSet<>();
+
+    /**
+     * 保证同一时间只有一个合并在进行
+     */
+    private final Object mergeLock = new Object();
+
+    private long generation;
+    private long watermark;
+    private long commitTimestamp;
+    private boolean initialized;
+    private boolean changed;
+
+    /**
+     * 可变尾段：条目ID到所属文档ID和各字段的词项序列，按写入顺序排列
+     */
+    private final Map<Long, TailEntry> tail = new LinkedHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param directory 存储目录
+     * @param fieldCount 字段数，须与载入的倒排索引一致
+     * @param mergePolicy 段合并策略
+     */
+    public KeywordSegmentStore(Path directory, int fieldCount, TieredMergePolicy mergePolicy) {
+        this.directory = directory;
+        this.fieldCount = fieldCount;
+        this.mergePolicy = mergePolicy;
+    }
+
+    /**
+     * 打开存储：读取清单、映射段文件并加载墓碑，删除未被清单引用的文件
+     * 清单不存在时视为空存储
+     *
+     * @throws IOException 读取失败、段文件损坏或字段数与清单不一致时抛出
+     */
+    public synchronized void open() throws IOException {
+        closeSegments();
+        tail.clear();
+        changed = false;
+        Files.createDirectories(directory);
+
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            initialized = false;
+            deleteUnreferencedFiles();
+            return;
+        }
+
+        int manifestFields = fieldCount;
+        List<String[]> segmentNames = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int separator = trimmed.indexOf('=');
+            String key = separator > 0 ? trimmed.substring(0, separator) : trimmed;
+            String value = separator > 0 ? trimmed.substring(separator + 1) : "";
+            switch (key) {
+                case "generation" -> generation = Long.parseLong(value);
+                case "watermark" -> watermark = Long.parseLong(value);
+                case "timestamp" -> commitTimestamp = Long.parseLong(value);
+                case "fields" -> manifestFields = Integer.parseInt(value);
+                case "segment" -> segmentNames.add(value.split(","));
+                default -> {
+                    // 忽略未知字段，便于向后兼容
+                }
+            }
+        }
+        if (manifestFields != fieldCount) {
+            throw new IOException("关键词段字段数与清单不一致: " + manifestFields + " != " + fieldCount);
+        }
+
+        for (String[] names : segmentNames) {
+            KeywordSegment segment = KeywordSegment.open(directory.resolve(names[0]));
+            if (segment.fieldCount() != fieldCount) {
+                throw new IOException("关键词段字段数与清单不一致: " + names[0]);
+            }
+            segments.add(segment);
+            BitSet deleted = new BitSet(segment.rows());
+            if (names.length > 1) {
+                Path file = directory.resolve(names[1]);
+                deleted = BitSet.valueOf(Files.readAllBytes(file));
+                tombstoneFiles.put(segment, file);
+            }
+            tombstones.put(segment, deleted);
+        }
+        deleteUnreferencedFiles();
+        initialized = true;
+    }
+
+    /**
+     * 清空存储并提交空的清单，删除所有段文件，用于与数据库不一致时重建
+     *
+     * @throws IOException 写入或删除失败时抛出
+     */
+    public synchronized void reset() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (KeywordSegment segment : segments) {
+            files.add(segment.getFile());
+        }
+        files.addAll(tombstoneFiles.values());
+        closeSegments();
+        tail.clear();
+        watermark = 0;
+        commitTimestamp = 0;
+        writeManifest();
+        changed = false;
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        initialized = true;
+    }
+
+    /**
+     * 写入或替换条目
+     * 条目已存在于某个段中时先将其标记删除，新内容进入尾段
+     *
+     * @param id 条目ID
+     * @param documentId 所属文档ID
+     * @param fieldTokens 各字段的词项序列，与 {@link InvertedIndex#upsert} 相同
+     * @throws IllegalArgumentException 当字段数量超过存储字段数时抛出
+     */
+    public synchronized void upsert(long id, long documentId, List<? extends Collection<String>> fieldTokens) {
+        if (fieldTokens.size() > fieldCount) {
+            throw new IllegalArgumentException("字段数量不一致: 存储为 " + fieldCount
+                    + "，实际为 " + fieldTokens.size());
+        }
+        markDeleted(id);
+        tail.remove(id);
+        tail.put(id, new TailEntry(documentId, fieldTokens));
+        changed = true;
+    }
+
+    /**
+     * 移除条目
+     *
+     * @param id 条目ID
+     * @return 是否移除成功
+     */
+    public synchronized boolean remove(long id) {
+        boolean removed = tail.remove(id) != null;
+        removed |= markDeleted(id);
+        changed |= removed;
+        return removed;
+    }
+
+    /**
+     * 移除文档的全部条目
+     *
+     * @param documentId 文档ID
+     * @return 移除的条目数量
+     */
+    public synchronized int removeDocument(long documentId) {
+        int removed = 0;
+        Iterator<TailEntry> iterator = tail.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().documentId == documentId) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        for (KeywordSegment segment : segments) {
+            BitSet deleted = tombstones.get(segment);
+            for (int row = 0; row < segment.rows(); row++) {
+                if (!deleted.get(row) && segment.documentId(row) == documentId) {
+                    deleted.set(row);
+                    dirtyTombstones.add(segment);
+                    removed++;
+                }
+            }
+        }
+        changed |= removed > 0;
+        return removed;
+    }
+
+    /**
+     * 提交：尾段刷写为新段，有变化的墓碑写入新文件，再原子替换清单
+     * 没有未提交的变更时不做任何事
+     *
+     * @return 刷写的条目数量
+     * @throws IOException 写入失败时抛出，此时上一个提交点仍然有效
+     */
+    public synchronized int commit() throws IOException {
+        if (!changed) {
+            return 0;
+        }
+        return commitLocked();
+    }
+
+    /**
+     * 按合并策略执行一次合并
+     * 选段、切换清单时持有存储锁，读写段文件时不持有，期间写入和提交照常进行
+     *
+     * @return 合并后新段中的在用条目数量，没有需要合并的段时返回0
+     * @throws IOException 写入失败时抛出，此时旧段仍然有效
+     */
+    public int maybeMerge() throws IOException {
+        synchronized (mergeLock) {
+            List<KeywordSegment> sources = new ArrayList<>();
+            List<BitSet> snapshots = new ArrayList<>();
+            Path file;
+            synchronized (this) {
+                int[] entries = new int[segments.size()];
+                int[] deleted = new int[segments.size()];
+                for (int i = 0; i < segments.size(); i++) {
+                    entries[i] = segments.get(i).rows();
+                    deleted[i] = tombstones.get(segments.get(i)).cardinality();
+                }
+                int[] selected = mergePolicy.findMerge(entries, deleted);
+                if (selected == null) {
+                    return 0;
+                }
+                for (int index : selected) {
+                    sources.add(segments.get(index));
+                    snapshots.add((BitSet) tombstones.get(segments.get(index)).clone());
+                }
+                file = nextSegmentFile();
+            }
+
+            int[][] rowMaps = new int[sources.size()][];
+            KeywordSegment merged = writeMerged(file, sources, snapshots, rowMaps);
+
+            synchronized (this) {
+                if (!segments.containsAll(sources)) {
+                    // 合并期间存储被重置
+                    Files.deleteIfExists(file);
+                    return 0;
+                }
+                // 合并期间新增的删除映射到新段；源段已全部删除时不产生新段
+                BitSet mergedDeleted = new BitSet();
+                for (int i = 0; merged != null && i < sources.size(); i++) {
+                    BitSet current = tombstones.get(sources.get(i));
+                    for (int row = current.nextSetBit(0); row >= 0; row = current.nextSetBit(row + 1)) {
+                        if (!snapshots.get(i).get(row)) {
+                            mergedDeleted.set(rowMaps[i][row]);
+                        }
+                    }
+                }
+
+                List<Path> obsolete = new ArrayList<>();
+                int position = segments.indexOf(sources.get(0));
+                for (KeywordSegment source : sources) {
+                    obsolete.add(source.getFile());
+                    Path tombstoneFile = tombstoneFiles.remove(source);
+                    if (tombstoneFile != null) {
+                        obsolete.add(tombstoneFile);
+                    }
+                    segments.remove(source);
+                    tombstones.remove(source);
+                    dirtyTombstones.remove(source);
+                }
+                if (merged != null) {
+                    segments.add(position, merged);
+                    tombstones.put(merged, mergedDeleted);
+                    if (!mergedDeleted.isEmpty()) {
+                        dirtyTombstones.add(merged);
+                    }
+                }
+                // 合并与尾段一起提交，墓碑和替换它们的新内容总是在同一个提交点中
+                commitLocked();
+
+                // 清单切换完成后再删除旧文件，崩溃时最多残留未引用的文件
+                for (Path obsoleteFile : obsolete) {
+                    Files.deleteIfExists(obsoleteFile);
+                }
+                return merged != null ? merged.rows() - mergedDeleted.cardinality() : 0;
+            }
+        }
+    }
+
+    /**
+     * 将全部未删除的条目载入倒排索引（段在前，尾段在后）
+     * 段中的条目直接按倒排表追加，不需要重新分词
+     *
+     * @param index 目标倒排索引
+     * @return 载入的条目数量
+     */
+    public synchronized int loadInto(InvertedIndex index) {
+        int loaded = 0;
+        for (KeywordSegment segment : segments) {
+            loaded += index.appendSegment(segment, tombstones.get(segment));
+        }
+        for (Map.Entry<Long, TailEntry> entry : tail.entrySet()) {
+            index.upsert(entry.getKey(), entry.getValue().documentId, entry.getValue().fieldTokens);
+            loaded++;
+        }
+        return loaded;
+    }
+
+    /**
+     * 是否已有清单（即之前持久化过）
+     *
+     * @return 是否已初始化
+     */
+    public synchronized boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * 已刷盘的最大条目ID
+     *
+     * @return 水位线
+     */
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * 最近一次提交的时间
+     *
+     * @return 毫秒时间戳，尚未提交过时为0
+     */
+    public synchronized long getCommitTimestamp() {
+        return commitTimestamp;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized int getTailSize() {
+        return tail.size();
+    }
+
+    /**
+     * 段中未删除的条目数量（不含尾段）
+     *
+     * @return 条目数量
+     */
+    public synchronized int liveSegmentEntries() {
+        int live = 0;
+        for (KeywordSegment segment : segments) {
+            live += segment.rows() - tombstones.get(segment).cardinality();
+        }
+        return live;
+    }
+
+    /**
+     * 段中已删除的条目数量
+     *
+     * @return 墓碑数量
+     */
+    public synchronized int tombstoneCount() {
+        int deleted = 0;
+        for (KeywordSegment segment : segments) {
+            deleted += tombstones.get(segment).cardinality();
+        }
+        return deleted;
+    }
+
+    /**
+     * 释放段映射，未提交的变更被丢弃
+     */
+    public synchronized void close() {
+        closeSegments();
+        tail.clear();
+        changed = false;
+    }
+
+    /**
+     * 提交，调用方需持有存储锁
+     */
+    private int commitLocked() throws IOException {
+        long timestamp = System.currentTimeMillis();
+        int flushed = tail.size();
+        KeywordSegment flushedSegment = null;
+        long maxId = watermark;
+        if (flushed > 0) {
+            for (long id : tail.keySet()) {
+                maxId = Math.max(maxId, id);
+            }
+            flushedSegment = writeTail(nextSegmentFile());
+        }
+
+        // 为有变化的段写入新的墓碑文件，旧文件在清单切换后删除
+        Map<KeywordSegment, Path> newTombstoneFiles = new HashMap<>();
+        for (KeywordSegment segment : dirtyTombstones) {
+            if (segments.contains(segment)) {
+                Path file = tombstoneFile(segment, generation + 1);
+                writeDurably(file, tombstones.get(segment).toByteArray());
+                newTombstoneFiles.put(segment, file);
+            }
+        }
+
+        generation++;
+        List<Path> obsolete = new ArrayList<>();
+        for (Map.Entry<KeywordSegment, Path> entry : newTombstoneFiles.entrySet()) {
+            Path previous = tombstoneFiles.put(entry.getKey(), entry.getValue());
+            if (previous != null) {
+                obsolete.add(previous);
+            }
+        }
+        if (flushedSegment != null) {
+            segments.add(flushedSegment);
+            tombstones.put(flushedSegment, new BitSet(flushedSegment.rows()));
+        }
+        long previousWatermark = watermark;
+        long previousTimestamp = commitTimestamp;
+        watermark = maxId;
+        commitTimestamp = timestamp;
+        try {
+            writeManifest();
+        } catch (IOException e) {
+            // 清单未切换，回到提交前的状态，尾段保留到下次提交
+            if (flushedSegment != null) {
+                segments.remove(flushedSegment);
+                tombstones.remove(flushedSegment);
+                Files.deleteIfExists(flushedSegment.getFile());
+            }
+            watermark = previousWatermark;
+            commitTimestamp = previousTimestamp;
+            throw e;
+        }
+
+        tail.clear();
+        dirtyTombstones.clear();
+        changed = false;
+        for (Path file : obsolete) {
+            Files.deleteIfExists(file);
+        }
+        return flushed;
+    }
+
+    /**
+     * 将尾段按条目ID升序写为新段
+     */
+    private KeywordSegment writeTail(Path file) throws IOException {
+        TreeMap<Long, TailEntry> sorted = new TreeMap<>(tail);
+        int rows = sorted.size();
+        long[] ids = new long[rows];
+        long[] documentIds = new long[rows];
+        int[] fieldLengths = new int[rows * fieldCount];
+        TreeMap<String, KeywordSegment.PostingsBuffer> postings = new TreeMap<>();
+        int row = 0;
+        for (Map.Entry<Long, TailEntry> entry : sorted.entrySet()) {
+            ids[row] = entry.getKey();
+            documentIds[row] = entry.getValue().documentId;
+            Map<String, int[]> frequencies = new HashMap<>();
+            List<? extends Collection<String>> fieldTokens = entry.getValue().fieldTokens;
+            for (int field = 0; field < fieldTokens.size(); field++) {
+                Collection<String> tokens = fieldTokens.get(field);
+                if (tokens == null) {
+                    continue;
+                }
+                for (String token : tokens) {
+                    if (token == null || token.isEmpty()) {
+                        continue;
+                    }
+                    frequencies.computeIfAbsent(token, t -> new int[fieldCount])[field]++;
+                    fieldLengths[row * fieldCount + field]++;
+                }
+            }
+            for (Map.Entry<String, int[]> term : frequencies.entrySet()) {
+                KeywordSegment.PostingsBuffer buffer =
+                        postings.computeIfAbsent(term.getKey(), t -> new KeywordSegment.PostingsBuffer());
+                int[] fieldFrequencies = term.getValue();
+                for (int field = 0; field < fieldCount; field++) {
+                    if (fieldFrequencies[field] > 0) {
+                        buffer.add(row, field, fieldFrequencies[field]);
+                    }
+                }
+            }
+            row++;
+        }
+        KeywordSegment.write(file, fieldCount, rows, ids, documentIds, fieldLengths, postings);
+        return KeywordSegment.open(file);
+    }
+
+    /**
+     * 将源段中快照未删除的行按段顺序写入新段，rowMaps 记录各源段行号到新行号的映射（已删除为-1）
+     *
+     * @return 新段，源段中没有未删除的行时返回null
+     */
+    private KeywordSegment writeMerged(Path file, List<KeywordSegment> sources, List<BitSet> snapshots,
+                                       int[][] rowMaps) throws IOException {
+        int rows = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            rows += sources.get(i).rows() - snapshots.get(i).cardinality();
+        }
+        long[] ids = new long[rows];
+        long[] documentIds = new long[rows];
+        int[] fieldLengths = new int[rows * fieldCount];
+        int next = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            KeywordSegment source = sources.get(i);
+            int[] rowMap = new int[source.rows()];
+            for (int row = 0; row < source.rows(); row++) {
+                if (snapshots.get(i).get(row)) {
+                    rowMap[row] = -1;
+                    continue;
+                }
+                rowMap[row] = next;
+                ids[next] = source.id(row);
+                documentIds[next] = source.documentId(row);
+                for (int field = 0; field < fieldCount; field++) {
+                    fieldLengths[next * fieldCount + field] = source.fieldLength(row, field);
+                }
+                next++;
+            }
+            rowMaps[i] = rowMap;
+        }
+        if (rows == 0) {
+            return null;
+        }
+
+        // 源段依次追加，新行号在源段之间递增，每个词项的倒排表保持有序
+        TreeMap<String, KeywordSegment.PostingsBuffer> postings = new TreeMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            KeywordSegment source = sources.get(i);
+            for (int term = 0; term < source.termCount(); term++) {
+                KeywordSegment.PostingsBuffer buffer = null;
+                for (KeywordSegment.Cursor cursor = source.cursor(term); cursor.row() != PostingsList.NO_MORE_DOCS;
+                     cursor.next()) {
+                    int row = rowMaps[i][cursor.row()];
+                    if (row < 0) {
+                        continue;
+                    }
+                    if (buffer == null) {
+                        buffer = postings.computeIfAbsent(source.term(term), t -> new KeywordSegment.PostingsBuffer());
+                    }
+                    buffer.add(row, cursor.field(), cursor.freq());
+                }
+            }
+        }
+        KeywordSegment.write(file, fieldCount, rows, ids, documentIds, fieldLengths, postings);
+        return KeywordSegment.open(file);
+    }
+
+    /**
+     * 在各段中标记条目删除，条目ID唯一，最多命中一个段
+     */
+    private boolean markDeleted(long id) {
+        for (KeywordSegment segment : segments) {
+            int row = segment.rowOf(id);
+            if (row >= 0) {
+                BitSet deleted = tombstones.get(segment);
+                if (!deleted.get(row)) {
+                    deleted.set(row);
+                    dirtyTombstones.add(segment);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private Path nextSegmentFile() {
+        generation++;
+        return directory.resolve(String.format("segment-%08d%s", generation, SEGMENT_SUFFIX));
+    }
+
+    private Path tombstoneFile(KeywordSegment segment, long commitGeneration) {
+        String name = segment.getFile().getFileName().toString();
+        return directory.resolve(String.format("%s_%08d%s",
+                name.substring(0, name.length() - SEGMENT_SUFFIX.length()), commitGeneration, TOMBSTONE_SUFFIX));
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder content = new StringBuilder();
+        content.append("# keyword segment manifest\n");
+        content.append("generation=").append(generation).append('\n');
+        content.append("watermark=").append(watermark).append('\n');
+        content.append("timestamp=").append(commitTimestamp).append('\n');
+        content.append("fields=").append(fieldCount).append('\n');
+        for (KeywordSegment segment : segments) {
+            content.append("segment=").append(segment.getFile().getFileName());
+            Path tombstoneFile = tombstoneFiles.get(segment);
+            if (tombstoneFile != null) {
+                content.append(',').append(tombstoneFile.getFileName());
+            }
+            content.append('\n');
+        }
+        writeDurably(directory.resolve(MANIFEST), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 写临时文件并刷盘，再原子替换目标文件并刷写目录项
+     */
+    private void writeDurably(Path file, byte[] content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // 部分平台不支持刷写目录，重命名本身仍是原子的
+        }
+    }
+
+    /**
+     * 删除目录中未被当前提交点引用的段、墓碑和临时文件（崩溃或合并中断的残留）
+     */
+    private void deleteUnreferencedFiles() throws IOException {
+        Set<Path> referenced = new HashSet<>();
+        for (KeywordSegment segment : segments) {
+            referenced.add(segment.getFile().getFileName());
+        }
+        for (Path file : tombstoneFiles.values()) {
+            referenced.add(file.getFileName());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean owned = name.endsWith(SEGMENT_SUFFIX) || name.endsWith(TOMBSTONE_SUFFIX)
+                        || name.endsWith(TEMP_SUFFIX);
+                if (owned && !referenced.contains(file.getFileName())) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void closeSegments() {
+        // MappedByteBuffer在被回收时释放映射
+        segments.clear();
+        tombstones.clear();
+        tombstoneFiles.clear();
+        dirtyTombstones.clear();
+    }
+
+    /**
+     * 尾段条目
+     */
+    private static final class TailEntry {
+        final long documentId;
+        final List<? extends Collection<String>> fieldTokens;
+
+        TailEntry(long documentId, List<? extends Collection<String>> fieldTokens) {
+            this.documentId = documentId;
+            this.fieldTokens = fieldTokens;
+        }
+    }
+}
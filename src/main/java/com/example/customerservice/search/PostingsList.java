@@ -0,0 +1,350 @@
+package com.example.customerservice.search;
+
+import java.util.Arrays;
+
+/**
+ * 压缩倒排表
+ *
+ * 表项为 (序号, 字段, 词频)，按序号升序追加，同一序号在多个字段出现时各占一个表项。
+ * 每个表项编码为变长整数（varint）：与前一表项的序号差左移一位，最低位标记"字段0、词频1"这一最常见的情况；
+ * 其余情况再跟一个 (词频 - 1) &lt;&lt; 7 | 字段。间隔较小的常见表项只占1字节，而平行数组存放需要9字节。
+ *
+ * 每 {@value #BLOCK_SIZE} 个表项为一个块，记录块的起始字节偏移和块内最后一个序号作为跳表指针：
+ * {@link Cursor#advance(int)} 先在跳表上倍增查找（galloping）目标所在的块，只解码该块，
+ * 求交和按序号定位时跳过不可能命中的块。
+ *
+ * 包含的不同序号达到 {@value #BITMAP_MIN_DOCS} 个、且覆盖序号范围的 1/{@value #BITMAP_MAX_GAP} 以上时
+ * （高频词项）另外维护一份序号的 {@link RoaringBitmap}，成员判断不需要解码倒排表；
+ * 此时位图按位存储，每个表项额外占用不到1字节，较稀疏的词项不维护位图，避免重复存放。
+ *
+ * 不是线程安全的；由 {@link InvertedIndex} 的读写锁保护。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+final class PostingsList {
+
+    /**
+     * 每块表项数
+     */
+    static final int BLOCK_SIZE = 128;
+
+    /**
+     * 维护序号位图的最少不同序号数
+     */
+    static final int BITMAP_MIN_DOCS = RoaringBitmap.ARRAY_CONTAINER_MAX;
+
+    /**
+     * 维护序号位图时相邻序号的最大平均间隔
+     */
+    static final int BITMAP_MAX_GAP = 8;
+
+    /**
+     * 游标耗尽后的序号
+     */
+    static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private static final int MAX_FIELD = 0x7F;
+
+    private byte[] data = new byte[4];
+    private int dataLength;
+
+    /**
+     * 跳表：各块起始字节偏移和块内最后一个序号
+     */
+    private int[] blockOffsets = new int[1];
+    private int[] blockLastDocs = new int[1];
+
+    private int size;
+    private int docCount;
+    private int lastDoc;
+    private RoaringBitmap docBitmap;
+
+    /**
+     * 包含该词项的在用条目数量（文档频率），由 {@link InvertedIndex} 维护
+     */
+    int liveEntries;
+
+    /**
+     * 追加表项，序号不得小于上一个表项的序号
+     *
+     * @param ordinal 序号
+     * @param field 字段，取值 [0, 127]
+     * @param frequency 词频，至少为1
+     */
+    void add(int ordinal, int field, int frequency) {
+        if (size > 0 && ordinal < lastDoc) {
+            throw new IllegalArgumentException("倒排表序号必须升序追加: " + ordinal + " < " + lastDoc);
+        }
+        if (field < 0 || field > MAX_FIELD || frequency < 1) {
+            throw new IllegalArgumentException("表项无效: field=" + field + ", frequency=" + frequency);
+        }
+        int block = size / BLOCK_SIZE;
+        if (size % BLOCK_SIZE == 0) {
+            if (block == blockOffsets.length) {
+                int capacity = block + (block >> 1) + 1;
+                blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+                blockLastDocs = Arrays.copyOf(blockLastDocs, capacity);
+            }
+            blockOffsets[block] = dataLength;
+        }
+        boolean newDoc = size == 0 || ordinal != lastDoc;
+        int delta = size == 0 ? ordinal : ordinal - lastDoc;
+        if (field == 0 && frequency == 1) {
+            writeVarInt(delta << 1 | 1);
+        } else {
+            writeVarInt(delta << 1);
+            writeVarInt((frequency - 1) << 7 | field);
+        }
+        blockLastDocs[block] = ordinal;
+        lastDoc = ordinal;
+        size++;
+
+        if (newDoc) {
+            docCount++;
+            if (docBitmap != null) {
+                docBitmap.add(ordinal);
+            } else if (docCount >= BITMAP_MIN_DOCS && (long) docCount * BITMAP_MAX_GAP > ordinal) {
+                docBitmap = buildBitmap();
+            }
+        }
+    }
+
+    /**
+     * 获取表项数量
+     *
+     * @return 表项数量
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 获取不同序号的数量（含已删除条目）
+     *
+     * @return 序号数量
+     */
+    int docCount() {
+        return docCount;
+    }
+
+    /**
+     * 高频词项的序号位图，未达到阈值时为null
+     *
+     * @return 序号位图
+     */
+    RoaringBitmap docBitmap() {
+        return docBitmap;
+    }
+
+    /**
+     * 判断倒排表是否包含序号：有位图时查位图，否则按跳表定位到块后解码
+     *
+     * @param ordinal 序号
+     * @return 是否包含
+     */
+    boolean containsDoc(int ordinal) {
+        if (docBitmap != null) {
+            return docBitmap.contains(ordinal);
+        }
+        Cursor cursor = cursor();
+        cursor.advance(ordinal);
+        return cursor.doc() == ordinal;
+    }
+
+    /**
+     * 创建游标，游标位于第一个表项
+     *
+     * @return 游标
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 按压缩后的序号重写倒排表，丢弃映射为-1的表项
+     *
+     * @param remap 旧序号到新序号的映射
+     */
+    void remap(int[] remap) {
+        int[] docs = new int[size];
+        int[] fields = new int[size];
+        int[] freqs = new int[size];
+        int count = 0;
+        for (Cursor cursor = cursor(); cursor.doc() != NO_MORE_DOCS; cursor.next()) {
+            int ordinal = remap[cursor.doc()];
+            if (ordinal >= 0) {
+                docs[count] = ordinal;
+                fields[count] = cursor.field();
+                freqs[count] = cursor.freq();
+                count++;
+            }
+        }
+
+        data = new byte[dataLength];
+        dataLength = 0;
+        blockOffsets = new int[1];
+        blockLastDocs = new int[1];
+        size = 0;
+        docCount = 0;
+        lastDoc = 0;
+        docBitmap = null;
+        for (int i = 0; i < count; i++) {
+            add(docs[i], fields[i], freqs[i]);
+        }
+        trimToSize();
+    }
+
+    /**
+     * 释放编码数据和跳表的预留空间，批量写入结束后调用
+     */
+    void trimToSize() {
+        int blockCount = Math.max((size + BLOCK_SIZE - 1) / BLOCK_SIZE, 1);
+        if (data.length > dataLength) {
+            data = Arrays.copyOf(data, dataLength);
+        }
+        if (blockOffsets.length > blockCount) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount);
+            blockLastDocs = Arrays.copyOf(blockLastDocs, blockCount);
+        }
+    }
+
+    /**
+     * 估算占用的字节数：编码数据、跳表和位图
+     *
+     * @return 字节数
+     */
+    long memoryBytes() {
+        long bytes = data.length + (long) (blockOffsets.length + blockLastDocs.length) * Integer.BYTES;
+        return docBitmap != null ? bytes + docBitmap.memoryBytes() : bytes;
+    }
+
+    private RoaringBitmap buildBitmap() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Cursor cursor = cursor(); cursor.doc() != NO_MORE_DOCS; cursor.next()) {
+            bitmap.add(cursor.doc());
+        }
+        return bitmap;
+    }
+
+    private void writeVarInt(int value) {
+        if (dataLength + 5 > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length + (data.length >> 1), dataLength + 5));
+        }
+        while ((value & ~0x7F) != 0) {
+            data[dataLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[dataLength++] = (byte) value;
+    }
+
+    /**
+     * 倒排表游标，顺序解码表项，可借助跳表前跳
+     */
+    final class Cursor {
+        private int index = -1;
+        private int offset;
+        private int doc;
+        private int field;
+        private int freq;
+
+        private Cursor() {
+            next();
+        }
+
+        /**
+         * 当前表项的序号，耗尽后为 {@link #NO_MORE_DOCS}
+         */
+        int doc() {
+            return doc;
+        }
+
+        int field() {
+            return field;
+        }
+
+        int freq() {
+            return freq;
+        }
+
+        /**
+         * 移动到下一个表项
+         */
+        void next() {
+            if (++index >= size) {
+                index = size;
+                doc = NO_MORE_DOCS;
+                return;
+            }
+            int header = readVarInt();
+            doc += header >>> 1;
+            if ((header & 1) != 0) {
+                field = 0;
+                freq = 1;
+            } else {
+                int code = readVarInt();
+                field = code & MAX_FIELD;
+                freq = (code >>> 7) + 1;
+            }
+        }
+
+        /**
+         * 移动到第一个序号不小于target的表项；当前表项已满足时不移动
+         *
+         * @param target 目标序号
+         */
+        void advance(int target) {
+            if (doc >= target) {
+                return;
+            }
+            int block = index / BLOCK_SIZE;
+            if (blockLastDocs[block] < target) {
+                // 在跳表上倍增查找第一个最后序号不小于target的块
+                int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+                int low = block + 1;
+                int step = 1;
+                int high = low;
+                while (high < blockCount && blockLastDocs[high] < target) {
+                    low = high + 1;
+                    high += step;
+                    step <<= 1;
+                }
+                high = Math.min(high, blockCount);
+                while (low < high) {
+                    int middle = (low + high) >>> 1;
+                    if (blockLastDocs[middle] < target) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                if (low >= blockCount) {
+                    index = size;
+                    doc = NO_MORE_DOCS;
+                    return;
+                }
+                // 块内首个表项以前一块最后一个序号为基准做差分
+                index = low * BLOCK_SIZE - 1;
+                offset = blockOffsets[low];
+                doc = blockLastDocs[low - 1];
+            }
+            do {
+                next();
+            } while (doc < target);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            while (true) {
+                byte current = data[offset++];
+                value |= (current & 0x7F) << shift;
+                if (current >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.customerservice.search;
+
+import java.util.Arrays;
+
+/**
+ * 压缩位图（Roaring Bitmap）
+ *
+ * 按值的高16位分桶，每个桶一个容器保存低16位：基数不超过 {@value #ARRAY_CONTAINER_MAX} 时
+ * 用有序char数组（每个值2字节），超过后转为65536位的定长位图（8KB）。
+ * 稀疏的集合不为空白区间付出空间，稠密的集合按位存储，成员判断都是一次二分查找加一次容器内查找。
+ * 只支持非负整数，适合保存倒排表序号和条目集合。
+ *
+ * 不是线程安全的；由调用方在修改和读取之间做同步（如倒排索引的读写锁）。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class RoaringBitmap {
+
+    /**
+     * 数组容器的最大基数，超过后数组容器（2字节/值）比位图容器（8KB）更大
+     */
+    static final int ARRAY_CONTAINER_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int containerCount;
+
+    /**
+     * 由有序或无序的值创建位图
+     *
+     * @param values 非负整数
+     * @return 位图
+     */
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 加入一个值，按升序加入时不需要移动已有元素
+     *
+     * @param value 非负整数
+     * @throws IllegalArgumentException 值为负数时抛出
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("值必须为非负整数: " + value);
+        }
+        char key = (char) (value >>> 16);
+        int index = containerIndex(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        containers[index] = containers[index].add((char) value);
+    }
+
+    /**
+     * 判断是否包含值
+     *
+     * @param value 值
+     * @return 是否包含
+     */
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = containerIndex((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * 查找不小于from的最小值
+     *
+     * @param from 起始值
+     * @return 最小值，不存在时返回-1
+     */
+    public int nextValue(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int key = from >>> 16;
+        int index = containerIndex((char) key);
+        int low = from & 0xFFFF;
+        if (index < 0) {
+            index = -index - 1;
+            low = 0;
+        }
+        for (; index < containerCount; index++) {
+            if (keys[index] != key) {
+                low = 0;
+            }
+            int next = containers[index].next(low);
+            if (next >= 0) {
+                return keys[index] << 16 | next;
+            }
+            low = 0;
+        }
+        return -1;
+    }
+
+    /**
+     * 获取元素数量
+     *
+     * @return 元素数量
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < containerCount; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return containerCount == 0;
+    }
+
+    /**
+     * 按升序返回全部元素
+     *
+     * @return 元素数组
+     */
+    public int[] toArray() {
+        int[] values = new int[cardinality()];
+        int offset = 0;
+        for (int i = 0; i < containerCount; i++) {
+            offset = containers[i].copyTo(values, offset, keys[i] << 16);
+        }
+        return values;
+    }
+
+    /**
+     * 求两个位图的交集，只对两边都存在的桶逐容器求交
+     *
+     * @param a 位图
+     * @param b 位图
+     * @return 新的位图
+     */
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.containerCount && j < b.containerCount) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Container container = a.containers[i].and(b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.containerCount, a.keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 估算占用的字节数（容器数据与桶索引）
+     *
+     * @return 字节数
+     */
+    public long memoryBytes() {
+        long bytes = (long) keys.length * Character.BYTES + (long) containers.length * 8;
+        for (int i = 0; i < containerCount; i++) {
+            bytes += containers[i].memoryBytes();
+        }
+        return bytes;
+    }
+
+    private int containerIndex(char key) {
+        // 按升序加入时总是命中最后一个桶
+        if (containerCount > 0 && keys[containerCount - 1] == key) {
+            return containerCount - 1;
+        }
+        return Arrays.binarySearch(keys, 0, containerCount, key);
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (containerCount == keys.length) {
+            keys = Arrays.copyOf(keys, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+        System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+        keys[index] = key;
+        containers[index] = container;
+        containerCount++;
+    }
+
+    /**
+     * 保存一个桶内低16位的容器
+     */
+    private abstract static class Container {
+
+        /**
+         * 加入值，基数超过阈值时返回转换后的容器
+         */
+        abstract Container add(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        /**
+         * 不小于from的最小值，不存在时返回-1
+         */
+        abstract int next(int from);
+
+        abstract Container and(Container other);
+
+        abstract int copyTo(int[] values, int offset, int high);
+
+        abstract long memoryBytes();
+    }
+
+    /**
+     * 有序数组容器
+     */
+    private static final class ArrayContainer extends Container {
+        char[] values;
+        int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index;
+            if (cardinality == 0 || values[cardinality - 1] < value) {
+                index = cardinality;
+            } else {
+                index = Arrays.binarySearch(values, 0, cardinality, value);
+                if (index >= 0) {
+                    return this;
+                }
+                index = -index - 1;
+            }
+            if (cardinality == ARRAY_CONTAINER_MAX) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (int i = 0; i < cardinality; i++) {
+                    bitmap.add(values[i]);
+                }
+                return bitmap.add(value);
+            }
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(cardinality * 2, ARRAY_CONTAINER_MAX));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int next(int from) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other instanceof ArrayContainer array) {
+                // 两个有序数组归并求交
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int copyTo(int[] target, int offset, int high) {
+            for (int i = 0; i < cardinality; i++) {
+                target[offset++] = high | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        long memoryBytes() {
+            return (long) values.length * Character.BYTES;
+        }
+    }
+
+    /**
+     * 定长位图容器，65536位
+     */
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        @Override
+        Container add(char value) {
+            long mask = 1L << value;
+            int word = value >>> 6;
+            if ((words[word] & mask) == 0) {
+                words[word] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int next(int from) {
+            int word = from >>> 6;
+            if (word >= words.length) {
+                return -1;
+            }
+            long bits = words[word] & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    return word * 64 + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word == words.length) {
+                    return -1;
+                }
+                bits = words[word];
+            }
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer bitmap = (BitmapContainer) other;
+            BitmapContainer result = new BitmapContainer();
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & bitmap.words[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            if (result.cardinality > ARRAY_CONTAINER_MAX) {
+                return result;
+            }
+            // 交集变稀疏后转回数组容器
+            char[] values = new char[result.cardinality];
+            result.copyTo(values);
+            return new ArrayContainer(values, values.length);
+        }
+
+        private void copyTo(char[] values) {
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long bits = words[i];
+                while (bits != 0) {
+                    values[count++] = (char) (i * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        @Override
+        int copyTo(int[] target, int offset, int high) {
+            for (int i = 0; i < words.length; i++) {
+                long bits = words[i];
+                while (bits != 0) {
+                    target[offset++] = high | (i * 64 + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        long memoryBytes() {
+            return (long) words.length * Long.BYTES;
+        }
+    }
+}
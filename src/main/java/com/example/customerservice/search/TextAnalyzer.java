@@ -0,0 +1,286 @@
+package com.example.customerservice.search;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 中文感知的文本分析器
+ *
+ * 分析流水线依次为：
+ * <ol>
+ *   <li>规范化：全角字符转半角、全角空格转空格、转小写。逐字符一一替换，偏移与原文一致；</li>
+ *   <li>切分：字母和数字的连续片段作为一个词项；中日韩文字片段在词典双数组字典树上做正向最大匹配，
+ *       词典未覆盖的连续文字按相邻两字切分为重叠的二元词项（只有一个字时保留单字）；</li>
+ *   <li>过滤：停用词和可选的附加过滤器（如最小长度）。</li>
+ * </ol>
+ * 其余字符（空白、标点、符号）作为分隔符。词项以字符缓冲区上的区间交给 {@link TokenConsumer}，
+ * 分析一段文本只分配一个与文本等长的缓冲区。
+ *
+ * 停用词同时加入切分词典，使"我的订单"切分为"我 的 订单"后再滤掉停用词，而不是把"我的"当作二元词项。
+ * 分析器构建后不可变，可在多个线程间共享；{@link #withWords} 和 {@link #withFilter} 返回新的分析器。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class TextAnalyzer {
+
+    /**
+     * 内置词典资源，每行一个词，#开头的行为注释
+     */
+    static final String DICTIONARY_RESOURCE = "/analysis/dictionary.txt";
+
+    /**
+     * 内置停用词资源，格式同词典
+     */
+    static final String STOP_WORDS_RESOURCE = "/analysis/stopwords.txt";
+
+    private final DoubleArrayTrie dictionary;
+    private final DoubleArrayTrie stopWords;
+    private final TokenFilter filter;
+
+    /**
+     * 使用给定词典和停用词创建分析器
+     *
+     * @param dictionaryWords 切分词典
+     * @param stopWords 停用词
+     */
+    public TextAnalyzer(Collection<String> dictionaryWords, Collection<String> stopWords) {
+        this(buildDictionary(dictionaryWords, stopWords), new DoubleArrayTrie(normalizeAll(stopWords)), null);
+    }
+
+    private TextAnalyzer(DoubleArrayTrie dictionary, DoubleArrayTrie stopWords, TokenFilter filter) {
+        this.dictionary = dictionary;
+        this.stopWords = stopWords;
+        this.filter = filter;
+    }
+
+    /**
+     * 获取使用内置词典和停用词的共享分析器，首次调用时加载
+     *
+     * @return 默认分析器
+     */
+    public static TextAnalyzer defaultAnalyzer() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * 在当前词典基础上加入额外的词，返回新的分析器
+     *
+     * @param words 额外的词
+     * @return 新的分析器
+     */
+    public TextAnalyzer withWords(Collection<String> words) {
+        List<String> merged = new ArrayList<>(dictionary.size() + words.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            merged.add(dictionary.key(i));
+        }
+        merged.addAll(normalizeAll(words));
+        return new TextAnalyzer(new DoubleArrayTrie(merged), stopWords, filter);
+    }
+
+    /**
+     * 追加词项过滤器，返回新的分析器
+     *
+     * @param additional 附加过滤器
+     * @return 新的分析器
+     */
+    public TextAnalyzer withFilter(TokenFilter additional) {
+        return new TextAnalyzer(dictionary, stopWords, filter == null ? additional : filter.and(additional));
+    }
+
+    /**
+     * 分析文本，依次回调每个保留的词项
+     *
+     * @param text 文本
+     * @param consumer 词项回调
+     */
+    public void analyze(CharSequence text, TokenConsumer consumer) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        int length = text.length();
+        char[] buffer = new char[length];
+        for (int i = 0; i < length; i++) {
+            buffer[i] = normalize(text.charAt(i));
+        }
+
+        int position = 0;
+        while (position < length) {
+            char c = buffer[position];
+            if (isCjk(c)) {
+                int end = position + 1;
+                while (end < length && isCjk(buffer[end])) {
+                    end++;
+                }
+                segment(buffer, position, end, consumer);
+                position = end;
+            } else if (Character.isLetterOrDigit(c)) {
+                int end = position + 1;
+                while (end < length && Character.isLetterOrDigit(buffer[end]) && !isCjk(buffer[end])) {
+                    end++;
+                }
+                emit(buffer, position, end, consumer);
+                position = end;
+            } else {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * 分析文本并返回词项序列，重复出现的词项保留（即词频）
+     *
+     * @param text 文本
+     * @return 词项序列，文本为空时返回空列表
+     */
+    public List<String> terms(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        analyze(text, (buffer, start, end) -> terms.add(new String(buffer, start, end - start)));
+        return terms;
+    }
+
+    /**
+     * 判断词是否在切分词典中
+     *
+     * @param word 词
+     * @return 在词典中时返回true
+     */
+    public boolean isDictionaryWord(String word) {
+        return dictionary.exactMatch(word) >= 0;
+    }
+
+    /**
+     * 对一段连续的中日韩文字做正向最大匹配，词典未覆盖的部分按二元切分
+     */
+    private void segment(char[] buffer, int start, int end, TokenConsumer consumer) {
+        int unmatchedStart = -1;
+        int position = start;
+        while (position < end) {
+            int length = dictionary.longestPrefixLength(buffer, position, end);
+            if (length == 0) {
+                if (unmatchedStart < 0) {
+                    unmatchedStart = position;
+                }
+                position++;
+                continue;
+            }
+            if (unmatchedStart >= 0) {
+                emitBigrams(buffer, unmatchedStart, position, consumer);
+                unmatchedStart = -1;
+            }
+            emit(buffer, position, position + length, consumer);
+            position += length;
+        }
+        if (unmatchedStart >= 0) {
+            emitBigrams(buffer, unmatchedStart, end, consumer);
+        }
+    }
+
+    private void emitBigrams(char[] buffer, int start, int end, TokenConsumer consumer) {
+        if (end - start == 1) {
+            emit(buffer, start, end, consumer);
+            return;
+        }
+        for (int i = start; i + 1 < end; i++) {
+            emit(buffer, i, i + 2, consumer);
+        }
+    }
+
+    private void emit(char[] buffer, int start, int end, TokenConsumer consumer) {
+        if (stopWords.exactMatch(buffer, start, end) >= 0) {
+            return;
+        }
+        if (filter != null && !filter.accept(buffer, start, end)) {
+            return;
+        }
+        consumer.accept(buffer, start, end);
+    }
+
+    /**
+     * 规范化单个字符：全角ASCII转半角，全角空格转空格，转小写
+     */
+    static char normalize(char c) {
+        if (c >= '\uFF01' && c <= '\uFF5E') {
+            c = (char) (c - 0xFEE0);
+        } else if (c == '\u3000') {
+            return ' ';
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * 判断字符是否为中日韩文字（汉字、假名、韩文音节），按码位区间判断以避免逐字符查询Unicode脚本表
+     */
+    static boolean isCjk(char c) {
+        return (c >= '\u4E00' && c <= '\u9FFF')
+                || (c >= '\u3400' && c <= '\u4DBF')
+                || (c >= '\uF900' && c <= '\uFAFF')
+                || (c >= '\u3040' && c <= '\u30FF')
+                || (c >= '\uAC00' && c <= '\uD7AF');
+    }
+
+    private static DoubleArrayTrie buildDictionary(Collection<String> dictionaryWords, Collection<String> stopWords) {
+        List<String> words = normalizeAll(dictionaryWords);
+        words.addAll(normalizeAll(stopWords));
+        return new DoubleArrayTrie(words);
+    }
+
+    /**
+     * 按分析时的规则规范化词表，使词典与规范化后的文本一致
+     */
+    private static List<String> normalizeAll(Collection<String> words) {
+        List<String> normalized = new ArrayList<>(words.size());
+        for (String word : words) {
+            if (word == null) {
+                continue;
+            }
+            char[] chars = word.trim().toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = normalize(chars[i]);
+            }
+            if (chars.length > 0) {
+                normalized.add(new String(chars));
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 读取类路径上的词表资源，资源不存在时返回空列表
+     */
+    static List<String> readWords(String resource) {
+        List<String> words = new ArrayList<>();
+        InputStream input = TextAnalyzer.class.getResourceAsStream(resource);
+        if (input == null) {
+            return words;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    words.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取词表失败: " + resource, e);
+        }
+        return words;
+    }
+
+    /**
+     * 默认分析器的延迟加载持有类
+     */
+    private static final class DefaultHolder {
+        static final TextAnalyzer INSTANCE =
+                new TextAnalyzer(readWords(DICTIONARY_RESOURCE), readWords(STOP_WORDS_RESOURCE));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.customerservice.search;
+
+import java.util.Arrays;
+
+/**
+ * 分层段合并策略
+ *
+ * 参照Lucene的TieredMergePolicy，按段中未删除的条目数衡量段的大小：
+ * <ul>
+ *   <li>小于 floorEntries 的段按 floorEntries 计，避免大量极小的段各自成层；</li>
+ *   <li>从最小层开始，每层最多容纳 segmentsPerTier 个段，下一层的段大小是上一层的 maxMergeAtOnce 倍，
+ *       由总条目数算出允许的段数量，段数量超出时才合并；</li>
+ *   <li>合并候选是按大小降序排列后相邻的至多 maxMergeAtOnce 个段，按"最大段占合并结果的比例"（偏斜度）
+ *       乘以合并结果大小的0.05次方打分，取分数最低者：优先合并大小相近的段，同等条件下优先合并较小的段，
+ *       每个条目被重写的次数与总条目数成对数关系；</li>
+ *   <li>合并结果不超过 maxMergedEntries，超过其一半的段不再参与按大小的合并；</li>
+ *   <li>已删除条目占比超过 deletesPctAllowed 的段即使段数量未超限也单独重写，回收墓碑占用的空间。</li>
+ * </ul>
+ *
+ * 无状态，线程安全。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class TieredMergePolicy {
+
+    private final int segmentsPerTier;
+    private final int maxMergeAtOnce;
+    private final int floorEntries;
+    private final int maxMergedEntries;
+    private final double deletesPctAllowed;
+
+    /**
+     * 构造函数
+     *
+     * @param segmentsPerTier 每层允许的段数量，至少为2
+     * @param maxMergeAtOnce 一次最多合并的段数量，至少为2
+     * @param floorEntries 段大小的下限，小于该值的段按该值计
+     * @param maxMergedEntries 合并结果的最大条目数
+     * @param deletesPctAllowed 段中已删除条目的最大百分比，取值 (0, 100]
+     */
+    public TieredMergePolicy(int segmentsPerTier, int maxMergeAtOnce, int floorEntries, int maxMergedEntries,
+                             double deletesPctAllowed) {
+        if (segmentsPerTier < 2 || maxMergeAtOnce < 2 || floorEntries < 1 || maxMergedEntries < floorEntries
+                || deletesPctAllowed <= 0 || deletesPctAllowed > 100) {
+            throw new IllegalArgumentException("合并策略参数无效: segmentsPerTier=" + segmentsPerTier
+                    + ", maxMergeAtOnce=" + maxMergeAtOnce + ", floorEntries=" + floorEntries
+                    + ", maxMergedEntries=" + maxMergedEntries + ", deletesPctAllowed=" + deletesPctAllowed);
+        }
+        this.segmentsPerTier = segmentsPerTier;
+        this.maxMergeAtOnce = maxMergeAtOnce;
+        this.floorEntries = floorEntries;
+        this.maxMergedEntries = maxMergedEntries;
+        this.deletesPctAllowed = deletesPctAllowed;
+    }
+
+    /**
+     * 选出下一次合并的段
+     *
+     * @param entries 各段的条目数（含已删除）
+     * @param deleted 各段已删除的条目数
+     * @return 参与合并的段下标（升序），不需要合并时返回null
+     */
+    public int[] findMerge(int[] entries, int[] deleted) {
+        int count = entries.length;
+        if (count == 0) {
+            return null;
+        }
+
+        // 墓碑过多的段单独重写，删除比例最高的优先
+        int worst = -1;
+        double worstRatio = deletesPctAllowed / 100.0;
+        for (int i = 0; i < count; i++) {
+            double ratio = entries[i] > 0 ? deleted[i] / (double) entries[i] : 0.0;
+            if (ratio > worstRatio) {
+                worst = i;
+                worstRatio = ratio;
+            }
+        }
+        if (worst >= 0) {
+            return new int[]{worst};
+        }
+
+        // 过大的段不参与合并，也不占用层的配额
+        Integer[] order = new Integer[count];
+        int eligible = 0;
+        long totalEntries = 0;
+        int minEntries = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int live = entries[i] - deleted[i];
+            if (live > maxMergedEntries / 2) {
+                continue;
+            }
+            order[eligible++] = i;
+            totalEntries += live;
+            minEntries = Math.min(minEntries, live);
+        }
+        if (eligible < 2 || eligible <= allowedSegmentCount(totalEntries, minEntries)) {
+            return null;
+        }
+
+        Integer[] sorted = Arrays.copyOf(order, eligible);
+        Arrays.sort(sorted, (a, b) -> Integer.compare(entries[b] - deleted[b], entries[a] - deleted[a]));
+
+        int[] best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int start = 0; start + 1 < eligible; start++) {
+            long mergedEntries = 0;
+            long mergedFloored = 0;
+            int largest = 0;
+            int end = start;
+            while (end < eligible && end - start < maxMergeAtOnce) {
+                int live = entries[sorted[end]] - deleted[sorted[end]];
+                if (mergedEntries + live > maxMergedEntries) {
+                    break;
+                }
+                mergedEntries += live;
+                mergedFloored += floor(live);
+                largest = Math.max(largest, floor(live));
+                end++;
+            }
+            if (end - start < 2) {
+                continue;
+            }
+            double skew = largest / (double) mergedFloored;
+            double score = skew * Math.pow(Math.max(mergedEntries, 1), 0.05);
+            if (score < bestScore) {
+                bestScore = score;
+                best = new int[end - start];
+                for (int i = start; i < end; i++) {
+                    best[i - start] = sorted[i];
+                }
+            }
+        }
+        if (best != null) {
+            Arrays.sort(best);
+        }
+        return best;
+    }
+
+    /**
+     * 按层计算允许的段数量：最小层的段大小为 max(最小段, floorEntries)，每层 segmentsPerTier 个段，
+     * 逐层扣除后剩余的条目不足一层时按实际需要的段数计
+     */
+    int allowedSegmentCount(long totalEntries, int minEntries) {
+        long levelSize = floor(minEntries);
+        long remaining = totalEntries;
+        int allowed = 0;
+        while (true) {
+            double levelCount = remaining / (double) levelSize;
+            if (levelCount < segmentsPerTier) {
+                allowed += (int) Math.ceil(levelCount);
+                return Math.max(allowed, 1);
+            }
+            allowed += segmentsPerTier;
+            remaining -= segmentsPerTier * levelSize;
+            levelSize *= maxMergeAtOnce;
+        }
+    }
+
+    private int floor(int entries) {
+        return Math.max(entries, floorEntries);
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.customerservice.search;
+
+/**
+ * 分词结果回调
+ *
+ * 词项以字符缓冲区上的区间给出，不创建子串；缓冲区只在回调期间有效，需要保留时由调用方自行复制。
+ * 区间与原始文本的字符偏移一一对应（规范化不改变长度）。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@FunctionalInterface
+public interface TokenConsumer {
+
+    /**
+     * 接收一个词项
+     *
+     * @param buffer 规范化后的文本缓冲区
+     * @param start 词项起始偏移（含）
+     * @param end 词项结束偏移（不含）
+     */
+    void accept(char[] buffer, int start, int end);
+}
@@ -0,0 +1,52 @@
+package com.example.customerservice.search;
+
+/**
+ * 词项过滤器，作为分析流水线的最后一步决定词项是否输出
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@FunctionalInterface
+public interface TokenFilter {
+
+    /**
+     * 判断词项是否保留
+     *
+     * @param buffer 规范化后的文本缓冲区
+     * @param start 词项起始偏移（含）
+     * @param end 词项结束偏移（不含）
+     * @return 保留时返回true
+     */
+    boolean accept(char[] buffer, int start, int end);
+
+    /**
+     * 组合过滤器，两个过滤器都保留时才保留
+     *
+     * @param other 另一个过滤器
+     * @return 组合后的过滤器
+     */
+    default TokenFilter and(TokenFilter other) {
+        return (buffer, start, end) -> accept(buffer, start, end) && other.accept(buffer, start, end);
+    }
+
+    /**
+     * 过滤长度小于给定值的词项
+     *
+     * @param minLength 最小长度
+     * @return 过滤器
+     */
+    static TokenFilter minLength(int minLength) {
+        return (buffer, start, end) -> end - start >= minLength;
+    }
+
+    /**
+     * 过滤停用词，停用词表以双数组字典树保存，判断时不创建子串
+     *
+     * @param stopWords 停用词字典树
+     * @return 过滤器
+     */
+    static TokenFilter stopWords(DoubleArrayTrie stopWords) {
+        return (buffer, start, end) -> stopWords.exactMatch(buffer, start, end) < 0;
+    }
+}
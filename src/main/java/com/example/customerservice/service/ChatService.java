@@ -6,6 +6,7 @@ import com.example.customerservice.entity.ChatMessage;
 import com.example.customerservice.entity.ChatSession;
 import com.example.customerservice.repository.ChatMessageRepository;
 import com.example.customerservice.repository.ChatSessionRepository;
+import com.example.customerservice.search.DoubleArrayTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.model.ChatModel;
@@ -23,7 +24,9 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -51,6 +54,39 @@ public class ChatService {
     
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
 
+    /**
+     * 按优先级排列的意图及其关键词，每行第一个元素为意图名称
+     */
+    private static final String[][] INTENTS = {
+            {"价格咨询", "价格", "费用", "多少钱"},
+            {"产品咨询", "产品", "功能", "介绍"},
+            {"技术支持", "问题", "故障", "不能"},
+            {"投诉处理", "投诉", "不满", "差"},
+            {"售后服务", "退款", "退货", "取消"}
+    };
+
+    private static final String DEFAULT_INTENT = "一般咨询";
+
+    /**
+     * 意图关键词字典树及其有序下标到意图下标的映射
+     */
+    private static final DoubleArrayTrie INTENT_KEYWORD_TRIE;
+    private static final int[] INTENT_OF_KEYWORD;
+
+    static {
+        List<String> keywords = new ArrayList<>();
+        for (String[] intent : INTENTS) {
+            keywords.addAll(Arrays.asList(intent).subList(1, intent.length));
+        }
+        INTENT_KEYWORD_TRIE = new DoubleArrayTrie(keywords);
+        INTENT_OF_KEYWORD = new int[INTENT_KEYWORD_TRIE.size()];
+        for (int i = 0; i < INTENTS.length; i++) {
+            for (int j = 1; j < INTENTS[i].length; j++) {
+                INTENT_OF_KEYWORD[INTENT_KEYWORD_TRIE.exactMatch(INTENTS[i][j])] = i;
+            }
+        }
+    }
+
     @Autowired
     private ChatModel chatModel;
 
@@ -338,23 +374,21 @@ public class ChatService {
 
     /**
      * 分析用户意图（高级功能）
+     * 按子串匹配意图关键词：在消息的每个位置上用字典树查找以此开头的全部关键词，
+     * 一遍扫描代替逐个关键词的contains；多个意图命中时取优先级最高（排在最前）的意图
      */
-    private String analyzeUserIntent(String message) {
-        String lowerMessage = message.toLowerCase();
-
-        if (lowerMessage.contains("价格") || lowerMessage.contains("费用") || lowerMessage.contains("多少钱")) {
-            return "价格咨询";
-        } else if (lowerMessage.contains("产品") || lowerMessage.contains("功能") || lowerMessage.contains("介绍")) {
-            return "产品咨询";
-        } else if (lowerMessage.contains("问题") || lowerMessage.contains("故障") || lowerMessage.contains("不能")) {
-            return "技术支持";
-        } else if (lowerMessage.contains("投诉") || lowerMessage.contains("不满") || lowerMessage.contains("差")) {
-            return "投诉处理";
-        } else if (lowerMessage.contains("退款") || lowerMessage.contains("退货") || lowerMessage.contains("取消")) {
-            return "售后服务";
-        } else {
-            return "一般咨询";
+    static String analyzeUserIntent(String message) {
+        if (message == null || message.isEmpty()) {
+            return DEFAULT_INTENT;
+        }
+
+        char[] buffer = message.toLowerCase(Locale.ROOT).toCharArray();
+        int[] best = {INTENTS.length};
+        for (int start = 0; start < buffer.length && best[0] > 0; start++) {
+            INTENT_KEYWORD_TRIE.forEachPrefixMatch(buffer, start, buffer.length,
+                    keyword -> best[0] = Math.min(best[0], INTENT_OF_KEYWORD[keyword]));
         }
+        return best[0] < INTENTS.length ? INTENTS[best[0]][0] : DEFAULT_INTENT;
     }
     
     /**
@@ -0,0 +1,362 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.entity.KnowledgeDocument;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.service.VectorStoreService.SimilaritySearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 分块上下文扩展服务
+ *
+ * 为检索命中的分块补齐前后相邻的分块：先把同一文档中相互重叠或相接的窗口合并为连续区间，
+ * 再用一次批量查询取回所有未缓存的相邻分块，按 (文档ID, 分块序号) 缓存到有界LRU中。
+ * 无论命中多少个分块，上下文扩展最多只增加一次数据库往返；热门文档的邻域直接从缓存读取。
+ *
+ * 缓存同时记录"该位置没有分块"（文档首尾之外），避免反复查询越界位置。
+ * 文档重新分块或删除时按文档失效，在当前事务提交后生效。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@Service
+@Transactional(readOnly = true)
+public class ChunkContextService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkContextService.class);
+
+    /**
+     * 缓存中表示"该位置没有分块"的占位
+     */
+    private static final DocumentChunk ABSENT = new DocumentChunk();
+
+    @Autowired
+    private DocumentChunkRepository chunkRepository;
+
+    @Value("${rag.context.window-cache-size:10000}")
+    private int cacheSize;
+
+    /**
+     * (文档ID, 分块序号) 到分块视图的LRU缓存，访问需持有自身的锁
+     */
+    private final LinkedHashMap<ChunkPosition, DocumentChunk> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ChunkPosition, DocumentChunk> eldest) {
+            return size() > Math.max(cacheSize, 0);
+        }
+    };
+
+    /**
+     * 为命中结果扩展上下文窗口
+     * 同一文档中重叠或相接的窗口合并为一个区间，区间内的分块只读取一次；
+     * 每个结果的上下文窗口设置为其所在的合并区间（见 {@link SimilaritySearchResult#getContextWindow()}）
+     *
+     * @param results 检索结果
+     * @param contextSize 前后各扩展的分块数量，不大于0时不扩展
+     * @return 合并后的上下文区间，按结果首次出现的顺序排列
+     */
+    public List<ContextWindow> expand(List<SimilaritySearchResult> results, int contextSize) {
+        List<ContextWindow> windows = new ArrayList<>();
+        if (results == null || results.isEmpty() || contextSize <= 0) {
+            return windows;
+        }
+
+        // 1. 按文档收集各命中的窗口并合并为连续区间
+        Map<Long, TreeMap<Integer, Integer>> rangesByDocument = new LinkedHashMap<>();
+        for (SimilaritySearchResult result : results) {
+            DocumentChunk chunk = result.getChunk();
+            if (chunk.getChunkIndex() == null || chunk.getDocument() == null) {
+                continue;
+            }
+            int index = chunk.getChunkIndex();
+            mergeRange(rangesByDocument.computeIfAbsent(chunk.getDocument().getId(), id -> new TreeMap<>()),
+                Math.max(index - contextSize, 0), index + contextSize);
+        }
+
+        // 2. 一次查询读取缓存中没有的位置
+        Map<ChunkPosition, DocumentChunk> chunks = loadPositions(rangesByDocument);
+
+        // 3. 为每个结果设置所在区间的分块，区间按结果顺序输出一次
+        Map<ChunkPosition, ContextWindow> windowByStart = new HashMap<>();
+        for (SimilaritySearchResult result : results) {
+            DocumentChunk chunk = result.getChunk();
+            if (chunk.getChunkIndex() == null || chunk.getDocument() == null) {
+                continue;
+            }
+            long documentId = chunk.getDocument().getId();
+            Map.Entry<Integer, Integer> range = rangesByDocument.get(documentId).floorEntry(chunk.getChunkIndex());
+            ChunkPosition start = new ChunkPosition(documentId, range.getKey());
+            ContextWindow window = windowByStart.get(start);
+            if (window == null) {
+                List<DocumentChunk> windowChunks = new ArrayList<>();
+                for (int index = range.getKey(); index <= range.getValue(); index++) {
+                    DocumentChunk neighbor = chunks.get(new ChunkPosition(documentId, index));
+                    if (index == chunk.getChunkIndex()) {
+                        // 命中分块本身已加载，直接使用
+                        windowChunks.add(chunk);
+                    } else if (neighbor != null) {
+                        windowChunks.add(withDocument(neighbor, chunk.getDocument()));
+                    }
+                }
+                window = new ContextWindow(chunk.getDocument(), range.getKey(), range.getValue(), windowChunks);
+                windowByStart.put(start, window);
+                windows.add(window);
+            }
+            window.addHit(result);
+            result.setContextWindow(window.getChunks());
+        }
+        return windows;
+    }
+
+    /**
+     * 按序号读取文档的前若干个分块
+     *
+     * @param documentId 文档ID
+     * @param maxChunks 最大分块数
+     * @return 分块视图列表，按序号升序排列
+     */
+    public List<DocumentChunk> getDocumentChunks(Long documentId, int maxChunks) {
+        if (documentId == null || maxChunks <= 0) {
+            return new ArrayList<>();
+        }
+        Map<Long, TreeMap<Integer, Integer>> ranges = new HashMap<>();
+        TreeMap<Integer, Integer> range = new TreeMap<>();
+        range.put(0, maxChunks - 1);
+        ranges.put(documentId, range);
+        Map<ChunkPosition, DocumentChunk> chunks = loadPositions(ranges);
+
+        List<DocumentChunk> result = new ArrayList<>();
+        for (int index = 0; index < maxChunks; index++) {
+            DocumentChunk chunk = chunks.get(new ChunkPosition(documentId, index));
+            if (chunk != null) {
+                result.add(chunk);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 使文档的缓存分块失效，在当前事务提交后生效
+     *
+     * @param documentId 文档ID
+     */
+    public void invalidateDocument(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        Runnable action = () -> {
+            synchronized (cache) {
+                cache.keySet().removeIf(position -> position.documentId() == documentId);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+        // 提交前也立即失效一次，提交后再清除期间可能被读回的旧分块
+        action.run();
+    }
+
+    /**
+     * 当前缓存的位置数量
+     *
+     * @return 位置数量
+     */
+    public int cachedPositions() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * 把区间 [from, to] 并入有序区间集合，与已有区间重叠或相接时合并
+     */
+    static void mergeRange(TreeMap<Integer, Integer> ranges, int from, int to) {
+        Map.Entry<Integer, Integer> before = ranges.floorEntry(from);
+        if (before != null && before.getValue() >= from - 1) {
+            from = before.getKey();
+            to = Math.max(to, before.getValue());
+            ranges.remove(before.getKey());
+        }
+        Map.Entry<Integer, Integer> next = ranges.ceilingEntry(from);
+        while (next != null && next.getKey() <= to + 1) {
+            to = Math.max(to, next.getValue());
+            ranges.remove(next.getKey());
+            next = ranges.ceilingEntry(from);
+        }
+        ranges.put(from, to);
+    }
+
+    /**
+     * 复制缓存的相邻分块视图并关联命中结果的文档视图
+     * 缓存中的分块只带文档ID，标题、摘要等字段以检索结果加载的文档为准；复制后不修改共享的缓存对象
+     */
+    private static DocumentChunk withDocument(DocumentChunk neighbor, KnowledgeDocument document) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(neighbor.getId());
+        chunk.setDocument(document);
+        chunk.setChunkIndex(neighbor.getChunkIndex());
+        chunk.setContent(neighbor.getContent());
+        chunk.setChunkSize(neighbor.getChunkSize());
+        return chunk;
+    }
+
+    /**
+     * 读取各区间覆盖的全部位置：缓存命中的直接返回，其余位置合并为一次批量查询
+     * 查询条件为 文档ID IN (...) AND 序号 IN (...)，结果按区间精确筛选后写入缓存
+     */
+    private Map<ChunkPosition, DocumentChunk> loadPositions(Map<Long, TreeMap<Integer, Integer>> rangesByDocument) {
+        Map<ChunkPosition, DocumentChunk> chunks = new HashMap<>();
+        Set<ChunkPosition> missing = new HashSet<>();
+        Set<Long> missingDocuments = new HashSet<>();
+        Set<Integer> missingIndexes = new HashSet<>();
+        synchronized (cache) {
+            for (Map.Entry<Long, TreeMap<Integer, Integer>> entry : rangesByDocument.entrySet()) {
+                for (Map.Entry<Integer, Integer> range : entry.getValue().entrySet()) {
+                    for (int index = range.getKey(); index <= range.getValue(); index++) {
+                        ChunkPosition position = new ChunkPosition(entry.getKey(), index);
+                        DocumentChunk cached = cache.get(position);
+                        if (cached == null) {
+                            missing.add(position);
+                            missingDocuments.add(entry.getKey());
+                            missingIndexes.add(index);
+                        } else if (cached != ABSENT) {
+                            chunks.put(position, cached);
+                        }
+                    }
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return chunks;
+        }
+
+        Map<ChunkPosition, DocumentChunk> loaded = new HashMap<>();
+        for (Object[] row : chunkRepository.findChunkViewsByPositions(missingDocuments, missingIndexes)) {
+            long documentId = ((Number) row[1]).longValue();
+            int chunkIndex = (Integer) row[2];
+            ChunkPosition position = new ChunkPosition(documentId, chunkIndex);
+            if (!missing.contains(position)) {
+                continue;
+            }
+            KnowledgeDocument document = new KnowledgeDocument();
+            document.setId(documentId);
+
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setId(((Number) row[0]).longValue());
+            chunk.setDocument(document);
+            chunk.setChunkIndex(chunkIndex);
+            chunk.setContent((String) row[3]);
+            chunk.setChunkSize((Integer) row[4]);
+            loaded.put(position, chunk);
+        }
+        chunks.putAll(loaded);
+
+        synchronized (cache) {
+            for (ChunkPosition position : missing) {
+                cache.put(position, loaded.getOrDefault(position, ABSENT));
+            }
+        }
+        logger.debug("上下文扩展读取 {} 个位置，命中 {} 个分块", missing.size(), loaded.size());
+        return chunks;
+    }
+
+    /**
+     * 文档中的分块位置
+     */
+    private record ChunkPosition(long documentId, int chunkIndex) {
+    }
+
+    /**
+     * 合并后的上下文区间：同一文档中连续的分块，以及落在区间内的命中结果
+     */
+    public static class ContextWindow {
+        private final KnowledgeDocument document;
+        private final int fromIndex;
+        private final int toIndex;
+        private final List<DocumentChunk> chunks;
+        private final List<SimilaritySearchResult> hits = new ArrayList<>();
+
+        public ContextWindow(KnowledgeDocument document, int fromIndex, int toIndex, List<DocumentChunk> chunks) {
+            this.document = document;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.chunks = chunks;
+        }
+
+        void addHit(SimilaritySearchResult hit) {
+            hits.add(hit);
+        }
+
+        /**
+         * 区间所属文档，取自区间内首个命中结果的文档视图（包含标题、摘要和分类）
+         */
+        public KnowledgeDocument getDocument() {
+            return document;
+        }
+
+        public int getFromIndex() {
+            return fromIndex;
+        }
+
+        public int getToIndex() {
+            return toIndex;
+        }
+
+        /**
+         * 区间内实际存在的分块，按序号升序排列
+         */
+        public List<DocumentChunk> getChunks() {
+            return chunks;
+        }
+
+        /**
+         * 落在区间内的命中结果，按检索排名排列
+         */
+        public List<SimilaritySearchResult> getHits() {
+            return hits;
+        }
+
+        /**
+         * 区间内命中结果的最高相似度
+         */
+        public double getMaxSimilarity() {
+            return hits.stream().mapToDouble(SimilaritySearchResult::getSimilarity).max().orElse(0.0);
+        }
+
+        /**
+         * 区间内分块正文按序号拼接
+         */
+        public String getContent() {
+            StringBuilder content = new StringBuilder();
+            for (DocumentChunk chunk : chunks) {
+                if (content.length() > 0) {
+                    content.append('\n');
+                }
+                content.append(chunk.getContent());
+            }
+            return content.toString();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.search.InvertedIndex;
+import com.example.customerservice.search.KeywordHit;
+import com.example.customerservice.search.TextAnalyzer;
+import com.example.customerservice.vector.DocumentFilter;
+import com.example.customerservice.vector.VectorSearchHit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 分块关键词索引服务
+ *
+ * 以分块为单位维护常驻内存的BM25倒排索引（见 {@link InvertedIndex}），为混合搜索的关键词分支
+ * 和向量检索失败时的关键词回退提供检索，不再逐次加载全部就绪分块并对正文做子串匹配。
+ * 分块正文和查询都由 {@link TextAnalyzer} 的默认分析器切分；
+ * 查询词项既精确匹配，也按前缀匹配字典中的派生词项（得分按配置的权重折减）。
+ *
+ * 启动时按分块ID游标分批从数据库加载就绪分块的正文；之后由 {@link EmbeddingService}
+ * 在分块创建、状态变化或删除时调用，索引更新在事务提交后进行。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@Service
+public class ChunkKeywordIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkKeywordIndexService.class);
+
+    @Autowired
+    private DocumentChunkRepository chunkRepository;
+
+    @Value("${rag.search.keyword.k1:1.2}")
+    private double bm25K1;
+
+    @Value("${rag.search.keyword.b:0.75}")
+    private double bm25B;
+
+    @Value("${rag.search.keyword.prefix-weight:0.5}")
+    private double prefixWeight;
+
+    @Value("${rag.search.keyword.load-batch-size:500}")
+    private int loadBatchSize;
+
+    /**
+     * 分块倒排索引，开始加载前为null
+     */
+    private volatile InvertedIndex index;
+
+    private volatile boolean loaded = false;
+
+    /**
+     * 应用启动完成后加载分块关键词索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureLoaded();
+    }
+
+    /**
+     * 确保索引已加载
+     * 首次检索早于启动事件时也会触发加载
+     */
+    public void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    loadIndex();
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按分块ID游标分批加载就绪分块
+     * 新索引在加载开始时即对外可见，加载期间提交的增量更新直接写入新索引，加载时不再覆盖这些分块
+     */
+    private void loadIndex() {
+        logger.info("开始加载分块关键词索引");
+        long startTime = System.currentTimeMillis();
+
+        InvertedIndex newIndex = new InvertedIndex(bm25K1, bm25B, 1.0f);
+        index = newIndex;
+        int batchSize = Math.max(loadBatchSize, 1);
+        long afterId = 0L;
+        int loadedCount = 0;
+        while (true) {
+            List<Object[]> rows = chunkRepository.findReadyContentsAfter(afterId, PageRequest.of(0, batchSize));
+            for (Object[] row : rows) {
+                long chunkId = ((Number) row[0]).longValue();
+                if (!newIndex.contains(chunkId)) {
+                    newIndex.upsert(chunkId, ((Number) row[1]).longValue(), analyze((String) row[2]));
+                    loadedCount++;
+                }
+                afterId = chunkId;
+            }
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+
+        newIndex.trimToSize();
+        logger.info("分块关键词索引加载完成，共 {} 个分块、{} 个词项、倒排表 {} 字节，耗时 {} ms",
+            loadedCount, newIndex.termCount(), newIndex.postingBytes(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 同步分块到关键词索引：就绪分块写入或替换，其余状态的分块移除
+     * 在调用线程中完成分词，索引在当前事务提交后更新
+     *
+     * @param chunks 分块列表
+     */
+    public void indexChunks(List<DocumentChunk> chunks) {
+        List<Long> readyIds = new ArrayList<>();
+        List<Long> readyDocumentIds = new ArrayList<>();
+        List<List<List<String>>> readyFields = new ArrayList<>();
+        List<Long> removedIds = new ArrayList<>();
+        for (DocumentChunk chunk : chunks) {
+            if (chunk.getId() == null) {
+                continue;
+            }
+            if (chunk.isReady()) {
+                readyIds.add(chunk.getId());
+                readyDocumentIds.add(chunk.getDocument().getId());
+                readyFields.add(analyze(chunk.getContent()));
+            } else {
+                removedIds.add(chunk.getId());
+            }
+        }
+        if (readyIds.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+
+        runAfterCommit(() -> {
+            InvertedIndex current = index;
+            if (current == null) {
+                return;
+            }
+            for (int i = 0; i < readyIds.size(); i++) {
+                current.upsert(readyIds.get(i), readyDocumentIds.get(i), readyFields.get(i));
+            }
+            for (Long chunkId : removedIds) {
+                current.remove(chunkId);
+            }
+            logger.debug("分块关键词索引写入 {} 个分块，移除 {} 个分块", readyIds.size(), removedIds.size());
+        });
+    }
+
+    /**
+     * 从关键词索引移除文档的全部分块，在当前事务提交后生效
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocument(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        runAfterCommit(() -> {
+            InvertedIndex current = index;
+            if (current != null) {
+                int removed = current.removeDocument(documentId);
+                logger.debug("从分块关键词索引移除文档 {} 的 {} 个分块", documentId, removed);
+            }
+        });
+    }
+
+    /**
+     * 关键词检索，只返回前K个分块的ID和得分
+     * 结果按BM25分数排序，命中结果的分数为查询覆盖度（取值 [0, 1]），与向量相似度阈值含义一致
+     *
+     * @param query 查询文本
+     * @param topK 返回结果数量；按文档折叠时为文档数量
+     * @param perDocument 每个文档保留的分块数量，不大于0时不按文档折叠
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果，按BM25分数降序排列
+     */
+    public List<VectorSearchHit> search(String query, int topK, int perDocument, DocumentFilter filter) {
+        List<String> terms = TextAnalyzer.defaultAnalyzer().terms(query);
+        if (terms.isEmpty() || topK <= 0) {
+            return Collections.emptyList();
+        }
+        ensureLoaded();
+
+        List<KeywordHit> keywordHits = index.search(terms, topK, perDocument, filter, prefixWeight);
+        List<VectorSearchHit> hits = new ArrayList<>(keywordHits.size());
+        for (KeywordHit hit : keywordHits) {
+            hits.add(new VectorSearchHit(hit.getId(), hit.getDocumentId(), hit.getCoverage()));
+        }
+        return hits;
+    }
+
+    /**
+     * 获取索引中的分块数量
+     *
+     * @return 分块数量，索引尚未加载时为0
+     */
+    public int size() {
+        InvertedIndex current = index;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * 将分块正文切分为单字段的词项序列
+     */
+    private List<List<String>> analyze(String content) {
+        List<List<String>> fields = new ArrayList<>(1);
+        fields.add(TextAnalyzer.defaultAnalyzer().terms(content));
+        return fields;
+    }
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
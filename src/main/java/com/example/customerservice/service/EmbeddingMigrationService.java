@@ -0,0 +1,183 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.entity.KnowledgeSearchIndex;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.repository.KnowledgeSearchIndexRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * 向量存储格式迁移服务类
+ *
+ * 将历史数据中以 "[0.1,0.2,...]" 文本格式存储的向量分批改写为二进制float32格式，
+ * 同时将尚未归一化的二进制向量改写为单位向量并记录原始范数。
+ * 每个批次在独立事务中提交，迁移中断后可重复执行，已迁移的行不会被再次处理。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@Service
+public class EmbeddingMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingMigrationService.class);
+
+    @Autowired
+    private DocumentChunkRepository chunkRepository;
+
+    @Autowired
+    private KnowledgeSearchIndexRepository searchIndexRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${rag.embedding.migration.batch-size:500}")
+    private int migrationBatchSize;
+
+    @Value("${rag.embedding.migration.on-startup:true}")
+    private boolean migrateOnStartup;
+
+    /**
+     * 应用启动完成后迁移历史向量数据
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (migrateOnStartup && chunkRepository.countLegacyEmbeddingChunks() > 0) {
+            migrateAll();
+        }
+    }
+
+    /**
+     * 迁移所有文本格式或未归一化的向量
+     *
+     * @return 迁移结果
+     */
+    public synchronized MigrationResult migrateAll() {
+        logger.info("开始迁移向量到归一化二进制格式");
+        long startTime = System.currentTimeMillis();
+
+        int[] chunkCounts = migrateChunks();
+        int[] indexCounts = migrateSearchIndexes();
+
+        MigrationResult result = new MigrationResult(
+            chunkCounts[0], chunkCounts[1], indexCounts[0], indexCounts[1],
+            System.currentTimeMillis() - startTime);
+        logger.info("向量格式迁移完成: {}", result);
+        return result;
+    }
+
+    /**
+     * 分批迁移文档分块
+     *
+     * @return [迁移成功数, 解析失败数]
+     */
+    private int[] migrateChunks() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int[] counts = new int[2];
+        long[] cursor = {0L};
+
+        while (true) {
+            Integer batchSize = transactionTemplate.execute(status -> {
+                List<DocumentChunk> batch = chunkRepository.findLegacyEmbeddingChunks(
+                    cursor[0], PageRequest.of(0, migrationBatchSize));
+                for (DocumentChunk chunk : batch) {
+                    cursor[0] = chunk.getId();
+                    if (chunk.migrateEmbeddingToBinary()) {
+                        counts[0]++;
+                    } else {
+                        counts[1]++;
+                        logger.warn("分块向量无法解析，保留原格式: {}", chunk.getId());
+                    }
+                }
+                chunkRepository.saveAll(batch);
+                return batch.size();
+            });
+
+            if (batchSize == null || batchSize == 0) {
+                break;
+            }
+            logger.debug("已迁移 {} 个分块向量", counts[0]);
+        }
+
+        return counts;
+    }
+
+    /**
+     * 分批迁移搜索索引
+     *
+     * @return [迁移成功数, 解析失败数]
+     */
+    private int[] migrateSearchIndexes() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int[] counts = new int[2];
+        long[] cursor = {0L};
+
+        while (true) {
+            Integer batchSize = transactionTemplate.execute(status -> {
+                List<KnowledgeSearchIndex> batch = searchIndexRepository.findLegacyEmbeddingIndexes(
+                    cursor[0], PageRequest.of(0, migrationBatchSize));
+                for (KnowledgeSearchIndex index : batch) {
+                    cursor[0] = index.getId();
+                    if (index.migrateEmbeddingToBinary()) {
+                        counts[0]++;
+                    } else {
+                        counts[1]++;
+                        logger.warn("索引向量无法解析，保留原格式: {}", index.getId());
+                    }
+                }
+                searchIndexRepository.saveAll(batch);
+                return batch.size();
+            });
+
+            if (batchSize == null || batchSize == 0) {
+                break;
+            }
+            logger.debug("已迁移 {} 个索引向量", counts[0]);
+        }
+
+        return counts;
+    }
+
+    /**
+     * 迁移结果类
+     */
+    public static class MigrationResult {
+        private final int migratedChunks;
+        private final int failedChunks;
+        private final int migratedIndexes;
+        private final int failedIndexes;
+        private final long elapsedMs;
+
+        public MigrationResult(int migratedChunks, int failedChunks,
+                               int migratedIndexes, int failedIndexes, long elapsedMs) {
+            this.migratedChunks = migratedChunks;
+            this.failedChunks = failedChunks;
+            this.migratedIndexes = migratedIndexes;
+            this.failedIndexes = failedIndexes;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public int getMigratedChunks() { return migratedChunks; }
+        public int getFailedChunks() { return failedChunks; }
+        public int getMigratedIndexes() { return migratedIndexes; }
+        public int getFailedIndexes() { return failedIndexes; }
+        public long getElapsedMs() { return elapsedMs; }
+
+        @Override
+        public String toString() {
+            return String.format("MigrationResult{chunks=%d(failed=%d), indexes=%d(failed=%d), elapsed=%dms}",
+                migratedChunks, failedChunks, migratedIndexes, failedIndexes, elapsedMs);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package com.example.customerservice.service;
 
 import com.example.customerservice.entity.DocumentChunk;
 import com.example.customerservice.entity.KnowledgeDocument;
+import com.example.customerservice.entity.KnowledgeSearchIndex;
 import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.repository.KnowledgeSearchIndexRepository;
+import com.example.customerservice.vector.VectorMath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.embedding.EmbeddingModel;
@@ -41,6 +44,18 @@ public class EmbeddingService {
     @Autowired(required = false)
     private EmbeddingModel embeddingModel;
 
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private ChunkContextService chunkContextService;
+
+    @Autowired
+    private ChunkKeywordIndexService chunkKeywordIndexService;
+
+    @Autowired
+    private KnowledgeSearchIndexRepository searchIndexRepository;
+
     @Value("${rag.chunk.size:1000}")
     private int defaultChunkSize;
 
@@ -71,6 +86,9 @@ public class EmbeddingService {
         try {
             // 1. 删除现有分块
             chunkRepository.deleteByDocument(document);
+            vectorIndexService.removeDocument(document.getId());
+            chunkContextService.invalidateDocument(document.getId());
+            chunkKeywordIndexService.removeDocument(document.getId());
 
             // 2. 创建新分块
             List<DocumentChunk> chunks = createChunks(document);
@@ -81,6 +99,7 @@ public class EmbeddingService {
             // 4. 生成向量（如果启用）
             if (embeddingEnabled && embeddingModel != null) {
                 generateEmbeddingsForChunks(chunks);
+                updateDocumentEmbedding(document, chunks);
             } else {
                 logger.warn("向量化功能未启用或EmbeddingModel未配置，跳过向量生成");
                 // 标记为就绪状态（无向量）
@@ -88,6 +107,9 @@ public class EmbeddingService {
                 chunkRepository.saveAll(chunks);
             }
 
+            // 5. 同步分块关键词索引
+            chunkKeywordIndexService.indexChunks(chunks);
+
             logger.info("文档向量化处理完成: {}, 共创建 {} 个分块", document.getId(), chunks.size());
             return CompletableFuture.completedFuture(null);
 
@@ -132,6 +154,63 @@ public class EmbeddingService {
         }
     }
 
+    /**
+     * 一次调用为多个查询生成向量
+     * 与 {@link #generateEmbeddings(List)} 不同，结果与输入按位置一一对应，
+     * 空白或未能向量化的查询位置为null，便于调用方逐个降级
+     *
+     * @param queries 查询文本列表
+     * @return 与输入等长的向量列表
+     */
+    public List<float[]> generateQueryEmbeddings(List<String> queries) {
+        List<float[]> embeddings = new ArrayList<>();
+        if (queries == null || queries.isEmpty()) {
+            return embeddings;
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            embeddings.add(null);
+        }
+
+        if (!embeddingEnabled || embeddingModel == null) {
+            logger.debug("向量化功能未启用，返回空向量");
+            return embeddings;
+        }
+
+        List<Integer> positions = new ArrayList<>();
+        List<String> cleanQueries = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            if (query != null && !query.trim().isEmpty()) {
+                String cleanQuery = cleanText(query);
+                if (!cleanQuery.isEmpty()) {
+                    positions.add(i);
+                    cleanQueries.add(cleanQuery);
+                }
+            }
+        }
+        if (cleanQueries.isEmpty()) {
+            return embeddings;
+        }
+
+        try {
+            EmbeddingResponse response = embeddingModel.call(new EmbeddingRequest(cleanQueries, null));
+            if (response.getResults() == null || response.getResults().size() != cleanQueries.size()) {
+                logger.warn("批量查询向量化结果数量不一致: 期望 {}, 实际 {}", cleanQueries.size(),
+                        response.getResults() == null ? 0 : response.getResults().size());
+                return embeddings;
+            }
+            for (int i = 0; i < cleanQueries.size(); i++) {
+                embeddings.set(positions.get(i), response.getResults().get(i).getOutput());
+            }
+            logger.debug("批量查询向量化完成: {} 个查询", cleanQueries.size());
+            return embeddings;
+
+        } catch (Exception e) {
+            logger.error("批量查询向量化失败: " + e.getMessage(), e);
+            return embeddings;
+        }
+    }
+
     /**
      * 批量生成向量
      * 
@@ -282,9 +361,52 @@ public class EmbeddingService {
 
         // 保存更新
         chunkRepository.saveAll(chunks);
+
+        // 同步内存向量索引
+        vectorIndexService.indexChunks(chunks);
         logger.debug("分块向量生成完成");
     }
 
+    /**
+     * 以分块向量的均值作为文档向量写入搜索索引
+     * 与内存中的文档质心计算方式一致：各分块向量先归一化再求均值
+     *
+     * @param document 知识文档
+     * @param chunks 已向量化的分块
+     */
+    private void updateDocumentEmbedding(KnowledgeDocument document, List<DocumentChunk> chunks) {
+        float[] sum = null;
+        int count = 0;
+        for (DocumentChunk chunk : chunks) {
+            if (!chunk.isReady() || !chunk.hasEmbedding()) {
+                continue;
+            }
+            float[] normalized = VectorMath.normalize(chunk.getEmbeddingArray());
+            if (normalized == null || (sum != null && normalized.length != sum.length)) {
+                continue;
+            }
+            if (sum == null) {
+                sum = new float[normalized.length];
+            }
+            for (int d = 0; d < sum.length; d++) {
+                sum[d] += normalized[d];
+            }
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        for (int d = 0; d < sum.length; d++) {
+            sum[d] /= count;
+        }
+
+        KnowledgeSearchIndex searchIndex = searchIndexRepository.findByDocumentId(document.getId())
+                .orElseGet(() -> new KnowledgeSearchIndex(document));
+        searchIndex.setEmbeddingArray(sum);
+        searchIndexRepository.save(searchIndex);
+        logger.debug("文档向量已更新: {}, 分块数 {}", document.getId(), count);
+    }
+
     /**
      * 查找最后一个句子结束位置
      * 
@@ -352,6 +474,7 @@ public class EmbeddingService {
                 failedChunks.forEach(chunk -> chunk.markAsReady());
                 chunkRepository.saveAll(failedChunks);
             }
+            chunkKeywordIndexService.indexChunks(failedChunks);
 
             logger.info("失败分块重新处理完成");
             return CompletableFuture.completedFuture(null);
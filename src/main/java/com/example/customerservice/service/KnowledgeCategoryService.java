@@ -30,6 +30,9 @@ public class KnowledgeCategoryService {
     @Autowired
     private KnowledgeCategoryRepository categoryRepository;
 
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
     /**
      * 创建新的知识分类
      * 
@@ -63,6 +66,7 @@ public class KnowledgeCategoryService {
         }
 
         KnowledgeCategory savedCategory = categoryRepository.save(category);
+        vectorIndexService.updateCategory(savedCategory);
         logger.info("成功创建知识分类: {}, ID: {}", savedCategory.getName(), savedCategory.getId());
 
         return savedCategory;
@@ -108,6 +112,7 @@ public class KnowledgeCategoryService {
         }
 
         KnowledgeCategory savedCategory = categoryRepository.save(existingCategory);
+        vectorIndexService.updateCategory(savedCategory);
         logger.info("成功更新知识分类: {}", savedCategory.getId());
 
         return savedCategory;
@@ -138,6 +143,7 @@ public class KnowledgeCategoryService {
         }
 
         categoryRepository.delete(category);
+        vectorIndexService.removeCategory(categoryId);
         logger.info("成功删除知识分类: {}", categoryId);
     }
 
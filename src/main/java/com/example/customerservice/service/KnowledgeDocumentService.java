@@ -49,6 +49,12 @@ public class KnowledgeDocumentService {
     @Autowired
     private EmbeddingService embeddingService;
 
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private ChunkContextService chunkContextService;
+
     /**
      * 创建新的知识文档
      * 
@@ -89,6 +95,9 @@ public class KnowledgeDocumentService {
         // 异步处理文档向量化（RAG功能）
         embeddingService.processDocument(savedDocument);
 
+        // 更新向量检索的过滤属性
+        vectorIndexService.updateDocumentAttributes(savedDocument);
+
         logger.info("成功创建知识文档: {}, ID: {}", savedDocument.getTitle(), savedDocument.getId());
         return savedDocument;
     }
@@ -146,6 +155,9 @@ public class KnowledgeDocumentService {
             embeddingService.processDocument(savedDocument);
         }
 
+        // 分类和标签可能变化，更新向量检索的过滤属性
+        vectorIndexService.updateDocumentAttributes(savedDocument);
+
         logger.info("成功更新知识文档: {}", savedDocument.getId());
         return savedDocument;
     }
@@ -173,6 +185,7 @@ public class KnowledgeDocumentService {
 
         // 发布后确保向量化处理完成
         embeddingService.processDocument(savedDocument);
+        vectorIndexService.updateDocumentAttributes(savedDocument);
 
         logger.info("成功发布知识文档: {}", savedDocument.getId());
         return savedDocument;
@@ -198,6 +211,7 @@ public class KnowledgeDocumentService {
 
         // 归档后移除搜索索引
         searchService.removeIndex(savedDocument);
+        vectorIndexService.updateDocumentAttributes(savedDocument);
 
         logger.info("成功归档知识文档: {}", savedDocument.getId());
         return savedDocument;
@@ -219,6 +233,8 @@ public class KnowledgeDocumentService {
 
         // 删除文档
         documentRepository.delete(document);
+        vectorIndexService.removeDocumentAttributes(documentId);
+        chunkContextService.invalidateDocument(documentId);
 
         logger.info("成功删除知识文档: {}", documentId);
     }
@@ -247,6 +263,7 @@ public class KnowledgeDocumentService {
         if (documentOpt.isPresent()) {
             // 异步增加访问次数
             documentRepository.incrementViewCount(documentId);
+            vectorIndexService.recordView(documentId);
             logger.debug("增加文档访问次数: {}", documentId);
         }
         
@@ -263,6 +280,7 @@ public class KnowledgeDocumentService {
     public boolean likeDocument(Long documentId) {
         int updated = documentRepository.incrementLikeCount(documentId);
         if (updated > 0) {
+            vectorIndexService.recordLike(documentId);
             logger.debug("增加文档点赞次数: {}", documentId);
             return true;
         }
@@ -4,17 +4,37 @@ import com.example.customerservice.entity.KnowledgeDocument;
 import com.example.customerservice.entity.KnowledgeSearchIndex;
 import com.example.customerservice.repository.KnowledgeDocumentRepository;
 import com.example.customerservice.repository.KnowledgeSearchIndexRepository;
+import com.example.customerservice.search.InvertedIndex;
+import com.example.customerservice.search.KeywordHit;
+import com.example.customerservice.search.KeywordSegmentStore;
+import com.example.customerservice.search.TextAnalyzer;
+import com.example.customerservice.search.TieredMergePolicy;
+import com.example.customerservice.search.TokenFilter;
+import com.example.customerservice.vector.ReciprocalRankFusion;
+import com.example.customerservice.vector.VectorSearchHit;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +42,14 @@ import java.util.stream.Collectors;
  * 
  * 提供知识库的搜索功能，包括关键词搜索、语义搜索和搜索索引的管理。
  * 支持异步索引构建和智能搜索结果排序。
+ *
+ * 关键词搜索使用常驻内存的BM25倒排索引（见 {@link InvertedIndex}），按标题、正文、摘要、标签四个字段建立，
+ * 启动时从索引就绪的文档加载，之后随 {@link #createOrUpdateIndex} 和 {@link #removeIndex} 在事务提交后增量更新，
+ * 检索只读取查询词项的倒排表，不再对搜索索引表逐词执行 LIKE 全表扫描。
+ *
+ * 倒排索引同时持久化到磁盘关键词段（见 {@link KeywordSegmentStore}）：增量更新写入内存尾段，
+ * 后台定时提交为新段并按分层策略合并。重启时打开最近的提交点，按段批量载入倒排表，
+ * 只从数据库补齐提交之后的变更和水位线之后的文档，不再对全部文档重新分词。
  * 
  * @author AI Assistant
  * @version 1.0.0
@@ -39,13 +67,356 @@ public class KnowledgeSearchService {
     @Autowired
     private KnowledgeSearchIndexRepository searchIndexRepository;
 
-    // 停用词列表（简化版）
-    private static final Set<String> STOP_WORDS = Set.of(
-            "的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一", "一个", "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好", "自己", "这"
-    );
+    @Autowired
+    private EmbeddingService embeddingService;
+
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Value("${rag.search.similarity-threshold:0.7}")
+    private double similarityThreshold;
+
+    @Value("${rag.search.two-stage.top-documents:50}")
+    private int semanticTopDocuments;
+
+    @Value("${rag.search.keyword.k1:1.2}")
+    private double bm25K1;
+
+    @Value("${rag.search.keyword.b:0.75}")
+    private double bm25B;
+
+    @Value("${rag.search.keyword.load-batch-size:500}")
+    private int keywordLoadBatchSize;
+
+    @Value("${rag.search.keyword.storage.enabled:true}")
+    private boolean keywordStorageEnabled;
+
+    @Value("${rag.search.keyword.storage.path:./data/keyword-index}")
+    private String keywordStoragePath;
+
+    @Value("${rag.search.keyword.storage.flush-threshold:5000}")
+    private int keywordFlushThreshold;
+
+    @Value("${rag.search.keyword.storage.refresh-interval-ms:1000}")
+    private long keywordRefreshIntervalMs;
+
+    @Value("${rag.search.keyword.storage.merge-interval-seconds:30}")
+    private long keywordMergeIntervalSeconds;
+
+    @Value("${rag.search.keyword.storage.segments-per-tier:10}")
+    private int segmentsPerTier;
+
+    @Value("${rag.search.keyword.storage.max-merge-at-once:10}")
+    private int maxMergeAtOnce;
+
+    @Value("${rag.search.keyword.storage.floor-segment-entries:1000}")
+    private int floorSegmentEntries;
+
+    @Value("${rag.search.keyword.storage.max-merged-segment-entries:1000000}")
+    private int maxMergedSegmentEntries;
+
+    @Value("${rag.search.keyword.storage.deletes-pct-allowed:20}")
+    private double deletesPctAllowed;
+
+    /**
+     * 关键词倒排索引的字段权重，依次为标题、正文、摘要、标签
+     */
+    private static final float[] KEYWORD_FIELD_WEIGHTS = {3.0f, 1.0f, 1.5f, 2.0f};
+
+    /**
+     * 从数据库补齐变更时，在最近一次提交时间之前再多回溯的毫秒数，
+     * 覆盖数据库已提交、但提交后回调晚于段提交才写入尾段的更新
+     */
+    private static final long KEYWORD_CATCH_UP_MARGIN_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * 关键词倒排索引，开始加载前为null
+     */
+    private volatile InvertedIndex keywordIndex;
+
+    /**
+     * 正在加载或重建的倒排索引，加载期间的增量更新同时写入，加载完成后替换 {@link #keywordIndex}
+     */
+    private InvertedIndex pendingKeywordIndex;
+
+    /**
+     * 关键词段存储，未启用或打开失败时为null
+     */
+    private volatile KeywordSegmentStore keywordStore;
+
+    /**
+     * 保护倒排索引、待替换索引和段存储的写入顺序，保证三者对同一文档的更新次序一致
+     */
+    private final Object keywordWriteLock = new Object();
+
+    private ScheduledExecutorService keywordMaintenanceExecutor;
+
+    private volatile boolean keywordIndexLoaded = false;
+
+    /**
+     * 语义搜索第二阶段每个候选文档平均保留的分块数
+     */
+    private static final int SEMANTIC_CHUNKS_PER_DOCUMENT = 3;
+
+    /**
+     * 关键词分析器：默认的中文分析器（词典切分、二元回退、规范化和停用词），另外过滤单字词项
+     */
+    private static final TextAnalyzer KEYWORD_ANALYZER =
+            TextAnalyzer.defaultAnalyzer().withFilter(TokenFilter.minLength(2));
+
+    /**
+     * 应用启动完成后加载关键词倒排索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureKeywordIndexLoaded();
+    }
+
+    /**
+     * 确保关键词倒排索引已加载
+     * 首次检索早于启动事件时也会触发加载
+     */
+    public void ensureKeywordIndexLoaded() {
+        if (!keywordIndexLoaded) {
+            synchronized (this) {
+                if (!keywordIndexLoaded) {
+                    loadKeywordIndex(false);
+                    keywordIndexLoaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 加载关键词倒排索引
+     * 段存储可用且与数据库一致时从段文件载入并补齐最近一次提交之后的变更，否则清空段存储；
+     * 之后从数据库分页加载水位线之后的文档，同时写入段存储。
+     * 新索引在加载完成后整体替换，加载期间提交的增量更新同时写入新索引，加载时不再覆盖这些文档
+     *
+     * @param rebuild 是否重建：忽略已有的段文件，全部从数据库加载
+     */
+    private synchronized void loadKeywordIndex(boolean rebuild) {
+        logger.info("开始加载关键词倒排索引");
+        long startTime = System.currentTimeMillis();
+
+        InvertedIndex index = new InvertedIndex(bm25K1, bm25B, KEYWORD_FIELD_WEIGHTS);
+        // 重建时沿用已打开的段存储；索引尚未加载过时先打开，随后整体清空
+        KeywordSegmentStore store = rebuild && keywordStore != null ? keywordStore : openKeywordStore();
+        long afterId = 0L;
+        int loadedCount = 0;
+        String source = "数据库";
+
+        synchronized (keywordWriteLock) {
+            pendingKeywordIndex = index;
+            if (store != null && !rebuild && isKeywordStoreConsistent(store)) {
+                loadedCount = store.loadInto(index);
+                // 补齐变更时持有写入锁，之后的增量更新总是晚于补齐写入
+                catchUpKeywordChanges(index, store);
+                afterId = store.getWatermark();
+                source = "磁盘段文件";
+            } else if (store != null) {
+                try {
+                    store.reset();
+                } catch (IOException e) {
+                    logger.error("重置关键词段存储失败，本次不启用持久化", e);
+                    store = null;
+                }
+            }
+            keywordStore = store;
+        }
 
-    // 标点符号正则表达式
-    private static final Pattern PUNCTUATION_PATTERN = Pattern.compile("[\\p{Punct}\\s]+");
+        loadedCount += loadKeywordIndexFromDatabase(index, afterId);
+        index.trimToSize();
+        synchronized (keywordWriteLock) {
+            keywordIndex = index;
+            pendingKeywordIndex = null;
+        }
+        keywordIndexLoaded = true;
+        if (store != null) {
+            commitKeywordStore();
+            startKeywordMaintenance();
+        }
+        logger.info("关键词倒排索引加载完成（{}），共 {} 个文档、{} 个词项、倒排表 {} 字节，耗时 {} ms",
+                source, loadedCount, index.termCount(), index.postingBytes(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 按文档ID游标从数据库分页加载就绪文档，在锁外分词，写入新索引和段存储
+     *
+     * @param index 目标倒排索引
+     * @param afterId 起始文档ID（不含）
+     * @return 加载的文档数量
+     */
+    private int loadKeywordIndexFromDatabase(InvertedIndex index, long afterId) {
+        KeywordSegmentStore store = keywordStore;
+        int batchSize = Math.max(keywordLoadBatchSize, 1);
+        int loadedCount = 0;
+        while (true) {
+            List<Object[]> rows = searchIndexRepository.findReadyDocumentTextsAfter(afterId,
+                    PageRequest.of(0, batchSize));
+            List<List<List<String>>> fields = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                fields.add(analyzeFields((String) row[1], (String) row[2], (String) row[3], (String) row[4]));
+            }
+            synchronized (keywordWriteLock) {
+                for (int i = 0; i < rows.size(); i++) {
+                    long documentId = ((Number) rows.get(i)[0]).longValue();
+                    if (!index.contains(documentId)) {
+                        index.upsert(documentId, documentId, fields.get(i));
+                        if (store != null) {
+                            store.upsert(documentId, documentId, fields.get(i));
+                        }
+                        loadedCount++;
+                    }
+                    afterId = documentId;
+                }
+            }
+            if (store != null && store.getTailSize() >= keywordFlushThreshold) {
+                commitKeywordStore();
+            }
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+        return loadedCount;
+    }
+
+    /**
+     * 打开关键词段存储，未启用时返回null；打开失败时返回未初始化的存储，由调用方重建
+     */
+    private KeywordSegmentStore openKeywordStore() {
+        if (!keywordStorageEnabled) {
+            return null;
+        }
+        if (keywordStore != null) {
+            keywordStore.close();
+        }
+        TieredMergePolicy mergePolicy = new TieredMergePolicy(segmentsPerTier, maxMergeAtOnce,
+                floorSegmentEntries, maxMergedSegmentEntries, deletesPctAllowed);
+        KeywordSegmentStore store = new KeywordSegmentStore(Paths.get(keywordStoragePath),
+                KEYWORD_FIELD_WEIGHTS.length, mergePolicy);
+        try {
+            store.open();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("打开关键词段存储失败，将从数据库重建: {}", e.getMessage());
+        }
+        return store;
+    }
+
+    /**
+     * 校验段存储与数据库是否一致：水位线及之前的就绪文档数量应与段中未删除的文档数量相等
+     * 数据库被重建（如内存数据库重启）或停机前的删除未提交到段存储时，数量不一致，需要重建
+     */
+    private boolean isKeywordStoreConsistent(KeywordSegmentStore store) {
+        if (!store.isInitialized()) {
+            return false;
+        }
+        long expected = searchIndexRepository.countReadyUpTo(store.getWatermark());
+        int actual = store.liveSegmentEntries();
+        if (expected != actual) {
+            logger.info("关键词段存储与数据库不一致（段中 {} 个，数据库 {} 个），将重建", actual, expected);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 补齐最近一次提交之后在数据库中发生的变更（如进程崩溃前尚未提交到段存储的更新），调用方需持有写入锁
+     */
+    private void catchUpKeywordChanges(InvertedIndex index, KeywordSegmentStore store) {
+        LocalDateTime since = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(store.getCommitTimestamp() - KEYWORD_CATCH_UP_MARGIN_MS), ZoneId.systemDefault());
+        List<Object[]> rows = searchIndexRepository.findDocumentTextsUpdatedSince(since, store.getWatermark());
+        for (Object[] row : rows) {
+            long documentId = ((Number) row[0]).longValue();
+            if (row[1] == KnowledgeSearchIndex.IndexStatus.READY) {
+                List<List<String>> fields = analyzeFields((String) row[2], (String) row[3], (String) row[4],
+                        (String) row[5]);
+                index.upsert(documentId, documentId, fields);
+                store.upsert(documentId, documentId, fields);
+            } else {
+                index.remove(documentId);
+                store.remove(documentId);
+            }
+        }
+        if (!rows.isEmpty()) {
+            logger.info("从数据库补齐关键词段提交之后的 {} 个文档变更", rows.size());
+        }
+    }
+
+    /**
+     * 提交段存储，失败时仅记录日志，未提交的变更保留到下次提交
+     */
+    private void commitKeywordStore() {
+        KeywordSegmentStore store = keywordStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            int flushed = store.commit();
+            if (flushed > 0) {
+                logger.debug("关键词尾段已提交 {} 个文档，水位线 {}", flushed, store.getWatermark());
+            }
+        } catch (IOException e) {
+            logger.warn("提交关键词段存储失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按分层策略合并关键词段，直到没有需要合并的段
+     */
+    private void mergeKeywordSegments() {
+        KeywordSegmentStore store = keywordStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            int live;
+            while ((live = store.maybeMerge()) > 0) {
+                logger.info("关键词段已合并，新段 {} 个文档，当前 {} 个段", live, store.getSegmentCount());
+            }
+        } catch (IOException e) {
+            logger.warn("关键词段合并失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动段存储的定时提交和后台合并任务，两者在不同线程执行，合并不推迟提交
+     */
+    private synchronized void startKeywordMaintenance() {
+        if (keywordMaintenanceExecutor != null || keywordRefreshIntervalMs <= 0) {
+            return;
+        }
+        keywordMaintenanceExecutor = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "KeywordSegment-Maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        keywordMaintenanceExecutor.scheduleWithFixedDelay(this::commitKeywordStore,
+                keywordRefreshIntervalMs, keywordRefreshIntervalMs, TimeUnit.MILLISECONDS);
+        if (keywordMergeIntervalSeconds > 0) {
+            keywordMaintenanceExecutor.scheduleWithFixedDelay(this::mergeKeywordSegments,
+                    keywordMergeIntervalSeconds, keywordMergeIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 停止后台任务，提交未落盘的变更并释放段映射
+     */
+    @PreDestroy
+    public void shutdown() {
+        synchronized (this) {
+            if (keywordMaintenanceExecutor != null) {
+                keywordMaintenanceExecutor.shutdown();
+                keywordMaintenanceExecutor = null;
+            }
+        }
+        KeywordSegmentStore store = keywordStore;
+        if (store != null) {
+            commitKeywordStore();
+            store.close();
+        }
+    }
 
     /**
      * 创建或更新文档的搜索索引
@@ -73,19 +444,25 @@ public class KnowledgeSearchService {
             String keywords = extractKeywords(document);
             searchIndex.setKeywords(keywords);
 
-            // TODO: 集成Spring AI Embedding功能
-            // 暂时不设置向量化表示，等Spring AI集成完成后添加
-            // String embedding = generateEmbedding(document);
-            // searchIndex.setEmbedding(embedding);
+            // 文档向量（分块向量均值）由EmbeddingService在分块向量化完成后写入
 
             // 标记索引为就绪状态
             searchIndex.markAsReady();
 
             searchIndexRepository.save(searchIndex);
+
+            // 事务提交后更新内存倒排索引
+            long documentId = document.getId();
+            List<List<String>> fields = analyzeFields(document.getTitle(), document.getContent(),
+                    document.getSummary(), document.getTags());
+            runAfterCommit(() -> upsertKeywordEntry(documentId, fields));
             logger.info("成功创建/更新文档搜索索引: {}", document.getId());
 
         } catch (Exception e) {
             logger.error("创建/更新搜索索引失败: " + document.getId(), e);
+            // 与错误状态一同在事务提交后生效，事务回滚时保留原有条目
+            long documentId = document.getId();
+            runAfterCommit(() -> removeKeywordEntry(documentId));
             
             // 标记索引为错误状态
             Optional<KnowledgeSearchIndex> indexOpt = 
@@ -115,6 +492,8 @@ public class KnowledgeSearchService {
                 searchIndexRepository.delete(indexOpt.get());
                 logger.info("成功移除文档搜索索引: {}", document.getId());
             }
+            long documentId = document.getId();
+            runAfterCommit(() -> removeKeywordEntry(documentId));
         } catch (Exception e) {
             logger.error("移除搜索索引失败: " + document.getId(), e);
         }
@@ -125,7 +504,7 @@ public class KnowledgeSearchService {
      * 
      * @param keyword 搜索关键词
      * @param maxResults 最大结果数
-     * @return 匹配的文档列表，按相关性排序
+     * @return 匹配的文档列表，按BM25相关性排序
      */
     @Transactional(readOnly = true)
     public List<KnowledgeDocument> searchByKeyword(String keyword, int maxResults) {
@@ -143,30 +522,14 @@ public class KnowledgeSearchService {
             return Collections.emptyList();
         }
 
-        // 搜索匹配的索引
-        List<KnowledgeSearchIndex> matchingIndexes = new ArrayList<>();
-        for (String term : searchTerms) {
-            List<KnowledgeSearchIndex> indexes = searchIndexRepository.findByKeywordsContaining(term);
-            matchingIndexes.addAll(indexes);
-        }
-
-        // 去重并计算相关性分数
-        Map<Long, DocumentScore> documentScores = new HashMap<>();
-        for (KnowledgeSearchIndex index : matchingIndexes) {
-            Long documentId = index.getDocument().getId();
-            DocumentScore score = documentScores.computeIfAbsent(documentId, 
-                    k -> new DocumentScore(index.getDocument()));
-            
-            // 计算相关性分数
-            score.addScore(calculateRelevanceScore(index, searchTerms));
+        // 从倒排索引按BM25取分数最高的文档
+        ensureKeywordIndexLoaded();
+        List<KeywordHit> hits = keywordIndex.search(searchTerms, maxResults, null);
+        List<Long> documentIds = new ArrayList<>(hits.size());
+        for (KeywordHit hit : hits) {
+            documentIds.add(hit.getDocumentId());
         }
-
-        // 按分数排序并返回结果
-        return documentScores.values().stream()
-                .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
-                .limit(maxResults)
-                .map(DocumentScore::getDocument)
-                .collect(Collectors.toList());
+        return loadInOrder(documentIds);
     }
 
     /**
@@ -180,11 +543,55 @@ public class KnowledgeSearchService {
     public List<KnowledgeDocument> searchBySemantic(String query, int maxResults) {
         logger.debug("执行语义搜索: {}", query);
 
-        // TODO: 实现基于向量相似度的语义搜索
-        // 需要集成Spring AI的Embedding功能
-        
-        // 暂时返回关键词搜索结果
-        return searchByKeyword(query, maxResults);
+        if (query == null || query.trim().isEmpty() || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+
+        float[] queryEmbedding = embeddingService.generateEmbedding(query);
+        if (queryEmbedding == null) {
+            logger.debug("无法为查询生成向量，使用关键词搜索");
+            return searchByKeyword(query, maxResults);
+        }
+
+        // 第一阶段按文档质心选出候选文档，第二阶段只对候选文档的分块打分
+        int topDocuments = Math.max(semanticTopDocuments, maxResults);
+        List<VectorSearchHit> hits = vectorIndexService.searchTwoStage(queryEmbedding,
+                topDocuments * SEMANTIC_CHUNKS_PER_DOCUMENT, similarityThreshold, topDocuments, null);
+
+        // 文档得分取其最相似分块的得分，命中按得分降序排列，首次出现即最高分
+        List<Long> documentIds = new ArrayList<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (VectorSearchHit hit : hits) {
+            if (seenIds.add(hit.getDocumentId())) {
+                documentIds.add(hit.getDocumentId());
+                if (documentIds.size() >= maxResults) {
+                    break;
+                }
+            }
+        }
+        return loadInOrder(documentIds);
+    }
+
+    /**
+     * 按给定顺序加载文档，已删除的文档被跳过
+     */
+    private List<KnowledgeDocument> loadInOrder(List<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, KnowledgeDocument> documents = new HashMap<>();
+        for (KnowledgeDocument document : documentRepository.findAllById(documentIds)) {
+            documents.put(document.getId(), document);
+        }
+
+        List<KnowledgeDocument> results = new ArrayList<>(documentIds.size());
+        for (Long documentId : documentIds) {
+            KnowledgeDocument document = documents.get(documentId);
+            if (document != null) {
+                results.add(document);
+            }
+        }
+        return results;
     }
 
     /**
@@ -204,29 +611,34 @@ public class KnowledgeSearchService {
         // 获取语义搜索结果
         List<KnowledgeDocument> semanticResults = searchBySemantic(query, maxResults);
         
-        // 合并和去重结果
-        Set<Long> seenIds = new HashSet<>();
+        // 按名次融合两路结果，同时出现在两路中的文档排在前面
+        Map<Long, KnowledgeDocument> documents = new HashMap<>();
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion();
+        fusion.addRanking(collectIds(keywordResults, documents));
+        fusion.addRanking(collectIds(semanticResults, documents));
+
         List<KnowledgeDocument> combinedResults = new ArrayList<>();
-        
-        // 优先添加关键词搜索结果
-        for (KnowledgeDocument doc : keywordResults) {
-            if (seenIds.add(doc.getId())) {
-                combinedResults.add(doc);
-            }
+        for (Long documentId : fusion.top(maxResults)) {
+            combinedResults.add(documents.get(documentId));
         }
-        
-        // 添加语义搜索结果
-        for (KnowledgeDocument doc : semanticResults) {
-            if (seenIds.add(doc.getId()) && combinedResults.size() < maxResults) {
-                combinedResults.add(doc);
-            }
-        }
-        
         return combinedResults;
     }
 
+    /**
+     * 提取文档ID排名并记录ID到文档的映射
+     */
+    private List<Long> collectIds(List<KnowledgeDocument> rankedDocuments, Map<Long, KnowledgeDocument> documents) {
+        List<Long> ids = new ArrayList<>(rankedDocuments.size());
+        for (KnowledgeDocument document : rankedDocuments) {
+            ids.add(document.getId());
+            documents.putIfAbsent(document.getId(), document);
+        }
+        return ids;
+    }
+
     /**
      * 查找相关文档
+     * 优先读取按文档质心预计算的近邻列表，文档还没有向量时按分类查找
      * 
      * @param documentId 当前文档ID
      * @param maxResults 最大结果数
@@ -242,6 +654,15 @@ public class KnowledgeSearchService {
         }
 
         KnowledgeDocument document = documentOpt.get();
+
+        List<VectorSearchHit> neighbors = vectorIndexService.findRelatedDocuments(documentId, maxResults);
+        if (neighbors != null) {
+            List<Long> documentIds = new ArrayList<>(neighbors.size());
+            for (VectorSearchHit neighbor : neighbors) {
+                documentIds.add(neighbor.getDocumentId());
+            }
+            return loadInOrder(documentIds);
+        }
         
         // 基于分类查找相关文档
         return documentRepository.findSimilarDocuments(
@@ -251,23 +672,66 @@ public class KnowledgeSearchService {
         ).getContent();
     }
 
+    /**
+     * 获取相关文档近邻列表的新鲜度
+     *
+     * @param documentId 文档ID
+     * @return 水位线、变更序号、该文档列表是否待重算等
+     */
+    public Map<String, Object> getRelatedDocumentsStatus(Long documentId) {
+        return vectorIndexService.getNeighborStatus(documentId);
+    }
+
     /**
      * 重建所有搜索索引
+     * 按文档ID游标分页读取已发布文档，每页批量查出已有索引、提取关键词后一次保存；
+     * 事务提交后从数据库重建关键词倒排索引和段存储，重建期间检索仍使用旧索引
      */
     @Async
     public void rebuildAllIndexes() {
         logger.info("开始重建所有搜索索引");
+        long startTime = System.currentTimeMillis();
 
         try {
-            // 查找所有已发布的文档
-            List<KnowledgeDocument> documents = documentRepository.findByStatus(
-                    KnowledgeDocument.DocumentStatus.PUBLISHED);
-
-            for (KnowledgeDocument document : documents) {
-                createOrUpdateIndex(document);
+            int batchSize = Math.max(keywordLoadBatchSize, 1);
+            long afterId = 0L;
+            int processed = 0;
+            while (true) {
+                List<KnowledgeDocument> documents = documentRepository.findByStatusAndIdGreaterThanOrderByIdAsc(
+                        KnowledgeDocument.DocumentStatus.PUBLISHED, afterId, PageRequest.of(0, batchSize));
+                if (documents.isEmpty()) {
+                    break;
+                }
+
+                List<Long> documentIds = documents.stream().map(KnowledgeDocument::getId).collect(Collectors.toList());
+                Map<Long, KnowledgeSearchIndex> existing = new HashMap<>();
+                for (KnowledgeSearchIndex searchIndex : searchIndexRepository.findByDocumentIds(documentIds)) {
+                    existing.put(searchIndex.getDocument().getId(), searchIndex);
+                }
+                List<KnowledgeSearchIndex> updated = new ArrayList<>(documents.size());
+                for (KnowledgeDocument document : documents) {
+                    KnowledgeSearchIndex searchIndex = existing.get(document.getId());
+                    if (searchIndex != null) {
+                        searchIndex.startBuilding();
+                    } else {
+                        searchIndex = new KnowledgeSearchIndex(document);
+                    }
+                    searchIndex.setKeywords(extractKeywords(document));
+                    searchIndex.markAsReady();
+                    updated.add(searchIndex);
+                }
+                searchIndexRepository.saveAll(updated);
+
+                processed += documents.size();
+                afterId = documents.get(documents.size() - 1).getId();
+                if (documents.size() < batchSize) {
+                    break;
+                }
             }
 
-            logger.info("完成重建所有搜索索引，共处理 {} 个文档", documents.size());
+            runAfterCommit(() -> loadKeywordIndex(true));
+            logger.info("完成重建所有搜索索引，共处理 {} 个文档，耗时 {} ms", processed,
+                    System.currentTimeMillis() - startTime);
         } catch (Exception e) {
             logger.error("重建搜索索引失败", e);
         }
@@ -315,22 +779,89 @@ public class KnowledgeSearchService {
             return "";
         }
 
-        // 清理文本
-        String cleanText = cleanText(text);
-        
-        // 分词
-        List<String> tokens = tokenize(cleanText);
-        
-        // 过滤停用词和短词
-        List<String> keywords = tokens.stream()
-                .filter(token -> token.length() > 1)
-                .filter(token -> !STOP_WORDS.contains(token))
+        List<String> keywords = keywordTokens(text).stream()
                 .distinct()
                 .collect(Collectors.toList());
 
         return String.join(" ", keywords);
     }
 
+    /**
+     * 将文本切分为关键词序列：清理、分词并过滤停用词和短词，保留重复出现的词（即词频）
+     *
+     * @param text 文本内容
+     * @return 关键词序列，文本为空时返回空列表
+     */
+    private List<String> keywordTokens(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 清理文本后分词，分析器负责过滤停用词和短词
+        return tokenize(cleanText(text));
+    }
+
+    /**
+     * 按倒排索引字段顺序切分文档文本
+     *
+     * @return 依次为标题、正文、摘要、标签的关键词序列
+     */
+    private List<List<String>> analyzeFields(String title, String content, String summary, String tags) {
+        return Arrays.asList(keywordTokens(title), keywordTokens(content), keywordTokens(summary),
+                keywordTokens(tags));
+    }
+
+    /**
+     * 写入或替换关键词倒排索引中的文档，正在加载的新索引和段存储同时写入；
+     * 索引尚未开始加载时跳过，加载时会从数据库读取最新内容
+     */
+    private void upsertKeywordEntry(long documentId, List<List<String>> fields) {
+        synchronized (keywordWriteLock) {
+            if (keywordIndex != null) {
+                keywordIndex.upsert(documentId, documentId, fields);
+            }
+            if (pendingKeywordIndex != null) {
+                pendingKeywordIndex.upsert(documentId, documentId, fields);
+            }
+            if (keywordStore != null) {
+                keywordStore.upsert(documentId, documentId, fields);
+            }
+        }
+    }
+
+    /**
+     * 从关键词倒排索引、正在加载的新索引和段存储中移除文档
+     */
+    private void removeKeywordEntry(long documentId) {
+        synchronized (keywordWriteLock) {
+            if (keywordIndex != null) {
+                keywordIndex.remove(documentId);
+            }
+            if (pendingKeywordIndex != null) {
+                pendingKeywordIndex.remove(documentId);
+            }
+            if (keywordStore != null) {
+                keywordStore.remove(documentId);
+            }
+        }
+    }
+
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     /**
      * 清理文本
      * 
@@ -356,6 +887,7 @@ public class KnowledgeSearchService {
 
     /**
      * 文本分词
+     * 中文按词典做最大匹配切分，词典未覆盖的部分按二元切分，英文和数字按连续片段切分
      * 
      * @param text 文本内容
      * @return 词汇列表
@@ -365,83 +897,6 @@ public class KnowledgeSearchService {
             return Collections.emptyList();
         }
 
-        // 简单的分词实现：按标点符号和空白字符分割
-        String[] tokens = PUNCTUATION_PATTERN.split(text);
-        
-        return Arrays.stream(tokens)
-                .filter(token -> !token.trim().isEmpty())
-                .map(String::trim)
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * 计算相关性分数
-     * 
-     * @param index 搜索索引
-     * @param searchTerms 搜索词列表
-     * @return 相关性分数
-     */
-    private double calculateRelevanceScore(KnowledgeSearchIndex index, List<String> searchTerms) {
-        double score = 0.0;
-        String keywords = index.getKeywords().toLowerCase();
-        
-        for (String term : searchTerms) {
-            // 计算词频
-            int frequency = countOccurrences(keywords, term.toLowerCase());
-            score += frequency;
-        }
-        
-        // 考虑文档的访问次数和点赞数
-        KnowledgeDocument document = index.getDocument();
-        score += document.getViewCount() * 0.01; // 访问次数权重
-        score += document.getLikeCount() * 0.1;  // 点赞数权重
-        score += document.getPriority() * 10;    // 优先级权重
-        
-        return score;
-    }
-
-    /**
-     * 计算字符串中子字符串的出现次数
-     * 
-     * @param text 文本
-     * @param substring 子字符串
-     * @return 出现次数
-     */
-    private int countOccurrences(String text, String substring) {
-        int count = 0;
-        int index = 0;
-        
-        while ((index = text.indexOf(substring, index)) != -1) {
-            count++;
-            index += substring.length();
-        }
-        
-        return count;
-    }
-
-    /**
-     * 文档分数类
-     * 用于搜索结果排序
-     */
-    private static class DocumentScore {
-        private final KnowledgeDocument document;
-        private double score;
-
-        public DocumentScore(KnowledgeDocument document) {
-            this.document = document;
-            this.score = 0.0;
-        }
-
-        public void addScore(double additionalScore) {
-            this.score += additionalScore;
-        }
-
-        public KnowledgeDocument getDocument() {
-            return document;
-        }
-
-        public double getScore() {
-            return score;
-        }
+        return KEYWORD_ANALYZER.terms(text);
     }
 }
@@ -11,8 +11,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -38,6 +40,9 @@ public class RAGService {
     @Autowired
     private EmbeddingService embeddingService;
 
+    @Autowired
+    private ChunkContextService chunkContextService;
+
     @Value("${rag.retrieval.max-chunks:5}")
     private int maxRetrievalChunks;
 
@@ -53,6 +58,12 @@ public class RAGService {
     @Value("${rag.context.deduplicate:true}")
     private boolean enableDeduplication;
 
+    @Value("${rag.retrieval.chunks-per-document:1}")
+    private int chunksPerDocument;
+
+    @Value("${rag.context.window-size:0}")
+    private int contextWindowSize;
+
     /**
      * 基于查询检索相关文档并构建上下文
      * 
@@ -60,16 +71,35 @@ public class RAGService {
      * @return RAG上下文结果
      */
     public RAGContext retrieveAndGenerate(String query) {
-        logger.debug("执行RAG检索: {}", query);
+        return retrieveAndGenerate(query, null);
+    }
+
+    /**
+     * 在过滤条件范围内检索相关文档并构建上下文
+     * 
+     * @param query 用户查询
+     * @param filter 过滤条件（分类子树、文档状态、标签），为null时不过滤
+     * @return RAG上下文结果
+     * @throws IllegalArgumentException 当过滤条件无效时抛出
+     */
+    public RAGContext retrieveAndGenerate(String query, VectorStoreService.SearchFilter filter) {
+        logger.debug("执行RAG检索: {}, 过滤: {}", query, filter);
 
         if (query == null || query.trim().isEmpty()) {
             return new RAGContext("", new ArrayList<>(), 0.0);
         }
 
         try {
-            // 1. 检索相关文档片段
-            List<SimilaritySearchResult> searchResults = vectorStoreService.hybridSearch(
-                query, maxRetrievalChunks);
+            // 1. 检索相关文档片段；启用去重时在检索中直接按文档折叠，每个文档最多保留配置数量的片段
+            List<SimilaritySearchResult> searchResults;
+            if (enableDeduplication) {
+                searchResults = vectorStoreService.hybridSearchGrouped(
+                    query, maxRetrievalChunks, Math.max(chunksPerDocument, 1), filter);
+            } else if (filter == null || filter.isEmpty()) {
+                searchResults = vectorStoreService.hybridSearch(query, maxRetrievalChunks);
+            } else {
+                searchResults = vectorStoreService.hybridSearch(query, maxRetrievalChunks, filter);
+            }
 
             if (searchResults.isEmpty()) {
                 logger.debug("未找到相关文档片段");
@@ -100,6 +130,9 @@ public class RAGService {
 
             return new RAGContext(context, filteredResults, avgSimilarity);
 
+        } catch (IllegalArgumentException e) {
+            // 过滤条件无效属于调用方错误，交由调用方处理
+            throw e;
         } catch (Exception e) {
             logger.error("RAG检索失败: " + e.getMessage(), e);
             return new RAGContext("", new ArrayList<>(), 0.0);
@@ -145,8 +178,16 @@ public class RAGService {
      * @return 构建的上下文文本
      */
     private String buildContext(List<SimilaritySearchResult> searchResults, String query) {
+        if (contextWindowSize > 0) {
+            List<ChunkContextService.ContextWindow> windows =
+                chunkContextService.expand(searchResults, contextWindowSize);
+            if (!windows.isEmpty()) {
+                return buildWindowedContext(windows);
+            }
+        }
+
         StringBuilder contextBuilder = new StringBuilder();
-        Set<Long> processedDocuments = new HashSet<>();
+        Map<Long, Integer> chunksByDocument = new HashMap<>();
         int currentLength = 0;
 
         for (int i = 0; i < searchResults.size(); i++) {
@@ -154,8 +195,9 @@ public class RAGService {
             DocumentChunk chunk = result.getChunk();
             KnowledgeDocument document = chunk.getDocument();
 
-            // 去重检查（如果启用）
-            if (enableDeduplication && processedDocuments.contains(document.getId())) {
+            // 去重检查（如果启用），每个文档最多保留配置数量的片段
+            int documentChunks = chunksByDocument.getOrDefault(document.getId(), 0);
+            if (enableDeduplication && documentChunks >= Math.max(chunksPerDocument, 1)) {
                 continue;
             }
 
@@ -191,7 +233,7 @@ public class RAGService {
             contextBuilder.append(chunkText);
             currentLength += chunkText.length();
 
-            processedDocuments.add(document.getId());
+            chunksByDocument.put(document.getId(), documentChunks + 1);
 
             // 检查是否达到长度限制
             if (currentLength >= maxContextLength) {
@@ -202,17 +244,74 @@ public class RAGService {
         return contextBuilder.toString();
     }
 
+    /**
+     * 基于合并后的上下文区间构建上下文文本
+     * 同一文档中相邻或重叠的命中只输出一次所在区间，区间相似度取区间内命中的最高值
+     *
+     * @param windows 合并后的上下文区间，按命中排名排列
+     * @return 构建的上下文文本
+     */
+    private String buildWindowedContext(List<ChunkContextService.ContextWindow> windows) {
+        StringBuilder contextBuilder = new StringBuilder();
+        Map<Long, Integer> windowsByDocument = new HashMap<>();
+        int currentLength = 0;
+
+        for (ChunkContextService.ContextWindow window : windows) {
+            // 区间文档取自命中结果的文档视图，包含标题和摘要；相邻分块查询不读取文档字段
+            KnowledgeDocument document = window.getDocument();
+
+            // 去重检查（如果启用），每个文档最多保留配置数量的区间
+            int documentWindows = windowsByDocument.getOrDefault(document.getId(), 0);
+            if (enableDeduplication && documentWindows >= Math.max(chunksPerDocument, 1)) {
+                continue;
+            }
+
+            StringBuilder windowContent = new StringBuilder();
+            if (includeMetadata) {
+                windowContent.append(String.format("【文档：%s】\n", document.getTitle()));
+                if (document.getSummary() != null && !document.getSummary().trim().isEmpty()) {
+                    windowContent.append(String.format("摘要：%s\n", document.getSummary()));
+                }
+                windowContent.append(String.format("相似度：%.2f\n", window.getMaxSimilarity()));
+                windowContent.append("内容：");
+            }
+            windowContent.append(window.getContent());
+
+            String windowText = windowContent.toString();
+            if (currentLength + windowText.length() > maxContextLength) {
+                int remainingLength = maxContextLength - currentLength;
+                if (remainingLength > 100) { // 至少保留100个字符
+                    windowText = windowText.substring(0, remainingLength - 3) + "...";
+                } else {
+                    break;
+                }
+            }
+
+            if (contextBuilder.length() > 0) {
+                contextBuilder.append("\n\n");
+            }
+            contextBuilder.append(windowText);
+            currentLength += windowText.length();
+
+            windowsByDocument.put(document.getId(), documentWindows + 1);
+
+            if (currentLength >= maxContextLength) {
+                break;
+            }
+        }
+
+        return contextBuilder.toString();
+    }
+
     /**
      * 获取文档的相关片段
      * 
      * @param documentId 文档ID
      * @param maxChunks 最大片段数
-     * @return 相关片段列表
+     * @return 按序号排列的前若干个片段
      */
     public List<DocumentChunk> getDocumentChunks(Long documentId, int maxChunks) {
-        // 这里可以实现获取特定文档的分块逻辑
-        // 暂时返回空列表，具体实现可以根据需要添加
-        return new ArrayList<>();
+        return chunkContextService.getDocumentChunks(documentId, maxChunks);
     }
 
     /**
@@ -0,0 +1,1811 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.entity.KnowledgeCategory;
+import com.example.customerservice.entity.KnowledgeDocument;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.repository.KnowledgeCategoryRepository;
+import com.example.customerservice.repository.KnowledgeDocumentRepository;
+import com.example.customerservice.vector.BinaryPrefilterEngine;
+import com.example.customerservice.vector.BinarySignatureIndex;
+import com.example.customerservice.vector.DocumentCentroidIndex;
+import com.example.customerservice.vector.DocumentFilter;
+import com.example.customerservice.vector.DocumentFilterIndex;
+import com.example.customerservice.vector.EmbeddingCodec;
+import com.example.customerservice.vector.FloatVectorIndex;
+import com.example.customerservice.vector.HnswVectorIndex;
+import com.example.customerservice.vector.IvfPqVectorIndex;
+import com.example.customerservice.vector.NeighborListStore;
+import com.example.customerservice.vector.OffHeapVectorIndex;
+import com.example.customerservice.vector.PrefixPrefilterEngine;
+import com.example.customerservice.vector.PrefixVectorIndex;
+import com.example.customerservice.vector.QuantizedVectorIndex;
+import com.example.customerservice.vector.RankingFeatureColumn;
+import com.example.customerservice.vector.RecallEvaluator;
+import com.example.customerservice.vector.VectorMath;
+import com.example.customerservice.vector.VectorSearchEngine;
+import com.example.customerservice.vector.VectorSearchHit;
+import com.example.customerservice.vector.VectorSegmentStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+
+/**
+ * 向量索引服务类
+ *
+ * 维护常驻内存的分块向量索引：应用启动时从数据库加载一次，
+ * 之后由向量化服务在分块生成或删除时增量更新，检索过程不再访问数据库。
+ * 检索引擎由配置项 rag.search.engine 选择：exact（暴力精确检索）、hnsw（近似最近邻检索）、
+ * int8（量化存储，候选按数据库中的全精度向量重排序）或 offheap（矩阵存放在直接内存中的精确检索）。
+ *
+ * 启用 rag.index.storage 后，向量同时写入磁盘段存储（{@link VectorSegmentStore}），
+ * 重启时直接从内存映射的段文件装载引擎，只从数据库补齐水位线之后的分块，避免全量扫描和解析。
+ *
+ * 同时维护文档属性位图（{@link DocumentFilterIndex}），按分类子树、文档状态、标签过滤的检索
+ * 在引擎扫描或图遍历时直接按位判断，不需要事后过滤或关联查询数据库。
+ *
+ * 启用 rag.index.neighbors 后，后台任务为每个分块和文档维护有界的k近邻列表（{@link NeighborListStore}），
+ * 分块或文档变化时增量重算，"相似分块"和"相关文档"查询直接读取列表。
+ *
+ * 启用 rag.search.prefix 后，另存每个向量前L维重新归一化的前缀矩阵（{@link PrefixVectorIndex}），
+ * 精确检索先在前缀上粗排，再用完整向量为候选重新打分。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@Service
+public class VectorIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexService.class);
+
+    @Autowired
+    private DocumentChunkRepository chunkRepository;
+
+    @Autowired
+    private KnowledgeDocumentRepository documentRepository;
+
+    @Autowired
+    private KnowledgeCategoryRepository categoryRepository;
+
+    @Value("${rag.index.load-batch-size:1000}")
+    private int loadBatchSize;
+
+    @Value("${rag.search.engine:exact}")
+    private String engineName;
+
+    @Value("${rag.search.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${rag.search.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${rag.search.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${rag.search.int8.oversample:4}")
+    private int int8Oversample;
+
+    @Value("${rag.search.parallel.parallelism:0}")
+    private int searchParallelism;
+
+    @Value("${rag.search.parallel.partition-size:16384}")
+    private int searchPartitionSize;
+
+    @Value("${rag.search.parallel.min-size:50000}")
+    private int parallelMinSize;
+
+    @Value("${rag.search.offheap.page-mb:64}")
+    private int offHeapPageMb;
+
+    @Value("${rag.search.ivfpq.nlist:1024}")
+    private int ivfpqNlist;
+
+    @Value("${rag.search.ivfpq.m:32}")
+    private int ivfpqSubspaces;
+
+    @Value("${rag.search.ivfpq.nprobe:16}")
+    private int ivfpqNprobe;
+
+    @Value("${rag.search.ivfpq.train-size:50000}")
+    private int ivfpqTrainSize;
+
+    @Value("${rag.search.ivfpq.iterations:10}")
+    private int ivfpqIterations;
+
+    @Value("${rag.search.ivfpq.oversample:4}")
+    private int ivfpqOversample;
+
+    @Value("${rag.search.ivfpq.path:./data/ivfpq}")
+    private String ivfpqPath;
+
+    @Value("${rag.search.ivfpq.save-interval-seconds:300}")
+    private long ivfpqSaveIntervalSeconds;
+
+    @Value("${rag.search.binary-prefilter.enabled:false}")
+    private boolean binaryPrefilterEnabled;
+
+    @Value("${rag.search.binary-prefilter.candidates:2000}")
+    private int binaryPrefilterCandidates;
+
+    @Value("${rag.search.prefix.enabled:false}")
+    private boolean prefixEnabled;
+
+    @Value("${rag.search.prefix.length:256}")
+    private int prefixLength;
+
+    @Value("${rag.search.prefix.oversample:8}")
+    private int prefixOversample;
+
+    @Value("${rag.index.storage.enabled:true}")
+    private boolean storageEnabled;
+
+    @Value("${rag.index.storage.path:./data/vector-index}")
+    private String storagePath;
+
+    @Value("${rag.index.storage.flush-threshold:10000}")
+    private int flushThreshold;
+
+    @Value("${rag.index.storage.flush-interval-seconds:60}")
+    private long flushIntervalSeconds;
+
+    @Value("${rag.index.storage.max-segments:8}")
+    private int maxSegments;
+
+    @Value("${rag.index.storage.compact-deleted-ratio:0.2}")
+    private double compactDeletedRatio;
+
+    @Value("${rag.index.neighbors.enabled:true}")
+    private boolean neighborsEnabled;
+
+    @Value("${rag.index.neighbors.size:20}")
+    private int neighborListSize;
+
+    @Value("${rag.index.neighbors.refresh-interval-ms:1000}")
+    private long neighborRefreshIntervalMs;
+
+    @Value("${rag.index.neighbors.refresh-batch-size:256}")
+    private int neighborRefreshBatchSize;
+
+    @Value("${rag.index.neighbors.warm-chunks-on-load:false}")
+    private boolean warmChunkNeighbors;
+
+    private ForkJoinPool searchPool;
+
+    private volatile VectorSegmentStore segmentStore;
+
+    private ScheduledExecutorService maintenanceExecutor;
+
+    private ScheduledExecutorService neighborExecutor;
+
+    private ScheduledExecutorService snapshotExecutor;
+
+    /**
+     * 上次保存IVF-PQ快照时引擎的修改次数
+     */
+    private volatile long ivfpqSavedModifications = -1L;
+
+    private volatile VectorSearchEngine index = new FloatVectorIndex();
+
+    /**
+     * 文档属性位图，与分块引擎一起构建和替换
+     */
+    private volatile DocumentFilterIndex filterIndex = new DocumentFilterIndex();
+
+    /**
+     * 重排序特征列，与分块引擎一起构建和替换
+     */
+    private volatile RankingFeatureColumn rankingFeatures = new RankingFeatureColumn();
+
+    /**
+     * 文档质心索引，与分块引擎一起构建和替换
+     */
+    private volatile DocumentCentroidIndex centroidIndex = new DocumentCentroidIndex();
+
+    /**
+     * 符号签名索引，用作预过滤检索的第一阶段；未启用时为null
+     */
+    private volatile BinarySignatureIndex signatureIndex;
+
+    /**
+     * 截断维度前缀索引，用作前缀预过滤检索的第一阶段；未启用时为null
+     */
+    private volatile PrefixVectorIndex prefixIndex;
+
+    /**
+     * 分块近邻列表，分组为所属文档；未启用或索引尚未加载时为null
+     */
+    private volatile NeighborListStore chunkNeighbors;
+
+    /**
+     * 文档近邻列表，按文档质心计算；未启用或索引尚未加载时为null
+     */
+    private volatile NeighborListStore documentNeighbors;
+
+    private volatile boolean loaded = false;
+
+    /**
+     * 索引加载期间提交的增量更新，新索引换入后按原顺序重放；不在加载时为null，访问需持有 indexWriteLock
+     */
+    private List<PendingUpdate> pendingUpdates;
+
+    /**
+     * 开始读取重排序特征时已记录的更新数量，此前提交的计数累加已包含在读取结果中，重放时跳过
+     */
+    private int rankingFeaturesMark;
+
+    /**
+     * 串行化增量更新与新索引的换入，保证加载期间的更新不会在替换时丢失
+     */
+    private final Object indexWriteLock = new Object();
+
+    /**
+     * 应用启动完成后加载向量索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        ensureLoaded();
+    }
+
+    /**
+     * 确保索引已加载
+     * 首次检索早于启动事件时（如单元测试）也会触发加载
+     */
+    public void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    loadIndex();
+                    loaded = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * 加载向量索引
+     * 段存储可用且与数据库一致时从段文件装载，否则从数据库全量加载并重建段存储；
+     * IVF-PQ引擎先从磁盘恢复码本和倒排列表，已恢复的分块不再重新编码。
+     * 加载期间提交的增量更新照常写入旧索引并记录下来，新索引换入时在其上按原顺序重放
+     */
+    public synchronized void loadIndex() {
+        logger.info("开始加载向量索引");
+        long startTime = System.currentTimeMillis();
+        synchronized (indexWriteLock) {
+            pendingUpdates = new ArrayList<>();
+        }
+        try {
+            loadIndexRecordingUpdates(startTime);
+        } finally {
+            synchronized (indexWriteLock) {
+                // 加载失败时丢弃记录，之后的更新继续写入旧索引
+                pendingUpdates = null;
+            }
+        }
+    }
+
+    /**
+     * 在新引擎上完成加载并换入，调用方已开始记录增量更新
+     */
+    private void loadIndexRecordingUpdates(long startTime) {
+
+        // 在新引擎上构建，完成后整体替换，加载期间检索仍使用旧索引
+        VectorSearchEngine engine = createEngine();
+        DocumentCentroidIndex centroids = new DocumentCentroidIndex();
+        BinarySignatureIndex signatures = binaryPrefilterEnabled ? new BinarySignatureIndex() : null;
+        PrefixVectorIndex prefixes = prefixEnabled ? createPrefixIndex() : null;
+        VectorSegmentStore store = openSegmentStore();
+        long engineWatermark = restoreIvfPq(engine);
+        int loadedCount = engine.size();
+        long afterId = 0L;
+        String source = "数据库";
+
+        if (store != null && isStoreConsistent(store)) {
+            int[] counter = new int[1];
+            store.forEachBatch(loadBatchSize, (chunkIds, documentIds, vectors) -> {
+                counter[0] += upsertEngine(engine, engineWatermark, chunkIds, documentIds, vectors);
+                addCentroids(centroids, documentIds, vectors);
+                addSignatures(signatures, chunkIds, documentIds, vectors);
+                addPrefixes(prefixes, chunkIds, documentIds, vectors);
+            });
+            loadedCount += counter[0];
+            afterId = store.getWatermark();
+            source = "磁盘段文件";
+        } else if (store != null) {
+            try {
+                store.reset();
+            } catch (IOException e) {
+                logger.error("重置向量段存储失败，本次不启用持久化", e);
+                store = null;
+            }
+        }
+
+        loadedCount += loadFromDatabase(engine, engineWatermark, centroids, signatures, prefixes, store, afterId);
+        DocumentFilterIndex filters = loadFilterAttributes();
+        synchronized (indexWriteLock) {
+            rankingFeaturesMark = pendingUpdates.size();
+        }
+        RankingFeatureColumn features = loadRankingFeatures();
+
+        VectorSearchEngine previous;
+        int replayed;
+        synchronized (indexWriteLock) {
+            previous = index;
+            index = engine;
+            centroidIndex = centroids;
+            signatureIndex = signatures;
+            prefixIndex = prefixes;
+            filterIndex = filters;
+            rankingFeatures = features;
+            segmentStore = store;
+            if (neighborsEnabled) {
+                resetNeighborLists(engine, centroids);
+            }
+            // 加载期间的更新可能晚于新索引读取的数据（如读取后才删除的文档），换入后重放，之后的更新直接写入新索引
+            replayed = 0;
+            for (int i = 0; i < pendingUpdates.size(); i++) {
+                PendingUpdate update = pendingUpdates.get(i);
+                if (update.increment() && i < rankingFeaturesMark) {
+                    continue;
+                }
+                try {
+                    update.action().run();
+                    replayed++;
+                } catch (RuntimeException e) {
+                    logger.warn("重放索引增量更新失败: {}", e.getMessage());
+                }
+            }
+            pendingUpdates = null;
+        }
+        loaded = true;
+        closeEngine(previous);
+        if (store != null) {
+            maintainSegmentStore(true);
+            startMaintenance();
+        }
+        if (engine instanceof IvfPqVectorIndex) {
+            saveIvfPqSnapshot();
+            startSnapshots();
+        }
+        if (neighborsEnabled) {
+            startNeighborRefresh();
+        }
+        logger.info("向量索引加载完成，来源 {}，引擎 {}，共 {} 个分块，{} 个文档质心，维度 {}，SIMD {}，重放 {} 次增量更新，耗时 {} ms",
+            source, engine.getName(), loadedCount, centroids.size(), engine.dimension(),
+            VectorMath.isSimdEnabled() ? "启用" : "未启用", replayed, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 从数据库加载分类父子关系和文档过滤属性到新的位图索引，加载期间过滤检索仍使用旧索引
+     */
+    private DocumentFilterIndex loadFilterAttributes() {
+        DocumentFilterIndex filters = new DocumentFilterIndex();
+        for (Object[] row : categoryRepository.findAllParentLinks()) {
+            filters.putCategory(((Number) row[0]).longValue(), row[1] != null ? ((Number) row[1]).longValue() : null);
+        }
+        for (Object[] row : documentRepository.findFilterAttributes()) {
+            try {
+                filters.putDocument(((Number) row[0]).longValue(),
+                    row[1] != null ? ((Number) row[1]).longValue() : null,
+                    row[2] != null ? row[2].toString() : null,
+                    splitTags((String) row[3]));
+            } catch (IllegalArgumentException e) {
+                logger.warn("文档过滤属性加载失败: {}", e.getMessage());
+            }
+        }
+        logger.debug("文档过滤位图加载完成，分类 {} 个，文档 {} 个",
+            filters.categoryCount(), filters.documentCount());
+        return filters;
+    }
+
+    /**
+     * 将分块向量累加到文档质心，维度不一致的批次只记录日志
+     */
+    private void addCentroids(DocumentCentroidIndex centroids, long[] documentIds, float[][] vectors) {
+        try {
+            centroids.addBatch(documentIds, vectors);
+        } catch (IllegalArgumentException e) {
+            logger.warn("文档质心更新失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写入符号签名，签名索引未启用或维度不一致时跳过
+     */
+    private void addSignatures(BinarySignatureIndex signatures, long[] chunkIds, long[] documentIds,
+                               float[][] vectors) {
+        if (signatures == null) {
+            return;
+        }
+        try {
+            signatures.upsertBatch(chunkIds, documentIds, vectors);
+        } catch (IllegalArgumentException e) {
+            logger.warn("符号签名更新失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 写入截断维度前缀，前缀索引未启用或维度不一致时跳过
+     */
+    private void addPrefixes(PrefixVectorIndex prefixes, long[] chunkIds, long[] documentIds, float[][] vectors) {
+        if (prefixes == null) {
+            return;
+        }
+        try {
+            prefixes.upsertBatch(chunkIds, documentIds, vectors);
+        } catch (IllegalArgumentException e) {
+            logger.warn("截断维度前缀更新失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 创建前缀索引，与精确引擎共用并行检索线程池
+     */
+    private PrefixVectorIndex createPrefixIndex() {
+        ForkJoinPool pool = getSearchPool();
+        return pool == null
+            ? new PrefixVectorIndex(prefixLength)
+            : new PrefixVectorIndex(prefixLength, pool, searchPartitionSize, parallelMinSize);
+    }
+
+    /**
+     * 从数据库加载文档和分块的重排序特征到新的特征列，加载期间重排序仍使用旧特征列
+     */
+    private RankingFeatureColumn loadRankingFeatures() {
+        RankingFeatureColumn features = new RankingFeatureColumn();
+        for (Object[] row : documentRepository.findRankingFeatures()) {
+            features.putDocument(((Number) row[0]).longValue(), toLong(row[1]), toLong(row[2]),
+                (int) toLong(row[3]));
+        }
+
+        List<Object[]> rows = chunkRepository.findReadyChunkSizes();
+        long[] chunkIds = new long[rows.size()];
+        long[] documentIds = new long[rows.size()];
+        int[] sizes = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            chunkIds[i] = ((Number) row[0]).longValue();
+            documentIds[i] = ((Number) row[1]).longValue();
+            sizes[i] = (int) toLong(row[2]);
+        }
+        features.putChunks(chunkIds, documentIds, sizes);
+        logger.debug("重排序特征加载完成，文档 {} 个，分块 {} 个",
+            features.documentCount(), features.chunkCount());
+        return features;
+    }
+
+    /**
+     * 从磁盘恢复IVF-PQ码本和倒排列表快照
+     * 快照中的分块数量与数据库中水位线及之前的已就绪分块数量一致时才使用快照，
+     * 否则只保留码本，全部向量重新编码但不重新训练
+     *
+     * @param engine 新建的检索引擎，不是IVF-PQ引擎时不做处理
+     * @return 已从快照恢复的分块水位线，未恢复时返回0
+     */
+    private long restoreIvfPq(VectorSearchEngine engine) {
+        if (!(engine instanceof IvfPqVectorIndex ivfpq)) {
+            return 0L;
+        }
+        ivfpqSavedModifications = -1L;
+        Path directory = Paths.get(ivfpqPath);
+        try {
+            if (!ivfpq.loadCodebooks(directory)) {
+                logger.info("未找到IVF-PQ码本，将在写入 {} 个向量后训练", ivfpqTrainSize);
+                return 0L;
+            }
+            int rows = ivfpq.loadLists(directory);
+            if (rows < 0) {
+                logger.info("IVF-PQ倒排列表快照不存在或与码本不匹配，将用已有码本重新编码");
+                return 0L;
+            }
+            long expected = chunkRepository.countReadyEmbeddingsUpTo(ivfpq.getWatermark());
+            if (expected != rows) {
+                logger.info("IVF-PQ倒排列表快照与数据库不一致（快照中 {} 个，数据库 {} 个），将用已有码本重新编码",
+                    rows, expected);
+                ivfpq.clear();
+                return 0L;
+            }
+            ivfpqSavedModifications = ivfpq.getModificationCount();
+            logger.info("IVF-PQ快照已恢复，{} 个倒排列表，{} 个分块，水位线 {}",
+                ivfpq.listCount(), rows, ivfpq.getWatermark());
+            return ivfpq.getWatermark();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("加载IVF-PQ快照失败，将重新训练: {}", e.getMessage());
+            return 0L;
+        }
+    }
+
+    /**
+     * 保存IVF-PQ码本和倒排列表快照，自上次保存以来没有变更或尚未训练时跳过
+     * 与索引加载互斥，避免旧引擎的快照覆盖正在恢复的快照
+     */
+    private synchronized void saveIvfPqSnapshot() {
+        if (!(index instanceof IvfPqVectorIndex ivfpq)) {
+            return;
+        }
+        long modifications = ivfpq.getModificationCount();
+        if (modifications == ivfpqSavedModifications) {
+            return;
+        }
+        try {
+            if (ivfpq.save(Paths.get(ivfpqPath))) {
+                ivfpqSavedModifications = modifications;
+                logger.debug("IVF-PQ快照已保存，{} 个分块，水位线 {}", ivfpq.size(), ivfpq.getWatermark());
+            }
+        } catch (IOException e) {
+            logger.warn("保存IVF-PQ快照失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动IVF-PQ快照的定时保存任务
+     */
+    private synchronized void startSnapshots() {
+        if (snapshotExecutor != null || ivfpqSaveIntervalSeconds <= 0) {
+            return;
+        }
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VectorIvfPq-Snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotExecutor.scheduleWithFixedDelay(this::saveIvfPqSnapshot,
+            ivfpqSaveIntervalSeconds, ivfpqSaveIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 批量写入引擎，跳过已从IVF-PQ快照恢复的分块（ID不超过引擎水位线）
+     *
+     * @return 写入引擎的分块数量
+     */
+    private static int upsertEngine(VectorSearchEngine engine, long engineWatermark, long[] chunkIds,
+                                    long[] documentIds, float[][] vectors) {
+        int fresh = 0;
+        for (long chunkId : chunkIds) {
+            if (chunkId > engineWatermark) {
+                fresh++;
+            }
+        }
+        if (fresh == 0) {
+            return 0;
+        }
+        if (fresh < chunkIds.length) {
+            long[] freshChunkIds = new long[fresh];
+            long[] freshDocumentIds = new long[fresh];
+            float[][] freshVectors = new float[fresh][];
+            for (int i = 0, j = 0; i < chunkIds.length; i++) {
+                if (chunkIds[i] > engineWatermark) {
+                    freshChunkIds[j] = chunkIds[i];
+                    freshDocumentIds[j] = documentIds[i];
+                    freshVectors[j++] = vectors[i];
+                }
+            }
+            chunkIds = freshChunkIds;
+            documentIds = freshDocumentIds;
+            vectors = freshVectors;
+        }
+
+        // 按批写入，量化引擎据此标定量化参数
+        int written = engine.upsertBatch(chunkIds, documentIds, vectors);
+        if (written < fresh) {
+            logger.warn("本批次跳过 {} 个无法解析或维度不一致的分块向量", fresh - written);
+        }
+        return written;
+    }
+
+    /**
+     * 从数据库按ID游标加载指定ID之后的已就绪分块向量
+     *
+     * @param engine 目标引擎
+     * @param engineWatermark 引擎已从快照恢复的分块水位线，不超过该值的分块不再写入引擎
+     * @param centroids 目标文档质心索引
+     * @param signatures 目标符号签名索引，为null时不写入
+     * @param prefixes 目标截断维度前缀索引，为null时不写入
+     * @param store 段存储，为null时不写入
+     * @param afterId 起始分块ID（不含）
+     * @return 写入引擎的分块数量
+     */
+    private int loadFromDatabase(VectorSearchEngine engine, long engineWatermark, DocumentCentroidIndex centroids,
+                                 BinarySignatureIndex signatures, PrefixVectorIndex prefixes,
+                                 VectorSegmentStore store, long afterId) {
+        int loadedCount = 0;
+
+        while (true) {
+            List<Object[]> rows = chunkRepository.findReadyEmbeddingsAfter(
+                afterId, PageRequest.of(0, loadBatchSize));
+            if (rows.isEmpty()) {
+                break;
+            }
+
+            long[] chunkIds = new long[rows.size()];
+            long[] documentIds = new long[rows.size()];
+            float[][] vectors = new float[rows.size()][];
+            for (int i = 0; i < rows.size(); i++) {
+                Object[] row = rows.get(i);
+                chunkIds[i] = ((Number) row[0]).longValue();
+                documentIds[i] = ((Number) row[1]).longValue();
+                vectors[i] = decodeRow((byte[]) row[2], (String) row[3]);
+            }
+            afterId = chunkIds[chunkIds.length - 1];
+
+            loadedCount += upsertEngine(engine, engineWatermark, chunkIds, documentIds, vectors);
+            addCentroids(centroids, documentIds, vectors);
+            addSignatures(signatures, chunkIds, documentIds, vectors);
+            addPrefixes(prefixes, chunkIds, documentIds, vectors);
+            writeToStore(store, chunkIds, documentIds, vectors);
+        }
+        return loadedCount;
+    }
+
+    /**
+     * 打开段存储，未启用或打开失败时返回null
+     */
+    private VectorSegmentStore openSegmentStore() {
+        if (!storageEnabled) {
+            return null;
+        }
+        VectorSegmentStore previous = segmentStore;
+        if (previous != null) {
+            // 加载期间的增量更新不再写入已关闭的旧存储，换入后在新存储上重放
+            segmentStore = null;
+            previous.close();
+        }
+        VectorSegmentStore store = new VectorSegmentStore(Paths.get(storagePath));
+        try {
+            store.open();
+            return store;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("打开向量段存储失败，将从数据库重建: {}", e.getMessage());
+            return store;
+        }
+    }
+
+    /**
+     * 校验段存储与数据库是否一致：水位线及之前的已就绪分块数量应与段中未删除的向量数量相等
+     * 数据库被重建（如内存数据库重启）或停机期间发生变更时，数量不一致，需要重建段存储
+     */
+    private boolean isStoreConsistent(VectorSegmentStore store) {
+        if (!store.isInitialized()) {
+            return false;
+        }
+        long expected = chunkRepository.countReadyEmbeddingsUpTo(store.getWatermark());
+        int actual = store.liveSegmentRows();
+        if (expected != actual) {
+            logger.info("向量段存储与数据库不一致（段中 {} 个，数据库 {} 个），将重建", actual, expected);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 写入段存储，失败时仅记录日志，下次重启会因校验不一致而重建
+     */
+    private void writeToStore(VectorSegmentStore store, long[] chunkIds, long[] documentIds, float[][] vectors) {
+        if (store == null) {
+            return;
+        }
+        try {
+            store.upsertBatch(chunkIds, documentIds, vectors);
+            if (store.getTailSize() >= flushThreshold) {
+                store.flush();
+            }
+        } catch (IOException e) {
+            logger.warn("写入向量段存储失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 刷写尾段，并在段数量或删除比例超过阈值时合并
+     *
+     * @param flushTail 是否刷写尾段
+     */
+    private void maintainSegmentStore(boolean flushTail) {
+        VectorSegmentStore store = segmentStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            if (flushTail) {
+                int flushed = store.flush();
+                if (flushed > 0) {
+                    logger.debug("向量尾段已刷写 {} 个分块，水位线 {}", flushed, store.getWatermark());
+                }
+            }
+            int totalRows = store.totalSegmentRows();
+            boolean tooManySegments = store.getSegmentCount() > maxSegments;
+            boolean tooManyDeleted = totalRows > 0 && store.tombstoneCount() > totalRows * compactDeletedRatio;
+            if (tooManySegments || tooManyDeleted) {
+                int live = store.compact();
+                logger.info("向量段已合并，剩余 {} 个分块", live);
+            }
+        } catch (IOException e) {
+            logger.warn("向量段存储维护失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 启动段存储的定时刷写和合并任务
+     */
+    private synchronized void startMaintenance() {
+        if (maintenanceExecutor != null || flushIntervalSeconds <= 0) {
+            return;
+        }
+        maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VectorSegment-Maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenanceExecutor.scheduleWithFixedDelay(() -> maintainSegmentStore(true),
+            flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 重建近邻列表的待计算队列
+     * 文档近邻全部在后台预计算；分块近邻两两计算代价与分块数平方成正比，
+     * 默认只在首次查询或分块写入时计算，开启 warm-chunks-on-load 后才在加载后全部预计算
+     */
+    private void resetNeighborLists(VectorSearchEngine engine, DocumentCentroidIndex centroids) {
+        NeighborListStore chunkLists = new NeighborListStore(neighborListSize);
+        NeighborListStore documentLists = new NeighborListStore(neighborListSize);
+        if (warmChunkNeighbors) {
+            for (long chunkId : engine.chunkIds()) {
+                chunkLists.markDirty(chunkId);
+            }
+        }
+        for (long documentId : centroids.documentIds()) {
+            documentLists.markDirty(documentId);
+        }
+        chunkNeighbors = chunkLists;
+        documentNeighbors = documentLists;
+    }
+
+    /**
+     * 启动近邻列表的后台刷新任务
+     */
+    private synchronized void startNeighborRefresh() {
+        if (neighborExecutor != null || neighborRefreshIntervalMs <= 0) {
+            return;
+        }
+        neighborExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "VectorNeighbor-Refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        neighborExecutor.scheduleWithFixedDelay(this::refreshNeighbors,
+            neighborRefreshIntervalMs, neighborRefreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 重算全部待计算的近邻列表
+     */
+    private void refreshNeighbors() {
+        NeighborListStore chunkLists = chunkNeighbors;
+        NeighborListStore documentLists = documentNeighbors;
+        if (chunkLists == null || documentLists == null) {
+            return;
+        }
+        int refreshed = 0;
+        long[] ids;
+        while ((ids = chunkLists.pollDirty(neighborRefreshBatchSize)).length > 0) {
+            try {
+                refreshed += refreshChunkNeighbors(chunkLists, ids);
+            } catch (RuntimeException e) {
+                logger.warn("分块近邻列表刷新失败: {}", e.getMessage());
+                for (long id : ids) {
+                    chunkLists.markDirty(id);
+                }
+                return;
+            }
+        }
+        while ((ids = documentLists.pollDirty(neighborRefreshBatchSize)).length > 0) {
+            try {
+                refreshed += refreshDocumentNeighbors(documentLists, ids);
+            } catch (RuntimeException e) {
+                logger.warn("文档近邻列表刷新失败: {}", e.getMessage());
+                for (long id : ids) {
+                    documentLists.markDirty(id);
+                }
+                return;
+            }
+        }
+        if (refreshed > 0) {
+            logger.debug("近邻列表已刷新 {} 个，分块水位线 {}，文档水位线 {}",
+                refreshed, chunkLists.getWatermark(), documentLists.getWatermark());
+        }
+    }
+
+    /**
+     * 批量重算分块近邻，并把这些分块插入到各邻居的列表中
+     */
+    private int refreshChunkNeighbors(NeighborListStore lists, long[] chunkIds) {
+        VectorSearchEngine engine = index;
+        float[][] queries = new float[chunkIds.length][];
+        for (int i = 0; i < chunkIds.length; i++) {
+            queries[i] = engine.getVector(chunkIds[i]);
+            if (queries[i] == null) {
+                // 分块已被删除
+                lists.remove(chunkIds[i]);
+            }
+        }
+
+        // 多取一个，结果中包含分块自身
+        List<List<VectorSearchHit>> results = engine.searchBatch(queries, lists.getCapacity() + 1, -1.0, null);
+        int refreshed = 0;
+        for (int i = 0; i < chunkIds.length; i++) {
+            if (queries[i] == null) {
+                continue;
+            }
+            long chunkId = chunkIds[i];
+            long documentId = rankingFeatures.chunkDocumentId(chunkId);
+            List<VectorSearchHit> neighbors = excludeSelf(results.get(i), chunkId);
+            lists.put(chunkId, documentId, neighbors);
+            for (VectorSearchHit neighbor : neighbors) {
+                lists.offer(neighbor.getChunkId(), chunkId, documentId, neighbor.getScore());
+            }
+            refreshed++;
+        }
+        return refreshed;
+    }
+
+    /**
+     * 按文档质心重算文档近邻，并把这些文档插入到各邻居的列表中
+     */
+    private int refreshDocumentNeighbors(NeighborListStore lists, long[] documentIds) {
+        DocumentCentroidIndex centroids = centroidIndex;
+        int refreshed = 0;
+        for (long documentId : documentIds) {
+            float[] centroid = centroids.getCentroid(documentId);
+            if (centroid == null) {
+                lists.remove(documentId);
+                continue;
+            }
+            List<VectorSearchHit> neighbors = excludeSelf(
+                centroids.searchDocuments(centroid, lists.getCapacity() + 1, null), documentId);
+            lists.put(documentId, documentId, neighbors);
+            for (VectorSearchHit neighbor : neighbors) {
+                lists.offer(neighbor.getChunkId(), documentId, documentId, neighbor.getScore());
+            }
+            refreshed++;
+        }
+        return refreshed;
+    }
+
+    private static List<VectorSearchHit> excludeSelf(List<VectorSearchHit> hits, long id) {
+        List<VectorSearchHit> result = new ArrayList<>(hits.size());
+        for (VectorSearchHit hit : hits) {
+            if (hit.getChunkId() != id) {
+                result.add(hit);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 根据配置创建检索引擎
+     */
+    private VectorSearchEngine createEngine() {
+        if (HnswVectorIndex.ENGINE_NAME.equalsIgnoreCase(engineName)) {
+            return new HnswVectorIndex(hnswM, hnswEfConstruction, hnswEfSearch);
+        }
+        if (QuantizedVectorIndex.ENGINE_NAME.equalsIgnoreCase(engineName)) {
+            QuantizedVectorIndex quantized = new QuantizedVectorIndex(int8Oversample);
+            quantized.setVectorLoader(this::loadExactVectors);
+            return quantized;
+        }
+        if (IvfPqVectorIndex.ENGINE_NAME.equalsIgnoreCase(engineName)) {
+            IvfPqVectorIndex ivfpq = new IvfPqVectorIndex(ivfpqNlist, ivfpqSubspaces, ivfpqNprobe,
+                ivfpqTrainSize, ivfpqIterations, ivfpqOversample);
+            ivfpq.setVectorLoader(this::loadExactVectors);
+            return ivfpq;
+        }
+        if (OffHeapVectorIndex.ENGINE_NAME.equalsIgnoreCase(engineName)) {
+            int pageBytes = (int) Math.min(Integer.MAX_VALUE, Math.max(1L, offHeapPageMb) * 1024L * 1024L);
+            ForkJoinPool pool = getSearchPool();
+            return pool == null
+                ? new OffHeapVectorIndex(pageBytes)
+                : new OffHeapVectorIndex(pool, searchPartitionSize, parallelMinSize, pageBytes);
+        }
+        if (!FloatVectorIndex.ENGINE_NAME.equalsIgnoreCase(engineName)) {
+            logger.warn("未知的向量检索引擎 {}，使用精确检索", engineName);
+        }
+        ForkJoinPool pool = getSearchPool();
+        if (pool == null) {
+            return new FloatVectorIndex();
+        }
+        return new FloatVectorIndex(pool, searchPartitionSize, parallelMinSize);
+    }
+
+    /**
+     * 释放被替换引擎占用的堆外内存
+     */
+    private static void closeEngine(VectorSearchEngine engine) {
+        if (engine instanceof OffHeapVectorIndex offHeap) {
+            offHeap.close();
+        }
+    }
+
+    /**
+     * 获取精确检索使用的并行线程池
+     * parallelism为0时使用全部CPU核数，为1时不创建线程池（始终单线程检索）
+     */
+    private synchronized ForkJoinPool getSearchPool() {
+        int parallelism = searchParallelism > 0 ? searchParallelism : Runtime.getRuntime().availableProcessors();
+        if (parallelism <= 1) {
+            return null;
+        }
+        if (searchPool == null) {
+            searchPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("VectorSearch-Worker-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+            logger.info("向量并行检索线程池已创建，并行度 {}，分区大小 {}，并行阈值 {}",
+                parallelism, searchPartitionSize, parallelMinSize);
+        }
+        return searchPool;
+    }
+
+    /**
+     * 关闭并行检索线程池和段存储维护任务，刷写尾段并保存IVF-PQ快照
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (searchPool != null) {
+            searchPool.shutdown();
+            searchPool = null;
+        }
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdown();
+            maintenanceExecutor = null;
+        }
+        if (neighborExecutor != null) {
+            neighborExecutor.shutdown();
+            neighborExecutor = null;
+        }
+        if (snapshotExecutor != null) {
+            snapshotExecutor.shutdown();
+            snapshotExecutor = null;
+        }
+        if (segmentStore != null) {
+            maintainSegmentStore(true);
+            segmentStore.close();
+        }
+        saveIvfPqSnapshot();
+        closeEngine(index);
+    }
+
+    /**
+     * 向量检索
+     *
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @return 命中结果列表，按相似度降序排列
+     */
+    public List<VectorSearchHit> search(float[] queryVector, int topK, double minScore) {
+        return search(queryVector, topK, minScore, -1L);
+    }
+
+    /**
+     * 向量检索（排除指定分块）
+     *
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param excludeChunkId 需要排除的分块ID
+     * @return 命中结果列表，按相似度降序排列
+     */
+    public List<VectorSearchHit> search(float[] queryVector, int topK, double minScore, long excludeChunkId) {
+        return search(queryVector, topK, minScore, excludeChunkId, null);
+    }
+
+    /**
+     * 带文档过滤的向量检索
+     *
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param excludeChunkId 需要排除的分块ID，不排除时传-1
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果列表，按相似度降序排列
+     */
+    public List<VectorSearchHit> search(float[] queryVector, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        ensureLoaded();
+        return index.search(queryVector, topK, minScore, excludeChunkId, filter);
+    }
+
+    /**
+     * 按文档折叠的向量检索：前N个不同文档，每个文档相似度最高的M个分块
+     *
+     * @param queryVector 查询向量
+     * @param documents 返回的文档数量
+     * @param perDocument 每个文档返回的分块数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果列表，按相似度降序排列
+     */
+    public List<VectorSearchHit> searchGrouped(float[] queryVector, int documents, int perDocument, double minScore,
+                                               DocumentFilter filter) {
+        ensureLoaded();
+        return index.searchGrouped(queryVector, documents, perDocument, minScore, filter);
+    }
+
+    /**
+     * 两阶段向量检索
+     * 第一阶段对文档质心打分选出前M个文档，第二阶段只对这些文档的分块计算相似度
+     *
+     * @param queryVector 查询向量
+     * @param topK 返回的分块数量
+     * @param minScore 分块最低相似度
+     * @param topDocuments 第一阶段保留的文档数量
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果列表，按相似度降序排列
+     */
+    public List<VectorSearchHit> searchTwoStage(float[] queryVector, int topK, double minScore, int topDocuments,
+                                                DocumentFilter filter) {
+        ensureLoaded();
+        List<VectorSearchHit> documents = centroidIndex.searchDocuments(queryVector, topDocuments, filter);
+        if (documents.isEmpty()) {
+            return new ArrayList<>();
+        }
+        long[] documentIds = new long[documents.size()];
+        for (int i = 0; i < documents.size(); i++) {
+            documentIds[i] = documents.get(i).getDocumentId();
+        }
+        // 第一阶段已应用过滤条件，候选文档集合即第二阶段的过滤器
+        return index.search(queryVector, topK, minScore, -1L, DocumentFilter.of(documentIds));
+    }
+
+    /**
+     * 符号签名预过滤检索
+     * 先按汉明距离在全部签名中选出候选，再用引擎中的全精度向量重新打分
+     *
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果列表，按相似度降序排列
+     * @throws IllegalStateException 当未启用符号签名预过滤时抛出
+     */
+    public List<VectorSearchHit> searchBinaryPrefiltered(float[] queryVector, int topK, double minScore,
+                                                         DocumentFilter filter) {
+        return binaryPrefilterEngine().search(queryVector, topK, minScore, -1L, filter);
+    }
+
+    /**
+     * 是否启用了符号签名预过滤
+     *
+     * @return 签名索引可用时返回true
+     */
+    public boolean isBinaryPrefilterEnabled() {
+        return signatureIndex != null;
+    }
+
+    /**
+     * 评估符号签名预过滤相对暴力精确检索的召回率
+     *
+     * @param sampleSize 抽样查询数量
+     * @param topK 每次检索返回数量
+     * @return 评估报告
+     * @throws IllegalArgumentException 当未启用符号签名预过滤时抛出
+     */
+    public RecallEvaluator.RecallReport evaluateBinaryPrefilterRecall(int sampleSize, int topK) {
+        ensureLoaded();
+        if (signatureIndex == null) {
+            throw new IllegalArgumentException("未启用符号签名预过滤（rag.search.binary-prefilter.enabled）");
+        }
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(
+            binaryPrefilterEngine(), sampleSize, topK, System.nanoTime());
+        logger.info("符号签名预过滤召回率评估（候选 {}）: {}", binaryPrefilterCandidates, report);
+        return report;
+    }
+
+    private BinaryPrefilterEngine binaryPrefilterEngine() {
+        ensureLoaded();
+        BinarySignatureIndex signatures = signatureIndex;
+        if (signatures == null) {
+            throw new IllegalStateException("未启用符号签名预过滤");
+        }
+        return new BinaryPrefilterEngine(signatures, index, binaryPrefilterCandidates);
+    }
+
+    /**
+     * 截断维度前缀预过滤检索
+     * 先在低维前缀矩阵上精确扫描选出 topK * oversample 个候选，再用引擎中的完整向量重新打分
+     *
+     * @param queryVector 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果列表，按相似度降序排列
+     * @throws IllegalStateException 当未启用前缀预过滤时抛出
+     */
+    public List<VectorSearchHit> searchPrefixPrefiltered(float[] queryVector, int topK, double minScore,
+                                                         DocumentFilter filter) {
+        return prefixPrefilterEngine().search(queryVector, topK, minScore, -1L, filter);
+    }
+
+    /**
+     * 是否启用了截断维度前缀预过滤
+     *
+     * @return 前缀索引可用时返回true
+     */
+    public boolean isPrefixPrefilterEnabled() {
+        return prefixIndex != null;
+    }
+
+    /**
+     * 评估截断维度前缀预过滤相对暴力精确检索的召回率
+     *
+     * @param sampleSize 抽样查询数量
+     * @param topK 每次检索返回数量
+     * @return 评估报告
+     * @throws IllegalArgumentException 当未启用前缀预过滤时抛出
+     */
+    public RecallEvaluator.RecallReport evaluatePrefixPrefilterRecall(int sampleSize, int topK) {
+        ensureLoaded();
+        if (prefixIndex == null) {
+            throw new IllegalArgumentException("未启用截断维度前缀预过滤（rag.search.prefix.enabled）");
+        }
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(
+            prefixPrefilterEngine(), sampleSize, topK, System.nanoTime());
+        logger.info("截断维度前缀预过滤召回率评估（前缀 {} 维，放大 {} 倍）: {}", prefixLength, prefixOversample, report);
+        return report;
+    }
+
+    private PrefixPrefilterEngine prefixPrefilterEngine() {
+        ensureLoaded();
+        PrefixVectorIndex prefixes = prefixIndex;
+        if (prefixes == null) {
+            throw new IllegalStateException("未启用截断维度前缀预过滤");
+        }
+        return new PrefixPrefilterEngine(prefixes, index, prefixOversample);
+    }
+
+    /**
+     * 按文档质心检索文档
+     *
+     * @param queryVector 查询向量
+     * @param topDocuments 返回的文档数量
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果，文档ID即命中对象，按质心相似度降序排列
+     */
+    public List<VectorSearchHit> searchDocuments(float[] queryVector, int topDocuments, DocumentFilter filter) {
+        ensureLoaded();
+        return centroidIndex.searchDocuments(queryVector, topDocuments, filter);
+    }
+
+    /**
+     * 获取文档质心向量
+     *
+     * @param documentId 文档ID
+     * @return 归一化的质心向量，文档没有分块向量时返回null
+     */
+    public float[] getDocumentCentroid(long documentId) {
+        ensureLoaded();
+        return centroidIndex.getCentroid(documentId);
+    }
+
+    /**
+     * 查找相似分块
+     * 近邻列表可用且请求数量不超过列表长度时直接读取列表，否则现场检索
+     *
+     * @param chunkId 参考分块ID
+     * @param topK 返回数量
+     * @param minScore 最低相似度
+     * @return 相似分块，按相似度降序排列；参考分块不在索引中时返回null
+     */
+    public List<VectorSearchHit> findChunkNeighbors(long chunkId, int topK, double minScore) {
+        ensureLoaded();
+        VectorSearchEngine engine = index;
+        NeighborListStore lists = chunkNeighbors;
+        if (lists == null || topK > lists.getCapacity()) {
+            float[] vector = engine.getVector(chunkId);
+            return vector != null ? engine.search(vector, topK, minScore, chunkId) : null;
+        }
+
+        NeighborListStore.NeighborList list = lists.get(chunkId);
+        if (list == null) {
+            float[] vector = engine.getVector(chunkId);
+            if (vector == null) {
+                return null;
+            }
+            lists.put(chunkId, rankingFeatures.chunkDocumentId(chunkId),
+                engine.search(vector, lists.getCapacity(), -1.0, chunkId));
+            list = lists.get(chunkId);
+            if (list == null) {
+                // 写入后被并发移除
+                return new ArrayList<>();
+            }
+        }
+        return readNeighbors(lists, chunkId, list, topK, minScore, engine::contains);
+    }
+
+    /**
+     * 按文档质心查找相关文档
+     *
+     * @param documentId 参考文档ID
+     * @param topN 返回数量
+     * @return 相关文档，分块ID和文档ID均为文档ID，按相似度降序排列；文档没有质心时返回null
+     */
+    public List<VectorSearchHit> findRelatedDocuments(long documentId, int topN) {
+        ensureLoaded();
+        DocumentCentroidIndex centroids = centroidIndex;
+        NeighborListStore lists = documentNeighbors;
+        float[] centroid = centroids.getCentroid(documentId);
+        if (lists == null || topN > lists.getCapacity()) {
+            if (centroid == null) {
+                return null;
+            }
+            List<VectorSearchHit> hits = excludeSelf(centroids.searchDocuments(centroid, topN + 1, null), documentId);
+            return hits.size() > topN ? new ArrayList<>(hits.subList(0, topN)) : hits;
+        }
+
+        NeighborListStore.NeighborList list = lists.get(documentId);
+        if (list == null) {
+            if (centroid == null) {
+                return null;
+            }
+            lists.put(documentId, documentId,
+                excludeSelf(centroids.searchDocuments(centroid, lists.getCapacity() + 1, null), documentId));
+            list = lists.get(documentId);
+            if (list == null) {
+                // 写入后被并发移除
+                return new ArrayList<>();
+            }
+        }
+        return readNeighbors(lists, documentId, list, topN, -1.0, id -> centroids.getCentroid(id) != null);
+    }
+
+    /**
+     * 获取近邻列表的新鲜度
+     *
+     * @param documentId 文档ID，为null时不包含单个文档的状态
+     * @return 水位线、变更序号、待计算数量等
+     */
+    public Map<String, Object> getNeighborStatus(Long documentId) {
+        Map<String, Object> status = new HashMap<>();
+        NeighborListStore chunkLists = chunkNeighbors;
+        NeighborListStore documentLists = documentNeighbors;
+        status.put("enabled", chunkLists != null && documentLists != null);
+        if (chunkLists == null || documentLists == null) {
+            return status;
+        }
+        status.put("listSize", documentLists.getCapacity());
+        status.put("documentLists", documentLists.size());
+        status.put("documentWatermark", documentLists.getWatermark());
+        status.put("documentChangeSequence", documentLists.getChangeSequence());
+        status.put("documentPending", documentLists.pendingCount());
+        status.put("chunkLists", chunkLists.size());
+        status.put("chunkWatermark", chunkLists.getWatermark());
+        status.put("chunkChangeSequence", chunkLists.getChangeSequence());
+        status.put("chunkPending", chunkLists.pendingCount());
+        status.put("lastRefreshTime", Math.max(documentLists.getLastRefreshMillis(), chunkLists.getLastRefreshMillis()));
+        if (documentId != null) {
+            NeighborListStore.NeighborList list = documentLists.get(documentId);
+            status.put("computedSequence", list != null ? list.getSequence() : -1L);
+            status.put("stale", list == null || documentLists.isPending(documentId));
+        }
+        return status;
+    }
+
+    /**
+     * 从近邻列表中读取前N个仍然存在的邻居
+     * 发现已删除的邻居时登记重算，使列表在后台补齐
+     */
+    private static List<VectorSearchHit> readNeighbors(NeighborListStore lists, long id,
+                                                       NeighborListStore.NeighborList list, int topN,
+                                                       double minScore, LongPredicate exists) {
+        List<VectorSearchHit> hits = new ArrayList<>(Math.min(topN, list.size()));
+        boolean removedNeighbor = false;
+        for (int rank = 0; rank < list.size() && hits.size() < topN; rank++) {
+            if (!exists.test(list.id(rank))) {
+                removedNeighbor = true;
+                continue;
+            }
+            if (list.score(rank) < minScore) {
+                break;
+            }
+            hits.add(new VectorSearchHit(list.id(rank), list.group(rank), list.score(rank)));
+        }
+        if (removedNeighbor) {
+            lists.markDirty(id);
+        }
+        return hits;
+    }
+
+    /**
+     * 获取文档质心数量
+     *
+     * @return 有质心的文档数量
+     */
+    public int centroidCount() {
+        return centroidIndex.size();
+    }
+
+    /**
+     * 多查询批量向量检索
+     *
+     * @param queryVectors 查询向量，为null的查询返回空结果
+     * @param topK 每个查询返回的结果数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 与查询一一对应的命中结果列表
+     */
+    public List<List<VectorSearchHit>> searchBatch(float[][] queryVectors, int topK, double minScore,
+                                                   DocumentFilter filter) {
+        ensureLoaded();
+        return index.searchBatch(queryVectors, topK, minScore, filter);
+    }
+
+    /**
+     * 解析过滤条件为文档过滤位图
+     *
+     * @param categoryId 分类ID（包含全部子分类），为null时不按分类过滤
+     * @param statuses 文档状态，为空时不按状态过滤
+     * @param tags 标签（命中任一即可），为空时不按标签过滤
+     * @return 文档过滤器，没有任何条件时返回null
+     */
+    public DocumentFilter resolveFilter(Long categoryId, Collection<String> statuses, Collection<String> tags) {
+        ensureLoaded();
+        return filterIndex.resolve(categoryId, statuses, tags);
+    }
+
+    /**
+     * 更新文档的过滤属性，在当前事务提交后生效
+     *
+     * @param document 文档
+     */
+    public void updateDocumentAttributes(KnowledgeDocument document) {
+        if (document == null || document.getId() == null) {
+            return;
+        }
+        long documentId = document.getId();
+        Long categoryId = document.getCategory() != null ? document.getCategory().getId() : null;
+        String status = document.getStatus() != null ? document.getStatus().name() : null;
+        List<String> tags = splitTags(document.getTags());
+        long viewCount = document.getViewCount() != null ? document.getViewCount() : 0L;
+        long likeCount = document.getLikeCount() != null ? document.getLikeCount() : 0L;
+        int priority = document.getPriority() != null ? document.getPriority() : 0;
+        applyAfterCommit(() -> {
+            rankingFeatures.putDocument(documentId, viewCount, likeCount, priority);
+            try {
+                filterIndex.putDocument(documentId, categoryId, status, tags);
+            } catch (IllegalArgumentException e) {
+                logger.warn("更新文档过滤属性失败: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 移除文档的过滤属性，在当前事务提交后生效
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocumentAttributes(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        applyAfterCommit(() -> {
+            filterIndex.removeDocument(documentId);
+            rankingFeatures.removeDocument(documentId);
+        });
+    }
+
+    /**
+     * 记录一次文档访问，在当前事务提交后计入重排序特征
+     *
+     * @param documentId 文档ID
+     */
+    public void recordView(Long documentId) {
+        if (documentId != null) {
+            applyAfterCommit(() -> rankingFeatures.addViewCount(documentId, 1L), true);
+        }
+    }
+
+    /**
+     * 记录一次文档点赞，在当前事务提交后计入重排序特征
+     *
+     * @param documentId 文档ID
+     */
+    public void recordLike(Long documentId) {
+        if (documentId != null) {
+            applyAfterCommit(() -> rankingFeatures.addLikeCount(documentId, 1L), true);
+        }
+    }
+
+    /**
+     * 按文档质量和分块长度调整相似度，只读取内存特征列
+     *
+     * @param chunkId 分块ID
+     * @param documentId 文档ID
+     * @param score 原始相似度
+     * @return 调整后的分数
+     */
+    public double rerankScore(long chunkId, long documentId, double score) {
+        return rankingFeatures.rerankScore(chunkId, documentId, score);
+    }
+
+    /**
+     * 更新分类的父子关系，在当前事务提交后生效
+     *
+     * @param category 分类
+     */
+    public void updateCategory(KnowledgeCategory category) {
+        if (category == null || category.getId() == null) {
+            return;
+        }
+        long categoryId = category.getId();
+        Long parentId = category.getParentId();
+        applyAfterCommit(() -> filterIndex.putCategory(categoryId, parentId));
+    }
+
+    /**
+     * 移除分类，在当前事务提交后生效
+     *
+     * @param categoryId 分类ID
+     */
+    public void removeCategory(Long categoryId) {
+        if (categoryId == null) {
+            return;
+        }
+        applyAfterCommit(() -> filterIndex.removeCategory(categoryId));
+    }
+
+    /**
+     * 评估当前引擎相对暴力精确检索的召回率
+     *
+     * @param sampleSize 抽样查询数量
+     * @param topK 每次检索返回数量
+     * @return 评估报告
+     */
+    public RecallEvaluator.RecallReport evaluateRecall(int sampleSize, int topK) {
+        ensureLoaded();
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(index, sampleSize, topK, System.nanoTime());
+        logger.info("向量检索召回率评估: {}", report);
+        return report;
+    }
+
+    /**
+     * 获取分块向量
+     *
+     * @param chunkId 分块ID
+     * @return 向量，不在索引中时返回null
+     */
+    public float[] getVector(long chunkId) {
+        ensureLoaded();
+        return index.getVector(chunkId);
+    }
+
+    /**
+     * 将已就绪的分块写入索引
+     * 在当前事务提交后生效，避免回滚导致索引与数据库不一致
+     *
+     * @param chunks 分块列表
+     */
+    public void indexChunks(List<DocumentChunk> chunks) {
+        List<DocumentChunk> readyChunks = new ArrayList<>();
+        for (DocumentChunk chunk : chunks) {
+            if (chunk.isReady() && chunk.getId() != null && chunk.hasEmbedding()) {
+                readyChunks.add(chunk);
+            }
+        }
+        if (readyChunks.isEmpty()) {
+            return;
+        }
+
+        // 提前解析向量，避免提交后再访问实体
+        long[] chunkIds = new long[readyChunks.size()];
+        long[] documentIds = new long[readyChunks.size()];
+        float[][] vectors = new float[readyChunks.size()][];
+        int[] chunkSizes = new int[readyChunks.size()];
+        for (int i = 0; i < readyChunks.size(); i++) {
+            DocumentChunk chunk = readyChunks.get(i);
+            chunkIds[i] = chunk.getId();
+            documentIds[i] = chunk.getDocument().getId();
+            vectors[i] = chunk.getEmbeddingArray();
+            chunkSizes[i] = chunk.getChunkSize() != null ? chunk.getChunkSize() : 0;
+        }
+
+        applyAfterCommit(() -> {
+            rankingFeatures.putChunks(chunkIds, documentIds, chunkSizes);
+            // 只有首次写入的分块计入文档质心；已在索引中的分块（如向量格式迁移）方向不变
+            VectorSearchEngine engine = index;
+            List<Integer> added = new ArrayList<>();
+            for (int i = 0; i < chunkIds.length; i++) {
+                if (!engine.contains(chunkIds[i])) {
+                    added.add(i);
+                }
+            }
+            int written = engine.upsertBatch(chunkIds, documentIds, vectors);
+            long[] addedDocumentIds = new long[added.size()];
+            float[][] addedVectors = new float[added.size()][];
+            for (int i = 0; i < added.size(); i++) {
+                addedDocumentIds[i] = documentIds[added.get(i)];
+                addedVectors[i] = engine.contains(chunkIds[added.get(i)]) ? vectors[added.get(i)] : null;
+            }
+            addCentroids(centroidIndex, addedDocumentIds, addedVectors);
+            addSignatures(signatureIndex, chunkIds, documentIds, vectors);
+            addPrefixes(prefixIndex, chunkIds, documentIds, vectors);
+            markNeighborsDirty(chunkIds, addedDocumentIds, addedVectors, added);
+            if (written < chunkIds.length) {
+                logger.warn("{} 个分块向量维度与索引不一致，未写入索引", chunkIds.length - written);
+            }
+            writeToStore(segmentStore, chunkIds, documentIds, vectors);
+            logger.debug("向量索引已更新 {} 个分块", written);
+        });
+    }
+
+    /**
+     * 登记新写入分块及其文档的近邻列表待重算
+     */
+    private void markNeighborsDirty(long[] chunkIds, long[] addedDocumentIds, float[][] addedVectors,
+                                    List<Integer> added) {
+        NeighborListStore chunkLists = chunkNeighbors;
+        NeighborListStore documentLists = documentNeighbors;
+        if (chunkLists == null || documentLists == null) {
+            return;
+        }
+        for (int i = 0; i < added.size(); i++) {
+            if (addedVectors[i] != null) {
+                chunkLists.markDirty(chunkIds[added.get(i)]);
+                documentLists.markDirty(addedDocumentIds[i]);
+            }
+        }
+    }
+
+    /**
+     * 从索引中移除文档的全部分块
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocument(Long documentId) {
+        if (documentId == null) {
+            return;
+        }
+        applyAfterCommit(() -> {
+            int removed = index.removeDocument(documentId);
+            centroidIndex.removeDocument(documentId);
+            BinarySignatureIndex signatures = signatureIndex;
+            if (signatures != null) {
+                signatures.removeDocument(documentId);
+            }
+            PrefixVectorIndex prefixes = prefixIndex;
+            if (prefixes != null) {
+                prefixes.removeDocument(documentId);
+            }
+            NeighborListStore chunkLists = chunkNeighbors;
+            NeighborListStore documentLists = documentNeighbors;
+            if (chunkLists != null && documentLists != null) {
+                chunkLists.removeGroup(documentId);
+                documentLists.remove(documentId);
+            }
+            rankingFeatures.removeDocumentChunks(documentId);
+            VectorSegmentStore store = segmentStore;
+            if (store != null) {
+                try {
+                    store.removeDocument(documentId);
+                } catch (IOException e) {
+                    logger.warn("从向量段存储移除文档 {} 失败: {}", documentId, e.getMessage());
+                }
+            }
+            logger.debug("从向量索引移除文档 {} 的 {} 个分块", documentId, removed);
+        });
+    }
+
+    /**
+     * 获取索引中的向量数量
+     *
+     * @return 向量数量
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * 获取索引向量维度
+     *
+     * @return 向量维度，索引为空时为0
+     */
+    public int dimension() {
+        return index.dimension();
+    }
+
+    /**
+     * 获取当前检索引擎名称
+     *
+     * @return 引擎名称
+     */
+    public String getEngineName() {
+        return index.getName();
+    }
+
+    /**
+     * 获取段存储状态
+     *
+     * @return 段数量、尾段大小、水位线等；未启用时仅包含enabled=false；使用IVF-PQ引擎时附带ivfpq快照状态
+     */
+    public Map<String, Object> getStorageStatus() {
+        Map<String, Object> status = new HashMap<>();
+        VectorSegmentStore store = segmentStore;
+        status.put("enabled", store != null);
+        if (store != null) {
+            status.put("path", storagePath);
+            status.put("segments", store.getSegmentCount());
+            status.put("segmentRows", store.liveSegmentRows());
+            status.put("deletedRows", store.tombstoneCount());
+            status.put("tailSize", store.getTailSize());
+            status.put("watermark", store.getWatermark());
+        }
+        if (index instanceof IvfPqVectorIndex ivfpq) {
+            Map<String, Object> ivfpqStatus = new HashMap<>();
+            ivfpqStatus.put("path", ivfpqPath);
+            ivfpqStatus.put("trained", ivfpq.isTrained());
+            ivfpqStatus.put("lists", ivfpq.listCount());
+            ivfpqStatus.put("nprobe", ivfpq.getNprobe());
+            ivfpqStatus.put("codeBytes", ivfpq.codeBytes());
+            ivfpqStatus.put("watermark", ivfpq.getWatermark());
+            ivfpqStatus.put("snapshotCurrent", ivfpq.getModificationCount() == ivfpqSavedModifications);
+            status.put("ivfpq", ivfpqStatus);
+        }
+        return status;
+    }
+
+    /**
+     * 获取堆内存和堆外内存占用
+     * 堆外部分包括检索引擎分配的直接内存，以及JVM直接缓冲区池和内存映射段文件的总量
+     *
+     * @return 各项内存字节数
+     */
+    public Map<String, Object> getMemoryUsage() {
+        Map<String, Object> usage = new HashMap<>();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        usage.put("heapUsed", heap.getUsed());
+        usage.put("heapCommitted", heap.getCommitted());
+        usage.put("heapMax", heap.getMax());
+        usage.put("engineOffHeap", index.offHeapBytes());
+        BinarySignatureIndex signatures = signatureIndex;
+        usage.put("binarySignatures", signatures != null ? signatures.signatureBytes() : 0L);
+        PrefixVectorIndex prefixes = prefixIndex;
+        usage.put("prefixVectors", prefixes != null ? prefixes.prefixBytes() : 0L);
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                usage.put("directBuffers", pool.getMemoryUsed());
+            } else if ("mapped".equals(pool.getName())) {
+                usage.put("mappedBuffers", pool.getMemoryUsed());
+            }
+        }
+        return usage;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 从数据库批量读取全精度向量，供量化引擎重排序使用
+     */
+    private Map<Long, float[]> loadExactVectors(long[] chunkIds) {
+        List<Long> ids = new ArrayList<>(chunkIds.length);
+        for (long chunkId : chunkIds) {
+            ids.add(chunkId);
+        }
+
+        List<Object[]> rows = chunkRepository.findEmbeddingsByIds(ids);
+        Map<Long, float[]> vectors = new HashMap<>(rows.size() * 2);
+        for (Object[] row : rows) {
+            float[] vector = decodeRow((byte[]) row[1], (String) row[2]);
+            if (vector != null) {
+                vectors.put(((Number) row[0]).longValue(), vector);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * 将投影中的数值列转换为long，为null时返回0
+     */
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+
+    /**
+     * 拆分逗号分隔的标签
+     */
+    private static List<String> splitTags(String tags) {
+        if (tags == null || tags.trim().isEmpty()) {
+            return List.of();
+        }
+        return Arrays.asList(tags.split(","));
+    }
+
+    /**
+     * 解码投影行中的向量，优先使用二进制格式
+     */
+    private float[] decodeRow(byte[] embeddingVector, String legacyEmbedding) {
+        if (embeddingVector != null) {
+            try {
+                return EmbeddingCodec.decode(embeddingVector);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return EmbeddingCodec.parseText(legacyEmbedding);
+    }
+
+    /**
+     * 在事务提交后执行索引更新，与新索引的换入互斥
+     * 更新总是读取当前的索引字段；加载期间同时记录下来，换入新索引后重放，因此更新必须可以重复执行
+     */
+    private void applyAfterCommit(Runnable update) {
+        applyAfterCommit(update, false);
+    }
+
+    /**
+     * 在事务提交后执行索引更新
+     *
+     * @param update 更新操作
+     * @param increment 是否为计数累加；累加不能重复执行，开始读取重排序特征之前记录的累加在重放时跳过
+     */
+    private void applyAfterCommit(Runnable update, boolean increment) {
+        runAfterCommit(() -> {
+            synchronized (indexWriteLock) {
+                update.run();
+                if (pendingUpdates != null) {
+                    pendingUpdates.add(new PendingUpdate(update, increment));
+                }
+            }
+        });
+    }
+
+    /**
+     * 加载期间记录的增量更新
+     */
+    private record PendingUpdate(Runnable action, boolean increment) {
+    }
+
+    /**
+     * 在事务提交后执行，没有活动事务时立即执行
+     */
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package com.example.customerservice.service;
 
 import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.entity.KnowledgeCategory;
+import com.example.customerservice.entity.KnowledgeDocument;
 import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.vector.DocumentFilter;
+import com.example.customerservice.vector.GroupedTopKCollector;
+import com.example.customerservice.vector.ReciprocalRankFusion;
+import com.example.customerservice.vector.TopKCollector;
+import com.example.customerservice.vector.VectorSearchHit;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,6 +19,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -18,6 +33,7 @@ import java.util.stream.Collectors;
  * 
  * 提供向量存储和相似度搜索功能，支持基于余弦相似度的文档片段检索。
  * 为RAG功能提供高效的向量搜索能力。
+ * 支持按分类子树、文档状态、标签过滤，过滤条件在向量索引内部按位图判断。
  * 
  * @author AI Assistant
  * @version 1.0.0
@@ -35,6 +51,12 @@ public class VectorStoreService {
     @Autowired
     private EmbeddingService embeddingService;
 
+    @Autowired
+    private VectorIndexService vectorIndexService;
+
+    @Autowired
+    private ChunkKeywordIndexService chunkKeywordIndexService;
+
     @Value("${rag.search.similarity-threshold:0.7}")
     private double similarityThreshold;
 
@@ -44,6 +66,39 @@ public class VectorStoreService {
     @Value("${rag.search.enable-reranking:true}")
     private boolean enableReranking;
 
+    @Value("${rag.search.hybrid.timeout-ms:3000}")
+    private long hybridTimeoutMs;
+
+    @Value("${rag.search.hybrid.rrf-k:60}")
+    private int rrfK;
+
+    @Value("${rag.search.hybrid.candidate-factor:2}")
+    private int hybridCandidateFactor;
+
+    @Value("${rag.search.hybrid.threads:4}")
+    private int hybridThreads;
+
+    @Value("${rag.search.two-stage.enabled:false}")
+    private boolean twoStageEnabled;
+
+    @Value("${rag.search.two-stage.top-documents:50}")
+    private int twoStageTopDocuments;
+
+    @Value("${rag.search.two-stage.min-size:100000}")
+    private int twoStageMinSize;
+
+    @Value("${rag.search.binary-prefilter.min-size:200000}")
+    private int binaryPrefilterMinSize;
+
+    @Value("${rag.search.prefix.min-size:50000}")
+    private int prefixMinSize;
+
+    private static final String LEG_VECTOR = "vector";
+
+    private static final String LEG_KEYWORD = "keyword";
+
+    private ExecutorService hybridExecutor;
+
     /**
      * 基于向量相似度搜索文档片段
      * 
@@ -52,60 +107,149 @@ public class VectorStoreService {
      * @return 相似度搜索结果列表
      */
     public List<SimilaritySearchResult> searchSimilar(String query, int topK) {
-        logger.debug("执行向量相似度搜索: {}, topK: {}", query, topK);
+        return searchSimilar(query, topK, null);
+    }
+
+    /**
+     * 基于向量相似度搜索文档片段（带过滤条件）
+     * 
+     * @param query 查询文本
+     * @param topK 返回的最相似结果数量
+     * @param filter 过滤条件，为null时不过滤
+     * @return 相似度搜索结果列表
+     * @throws IllegalArgumentException 当过滤条件无效时抛出
+     */
+    public List<SimilaritySearchResult> searchSimilar(String query, int topK, SearchFilter filter) {
+        return searchWithFilter(query, topK, resolveFilter(filter));
+    }
+
+    /**
+     * 在已解析的文档过滤器下执行向量搜索
+     */
+    private List<SimilaritySearchResult> searchWithFilter(String query, int topK, DocumentFilter documentFilter) {
+        logger.debug("执行向量相似度搜索: {}, topK: {}, 过滤: {}", query, topK, documentFilter);
 
         if (query == null || query.trim().isEmpty()) {
             return Collections.emptyList();
         }
+        if (documentFilter != null && documentFilter.isEmpty()) {
+            logger.debug("没有满足过滤条件的文档");
+            return Collections.emptyList();
+        }
 
         try {
             // 1. 生成查询向量
             float[] queryEmbedding = embeddingService.generateEmbedding(query);
             if (queryEmbedding == null) {
                 logger.warn("无法为查询生成向量，回退到关键词搜索");
-                return fallbackToKeywordSearch(query, topK);
+                return fallbackToKeywordSearch(query, topK, documentFilter);
             }
 
-            // 2. 获取所有已就绪的分块
-            List<DocumentChunk> readyChunks = chunkRepository.findReadyChunksWithEmbedding();
-            if (readyChunks.isEmpty()) {
-                logger.warn("没有可用的向量化分块");
+            // 2. 在内存向量索引中检索，过滤条件在扫描过程中判断
+            List<VectorSearchHit> hits = vectorHits(queryEmbedding, topK, documentFilter);
+            if (hits.isEmpty()) {
+                logger.debug("向量索引中没有满足阈值的分块");
                 return Collections.emptyList();
             }
 
-            // 3. 计算相似度
-            List<SimilaritySearchResult> results = new ArrayList<>();
-            for (DocumentChunk chunk : readyChunks) {
-                float[] chunkEmbedding = chunk.getEmbeddingArray();
-                if (chunkEmbedding != null) {
-                    double similarity = calculateCosineSimilarity(queryEmbedding, chunkEmbedding);
-                    
-                    if (similarity >= similarityThreshold) {
-                        results.add(new SimilaritySearchResult(chunk, similarity));
-                    }
-                }
+            // 3. 重排序（如果启用），只使用内存中的排序特征
+            if (enableReranking && hits.size() > 1) {
+                hits = rerank(hits);
             }
 
-            // 4. 排序并限制结果数量
-            results.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
-            
-            int resultCount = Math.min(topK, results.size());
-            List<SimilaritySearchResult> topResults = results.subList(0, resultCount);
-
-            // 5. 重排序（如果启用）
-            if (enableReranking && topResults.size() > 1) {
-                topResults = rerank(query, topResults);
-            }
+            // 4. 排序完成后一次加载前K个分块的展示字段
+            List<SimilaritySearchResult> topResults = loadResults(hits);
 
             logger.debug("向量搜索完成，返回 {} 个结果", topResults.size());
             return topResults;
 
         } catch (Exception e) {
             logger.error("向量搜索失败: " + e.getMessage(), e);
-            return fallbackToKeywordSearch(query, topK);
+            return fallbackToKeywordSearch(query, topK, documentFilter);
         }
     }
 
+    /**
+     * 多查询批量向量搜索
+     * 所有查询在一次向量模型调用中向量化，在向量矩阵上按分块矩阵乘法一起打分，命中分块一次性加载
+     * 
+     * @param queries 查询文本列表
+     * @param topK 每个查询返回的结果数量
+     * @return 与查询一一对应的搜索结果列表
+     */
+    public List<List<SimilaritySearchResult>> searchSimilarBatch(List<String> queries, int topK) {
+        return searchSimilarBatch(queries, topK, null);
+    }
+
+    /**
+     * 多查询批量向量搜索（带过滤条件）
+     * 
+     * @param queries 查询文本列表
+     * @param topK 每个查询返回的结果数量
+     * @param filter 过滤条件，对所有查询生效，为null时不过滤
+     * @return 与查询一一对应的搜索结果列表
+     * @throws IllegalArgumentException 当过滤条件无效时抛出
+     */
+    public List<List<SimilaritySearchResult>> searchSimilarBatch(List<String> queries, int topK, SearchFilter filter) {
+        List<List<SimilaritySearchResult>> results = new ArrayList<>();
+        if (queries == null || queries.isEmpty()) {
+            return results;
+        }
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(new ArrayList<>());
+        }
+        logger.debug("执行批量向量搜索: {} 个查询, topK: {}, 过滤: {}", queries.size(), topK, filter);
+
+        DocumentFilter documentFilter = resolveFilter(filter);
+        if (documentFilter != null && documentFilter.isEmpty()) {
+            logger.debug("没有满足过滤条件的文档");
+            return results;
+        }
+
+        // 1. 一次调用生成全部查询向量，未能向量化的查询位置为null
+        List<float[]> embeddings = embeddingService.generateQueryEmbeddings(queries);
+        float[][] queryVectors = new float[queries.size()][];
+        for (int i = 0; i < queries.size() && i < embeddings.size(); i++) {
+            queryVectors[i] = embeddings.get(i);
+        }
+
+        try {
+            // 2. 在内存向量索引中一起检索
+            List<List<VectorSearchHit>> hits = vectorIndexService.searchBatch(
+                queryVectors, topK, similarityThreshold, documentFilter);
+
+            // 3. 逐个查询重排序后，所有查询的命中分块一次性加载
+            if (enableReranking) {
+                for (int i = 0; i < hits.size(); i++) {
+                    if (hits.get(i).size() > 1) {
+                        hits.set(i, rerank(hits.get(i)));
+                    }
+                }
+            }
+            List<List<SimilaritySearchResult>> loaded = loadResultsBatch(hits);
+            for (int i = 0; i < queries.size(); i++) {
+                results.set(i, loaded.get(i));
+            }
+        } catch (Exception e) {
+            logger.error("批量向量搜索失败: " + e.getMessage(), e);
+            for (int i = 0; i < queries.size(); i++) {
+                queryVectors[i] = null;
+            }
+        }
+
+        // 4. 没有向量的查询逐个回退到关键词搜索
+        for (int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            if (queryVectors[i] == null && query != null && !query.trim().isEmpty()) {
+                logger.debug("查询无法向量化，回退到关键词搜索: {}", query);
+                results.set(i, fallbackToKeywordSearch(query, topK, documentFilter));
+            }
+        }
+
+        logger.debug("批量向量搜索完成: {} 个查询", queries.size());
+        return results;
+    }
+
     /**
      * 混合搜索：结合向量搜索和关键词搜索
      * 
@@ -114,45 +258,253 @@ public class VectorStoreService {
      * @return 混合搜索结果
      */
     public List<SimilaritySearchResult> hybridSearch(String query, int topK) {
-        logger.debug("执行混合搜索: {}, topK: {}", query, topK);
+        return hybridSearch(query, topK, null);
+    }
 
-        // 1. 向量搜索
-        List<SimilaritySearchResult> vectorResults = searchSimilar(query, topK);
-        
-        // 2. 关键词搜索
-        List<SimilaritySearchResult> keywordResults = fallbackToKeywordSearch(query, topK);
-        
-        // 3. 合并和去重
-        Map<Long, SimilaritySearchResult> mergedResults = new HashMap<>();
-        
-        // 添加向量搜索结果（优先级更高）
-        for (SimilaritySearchResult result : vectorResults) {
-            mergedResults.put(result.getChunk().getId(), result);
+    /**
+     * 混合搜索（带过滤条件）
+     * 
+     * @param query 查询文本
+     * @param topK 返回的结果数量
+     * @param filter 过滤条件，为null时不过滤
+     * @return 混合搜索结果
+     * @throws IllegalArgumentException 当过滤条件无效时抛出
+     */
+    public List<SimilaritySearchResult> hybridSearch(String query, int topK, SearchFilter filter) {
+        return hybridSearchDetailed(query, topK, filter).getResults();
+    }
+
+    /**
+     * 混合搜索，并返回各路检索的耗时和状态
+     * 
+     * 向量检索和关键词检索在独立线程中同时开始，共享同一个截止时间；
+     * 某一路超时或失败时只使用已完成的一路，结果标记为部分结果。
+     * 查询无法向量化时向量检索直接跳过，不再重复执行关键词扫描。
+     * 两路结果按倒数排名融合（RRF）排序，返回结果的相似度保留原始检索分数
+     * （同时命中时取向量相似度），使下游的相似度阈值含义不变。
+     * 
+     * @param query 查询文本
+     * @param topK 返回的结果数量
+     * @param filter 过滤条件，为null时不过滤
+     * @return 混合搜索结果及各路检索元数据
+     * @throws IllegalArgumentException 当过滤条件无效时抛出
+     */
+    public HybridSearchResult hybridSearchDetailed(String query, int topK, SearchFilter filter) {
+        return hybridSearchDetailed(query, topK, 0, filter);
+    }
+
+    /**
+     * 按文档折叠的混合搜索：返回前N个不同文档，每个文档得分最高的M个分块
+     * 
+     * 两路检索在打分过程中直接按文档收集，融合后的排名再按文档折叠一次，
+     * 同一文档的多个分块不会占满结果，调用方无需放大topK再去重。
+     * 
+     * @param query 查询文本
+     * @param documents 返回的文档数量
+     * @param perDocument 每个文档返回的分块数量
+     * @param filter 过滤条件，为null时不过滤
+     * @return 混合搜索结果，按融合得分降序排列
+     * @throws IllegalArgumentException 当过滤条件无效时抛出
+     */
+    public List<SimilaritySearchResult> hybridSearchGrouped(String query, int documents, int perDocument,
+                                                            SearchFilter filter) {
+        if (perDocument <= 0) {
+            return new ArrayList<>();
         }
-        
-        // 添加关键词搜索结果（如果不存在）
-        for (SimilaritySearchResult result : keywordResults) {
-            Long chunkId = result.getChunk().getId();
-            if (!mergedResults.containsKey(chunkId)) {
-                // 降低关键词搜索的相似度分数
-                SimilaritySearchResult adjustedResult = new SimilaritySearchResult(
-                    result.getChunk(), 
-                    result.getSimilarity() * 0.8
-                );
-                mergedResults.put(chunkId, adjustedResult);
-            }
+        return hybridSearchDetailed(query, documents, perDocument, filter).getResults();
+    }
+
+    /**
+     * 混合搜索实现
+     * 
+     * @param topK 返回结果数量；按文档折叠时为文档数量
+     * @param perDocument 每个文档保留的分块数量，不大于0时不按文档折叠
+     */
+    private HybridSearchResult hybridSearchDetailed(String query, int topK, int perDocument, SearchFilter filter) {
+        logger.debug("执行混合搜索: {}, topK: {}, 每文档: {}, 过滤: {}", query, topK, perDocument, filter);
+
+        DocumentFilter documentFilter = resolveFilter(filter);
+        if (query == null || query.trim().isEmpty() || topK <= 0
+                || (documentFilter != null && documentFilter.isEmpty())) {
+            return new HybridSearchResult(new ArrayList<>(), Collections.emptyMap(), new ArrayList<>(), 0L);
+        }
+
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(hybridTimeoutMs);
+        int candidates = Math.max(topK, topK * hybridCandidateFactor);
+
+        // 1. 两路检索同时开始，只返回分块ID和分数，实体在调用线程中统一加载
+        ExecutorService executor = getHybridExecutor();
+        Future<LegOutcome> vectorFuture = executor.submit(
+            () -> runVectorLeg(query, candidates, perDocument, documentFilter));
+        Future<LegOutcome> keywordFuture = executor.submit(
+            () -> runKeywordLeg(query, candidates, perDocument, documentFilter));
+
+        // 2. 在共享截止时间内等待
+        LegOutcome vectorLeg = awaitLeg(LEG_VECTOR, vectorFuture, startTime, deadline);
+        LegOutcome keywordLeg = awaitLeg(LEG_KEYWORD, keywordFuture, startTime, deadline);
+
+        // 3. 向量结果按排序特征重排序
+        List<VectorSearchHit> vectorHits = vectorLeg.hits;
+        if (enableReranking && vectorHits.size() > 1) {
+            vectorHits = rerank(vectorHits);
+        }
+
+        // 4. 倒数排名融合，同时命中时保留向量结果的分数
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion(rrfK);
+        Map<Long, VectorSearchHit> hitsById = new HashMap<>();
+        fusion.addRanking(rankedIds(vectorHits, hitsById));
+        fusion.addRanking(rankedIds(keywordLeg.hits, hitsById));
+
+        // 5. 只为融合后的前K个分块加载展示字段
+        List<Long> fusedIds = perDocument > 0
+            ? collapseByDocument(fusion, hitsById, topK, perDocument)
+            : fusion.top(topK);
+        List<VectorSearchHit> fusedHits = new ArrayList<>();
+        Map<Long, Double> fusedScores = new HashMap<>();
+        for (Long chunkId : fusedIds) {
+            fusedHits.add(hitsById.get(chunkId));
+            fusedScores.put(chunkId, fusion.score(chunkId));
+        }
+        List<SimilaritySearchResult> results = loadResults(fusedHits);
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        List<LegTiming> legs = List.of(vectorLeg.toTiming(), keywordLeg.toTiming());
+        HybridSearchResult hybridResult = new HybridSearchResult(results, fusedScores, legs, elapsedMillis);
+        if (hybridResult.isPartial()) {
+            logger.warn("混合搜索返回部分结果: {}", legs);
+        }
+        logger.debug("混合搜索完成，返回 {} 个结果，耗时 {}ms，各路: {}", results.size(), elapsedMillis, legs);
+        return hybridResult;
+    }
+
+    /**
+     * 向量检索分支：查询无法向量化时跳过，不回退到关键词扫描（关键词分支已在同时执行）
+     */
+    private LegOutcome runVectorLeg(String query, int candidates, int perDocument, DocumentFilter documentFilter) {
+        long startTime = System.nanoTime();
+        float[] queryEmbedding = embeddingService.generateEmbedding(query);
+        if (queryEmbedding == null) {
+            return new LegOutcome(LEG_VECTOR, LegStatus.SKIPPED, new ArrayList<>(), startTime);
+        }
+        List<VectorSearchHit> hits = perDocument > 0
+            ? vectorIndexService.searchGrouped(queryEmbedding, candidates, perDocument, similarityThreshold,
+                documentFilter)
+            : vectorHits(queryEmbedding, candidates, documentFilter);
+        return new LegOutcome(LEG_VECTOR, LegStatus.COMPLETED, hits, startTime);
+    }
+
+    /**
+     * 单查询向量检索
+     * 索引规模达到阈值时按配置选择第一阶段：符号签名预过滤优先，其次是截断维度前缀预过滤，最后是文档质心两阶段检索
+     */
+    private List<VectorSearchHit> vectorHits(float[] queryEmbedding, int topK, DocumentFilter documentFilter) {
+        int indexSize = vectorIndexService.size();
+        if (vectorIndexService.isBinaryPrefilterEnabled() && indexSize >= binaryPrefilterMinSize) {
+            return vectorIndexService.searchBinaryPrefiltered(
+                queryEmbedding, topK, similarityThreshold, documentFilter);
+        }
+        if (vectorIndexService.isPrefixPrefilterEnabled() && indexSize >= prefixMinSize) {
+            return vectorIndexService.searchPrefixPrefiltered(
+                queryEmbedding, topK, similarityThreshold, documentFilter);
+        }
+        if (twoStageEnabled && indexSize >= twoStageMinSize) {
+            return vectorIndexService.searchTwoStage(
+                queryEmbedding, topK, similarityThreshold, Math.max(twoStageTopDocuments, topK), documentFilter);
+        }
+        return vectorIndexService.search(queryEmbedding, topK, similarityThreshold, -1L, documentFilter);
+    }
+
+    /**
+     * 关键词检索分支
+     */
+    private LegOutcome runKeywordLeg(String query, int candidates, int perDocument, DocumentFilter documentFilter) {
+        long startTime = System.nanoTime();
+        List<VectorSearchHit> hits = keywordHits(query, candidates, perDocument, documentFilter);
+        return new LegOutcome(LEG_KEYWORD, LegStatus.COMPLETED, hits, startTime);
+    }
+
+    /**
+     * 在截止时间前等待一路检索结果，超时则取消该路检索
+     */
+    private LegOutcome awaitLeg(String leg, Future<LegOutcome> future, long startTime, long deadline) {
+        try {
+            long remaining = Math.max(deadline - System.nanoTime(), 0L);
+            return future.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            logger.warn("混合搜索{}检索超时（{}ms）", leg, hybridTimeoutMs);
+            return new LegOutcome(leg, LegStatus.TIMEOUT, new ArrayList<>(), startTime);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return new LegOutcome(leg, LegStatus.FAILED, new ArrayList<>(), startTime);
+        } catch (ExecutionException e) {
+            logger.error("混合搜索{}检索失败: {}", leg, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return new LegOutcome(leg, LegStatus.FAILED, new ArrayList<>(), startTime);
+        }
+    }
+
+    /**
+     * 取出命中的分块ID顺序，并记录每个分块先出现的命中（向量结果优先）
+     */
+    private List<Long> rankedIds(List<VectorSearchHit> hits, Map<Long, VectorSearchHit> hitsById) {
+        List<Long> ids = new ArrayList<>(hits.size());
+        for (VectorSearchHit hit : hits) {
+            ids.add(hit.getChunkId());
+            hitsById.putIfAbsent(hit.getChunkId(), hit);
+        }
+        return ids;
+    }
+
+    /**
+     * 按融合得分把排名折叠为前N个文档、每个文档前M个分块
+     */
+    private List<Long> collapseByDocument(ReciprocalRankFusion fusion, Map<Long, VectorSearchHit> hitsById,
+                                          int documents, int perDocument) {
+        List<Long> ranked = fusion.top(fusion.size());
+        GroupedTopKCollector collector = new GroupedTopKCollector(documents, perDocument);
+        for (int i = 0; i < ranked.size(); i++) {
+            // 得分相同时保持融合排名的先后顺序
+            collector.offer(i, hitsById.get(ranked.get(i)).getDocumentId(), fusion.score(ranked.get(i)) - i * 1e-12);
+        }
+        int resultCount = collector.sortDescending();
+        List<Long> ids = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            ids.add(ranked.get((int) collector.id(rank)));
+        }
+        return ids;
+    }
+
+    /**
+     * 获取混合搜索使用的线程池
+     */
+    private synchronized ExecutorService getHybridExecutor() {
+        if (hybridExecutor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            hybridExecutor = Executors.newFixedThreadPool(Math.max(hybridThreads, 2), runnable -> {
+                Thread thread = new Thread(runnable, "HybridSearch-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return hybridExecutor;
+    }
+
+    /**
+     * 关闭混合搜索线程池
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (hybridExecutor != null) {
+            hybridExecutor.shutdownNow();
+            hybridExecutor = null;
         }
-        
-        // 4. 排序并返回
-        List<SimilaritySearchResult> finalResults = new ArrayList<>(mergedResults.values());
-        finalResults.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
-        
-        int resultCount = Math.min(topK, finalResults.size());
-        return finalResults.subList(0, resultCount);
     }
 
     /**
      * 查找相似文档片段
+     * 优先读取预计算的分块近邻列表，参考分块不在索引中时按数据库中的向量现场检索
      * 
      * @param chunkId 参考分块ID
      * @param topK 返回的相似结果数量
@@ -161,73 +513,120 @@ public class VectorStoreService {
     public List<SimilaritySearchResult> findSimilarChunks(Long chunkId, int topK) {
         logger.debug("查找相似分块: {}, topK: {}", chunkId, topK);
 
+        // 在索引中的分块直接读取近邻列表，不查询数据库
+        List<VectorSearchHit> neighbors = vectorIndexService.findChunkNeighbors(chunkId, topK, similarityThreshold);
+        if (neighbors != null) {
+            return loadResults(neighbors);
+        }
+
         Optional<DocumentChunk> chunkOpt = chunkRepository.findById(chunkId);
         if (!chunkOpt.isPresent()) {
             logger.warn("分块不存在: {}", chunkId);
             return Collections.emptyList();
         }
 
-        DocumentChunk referenceChunk = chunkOpt.get();
-        float[] referenceEmbedding = referenceChunk.getEmbeddingArray();
-        
+        float[] referenceEmbedding = chunkOpt.get().getEmbeddingArray();
         if (referenceEmbedding == null) {
             logger.warn("参考分块没有向量表示: {}", chunkId);
             return Collections.emptyList();
         }
 
-        List<DocumentChunk> allChunks = chunkRepository.findReadyChunksWithEmbedding();
-        List<SimilaritySearchResult> results = new ArrayList<>();
+        // 在内存向量索引中检索（跳过自己）
+        List<VectorSearchHit> hits = vectorIndexService.search(
+            referenceEmbedding, topK, similarityThreshold, chunkId);
+        
+        return loadResults(hits);
+    }
 
-        for (DocumentChunk chunk : allChunks) {
-            // 跳过自己
-            if (chunk.getId().equals(chunkId)) {
-                continue;
-            }
+    /**
+     * 按命中顺序批量加载分块的展示字段
+     * 
+     * @param hits 排序完成的命中结果
+     * @return 相似度搜索结果列表，顺序与命中结果一致
+     */
+    private List<SimilaritySearchResult> loadResults(List<VectorSearchHit> hits) {
+        return loadResultsBatch(List.of(hits)).get(0);
+    }
 
-            float[] chunkEmbedding = chunk.getEmbeddingArray();
-            if (chunkEmbedding != null) {
-                double similarity = calculateCosineSimilarity(referenceEmbedding, chunkEmbedding);
-                
-                if (similarity >= similarityThreshold) {
-                    results.add(new SimilaritySearchResult(chunk, similarity));
+    /**
+     * 为多个查询的命中结果批量加载分块的展示字段，所有查询共用一次数据库查询
+     * 
+     * @param hitsPerQuery 每个查询排序完成的命中结果
+     * @return 每个查询的相似度搜索结果，顺序与命中结果一致
+     */
+    private List<List<SimilaritySearchResult>> loadResultsBatch(List<List<VectorSearchHit>> hitsPerQuery) {
+        Set<Long> chunkIds = new HashSet<>();
+        for (List<VectorSearchHit> hits : hitsPerQuery) {
+            for (VectorSearchHit hit : hits) {
+                chunkIds.add(hit.getChunkId());
+            }
+        }
+        Map<Long, DocumentChunk> chunksById = loadChunkViews(chunkIds);
+
+        List<List<SimilaritySearchResult>> results = new ArrayList<>(hitsPerQuery.size());
+        for (List<VectorSearchHit> hits : hitsPerQuery) {
+            List<SimilaritySearchResult> queryResults = new ArrayList<>(hits.size());
+            for (VectorSearchHit hit : hits) {
+                DocumentChunk chunk = chunksById.get(hit.getChunkId());
+                // 索引更新在事务提交后进行，可能短暂包含已删除的分块
+                if (chunk != null) {
+                    queryResults.add(new SimilaritySearchResult(chunk, hit.getScore()));
                 }
             }
+            results.add(queryResults);
         }
-
-        // 排序并返回前K个结果
-        results.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
-        int resultCount = Math.min(topK, results.size());
-        
-        return results.subList(0, resultCount);
+        return results;
     }
 
     /**
-     * 计算余弦相似度
+     * 一次查询加载分块正文、序号以及文档标题、摘要和分类
+     * 返回的分块和文档是只读视图，只填充了展示所需字段，不是受管实体，不能用于保存
      * 
-     * @param vector1 向量1
-     * @param vector2 向量2
-     * @return 余弦相似度值（0-1之间）
+     * @param chunkIds 分块ID集合
+     * @return 分块ID到分块视图的映射
      */
-    private double calculateCosineSimilarity(float[] vector1, float[] vector2) {
-        if (vector1.length != vector2.length) {
-            throw new IllegalArgumentException("向量维度不匹配");
+    private Map<Long, DocumentChunk> loadChunkViews(Collection<Long> chunkIds) {
+        Map<Long, DocumentChunk> chunksById = new HashMap<>();
+        if (chunkIds.isEmpty()) {
+            return chunksById;
         }
-
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-
-        for (int i = 0; i < vector1.length; i++) {
-            dotProduct += vector1[i] * vector2[i];
-            norm1 += vector1[i] * vector1[i];
-            norm2 += vector2[i] * vector2[i];
+        for (Object[] row : chunkRepository.findSearchViewsByIds(chunkIds)) {
+            KnowledgeDocument document = new KnowledgeDocument();
+            document.setId(((Number) row[4]).longValue());
+            document.setTitle((String) row[5]);
+            document.setCategory((KnowledgeCategory) row[6]);
+            document.setSummary((String) row[7]);
+
+            DocumentChunk chunk = new DocumentChunk();
+            chunk.setId(((Number) row[0]).longValue());
+            chunk.setDocument(document);
+            chunk.setChunkIndex((Integer) row[1]);
+            chunk.setContent((String) row[2]);
+            chunk.setChunkSize((Integer) row[3]);
+            chunksById.put(chunk.getId(), chunk);
         }
+        return chunksById;
+    }
 
-        if (norm1 == 0.0 || norm2 == 0.0) {
-            return 0.0;
+    /**
+     * 将过滤条件解析为文档过滤位图
+     * 
+     * @param filter 过滤条件
+     * @return 文档过滤器，没有过滤条件时返回null
+     * @throws IllegalArgumentException 当文档状态无效时抛出
+     */
+    private DocumentFilter resolveFilter(SearchFilter filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
         }
-
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+        for (String status : filter.getStatuses()) {
+            try {
+                KnowledgeDocument.DocumentStatus.valueOf(status.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("无效的文档状态: " + status);
+            }
+        }
+        return vectorIndexService.resolveFilter(filter.getCategoryId(), filter.getStatuses(), filter.getTags());
     }
 
     /**
@@ -235,105 +634,228 @@ public class VectorStoreService {
      * 
      * @param query 查询文本
      * @param topK 返回结果数量
+     * @param documentFilter 文档过滤器，为null时不过滤
      * @return 搜索结果列表
      */
-    private List<SimilaritySearchResult> fallbackToKeywordSearch(String query, int topK) {
+    private List<SimilaritySearchResult> fallbackToKeywordSearch(String query, int topK, DocumentFilter documentFilter) {
         logger.debug("使用关键词搜索作为回退方案");
+        return loadResults(keywordHits(query, topK, 0, documentFilter));
+    }
 
-        List<DocumentChunk> allChunks = chunkRepository.findByStatus(DocumentChunk.ChunkStatus.READY);
-        List<SimilaritySearchResult> results = new ArrayList<>();
+    /**
+     * 关键词检索，只返回前K个分块的ID和得分
+     * 从分块关键词倒排索引读取查询词项的倒排表，按BM25排序；命中分数为查询覆盖度，与相似度阈值含义一致
+     * 
+     * @param query 查询文本
+     * @param topK 返回结果数量；按文档折叠时为文档数量
+     * @param perDocument 每个文档保留的分块数量，不大于0时不按文档折叠
+     * @param documentFilter 文档过滤器，为null时不过滤
+     * @return 命中结果，按BM25分数降序排列
+     */
+    private List<VectorSearchHit> keywordHits(String query, int topK, int perDocument, DocumentFilter documentFilter) {
+        return chunkKeywordIndexService.search(query, topK, perDocument, documentFilter);
+    }
 
-        String lowerQuery = query.toLowerCase();
-        String[] keywords = lowerQuery.split("\\s+");
+    /**
+     * 重排序：按文档质量（访问次数、点赞数、优先级）和分块长度调整相似度
+     * 只读取向量索引旁的内存特征列，不加载分块实体，也不触发文档代理的懒加载
+     * 
+     * @param hits 初始命中结果
+     * @return 重排序后的命中结果
+     */
+    private List<VectorSearchHit> rerank(List<VectorSearchHit> hits) {
+        logger.debug("对 {} 个结果进行重排序", hits.size());
 
-        for (DocumentChunk chunk : allChunks) {
-            String content = chunk.getContent().toLowerCase();
-            double score = calculateKeywordScore(content, keywords);
-            
-            if (score > 0) {
-                results.add(new SimilaritySearchResult(chunk, score));
-            }
+        TopKCollector collector = new TopKCollector(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            VectorSearchHit hit = hits.get(i);
+            collector.offer(i, vectorIndexService.rerankScore(hit.getChunkId(), hit.getDocumentId(), hit.getScore()));
         }
 
-        // 排序并返回前K个结果
-        results.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
-        int resultCount = Math.min(topK, results.size());
-        
-        return results.subList(0, resultCount);
+        int resultCount = collector.sortDescending();
+        List<VectorSearchHit> reranked = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            VectorSearchHit hit = hits.get((int) collector.id(rank));
+            reranked.add(new VectorSearchHit(hit.getChunkId(), hit.getDocumentId(), collector.score(rank)));
+        }
+        return reranked;
     }
 
     /**
-     * 计算关键词匹配分数
-     * 
-     * @param content 内容文本
-     * @param keywords 关键词数组
-     * @return 匹配分数
+     * 检索过滤条件
+     * 分类过滤包含该分类的全部子分类；状态、标签各自命中任一即可，不同条件之间同时满足
      */
-    private double calculateKeywordScore(String content, String[] keywords) {
-        double score = 0.0;
-        int totalKeywords = keywords.length;
+    public static class SearchFilter {
+        private final Long categoryId;
+        private final List<String> statuses;
+        private final List<String> tags;
+
+        public SearchFilter(Long categoryId, List<String> statuses, List<String> tags) {
+            this.categoryId = categoryId;
+            this.statuses = statuses != null ? statuses : Collections.emptyList();
+            this.tags = tags != null ? tags : Collections.emptyList();
+        }
 
-        for (String keyword : keywords) {
-            if (keyword.trim().isEmpty()) {
-                continue;
-            }
+        /**
+         * 由请求参数创建过滤条件
+         * 
+         * @param categoryId 分类ID
+         * @param statuses 逗号分隔的文档状态
+         * @param tags 逗号分隔的标签
+         * @return 过滤条件
+         */
+        public static SearchFilter of(Long categoryId, String statuses, String tags) {
+            return new SearchFilter(categoryId, splitValues(statuses), splitValues(tags));
+        }
 
-            // 精确匹配
-            if (content.contains(keyword)) {
-                score += 1.0;
-            }
-            // 部分匹配
-            else if (content.contains(keyword.substring(0, Math.min(keyword.length(), 3)))) {
-                score += 0.5;
+        private static List<String> splitValues(String values) {
+            if (values == null || values.trim().isEmpty()) {
+                return Collections.emptyList();
             }
+            return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toList());
+        }
+
+        public Long getCategoryId() {
+            return categoryId;
+        }
+
+        public List<String> getStatuses() {
+            return statuses;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public boolean isEmpty() {
+            return categoryId == null && statuses.isEmpty() && tags.isEmpty();
         }
 
-        return totalKeywords > 0 ? score / totalKeywords : 0.0;
+        @Override
+        public String toString() {
+            return "SearchFilter{categoryId=" + categoryId + ", statuses=" + statuses + ", tags=" + tags + "}";
+        }
     }
 
     /**
-     * 重排序搜索结果
-     * 基于多个因素进行重新排序，如文档质量、新鲜度等
-     * 
-     * @param query 原始查询
-     * @param results 初始搜索结果
-     * @return 重排序后的结果
-     */
-    private List<SimilaritySearchResult> rerank(String query, List<SimilaritySearchResult> results) {
-        logger.debug("对 {} 个结果进行重排序", results.size());
-
-        for (SimilaritySearchResult result : results) {
-            DocumentChunk chunk = result.getChunk();
-            double originalScore = result.getSimilarity();
-            
-            // 基础分数
-            double newScore = originalScore;
-            
-            // 文档质量因子（基于文档的访问次数和点赞数）
-            if (chunk.getDocument() != null) {
-                double qualityFactor = 1.0 + 
-                    (chunk.getDocument().getViewCount() * 0.001) + 
-                    (chunk.getDocument().getLikeCount() * 0.01);
-                newScore *= Math.min(qualityFactor, 1.5); // 最多提升50%
-            }
-            
-            // 内容长度因子（适中长度的分块得分更高）
-            int contentLength = chunk.getChunkSize();
-            double lengthFactor = 1.0;
-            if (contentLength >= 200 && contentLength <= 800) {
-                lengthFactor = 1.1; // 适中长度加分
-            } else if (contentLength < 100) {
-                lengthFactor = 0.9; // 太短减分
-            }
-            newScore *= lengthFactor;
-            
-            // 更新分数
-            result.setSimilarity(newScore);
+     * 混合搜索中单路检索的状态
+     */
+    public enum LegStatus {
+        /** 在截止时间内完成 */
+        COMPLETED,
+        /** 查询无法向量化，未执行 */
+        SKIPPED,
+        /** 超过截止时间，已取消 */
+        TIMEOUT,
+        /** 执行出错 */
+        FAILED
+    }
+
+    /**
+     * 混合搜索中单路检索的耗时和状态
+     */
+    public static class LegTiming {
+        private final String leg;
+        private final LegStatus status;
+        private final long elapsedMillis;
+        private final int hitCount;
+
+        public LegTiming(String leg, LegStatus status, long elapsedMillis, int hitCount) {
+            this.leg = leg;
+            this.status = status;
+            this.elapsedMillis = elapsedMillis;
+            this.hitCount = hitCount;
         }
 
-        // 重新排序
-        results.sort((a, b) -> Double.compare(b.getSimilarity(), a.getSimilarity()));
-        return results;
+        public String getLeg() {
+            return leg;
+        }
+
+        public LegStatus getStatus() {
+            return status;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public int getHitCount() {
+            return hitCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{status=%s, elapsed=%dms, hits=%d}", leg, status, elapsedMillis, hitCount);
+        }
+    }
+
+    /**
+     * 单路检索的内部结果
+     */
+    private static final class LegOutcome {
+        private final String leg;
+        private final LegStatus status;
+        private final List<VectorSearchHit> hits;
+        private final long elapsedMillis;
+
+        LegOutcome(String leg, LegStatus status, List<VectorSearchHit> hits, long startTime) {
+            this.leg = leg;
+            this.status = status;
+            this.hits = hits;
+            this.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        }
+
+        LegTiming toTiming() {
+            return new LegTiming(leg, status, elapsedMillis, hits.size());
+        }
+    }
+
+    /**
+     * 混合搜索结果及元数据
+     */
+    public static class HybridSearchResult {
+        private final List<SimilaritySearchResult> results;
+        private final Map<Long, Double> fusedScores;
+        private final List<LegTiming> legs;
+        private final long elapsedMillis;
+
+        public HybridSearchResult(List<SimilaritySearchResult> results, Map<Long, Double> fusedScores,
+                                  List<LegTiming> legs, long elapsedMillis) {
+            this.results = results;
+            this.fusedScores = fusedScores;
+            this.legs = legs;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public List<SimilaritySearchResult> getResults() {
+            return results;
+        }
+
+        /**
+         * 获取分块的RRF融合得分
+         */
+        public double getFusedScore(Long chunkId) {
+            return fusedScores.getOrDefault(chunkId, 0.0);
+        }
+
+        public List<LegTiming> getLegs() {
+            return legs;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * 是否有检索分支超时或失败（跳过的向量检索不算部分结果）
+         */
+        public boolean isPartial() {
+            return legs.stream().anyMatch(leg ->
+                leg.getStatus() == LegStatus.TIMEOUT || leg.getStatus() == LegStatus.FAILED);
+        }
     }
 
     /**
@@ -342,6 +864,7 @@ public class VectorStoreService {
     public static class SimilaritySearchResult {
         private final DocumentChunk chunk;
         private double similarity;
+        private List<DocumentChunk> contextWindow;
 
         public SimilaritySearchResult(DocumentChunk chunk, double similarity) {
             this.chunk = chunk;
@@ -368,9 +891,36 @@ public class VectorStoreService {
          * @return 上下文文本
          */
         public String getContextualContent(int contextSize) {
-            // 这里可以实现获取相邻分块的逻辑
-            // 暂时返回当前分块内容
-            return chunk.getContent();
+            if (contextWindow == null || contextWindow.isEmpty() || contextSize <= 0
+                    || chunk.getChunkIndex() == null) {
+                return chunk.getContent();
+            }
+            StringBuilder content = new StringBuilder();
+            for (DocumentChunk neighbor : contextWindow) {
+                if (neighbor.getChunkIndex() == null
+                        || Math.abs(neighbor.getChunkIndex() - chunk.getChunkIndex()) > contextSize) {
+                    continue;
+                }
+                if (content.length() > 0) {
+                    content.append('\n');
+                }
+                content.append(neighbor.getContent());
+            }
+            return content.length() > 0 ? content.toString() : chunk.getContent();
+        }
+
+        /**
+         * 获取上下文窗口：所在合并区间内按序号排列的分块，未扩展时为null
+         */
+        public List<DocumentChunk> getContextWindow() {
+            return contextWindow;
+        }
+
+        /**
+         * 设置上下文窗口，由 {@link ChunkContextService#expand(List, int)} 批量填充
+         */
+        public void setContextWindow(List<DocumentChunk> contextWindow) {
+            this.contextWindow = contextWindow;
         }
 
         @Override
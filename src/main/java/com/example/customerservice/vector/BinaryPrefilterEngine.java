@@ -0,0 +1,113 @@
+package com.example.customerservice.vector;
+
+import java.util.List;
+
+/**
+ * 符号签名预过滤检索
+ *
+ * 两阶段检索的只读视图：先在 {@link BinarySignatureIndex} 上按汉明距离选出固定数量的候选，
+ * 再由完整引擎用全精度向量为候选重新打分（{@link VectorSearchEngine#rescore}）。
+ * 候选数量决定召回率与耗时的折中，可通过 {@link RecallEvaluator} 在实际语料上评估。
+ *
+ * 写入操作由签名索引和完整引擎各自维护，本视图不支持写入；
+ * {@link #searchExact} 委托给完整引擎，作为召回率评估的基准。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class BinaryPrefilterEngine implements VectorSearchEngine {
+
+    /**
+     * 名称
+     */
+    public static final String ENGINE_NAME = "binary-prefilter";
+
+    private final BinarySignatureIndex signatures;
+
+    private final VectorSearchEngine fullEngine;
+
+    private final int candidates;
+
+    /**
+     * @param signatures 符号签名索引
+     * @param fullEngine 提供全精度向量的完整引擎
+     * @param candidates 第一阶段保留的候选数量
+     * @throws IllegalArgumentException 当候选数量小于1时抛出
+     */
+    public BinaryPrefilterEngine(BinarySignatureIndex signatures, VectorSearchEngine fullEngine, int candidates) {
+        if (candidates < 1) {
+            throw new IllegalArgumentException("预过滤候选数量必须大于0");
+        }
+        this.signatures = signatures;
+        this.fullEngine = fullEngine;
+        this.candidates = candidates;
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME + "(" + fullEngine.getName() + ")";
+    }
+
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public boolean remove(long chunkId) {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public int removeDocument(long documentId) {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        List<VectorSearchHit> prefiltered = signatures.candidates(
+            query, Math.max(candidates, topK), excludeChunkId, filter);
+        return fullEngine.rescore(query, prefiltered, topK, minScore);
+    }
+
+    @Override
+    public List<VectorSearchHit> searchExact(float[] query, int topK, double minScore, long excludeChunkId) {
+        return fullEngine.searchExact(query, topK, minScore, excludeChunkId);
+    }
+
+    @Override
+    public float[] getVector(long chunkId) {
+        return fullEngine.getVector(chunkId);
+    }
+
+    @Override
+    public boolean contains(long chunkId) {
+        return fullEngine.contains(chunkId);
+    }
+
+    @Override
+    public long[] chunkIds() {
+        return fullEngine.chunkIds();
+    }
+
+    @Override
+    public int size() {
+        return fullEngine.size();
+    }
+
+    @Override
+    public int dimension() {
+        return fullEngine.dimension();
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 1位符号签名索引
+ *
+ * 每个向量按维度取符号位（分量大于0记1），打包为 ceil(dimension / 64) 个long，
+ * 768维向量只占96字节，约为float32存储的1/32。两个签名的汉明距离（异或后 {@link Long#bitCount}）
+ * 近似反映向量夹角：夹角约为 π * 汉明距离 / 维度。
+ *
+ * 用作超大语料检索的第一阶段：全量扫描签名选出汉明距离最小的几千个候选，
+ * 再由检索引擎用全精度向量重新打分（见 {@link BinaryPrefilterEngine}）。
+ *
+ * 删除采用末行填补保持数组紧凑，读写通过读写锁保护。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class BinarySignatureIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotByChunkId = new HashMap<>();
+
+    /**
+     * 签名矩阵，第i行占用 [i * words, (i + 1) * words)
+     */
+    private long[] signatures = new long[0];
+
+    private long[] chunkIds = new long[0];
+
+    private long[] documentIds = new long[0];
+
+    private int dimension;
+
+    private int words;
+
+    private int size;
+
+    /**
+     * 计算向量的符号签名
+     *
+     * @param vector 向量
+     * @return 签名，第d位表示第d个分量是否大于0
+     */
+    public static long[] signature(float[] vector) {
+        long[] signature = new long[(vector.length + Long.SIZE - 1) / Long.SIZE];
+        for (int d = 0; d < vector.length; d++) {
+            if (vector[d] > 0.0f) {
+                signature[d >>> 6] |= 1L << (d & 63);
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 批量写入或替换分块签名
+     *
+     * @param ids 分块ID
+     * @param documentIdsOfChunks 分块所属文档ID
+     * @param vectors 向量，为null的行被忽略
+     * @throws IllegalArgumentException 当向量维度与索引不一致时抛出
+     */
+    public void upsertBatch(long[] ids, long[] documentIdsOfChunks, float[][] vectors) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                float[] vector = vectors[i];
+                if (vector == null || vector.length == 0) {
+                    continue;
+                }
+                if (size == 0 && dimension != vector.length) {
+                    dimension = vector.length;
+                    words = (dimension + Long.SIZE - 1) / Long.SIZE;
+                    signatures = new long[INITIAL_CAPACITY * words];
+                    chunkIds = new long[INITIAL_CAPACITY];
+                    documentIds = new long[INITIAL_CAPACITY];
+                }
+                if (vector.length != dimension) {
+                    throw new IllegalArgumentException(
+                            "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+                }
+
+                Integer existing = slotByChunkId.get(ids[i]);
+                int slot;
+                if (existing != null) {
+                    slot = existing;
+                } else {
+                    ensureCapacity(size + 1);
+                    slot = size++;
+                    slotByChunkId.put(ids[i], slot);
+                }
+                System.arraycopy(signature(vector), 0, signatures, slot * words, words);
+                chunkIds[slot] = ids[i];
+                documentIds[slot] = documentIdsOfChunks[i];
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档的全部分块签名
+     *
+     * @param documentId 文档ID
+     * @return 移除的分块数量
+     */
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int slot = size - 1; slot >= 0; slot--) {
+                if (documentIds[slot] == documentId) {
+                    slotByChunkId.remove(chunkIds[slot]);
+                    removeSlot(slot);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotByChunkId.clear();
+            signatures = new long[0];
+            chunkIds = new long[0];
+            documentIds = new long[0];
+            dimension = 0;
+            words = 0;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按汉明距离选出候选
+     *
+     * @param query 查询向量
+     * @param candidates 候选数量
+     * @param excludeChunkId 需要排除的分块ID，不排除时传-1
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 候选，按汉明距离升序排列；分数为由汉明距离估计的余弦相似度 cos(π * 距离 / 维度)
+     * @throws IllegalArgumentException 当查询向量维度与索引不一致时抛出
+     */
+    public List<VectorSearchHit> candidates(float[] query, int candidates, long excludeChunkId,
+                                            DocumentFilter filter) {
+        if (query == null || candidates <= 0 || (filter != null && filter.isEmpty())) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+
+            long[] querySignature = signature(query);
+            TopKCollector collector = new TopKCollector(Math.min(candidates, size));
+            for (int slot = 0, offset = 0; slot < size; slot++, offset += words) {
+                if (chunkIds[slot] == excludeChunkId || (filter != null && !filter.accepts(documentIds[slot]))) {
+                    continue;
+                }
+                int distance = 0;
+                for (int w = 0; w < words; w++) {
+                    distance += Long.bitCount(querySignature[w] ^ signatures[offset + w]);
+                }
+                collector.offer(slot, -distance);
+            }
+
+            int resultCount = collector.sortDescending();
+            List<VectorSearchHit> hits = new ArrayList<>(resultCount);
+            for (int rank = 0; rank < resultCount; rank++) {
+                int slot = (int) collector.id(rank);
+                double distance = -collector.score(rank);
+                hits.add(new VectorSearchHit(chunkIds[slot], documentIds[slot],
+                    Math.cos(Math.PI * distance / dimension)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 签名矩阵占用的字节数
+     *
+     * @return 已用行的签名字节数
+     */
+    public long signatureBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) size * words * Long.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 用末行填补被删除的行
+     */
+    private void removeSlot(int slot) {
+        int last = size - 1;
+        if (slot != last) {
+            System.arraycopy(signatures, last * words, signatures, slot * words, words);
+            chunkIds[slot] = chunkIds[last];
+            documentIds[slot] = documentIds[last];
+            slotByChunkId.put(chunkIds[slot], slot);
+        }
+        size--;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= chunkIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, chunkIds.length * 2);
+        signatures = Arrays.copyOf(signatures, newCapacity * words);
+        chunkIds = Arrays.copyOf(chunkIds, newCapacity);
+        documentIds = Arrays.copyOf(documentIds, newCapacity);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.customerservice.vector;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 文档质心向量索引
+ *
+ * 文档向量取其全部分块向量（单位向量）的均值再归一化。每个文档保存一份分量和与分块数，
+ * 分块写入时累加，文档重新分块时整体移除后重新累加，不需要回读分块向量。
+ * 质心本身存放在一个以文档ID为行键的 {@link FloatVectorIndex} 中，用作两阶段检索的第一阶段：
+ * 先对文档质心打分选出前M个文档，再只在这些文档的分块中精排。
+ *
+ * 写入通过互斥锁串行化，检索直接使用内部索引自身的读锁。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class DocumentCentroidIndex {
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final Map<Long, float[]> sumByDocument = new HashMap<>();
+
+    private final Map<Long, Integer> countByDocument = new HashMap<>();
+
+    /**
+     * 质心矩阵，行键和文档ID都是文档ID
+     */
+    private final FloatVectorIndex centroids = new FloatVectorIndex();
+
+    /**
+     * 累加一批分块向量
+     *
+     * @param documentIds 分块所属文档ID
+     * @param vectors 分块向量，为null或零向量的行被忽略
+     * @throws IllegalArgumentException 当向量维度与已有质心不一致时抛出
+     */
+    public void addBatch(long[] documentIds, float[][] vectors) {
+        writeLock.lock();
+        try {
+            Map<Long, float[]> touched = new HashMap<>();
+            for (int i = 0; i < documentIds.length; i++) {
+                float[] normalized = vectors[i] != null ? VectorMath.normalize(vectors[i]) : null;
+                if (normalized == null) {
+                    continue;
+                }
+                long documentId = documentIds[i];
+                float[] sum = sumByDocument.get(documentId);
+                if (sum == null) {
+                    sum = new float[normalized.length];
+                    sumByDocument.put(documentId, sum);
+                } else if (sum.length != normalized.length) {
+                    throw new IllegalArgumentException("向量维度不匹配");
+                }
+                for (int d = 0; d < sum.length; d++) {
+                    sum[d] += normalized[d];
+                }
+                countByDocument.merge(documentId, 1, Integer::sum);
+                touched.put(documentId, sum);
+            }
+            // 均值与分量和方向相同，写入时由内部索引归一化
+            for (Map.Entry<Long, float[]> entry : touched.entrySet()) {
+                updateCentroid(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 移除文档的质心
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocument(long documentId) {
+        writeLock.lock();
+        try {
+            sumByDocument.remove(documentId);
+            countByDocument.remove(documentId);
+            centroids.remove(documentId);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        writeLock.lock();
+        try {
+            sumByDocument.clear();
+            countByDocument.clear();
+            centroids.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 获取文档质心
+     *
+     * @param documentId 文档ID
+     * @return 归一化的质心向量，文档没有分块向量时返回null
+     */
+    public float[] getCentroid(long documentId) {
+        return centroids.getVector(documentId);
+    }
+
+    /**
+     * 获取文档参与质心计算的分块数
+     *
+     * @param documentId 文档ID
+     * @return 分块数
+     */
+    public int chunkCount(long documentId) {
+        writeLock.lock();
+        try {
+            return countByDocument.getOrDefault(documentId, 0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 第一阶段：按质心相似度选出前M个文档
+     *
+     * @param query 查询向量
+     * @param topDocuments 返回的文档数量
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 命中结果，分块ID和文档ID均为文档ID，按相似度降序排列
+     */
+    public List<VectorSearchHit> searchDocuments(float[] query, int topDocuments, DocumentFilter filter) {
+        return centroids.search(query, topDocuments, -1.0, -1L, filter);
+    }
+
+    /**
+     * 获取有质心的全部文档ID
+     *
+     * @return 文档ID数组
+     */
+    public long[] documentIds() {
+        return centroids.chunkIds();
+    }
+
+    public int size() {
+        return centroids.size();
+    }
+
+    public int dimension() {
+        return centroids.dimension();
+    }
+
+    private void updateCentroid(long documentId, float[] sum) {
+        // 分块向量相互抵消（零向量）时内部索引会移除该行
+        centroids.upsert(documentId, documentId, sum);
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.customerservice.vector;
+
+import java.util.BitSet;
+
+/**
+ * 文档过滤位图
+ *
+ * 以文档ID为下标的位图，表示一次检索允许命中的文档集合。
+ * 由 {@link DocumentFilterIndex} 按分类、状态、标签解析生成，检索引擎在扫描或图遍历时
+ * 对每个候选做一次位测试，不需要事后过滤（损失召回）或关联查询数据库。
+ * 创建后不再修改，可在多个检索线程间共享。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class DocumentFilter {
+
+    private final BitSet documents;
+
+    DocumentFilter(BitSet documents) {
+        this.documents = documents;
+    }
+
+    /**
+     * 由文档ID列表创建过滤器
+     *
+     * @param documentIds 允许命中的文档ID
+     * @return 过滤器
+     * @throws IllegalArgumentException 文档ID超出位图范围时抛出
+     */
+    public static DocumentFilter of(long... documentIds) {
+        BitSet documents = new BitSet();
+        for (long documentId : documentIds) {
+            documents.set(DocumentFilterIndex.bitIndex(documentId));
+        }
+        return new DocumentFilter(documents);
+    }
+
+    /**
+     * 判断文档是否允许命中
+     *
+     * @param documentId 文档ID
+     * @return 是否允许
+     */
+    public boolean accepts(long documentId) {
+        return documentId >= 0 && documentId < Integer.MAX_VALUE && documents.get((int) documentId);
+    }
+
+    /**
+     * 允许命中的文档数量
+     *
+     * @return 文档数量
+     */
+    public int cardinality() {
+        return documents.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return documents.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentFilter{documents=" + cardinality() + "}";
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 文档属性位图索引
+ *
+ * 与向量索引并行维护，按分类、文档状态、标签分别记录文档ID位图，并保存分类的父子关系：
+ * <ul>
+ *   <li>分类过滤包含整棵子树：子树内各分类的位图按位或</li>
+ *   <li>状态、标签各自取并集（命中任一即可）</li>
+ *   <li>不同维度之间按位与，得到一个 {@link DocumentFilter}</li>
+ * </ul>
+ * 解析结果是独立的位图副本，检索期间属性变更不会影响正在进行的检索。
+ *
+ * 读写通过读写锁保护。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class DocumentFilterIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 分类ID到父分类ID的映射，顶级分类的父分类为null
+     */
+    private final Map<Long, Long> parentByCategory = new HashMap<>();
+
+    private final Map<Long, Set<Long>> childrenByCategory = new HashMap<>();
+
+    private final Map<Long, BitSet> documentsByCategory = new HashMap<>();
+
+    private final Map<String, BitSet> documentsByStatus = new HashMap<>();
+
+    private final Map<String, BitSet> documentsByTag = new HashMap<>();
+
+    private final Map<Long, DocumentAttributes> attributesByDocument = new HashMap<>();
+
+    /**
+     * 写入或更新分类
+     *
+     * @param categoryId 分类ID
+     * @param parentId 父分类ID，顶级分类为null
+     */
+    public void putCategory(long categoryId, Long parentId) {
+        lock.writeLock().lock();
+        try {
+            if (parentByCategory.containsKey(categoryId)) {
+                Long oldParent = parentByCategory.get(categoryId);
+                if (oldParent != null) {
+                    removeChild(oldParent, categoryId);
+                }
+            }
+            parentByCategory.put(categoryId, parentId);
+            if (parentId != null) {
+                childrenByCategory.computeIfAbsent(parentId, key -> new HashSet<>()).add(categoryId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除分类
+     *
+     * @param categoryId 分类ID
+     */
+    public void removeCategory(long categoryId) {
+        lock.writeLock().lock();
+        try {
+            if (!parentByCategory.containsKey(categoryId)) {
+                return;
+            }
+            Long parentId = parentByCategory.remove(categoryId);
+            if (parentId != null) {
+                removeChild(parentId, categoryId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 写入或更新文档属性
+     *
+     * @param documentId 文档ID
+     * @param categoryId 分类ID，可为null
+     * @param status 文档状态，可为null
+     * @param tags 标签，可为null
+     * @throws IllegalArgumentException 文档ID超出位图范围时抛出
+     */
+    public void putDocument(long documentId, Long categoryId, String status, Collection<String> tags) {
+        int bit = bitIndex(documentId);
+        DocumentAttributes attributes = new DocumentAttributes(categoryId, normalizeStatus(status), normalizeTags(tags));
+
+        lock.writeLock().lock();
+        try {
+            DocumentAttributes previous = attributesByDocument.put(documentId, attributes);
+            if (previous != null) {
+                clearBits(bit, previous);
+            }
+            if (attributes.categoryId != null) {
+                documentsByCategory.computeIfAbsent(attributes.categoryId, key -> new BitSet()).set(bit);
+            }
+            if (attributes.status != null) {
+                documentsByStatus.computeIfAbsent(attributes.status, key -> new BitSet()).set(bit);
+            }
+            for (String tag : attributes.tags) {
+                documentsByTag.computeIfAbsent(tag, key -> new BitSet()).set(bit);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档属性
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            DocumentAttributes previous = attributesByDocument.remove(documentId);
+            if (previous != null) {
+                clearBits(bitIndex(documentId), previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            parentByCategory.clear();
+            childrenByCategory.clear();
+            documentsByCategory.clear();
+            documentsByStatus.clear();
+            documentsByTag.clear();
+            attributesByDocument.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 解析过滤条件
+     *
+     * @param categoryId 分类ID（包含其全部子分类），为null时不按分类过滤
+     * @param statuses 允许的文档状态，为空时不按状态过滤
+     * @param tags 标签，文档包含任一标签即可，为空时不按标签过滤
+     * @return 过滤器；没有任何条件时返回null，表示不过滤
+     */
+    public DocumentFilter resolve(Long categoryId, Collection<String> statuses, Collection<String> tags) {
+        boolean byStatus = statuses != null && !statuses.isEmpty();
+        List<String> normalizedTags = normalizeTags(tags);
+        if (categoryId == null && !byStatus && normalizedTags.isEmpty()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            if (categoryId != null) {
+                result = new BitSet();
+                for (Long category : subtree(categoryId)) {
+                    BitSet documents = documentsByCategory.get(category);
+                    if (documents != null) {
+                        result.or(documents);
+                    }
+                }
+            }
+            if (byStatus) {
+                BitSet union = new BitSet();
+                for (String status : statuses) {
+                    BitSet documents = documentsByStatus.get(normalizeStatus(status));
+                    if (documents != null) {
+                        union.or(documents);
+                    }
+                }
+                result = intersect(result, union);
+            }
+            if (!normalizedTags.isEmpty()) {
+                BitSet union = new BitSet();
+                for (String tag : normalizedTags) {
+                    BitSet documents = documentsByTag.get(tag);
+                    if (documents != null) {
+                        union.or(documents);
+                    }
+                }
+                result = intersect(result, union);
+            }
+            return new DocumentFilter(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取分类及其全部后代分类的ID
+     *
+     * @param categoryId 分类ID
+     * @return 分类ID集合（包含自身）
+     */
+    public Set<Long> subtree(long categoryId) {
+        lock.readLock().lock();
+        try {
+            Set<Long> result = new HashSet<>();
+            Deque<Long> pending = new ArrayDeque<>();
+            pending.push(categoryId);
+            while (!pending.isEmpty()) {
+                Long current = pending.pop();
+                // 集合去重同时防止异常数据中的环
+                if (result.add(current)) {
+                    Set<Long> children = childrenByCategory.get(current);
+                    if (children != null) {
+                        pending.addAll(children);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return attributesByDocument.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int categoryCount() {
+        lock.readLock().lock();
+        try {
+            return parentByCategory.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 将文档ID转换为位图下标
+     *
+     * @param documentId 文档ID
+     * @return 位图下标
+     * @throws IllegalArgumentException 文档ID为负数或超出int范围时抛出
+     */
+    static int bitIndex(long documentId) {
+        if (documentId < 0 || documentId >= Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("文档ID超出过滤位图范围: " + documentId);
+        }
+        return (int) documentId;
+    }
+
+    private void clearBits(int bit, DocumentAttributes attributes) {
+        if (attributes.categoryId != null) {
+            clearBit(documentsByCategory, attributes.categoryId, bit);
+        }
+        if (attributes.status != null) {
+            clearBit(documentsByStatus, attributes.status, bit);
+        }
+        for (String tag : attributes.tags) {
+            clearBit(documentsByTag, tag, bit);
+        }
+    }
+
+    private static <K> void clearBit(Map<K, BitSet> bitmaps, K key, int bit) {
+        BitSet documents = bitmaps.get(key);
+        if (documents != null) {
+            documents.clear(bit);
+            if (documents.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private void removeChild(Long parentId, long categoryId) {
+        Set<Long> siblings = childrenByCategory.get(parentId);
+        if (siblings != null) {
+            siblings.remove(categoryId);
+            if (siblings.isEmpty()) {
+                childrenByCategory.remove(parentId);
+            }
+        }
+    }
+
+    private static BitSet intersect(BitSet current, BitSet other) {
+        if (current == null) {
+            return other;
+        }
+        current.and(other);
+        return current;
+    }
+
+    private static String normalizeStatus(String status) {
+        if (status == null || status.trim().isEmpty()) {
+            return null;
+        }
+        return status.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static List<String> normalizeTags(Collection<String> tags) {
+        List<String> normalized = new ArrayList<>();
+        if (tags == null) {
+            return normalized;
+        }
+        for (String tag : tags) {
+            if (tag != null && !tag.trim().isEmpty()) {
+                String value = tag.trim().toLowerCase(Locale.ROOT);
+                if (!normalized.contains(value)) {
+                    normalized.add(value);
+                }
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * 文档当前的属性，用于更新时清除旧位
+     */
+    private static final class DocumentAttributes {
+        private final Long categoryId;
+        private final String status;
+        private final List<String> tags;
+
+        DocumentAttributes(Long categoryId, String status, List<String> tags) {
+            this.categoryId = categoryId;
+            this.status = status;
+            this.tags = tags;
+        }
+    }
+}
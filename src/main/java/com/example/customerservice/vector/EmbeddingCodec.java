@@ -0,0 +1,175 @@
+package com.example.customerservice.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 向量二进制编解码器
+ *
+ * 二进制格式（小端序）：
+ * <pre>
+ * [0]     格式版本（当前为1）
+ * [1..3]  保留字节
+ * [4..7]  向量维度 int32
+ * [8..]   float32 * 维度
+ * </pre>
+ * 相比 "[0.123,...]" 文本格式，存储空间约为其1/3到1/4，且解码无需字符串解析。
+ * 同时保留旧文本格式的解析，用于迁移历史数据。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class EmbeddingCodec {
+
+    /**
+     * 当前二进制格式版本
+     */
+    public static final byte FORMAT_VERSION = 1;
+
+    /**
+     * 头部长度（字节）
+     */
+    public static final int HEADER_BYTES = 8;
+
+    private EmbeddingCodec() {
+    }
+
+    /**
+     * 将向量编码为二进制格式
+     *
+     * @param vector 向量数组
+     * @return 二进制数据，向量为空时返回null
+     */
+    public static byte[] encode(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(FORMAT_VERSION).put((byte) 0).put((byte) 0).put((byte) 0);
+        buffer.putInt(vector.length);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    /**
+     * 将二进制数据解码为向量数组
+     *
+     * @param data 二进制数据
+     * @return 向量数组，数据为空时返回null
+     * @throws IllegalArgumentException 当数据格式无效时抛出
+     */
+    public static float[] decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        float[] vector = new float[dimension(data)];
+        asFloatBuffer(data).get(vector);
+        return vector;
+    }
+
+    /**
+     * 将二进制数据直接解码到目标数组的指定位置
+     *
+     * @param data 二进制数据
+     * @param target 目标数组
+     * @param offset 目标起始位置
+     * @return 向量维度
+     * @throws IllegalArgumentException 当数据格式无效或目标空间不足时抛出
+     */
+    public static int decodeInto(byte[] data, float[] target, int offset) {
+        int dimension = dimension(data);
+        if (offset < 0 || offset + dimension > target.length) {
+            throw new IllegalArgumentException("目标数组空间不足");
+        }
+        asFloatBuffer(data).get(target, offset, dimension);
+        return dimension;
+    }
+
+    /**
+     * 获取二进制数据的只读FloatBuffer视图，不复制数据
+     *
+     * @param data 二进制数据
+     * @return 向量内容的FloatBuffer视图
+     * @throws IllegalArgumentException 当数据格式无效时抛出
+     */
+    public static FloatBuffer asFloatBuffer(byte[] data) {
+        int dimension = dimension(data);
+        return ByteBuffer.wrap(data, HEADER_BYTES, dimension * Float.BYTES)
+                .slice()
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asFloatBuffer()
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * 读取并校验二进制数据头部中的维度
+     *
+     * @param data 二进制数据
+     * @return 向量维度
+     * @throws IllegalArgumentException 当数据格式无效时抛出
+     */
+    public static int dimension(byte[] data) {
+        if (data == null || data.length < HEADER_BYTES) {
+            throw new IllegalArgumentException("向量数据长度不足");
+        }
+        if (data[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("不支持的向量格式版本: " + data[0]);
+        }
+
+        int dimension = ByteBuffer.wrap(data, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+        if (dimension <= 0 || data.length != HEADER_BYTES + dimension * Float.BYTES) {
+            throw new IllegalArgumentException("向量数据长度与维度不一致: " + dimension);
+        }
+        return dimension;
+    }
+
+    /**
+     * 解析旧版文本格式的向量
+     *
+     * @param text 向量文本，如：[0.1,0.2,0.3]
+     * @return 向量数组，如果解析失败返回null
+     */
+    public static float[] parseText(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        int start = 0;
+        int end = text.length();
+        while (start < end && (Character.isWhitespace(text.charAt(start)) || text.charAt(start) == '[')) {
+            start++;
+        }
+        while (end > start && (Character.isWhitespace(text.charAt(end - 1)) || text.charAt(end - 1) == ']')) {
+            end--;
+        }
+        if (start >= end) {
+            return null;
+        }
+
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        try {
+            float[] result = new float[count];
+            int index = 0;
+            int tokenStart = start;
+            for (int i = start; i <= end; i++) {
+                if (i == end || text.charAt(i) == ',') {
+                    result[index++] = Float.parseFloat(text.substring(tokenStart, i).trim());
+                    tokenStart = i + 1;
+                }
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,764 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 常驻内存的精确向量索引
+ *
+ * 使用一段连续的float[]矩阵存储所有向量（行优先），并以平行的long[]数组记录分块ID和文档ID。
+ * 向量写入时归一化，检索时余弦相似度即为查询向量与矩阵行的点积（见 {@link VectorMath}），
+ * 不经过JPA实体，也不产生逐条的中间对象。
+ * 删除采用"末行填补"方式保持矩阵紧凑。
+ *
+ * 读写通过读写锁保护：检索可并发执行，增删操作互斥。
+ *
+ * 指定ForkJoinPool时，向量数量达到并行阈值的检索会将矩阵按行切分为若干分区，
+ * 各分区在线程池中独立打分并维护自己的Top-K堆，最后归并为全局Top-K；
+ * 小规模索引仍在调用线程中单线程扫描，避免任务调度开销。
+ *
+ * 多查询批量检索按分块矩阵乘法执行：矩阵按行切成约 {@value #BATCH_BLOCK_BYTES} 字节的块，
+ * 每个块载入缓存后依次与批内全部查询计算点积，每个向量在一批查询中只从内存读取一次。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class FloatVectorIndex implements VectorSearchEngine {
+
+    /**
+     * 引擎名称
+     */
+    public static final String ENGINE_NAME = "exact";
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 单个数组的最大安全长度，部分虚拟机会在数组中保留头部字
+     */
+    static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * 批量检索时每个行块的目标字节数，约为L2缓存的一部分
+     */
+    static final int BATCH_BLOCK_BYTES = 128 * 1024;
+
+    /**
+     * 并行检索线程池，为null时始终单线程检索
+     */
+    private final ForkJoinPool searchPool;
+
+    /**
+     * 每个并行分区的最大行数
+     */
+    private final int partitionSize;
+
+    /**
+     * 启用并行检索的最小向量数量
+     */
+    private final int parallelThreshold;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 分块ID到矩阵行号的映射
+     */
+    private final Map<Long, Integer> slotByChunkId = new HashMap<>();
+
+    /**
+     * 向量矩阵，第i行占用 [i * dimension, (i + 1) * dimension)；
+     * 总长度不超过 {@link #MAX_ARRAY_LENGTH}，行偏移量以int计算不会溢出
+     */
+    private float[] matrix = new float[0];
+
+    /**
+     * 与矩阵行一一对应的分块ID
+     */
+    private long[] chunkIds = new long[0];
+
+    /**
+     * 与矩阵行一一对应的文档ID
+     */
+    private long[] documentIds = new long[0];
+
+    /**
+     * 向量维度，首个向量写入时确定
+     */
+    private int dimension;
+
+    private int size;
+
+    /**
+     * 构造单线程检索的索引
+     */
+    public FloatVectorIndex() {
+        this(null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 构造支持分区并行检索的索引
+     *
+     * @param searchPool 并行检索线程池
+     * @param partitionSize 每个分区的最大行数
+     * @param parallelThreshold 向量数量达到该值时才并行检索
+     */
+    public FloatVectorIndex(ForkJoinPool searchPool, int partitionSize, int parallelThreshold) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("分区大小必须大于0");
+        }
+        this.searchPool = searchPool;
+        this.partitionSize = partitionSize;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    /**
+     * 写入或替换分块向量
+     *
+     * @param chunkId 分块ID
+     * @param documentId 文档ID
+     * @param vector 向量
+     * @throws IllegalArgumentException 当向量维度与索引不一致时抛出
+     */
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (size == 0 && dimension != vector.length) {
+                // 维度变化时丢弃旧数组，由ensureCapacity按新维度分配
+                dimension = vector.length;
+                matrix = new float[0];
+                chunkIds = new long[0];
+                documentIds = new long[0];
+            }
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+            }
+
+            float[] normalized = VectorMath.normalize(vector);
+            if (normalized == null) {
+                // 零向量无法参与余弦检索
+                Integer stale = slotByChunkId.remove(chunkId);
+                if (stale != null) {
+                    removeSlot(stale);
+                }
+                return;
+            }
+
+            Integer existing = slotByChunkId.get(chunkId);
+            int slot;
+            if (existing != null) {
+                slot = existing;
+            } else {
+                ensureCapacity(size + 1);
+                slot = size++;
+                slotByChunkId.put(chunkId, slot);
+            }
+
+            System.arraycopy(normalized, 0, matrix, slot * dimension, dimension);
+            chunkIds[slot] = chunkId;
+            documentIds[slot] = documentId;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除分块向量
+     *
+     * @param chunkId 分块ID
+     * @return 是否移除成功
+     */
+    @Override
+    public boolean remove(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByChunkId.remove(chunkId);
+            if (slot == null) {
+                return false;
+            }
+            removeSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档的全部分块向量
+     *
+     * @param documentId 文档ID
+     * @return 移除的分块数量
+     */
+    @Override
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            // 倒序遍历，保证末行填补不会跳过尚未检查的行
+            for (int slot = size - 1; slot >= 0; slot--) {
+                if (documentIds[slot] == documentId) {
+                    slotByChunkId.remove(chunkIds[slot]);
+                    removeSlot(slot);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotByChunkId.clear();
+            matrix = new float[0];
+            chunkIds = new long[0];
+            documentIds = new long[0];
+            dimension = 0;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 余弦相似度检索
+     *
+     * @param query 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param excludeChunkId 需要排除的分块ID（如相似分块查询中的参考分块），不排除时传-1
+     * @param filter 文档过滤器，为null时不过滤；被过滤的行不计算点积
+     * @return 按相似度降序排列的命中结果
+     */
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        if (query == null || topK <= 0 || (filter != null && filter.isEmpty())) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+
+            float[] normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return new ArrayList<>();
+            }
+
+            int k = Math.min(topK, size);
+            TopKCollector collector;
+            if (searchPool != null && size >= parallelThreshold && size > partitionSize) {
+                collector = searchPool.invoke(new PartitionSearchTask(
+                        normalizedQuery, k, minScore, excludeChunkId, filter, 0, size));
+            } else {
+                collector = scan(normalizedQuery, k, minScore, excludeChunkId, filter, 0, size);
+            }
+
+            int resultCount = collector.sortDescending();
+            List<VectorSearchHit> hits = new ArrayList<>(resultCount);
+            for (int rank = 0; rank < resultCount; rank++) {
+                int slot = (int) collector.id(rank);
+                hits.add(new VectorSearchHit(chunkIds[slot], documentIds[slot], collector.score(rank)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按文档折叠的相似度检索
+     * 扫描时直接按文档收集，每个文档维护自己的Top-M堆，不需要放大候选数量再折叠；并行分区的收集器最后归并
+     *
+     * @param query 查询向量
+     * @param documents 返回的文档数量
+     * @param perDocument 每个文档返回的分块数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 按相似度降序排列的命中结果
+     * @throws IllegalArgumentException 当查询向量维度与索引不一致时抛出
+     */
+    @Override
+    public List<VectorSearchHit> searchGrouped(float[] query, int documents, int perDocument, double minScore,
+                                               DocumentFilter filter) {
+        if (query == null || documents <= 0 || perDocument <= 0 || (filter != null && filter.isEmpty())) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+
+            float[] normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return new ArrayList<>();
+            }
+
+            int groups = Math.min(documents, size);
+            int perGroup = Math.min(perDocument, size);
+            GroupedTopKCollector collector;
+            if (searchPool != null && size >= parallelThreshold && size > partitionSize) {
+                collector = searchPool.invoke(new GroupedPartitionTask(
+                        normalizedQuery, groups, perGroup, minScore, filter, 0, size));
+            } else {
+                collector = scanGrouped(normalizedQuery, groups, perGroup, minScore, filter, 0, size);
+            }
+
+            int resultCount = collector.sortDescending();
+            List<VectorSearchHit> hits = new ArrayList<>(resultCount);
+            for (int rank = 0; rank < resultCount; rank++) {
+                int slot = (int) collector.id(rank);
+                hits.add(new VectorSearchHit(chunkIds[slot], documentIds[slot], collector.score(rank)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 多查询批量检索
+     *
+     * @param queries 查询向量，为null或零向量的查询返回空结果
+     * @param topK 每个查询返回的结果数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 与查询一一对应的命中结果列表
+     * @throws IllegalArgumentException 当查询向量维度与索引不一致时抛出
+     */
+    @Override
+    public List<List<VectorSearchHit>> searchBatch(float[][] queries, int topK, double minScore,
+                                                   DocumentFilter filter) {
+        List<List<VectorSearchHit>> results = new ArrayList<>(queries.length);
+        for (int q = 0; q < queries.length; q++) {
+            results.add(new ArrayList<>());
+        }
+        if (topK <= 0 || queries.length == 0 || (filter != null && filter.isEmpty())) {
+            return results;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return results;
+            }
+
+            float[][] normalizedQueries = new float[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                if (queries[q] == null) {
+                    continue;
+                }
+                if (queries[q].length != dimension) {
+                    throw new IllegalArgumentException("向量维度不匹配");
+                }
+                normalizedQueries[q] = VectorMath.normalize(queries[q]);
+            }
+
+            int k = Math.min(topK, size);
+            TopKCollector[] collectors;
+            if (searchPool != null && size >= parallelThreshold && size > partitionSize) {
+                collectors = searchPool.invoke(new BatchPartitionTask(normalizedQueries, k, minScore, filter, 0, size));
+            } else {
+                collectors = scanBatch(normalizedQueries, k, minScore, filter, 0, size);
+            }
+
+            for (int q = 0; q < collectors.length; q++) {
+                TopKCollector collector = collectors[q];
+                if (collector == null) {
+                    continue;
+                }
+                int resultCount = collector.sortDescending();
+                List<VectorSearchHit> hits = results.get(q);
+                for (int rank = 0; rank < resultCount; rank++) {
+                    int slot = (int) collector.id(rank);
+                    hits.add(new VectorSearchHit(chunkIds[slot], documentIds[slot], collector.score(rank)));
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 直接在矩阵行上为候选重新打分
+     *
+     * @param query 查询向量
+     * @param candidates 候选分块
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @return 按相似度降序排列的命中结果
+     */
+    @Override
+    public List<VectorSearchHit> rescore(float[] query, List<VectorSearchHit> candidates, int topK,
+                                         double minScore) {
+        if (query == null || topK <= 0 || candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+            float[] normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return new ArrayList<>();
+            }
+
+            TopKCollector collector = new TopKCollector(Math.min(topK, candidates.size()), minScore);
+            for (VectorSearchHit candidate : candidates) {
+                Integer slot = slotByChunkId.get(candidate.getChunkId());
+                if (slot != null) {
+                    collector.offer(slot, VectorMath.dot(normalizedQuery, 0, matrix, slot * dimension, dimension));
+                }
+            }
+
+            int resultCount = collector.sortDescending();
+            List<VectorSearchHit> hits = new ArrayList<>(resultCount);
+            for (int rank = 0; rank < resultCount; rank++) {
+                int slot = (int) collector.id(rank);
+                hits.add(new VectorSearchHit(chunkIds[slot], documentIds[slot], collector.score(rank)));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取分块向量的副本
+     * 注意：返回的是写入时归一化后的向量，用作余弦相似度查询时与原向量等价
+     *
+     * @param chunkId 分块ID
+     * @return 向量，不存在时返回null
+     */
+    @Override
+    public float[] getVector(long chunkId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByChunkId.get(chunkId);
+            if (slot == null) {
+                return null;
+            }
+            int offset = slot * dimension;
+            return Arrays.copyOfRange(matrix, offset, offset + dimension);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 判断索引中是否包含分块
+     *
+     * @param chunkId 分块ID
+     * @return 是否包含
+     */
+    @Override
+    public boolean contains(long chunkId) {
+        lock.readLock().lock();
+        try {
+            return slotByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] chunkIds() {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOf(chunkIds, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 顺序扫描 [from, to) 行并收集Top-K（调用方持有读锁）
+     */
+    private TopKCollector scan(float[] normalizedQuery, int k, double minScore, long excludeChunkId,
+                               DocumentFilter filter, int from, int to) {
+        TopKCollector collector = new TopKCollector(k, minScore);
+        for (int slot = from, offset = from * dimension; slot < to; slot++, offset += dimension) {
+            if (chunkIds[slot] != excludeChunkId && (filter == null || filter.accepts(documentIds[slot]))) {
+                collector.offer(slot, VectorMath.dot(normalizedQuery, 0, matrix, offset, dimension));
+            }
+        }
+        return collector;
+    }
+
+    /**
+     * 顺序扫描 [from, to) 行并按文档收集（调用方持有读锁）
+     */
+    private GroupedTopKCollector scanGrouped(float[] normalizedQuery, int groups, int perGroup, double minScore,
+                                             DocumentFilter filter, int from, int to) {
+        GroupedTopKCollector collector = new GroupedTopKCollector(groups, perGroup, minScore);
+        for (int slot = from, offset = from * dimension; slot < to; slot++, offset += dimension) {
+            if (filter == null || filter.accepts(documentIds[slot])) {
+                collector.offer(slot, documentIds[slot], VectorMath.dot(normalizedQuery, 0, matrix, offset, dimension));
+            }
+        }
+        return collector;
+    }
+
+    /**
+     * 分块扫描 [from, to) 行，为每个查询收集Top-K（调用方持有读锁）
+     * 外层按行块推进，内层遍历查询，行块在缓存中被批内所有查询复用
+     */
+    private TopKCollector[] scanBatch(float[][] normalizedQueries, int k, double minScore, DocumentFilter filter,
+                                      int from, int to) {
+        TopKCollector[] collectors = new TopKCollector[normalizedQueries.length];
+        for (int q = 0; q < normalizedQueries.length; q++) {
+            if (normalizedQueries[q] != null) {
+                collectors[q] = new TopKCollector(k, minScore);
+            }
+        }
+
+        int blockRows = Math.max(8, BATCH_BLOCK_BYTES / (dimension * Float.BYTES));
+        for (int blockStart = from; blockStart < to; blockStart += blockRows) {
+            int blockEnd = Math.min(blockStart + blockRows, to);
+            for (int q = 0; q < normalizedQueries.length; q++) {
+                float[] query = normalizedQueries[q];
+                if (query == null) {
+                    continue;
+                }
+                TopKCollector collector = collectors[q];
+                for (int slot = blockStart, offset = blockStart * dimension; slot < blockEnd;
+                     slot++, offset += dimension) {
+                    if (filter == null || filter.accepts(documentIds[slot])) {
+                        collector.offer(slot, VectorMath.dot(query, 0, matrix, offset, dimension));
+                    }
+                }
+            }
+        }
+        return collectors;
+    }
+
+    /**
+     * 分区检索任务：区间超过分区大小时二分，否则顺序扫描；子任务结果归并为一个Top-K
+     * 发起检索的线程在invoke期间持有读锁，工作线程只读矩阵，不会与写操作并发
+     */
+    @SuppressWarnings("serial")
+    private final class PartitionSearchTask extends RecursiveTask<TopKCollector> {
+
+        private final float[] normalizedQuery;
+        private final int k;
+        private final double minScore;
+        private final long excludeChunkId;
+        private final DocumentFilter filter;
+        private final int from;
+        private final int to;
+
+        PartitionSearchTask(float[] normalizedQuery, int k, double minScore, long excludeChunkId,
+                            DocumentFilter filter, int from, int to) {
+            this.normalizedQuery = normalizedQuery;
+            this.k = k;
+            this.minScore = minScore;
+            this.excludeChunkId = excludeChunkId;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopKCollector compute() {
+            if (to - from <= partitionSize) {
+                return scan(normalizedQuery, k, minScore, excludeChunkId, filter, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            PartitionSearchTask left = new PartitionSearchTask(
+                    normalizedQuery, k, minScore, excludeChunkId, filter, from, middle);
+            PartitionSearchTask right = new PartitionSearchTask(
+                    normalizedQuery, k, minScore, excludeChunkId, filter, middle, to);
+            left.fork();
+            TopKCollector merged = right.compute();
+            merged.addAll(left.join());
+            return merged;
+        }
+    }
+
+    /**
+     * 按文档折叠的分区检索任务：与 {@link PartitionSearchTask} 相同的切分方式，子任务的收集器归并为一个
+     */
+    @SuppressWarnings("serial")
+    private final class GroupedPartitionTask extends RecursiveTask<GroupedTopKCollector> {
+
+        private final float[] normalizedQuery;
+        private final int groups;
+        private final int perGroup;
+        private final double minScore;
+        private final DocumentFilter filter;
+        private final int from;
+        private final int to;
+
+        GroupedPartitionTask(float[] normalizedQuery, int groups, int perGroup, double minScore,
+                             DocumentFilter filter, int from, int to) {
+            this.normalizedQuery = normalizedQuery;
+            this.groups = groups;
+            this.perGroup = perGroup;
+            this.minScore = minScore;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupedTopKCollector compute() {
+            if (to - from <= partitionSize) {
+                return scanGrouped(normalizedQuery, groups, perGroup, minScore, filter, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            GroupedPartitionTask left = new GroupedPartitionTask(
+                    normalizedQuery, groups, perGroup, minScore, filter, from, middle);
+            GroupedPartitionTask right = new GroupedPartitionTask(
+                    normalizedQuery, groups, perGroup, minScore, filter, middle, to);
+            left.fork();
+            GroupedTopKCollector merged = right.compute();
+            merged.addAll(left.join());
+            return merged;
+        }
+    }
+
+    /**
+     * 批量分区检索任务：与 {@link PartitionSearchTask} 相同的切分方式，每个分区为批内每个查询各维护一个Top-K
+     */
+    @SuppressWarnings("serial")
+    private final class BatchPartitionTask extends RecursiveTask<TopKCollector[]> {
+
+        private final float[][] normalizedQueries;
+        private final int k;
+        private final double minScore;
+        private final DocumentFilter filter;
+        private final int from;
+        private final int to;
+
+        BatchPartitionTask(float[][] normalizedQueries, int k, double minScore, DocumentFilter filter,
+                           int from, int to) {
+            this.normalizedQueries = normalizedQueries;
+            this.k = k;
+            this.minScore = minScore;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopKCollector[] compute() {
+            if (to - from <= partitionSize) {
+                return scanBatch(normalizedQueries, k, minScore, filter, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            BatchPartitionTask left = new BatchPartitionTask(normalizedQueries, k, minScore, filter, from, middle);
+            BatchPartitionTask right = new BatchPartitionTask(normalizedQueries, k, minScore, filter, middle, to);
+            left.fork();
+            TopKCollector[] merged = right.compute();
+            TopKCollector[] other = left.join();
+            for (int q = 0; q < merged.length; q++) {
+                if (merged[q] != null) {
+                    merged[q].addAll(other[q]);
+                }
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * 用末行填补被删除的行
+     */
+    private void removeSlot(int slot) {
+        int last = size - 1;
+        if (slot != last) {
+            System.arraycopy(matrix, last * dimension, matrix, slot * dimension, dimension);
+            chunkIds[slot] = chunkIds[last];
+            documentIds[slot] = documentIds[last];
+            slotByChunkId.put(chunkIds[slot], slot);
+        }
+        size--;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= chunkIds.length) {
+            return;
+        }
+        int newCapacity = grownCapacity(chunkIds.length, required, dimension);
+        matrix = Arrays.copyOf(matrix, newCapacity * dimension);
+        chunkIds = Arrays.copyOf(chunkIds, newCapacity);
+        documentIds = Arrays.copyOf(documentIds, newCapacity);
+    }
+
+    /**
+     * 计算扩容后的行数：按两倍增长，但矩阵长度不超过单个数组的上限
+     *
+     * @param capacity 当前行数
+     * @param required 需要的最小行数
+     * @param dimension 向量维度
+     * @return 新的行数
+     * @throws IllegalStateException 当需要的行数超出单个float数组可容纳的范围时抛出
+     */
+    static int grownCapacity(int capacity, int required, int dimension) {
+        int maxRows = MAX_ARRAY_LENGTH / dimension;
+        if ((long) required * dimension > MAX_ARRAY_LENGTH) {
+            throw new IllegalStateException("向量矩阵超出单个数组的容量上限（最多 " + maxRows + " 行 × "
+                    + dimension + " 维），请改用 offheap、hnsw 或 ivfpq 引擎");
+        }
+        long grown = Math.max(Math.max((long) capacity * 2, INITIAL_CAPACITY), required);
+        return (int) Math.min(grown, maxRows);
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.customerservice.vector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按组折叠的有界Top-K收集器
+ *
+ * 在打分过程中直接收集"前G个不同的组，每组分数最高的N项"，组通常是文档，项是分块。
+ * 每个组维护一个容量为N的最小堆；各组以组内最高分排成一个容量为G的最小堆，
+ * 新组的分数不超过当前第G名组的最高分时直接丢弃。内存占用固定为 G * N。
+ *
+ * 组集合和每组的最高分是精确的；被挤出前G名后又重新进入的组，只保留重新进入之后提交的项。
+ * 分数相同时先到者优先保留，输出按分数降序、ID升序。非线程安全。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class GroupedTopKCollector {
+
+    private final int groupCapacity;
+    private final int perGroup;
+    private final double minScore;
+
+    private final Map<Long, Integer> slotByGroup = new HashMap<>();
+
+    private final long[] groupKeys;
+    private final double[] groupBest;
+    private final int[] counts;
+
+    /**
+     * 组内条目，槽位s占用 [s * perGroup, (s + 1) * perGroup)，各自构成按分数的最小堆
+     */
+    private final long[] ids;
+    private final double[] scores;
+
+    /**
+     * 按组内最高分排列的槽位最小堆，position为槽位在堆中的下标
+     */
+    private final int[] heap;
+    private final int[] position;
+    private int groupSize;
+
+    private long[] sortedIds;
+    private long[] sortedGroups;
+    private double[] sortedScores;
+
+    /**
+     * 构造函数
+     *
+     * @param groups 保留的组数量
+     * @param perGroup 每组保留的项数量
+     */
+    public GroupedTopKCollector(int groups, int perGroup) {
+        this(groups, perGroup, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param groups 保留的组数量
+     * @param perGroup 每组保留的项数量
+     * @param minScore 最低分数，低于该分数的候选直接丢弃
+     * @throws IllegalArgumentException 当组数量或每组数量为负数时抛出
+     */
+    public GroupedTopKCollector(int groups, int perGroup, double minScore) {
+        if (groups < 0 || perGroup < 0) {
+            throw new IllegalArgumentException("组数量和每组数量不能为负数");
+        }
+        this.groupCapacity = groups;
+        this.perGroup = perGroup;
+        this.minScore = minScore;
+        this.groupKeys = new long[groups];
+        this.groupBest = new double[groups];
+        this.counts = new int[groups];
+        this.ids = new long[groups * perGroup];
+        this.scores = new double[groups * perGroup];
+        this.heap = new int[groups];
+        this.position = new int[groups];
+    }
+
+    /**
+     * 提交一个候选
+     *
+     * @param id 候选ID
+     * @param group 候选所属组
+     * @param score 分数
+     * @return 是否被保留
+     */
+    public boolean offer(long id, long group, double score) {
+        if (score < minScore || Double.isNaN(score) || groupCapacity == 0 || perGroup == 0) {
+            return false;
+        }
+        if (sortedIds != null) {
+            throw new IllegalStateException("排序后不能继续提交候选");
+        }
+
+        Integer existing = slotByGroup.get(group);
+        if (existing != null) {
+            int slot = existing;
+            if (!offerToSlot(slot, id, score)) {
+                return false;
+            }
+            if (score > groupBest[slot]) {
+                groupBest[slot] = score;
+                siftDownGroup(position[slot]);
+            }
+            return true;
+        }
+
+        int slot;
+        if (groupSize < groupCapacity) {
+            slot = groupSize;
+            heap[groupSize] = slot;
+            position[slot] = groupSize;
+            groupSize++;
+        } else {
+            slot = heap[0];
+            if (score <= groupBest[slot]) {
+                return false;
+            }
+            // 挤出最高分最低的组，复用其槽位
+            slotByGroup.remove(groupKeys[slot]);
+        }
+        groupKeys[slot] = group;
+        groupBest[slot] = score;
+        counts[slot] = 0;
+        offerToSlot(slot, id, score);
+        slotByGroup.put(group, slot);
+        siftUpGroup(position[slot]);
+        siftDownGroup(position[slot]);
+        return true;
+    }
+
+    /**
+     * 合并另一个收集器的全部条目，用于分区并行检索后归并各分区的结果
+     *
+     * @param other 另一个收集器（未排序）
+     */
+    public void addAll(GroupedTopKCollector other) {
+        for (int s = 0; s < other.groupSize; s++) {
+            int base = s * other.perGroup;
+            for (int i = 0; i < other.counts[s]; i++) {
+                offer(other.ids[base + i], other.groupKeys[s], other.scores[base + i]);
+            }
+        }
+    }
+
+    /**
+     * 当前保留的组数量
+     *
+     * @return 组数量
+     */
+    public int groupCount() {
+        return groupSize;
+    }
+
+    /**
+     * 将全部条目按分数降序排序，之后可按名次读取
+     *
+     * @return 条目数量
+     */
+    public int sortDescending() {
+        if (sortedIds != null) {
+            return sortedIds.length;
+        }
+        int total = 0;
+        for (int s = 0; s < groupSize; s++) {
+            total += counts[s];
+        }
+        Integer[] order = new Integer[total];
+        long[] entryIds = new long[total];
+        long[] entryGroups = new long[total];
+        double[] entryScores = new double[total];
+        int next = 0;
+        for (int s = 0; s < groupSize; s++) {
+            int base = s * perGroup;
+            for (int i = 0; i < counts[s]; i++) {
+                order[next] = next;
+                entryIds[next] = ids[base + i];
+                entryGroups[next] = groupKeys[s];
+                entryScores[next] = scores[base + i];
+                next++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> {
+            int byScore = Double.compare(entryScores[b], entryScores[a]);
+            return byScore != 0 ? byScore : Long.compare(entryIds[a], entryIds[b]);
+        });
+
+        sortedIds = new long[total];
+        sortedGroups = new long[total];
+        sortedScores = new double[total];
+        for (int rank = 0; rank < total; rank++) {
+            sortedIds[rank] = entryIds[order[rank]];
+            sortedGroups[rank] = entryGroups[order[rank]];
+            sortedScores[rank] = entryScores[order[rank]];
+        }
+        return total;
+    }
+
+    /**
+     * 获取第i名的ID（需先调用sortDescending）
+     *
+     * @param rank 名次，从0开始
+     * @return ID
+     */
+    public long id(int rank) {
+        checkSorted(rank);
+        return sortedIds[rank];
+    }
+
+    /**
+     * 获取第i名所属的组（需先调用sortDescending）
+     *
+     * @param rank 名次，从0开始
+     * @return 组
+     */
+    public long group(int rank) {
+        checkSorted(rank);
+        return sortedGroups[rank];
+    }
+
+    /**
+     * 获取第i名的分数（需先调用sortDescending）
+     *
+     * @param rank 名次，从0开始
+     * @return 分数
+     */
+    public double score(int rank) {
+        checkSorted(rank);
+        return sortedScores[rank];
+    }
+
+    private void checkSorted(int rank) {
+        if (sortedIds == null) {
+            throw new IllegalStateException("需先调用sortDescending");
+        }
+        if (rank < 0 || rank >= sortedIds.length) {
+            throw new IndexOutOfBoundsException("名次越界: " + rank);
+        }
+    }
+
+    /**
+     * 提交到组内最小堆，组内已满且分数不高于组内最低分时丢弃
+     */
+    private boolean offerToSlot(int slot, long id, double score) {
+        int base = slot * perGroup;
+        int count = counts[slot];
+        if (count < perGroup) {
+            int index = count;
+            while (index > 0) {
+                int parent = (index - 1) >>> 1;
+                if (scores[base + parent] <= score) {
+                    break;
+                }
+                ids[base + index] = ids[base + parent];
+                scores[base + index] = scores[base + parent];
+                index = parent;
+            }
+            ids[base + index] = id;
+            scores[base + index] = score;
+            counts[slot] = count + 1;
+            return true;
+        }
+        if (score <= scores[base]) {
+            return false;
+        }
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && scores[base + child + 1] < scores[base + child]) {
+                child++;
+            }
+            if (scores[base + child] >= score) {
+                break;
+            }
+            ids[base + index] = ids[base + child];
+            scores[base + index] = scores[base + child];
+            index = child;
+        }
+        ids[base + index] = id;
+        scores[base + index] = score;
+        return true;
+    }
+
+    private void siftUpGroup(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (groupBest[heap[parent]] <= groupBest[slot]) {
+                break;
+            }
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = slot;
+        position[slot] = index;
+    }
+
+    private void siftDownGroup(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= groupSize) {
+                break;
+            }
+            if (child + 1 < groupSize && groupBest[heap[child + 1]] < groupBest[heap[child]]) {
+                child++;
+            }
+            if (groupBest[heap[child]] >= groupBest[slot]) {
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = slot;
+        position[slot] = index;
+    }
+}
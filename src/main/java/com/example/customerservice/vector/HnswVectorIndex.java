@@ -0,0 +1,846 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * 基于HNSW（Hierarchical Navigable Small World）图的近似最近邻向量索引
+ *
+ * 纯Java实现，向量写入时归一化，相似度即点积（等价于余弦相似度），点积由 {@link VectorMath} 计算。
+ * 主要参数：
+ * <ul>
+ *   <li>M：每个节点在高层的最大邻居数，第0层为2M</li>
+ *   <li>efConstruction：构建时的候选集大小，越大图质量越高、写入越慢</li>
+ *   <li>efSearch：检索时的候选集大小，越大召回率越高、检索越慢</li>
+ * </ul>
+ * 删除采用墓碑标记，已删除节点仍参与图遍历但不会出现在结果中；
+ * 墓碑比例超过阈值时整体重建，回收空间并恢复图质量。
+ * 带文档过滤的检索在第0层遍历时只让满足条件的节点进入结果集，其余节点仍用于导航；
+ * 满足条件的节点很少时直接对这些节点暴力打分，避免图遍历在稀疏区域反复扩展。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class HnswVectorIndex implements VectorSearchEngine {
+
+    /**
+     * 引擎名称
+     */
+    public static final String ENGINE_NAME = "hnsw";
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * 墓碑节点占比超过该值时重建索引
+     */
+    private static final double REBUILD_DELETED_RATIO = 0.3;
+
+    /**
+     * 过滤后候选节点数不超过 ef * 该倍数时改为暴力打分
+     */
+    private static final int FILTER_EXACT_FACTOR = 10;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 分块ID到节点号的映射，仅包含未删除的节点
+     */
+    private final Map<Long, Integer> nodeByChunkId = new HashMap<>();
+
+    /**
+     * 节点向量（已归一化），第i个节点占用 [i * dimension, (i + 1) * dimension)
+     */
+    private float[] vectors = new float[0];
+
+    private long[] chunkIds = new long[0];
+    private long[] documentIds = new long[0];
+
+    /**
+     * 邻接表：links[node][level] 的第0个元素为邻居数量，其后为邻居节点号
+     */
+    private int[][][] links = new int[0][][];
+
+    private final BitSet deleted = new BitSet();
+
+    private int dimension;
+    private int nodeCount;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * 构造函数
+     *
+     * @param m 每层最大邻居数
+     * @param efConstruction 构建候选集大小
+     * @param efSearch 检索候选集大小
+     */
+    public HnswVectorIndex(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, 42L);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param m 每层最大邻居数
+     * @param efConstruction 构建候选集大小
+     * @param efSearch 检索候选集大小
+     * @param seed 层级随机数种子
+     */
+    public HnswVectorIndex(int m, int efConstruction, int efSearch, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW参数M必须大于等于2");
+        }
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(efSearch, 1);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (nodeCount == 0 && dimension != vector.length) {
+                dimension = vector.length;
+            }
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+            }
+
+            // 更新视为删除旧节点后插入新节点
+            Integer existing = nodeByChunkId.remove(chunkId);
+            if (existing != null) {
+                markDeleted(existing);
+            }
+
+            insertNode(chunkId, documentId, vector);
+            rebuildIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeByChunkId.remove(chunkId);
+            if (node == null) {
+                return false;
+            }
+            markDeleted(node);
+            rebuildIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                if (!deleted.get(node) && documentIds[node] == documentId) {
+                    nodeByChunkId.remove(chunkIds[node]);
+                    markDeleted(node);
+                    removed++;
+                }
+            }
+            if (removed > 0) {
+                rebuildIfNeeded();
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            resetStorage();
+            dimension = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        if (filter != null) {
+            return searchFiltered(query, topK, minScore, excludeChunkId, filter);
+        }
+        if (query == null || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size() == 0) {
+                return new ArrayList<>();
+            }
+            float[] normalized = normalizeQuery(query);
+            if (normalized == null) {
+                return new ArrayList<>();
+            }
+
+            // 1. 自顶层贪心下降到第1层
+            int current = descend(normalized, 0);
+            float currentScore = score(normalized, current);
+
+            // 2. 在第0层做宽度为ef的搜索；墓碑节点会占用候选位置，因此按墓碑比例放大ef
+            int ef = Math.max(efSearch, topK + 1);
+            if (deletedCount > 0) {
+                ef = (int) Math.min((long) nodeCount, (long) Math.ceil(ef * (double) nodeCount / size()));
+            }
+            NodeQueue results = searchLayer(normalized, current, currentScore, ef, 0, null);
+
+            // 3. 过滤墓碑、排除项和阈值
+            TopKCollector collector = new TopKCollector(topK, minScore);
+            for (int i = 0; i < results.size; i++) {
+                int node = results.nodes[i];
+                if (!deleted.get(node) && chunkIds[node] != excludeChunkId) {
+                    collector.offer(node, results.scores[i]);
+                }
+            }
+
+            return toHits(collector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 带文档过滤的检索
+     * 先顺序收集满足条件的节点（仅做位测试），数量不超过暴力阈值时直接打分；
+     * 超过阈值说明过滤条件较宽，改为图遍历，且只有满足条件的节点进入结果集
+     */
+    private List<VectorSearchHit> searchFiltered(float[] query, int topK, double minScore, long excludeChunkId,
+                                                 DocumentFilter filter) {
+        if (query == null || topK <= 0 || filter.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size() == 0) {
+                return new ArrayList<>();
+            }
+            float[] normalized = normalizeQuery(query);
+            if (normalized == null) {
+                return new ArrayList<>();
+            }
+
+            IntPredicate accept = node -> !deleted.get(node) && chunkIds[node] != excludeChunkId
+                    && filter.accepts(documentIds[node]);
+            int ef = Math.max(efSearch, topK + 1);
+            int exactLimit = (int) Math.min((long) ef * FILTER_EXACT_FACTOR, Integer.MAX_VALUE - 1);
+
+            int[] matched = new int[Math.min(exactLimit + 1, nodeCount)];
+            int matchedCount = 0;
+            for (int node = 0; node < nodeCount && matchedCount <= exactLimit; node++) {
+                if (accept.test(node)) {
+                    matched[matchedCount++] = node;
+                }
+            }
+
+            TopKCollector collector = new TopKCollector(topK, minScore);
+            if (matchedCount <= exactLimit) {
+                for (int i = 0; i < matchedCount; i++) {
+                    collector.offer(matched[i], score(normalized, matched[i]));
+                }
+                return toHits(collector);
+            }
+
+            int current = descend(normalized, 0);
+            NodeQueue results = searchLayer(normalized, current, score(normalized, current), ef, 0, accept);
+            for (int i = 0; i < results.size; i++) {
+                collector.offer(results.nodes[i], results.scores[i]);
+            }
+            return toHits(collector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<VectorSearchHit> searchExact(float[] query, int topK, double minScore, long excludeChunkId) {
+        if (query == null || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size() == 0) {
+                return new ArrayList<>();
+            }
+            float[] normalized = normalizeQuery(query);
+            if (normalized == null) {
+                return new ArrayList<>();
+            }
+
+            TopKCollector collector = new TopKCollector(topK, minScore);
+            for (int node = 0; node < nodeCount; node++) {
+                if (!deleted.get(node) && chunkIds[node] != excludeChunkId) {
+                    collector.offer(node, score(normalized, node));
+                }
+            }
+            return toHits(collector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取分块向量的副本
+     * 注意：返回的是写入时归一化后的向量，用作余弦相似度查询时与原向量等价
+     *
+     * @param chunkId 分块ID
+     * @return 向量，不存在时返回null
+     */
+    @Override
+    public float[] getVector(long chunkId) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeByChunkId.get(chunkId);
+            if (node == null) {
+                return null;
+            }
+            int offset = node * dimension;
+            return Arrays.copyOfRange(vectors, offset, offset + dimension);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long chunkId) {
+        lock.readLock().lock();
+        try {
+            return nodeByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] chunkIds() {
+        lock.readLock().lock();
+        try {
+            long[] result = new long[nodeByChunkId.size()];
+            int index = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                if (!deleted.get(node)) {
+                    result[index++] = chunkIds[node];
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeCount - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取墓碑节点数量
+     *
+     * @return 已删除但尚未回收的节点数量
+     */
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * 插入新节点并建立双向连接（调用方持有写锁）
+     */
+    private void insertNode(long chunkId, long documentId, float[] vector) {
+        float[] normalized = VectorMath.normalize(vector);
+        int node = nodeCount;
+        ensureCapacity(node + 1);
+
+        if (normalized == null) {
+            // 零向量无法参与余弦检索，仅占位并立即标记删除，保持节点号连续
+            normalized = new float[dimension];
+        }
+        System.arraycopy(normalized, 0, vectors, node * dimension, dimension);
+        chunkIds[node] = chunkId;
+        documentIds[node] = documentId;
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxNeighbours(l) + 1];
+        }
+        nodeCount++;
+        nodeByChunkId.put(chunkId, node);
+
+        if (isZero(normalized)) {
+            nodeByChunkId.remove(chunkId);
+            markDeleted(node);
+            return;
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        // 在新节点层级之上贪心下降
+        int current = descend(normalized, level);
+        float currentScore = score(normalized, current);
+
+        // 在新节点所在的每一层建立连接
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeQueue candidates = searchLayer(normalized, current, currentScore, efConstruction, l, null);
+            int[] sorted = candidates.sortedNodesDescending();
+            int[] selected = selectNeighbours(node, sorted, m);
+
+            int[] nodeLinks = links[node][l];
+            for (int neighbour : selected) {
+                nodeLinks[++nodeLinks[0]] = neighbour;
+                connect(neighbour, node, l);
+            }
+
+            current = sorted[0];
+            currentScore = score(normalized, current);
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * 为邻居节点添加反向连接，超出容量时用启发式规则裁剪
+     */
+    private void connect(int from, int to, int level) {
+        int[] fromLinks = links[from][level];
+        int capacity = maxNeighbours(level);
+        if (fromLinks[0] < capacity) {
+            fromLinks[++fromLinks[0]] = to;
+            return;
+        }
+
+        // 合并现有邻居与新节点，按与from的相似度降序排列后重新选择
+        int count = fromLinks[0] + 1;
+        int[] candidates = new int[count];
+        float[] scores = new float[count];
+        for (int i = 0; i < fromLinks[0]; i++) {
+            candidates[i] = fromLinks[i + 1];
+            scores[i] = scoreBetween(from, candidates[i]);
+        }
+        candidates[count - 1] = to;
+        scores[count - 1] = scoreBetween(from, to);
+        sortDescending(candidates, scores, count);
+
+        int[] selected = selectNeighbours(from, candidates, capacity);
+        fromLinks[0] = selected.length;
+        System.arraycopy(selected, 0, fromLinks, 1, selected.length);
+    }
+
+    /**
+     * 启发式邻居选择（HNSW论文算法4）
+     * 候选按与基准节点的相似度降序输入；只有当候选与基准节点比与已选邻居更接近时才保留，
+     * 以保证图在不同方向上都有连接。不足时用被剔除的候选补齐。
+     */
+    private int[] selectNeighbours(int base, int[] sortedCandidates, int limit) {
+        int[] selected = new int[Math.min(limit, sortedCandidates.length)];
+        int selectedCount = 0;
+        int[] discarded = new int[sortedCandidates.length];
+        int discardedCount = 0;
+
+        for (int candidate : sortedCandidates) {
+            if (selectedCount >= limit) {
+                break;
+            }
+            if (candidate == base) {
+                continue;
+            }
+            float candidateScore = scoreBetween(base, candidate);
+            boolean keep = true;
+            for (int i = 0; i < selectedCount; i++) {
+                if (scoreBetween(candidate, selected[i]) > candidateScore) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[selectedCount++] = candidate;
+            } else {
+                discarded[discardedCount++] = candidate;
+            }
+        }
+
+        for (int i = 0; i < discardedCount && selectedCount < selected.length; i++) {
+            selected[selectedCount++] = discarded[i];
+        }
+        return selectedCount == selected.length ? selected : Arrays.copyOf(selected, selectedCount);
+    }
+
+    /**
+     * 从入口点自顶层贪心下降，直到指定层之上一层
+     *
+     * @return 第level层的起始节点
+     */
+    private int descend(float[] query, int level) {
+        int current = entryPoint;
+        float currentScore = score(query, current);
+        for (int l = maxLevel; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbours = links[current][l];
+                for (int i = 1; i <= neighbours[0]; i++) {
+                    int candidate = neighbours[i];
+                    float candidateScore = score(query, candidate);
+                    if (candidateScore > currentScore) {
+                        current = candidate;
+                        currentScore = candidateScore;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层束搜索
+     *
+     * @param accept 允许进入结果集的节点，为null时全部允许（结果包含墓碑节点）；
+     *               不满足条件的节点仍作为候选参与导航
+     * @return 至多ef个最相似节点
+     */
+    private NodeQueue searchLayer(float[] query, int entry, float entryScore, int ef, int level,
+                                  IntPredicate accept) {
+        BitSet visited = new BitSet(nodeCount);
+        NodeQueue candidates = new NodeQueue(ef * 2, false);
+        NodeQueue results = new NodeQueue(ef + 1, true);
+
+        visited.set(entry);
+        candidates.push(entry, entryScore);
+        if (accept == null || accept.test(entry)) {
+            results.push(entry, entryScore);
+        }
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.peekScore();
+            if (results.size() >= ef && candidateScore < results.peekScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+
+            int[][] nodeLinks = links[candidate];
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbours = nodeLinks[level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                float neighbourScore = score(query, neighbour);
+                if (results.size() < ef || neighbourScore > results.peekScore()) {
+                    candidates.push(neighbour, neighbourScore);
+                    if (accept == null || accept.test(neighbour)) {
+                        results.push(neighbour, neighbourScore);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 按名次输出收集器中的节点
+     */
+    private List<VectorSearchHit> toHits(TopKCollector collector) {
+        int count = collector.sortDescending();
+        List<VectorSearchHit> hits = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            int node = (int) collector.id(rank);
+            hits.add(new VectorSearchHit(chunkIds[node], documentIds[node], collector.score(rank)));
+        }
+        return hits;
+    }
+
+    /**
+     * 墓碑比例过高时用存活节点重建整张图（调用方持有写锁）
+     */
+    private void rebuildIfNeeded() {
+        if (deletedCount == 0 || deletedCount < nodeCount * REBUILD_DELETED_RATIO) {
+            return;
+        }
+
+        int liveCount = nodeCount - deletedCount;
+        long[] liveChunkIds = new long[liveCount];
+        long[] liveDocumentIds = new long[liveCount];
+        float[] liveVectors = new float[liveCount * dimension];
+        int index = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (!deleted.get(node)) {
+                liveChunkIds[index] = chunkIds[node];
+                liveDocumentIds[index] = documentIds[node];
+                System.arraycopy(vectors, node * dimension, liveVectors, index * dimension, dimension);
+                index++;
+            }
+        }
+
+        resetStorage();
+        float[] vector = new float[dimension];
+        for (int i = 0; i < liveCount; i++) {
+            System.arraycopy(liveVectors, i * dimension, vector, 0, dimension);
+            insertNode(liveChunkIds[i], liveDocumentIds[i], vector);
+        }
+    }
+
+    private void resetStorage() {
+        nodeByChunkId.clear();
+        deleted.clear();
+        vectors = new float[0];
+        chunkIds = new long[0];
+        documentIds = new long[0];
+        links = new int[0][][];
+        nodeCount = 0;
+        deletedCount = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+    }
+
+    private void markDeleted(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    private int randomLevel() {
+        double r = random.nextDouble();
+        return (int) (-Math.log(Math.max(r, Double.MIN_VALUE)) * levelMultiplier);
+    }
+
+    private int maxNeighbours(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private float score(float[] query, int node) {
+        return VectorMath.dot(query, 0, vectors, node * dimension, dimension);
+    }
+
+    private float scoreBetween(int a, int b) {
+        return VectorMath.dot(vectors, a * dimension, vectors, b * dimension, dimension);
+    }
+
+    private float[] normalizeQuery(float[] query) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配");
+        }
+        return VectorMath.normalize(query);
+    }
+
+    private static boolean isZero(float[] vector) {
+        for (float v : vector) {
+            if (v != 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void sortDescending(int[] nodes, float[] scores, int count) {
+        // 邻居数量很小（<= 2M+1），插入排序即可
+        for (int i = 1; i < count; i++) {
+            int node = nodes[i];
+            float nodeScore = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < nodeScore) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = nodeScore;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= chunkIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, Math.max(INITIAL_CAPACITY, chunkIds.length * 2));
+        vectors = Arrays.copyOf(vectors, newCapacity * dimension);
+        chunkIds = Arrays.copyOf(chunkIds, newCapacity);
+        documentIds = Arrays.copyOf(documentIds, newCapacity);
+        links = Arrays.copyOf(links, newCapacity);
+    }
+
+    /**
+     * 基于数组的二叉堆，存储(节点号, 分数)
+     * minHeap为true时堆顶为最小分数（用作结果集），否则堆顶为最大分数（用作候选集）
+     */
+    private static final class NodeQueue {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+        private final boolean minHeap;
+
+        NodeQueue(int initialCapacity, boolean minHeap) {
+            this.nodes = new int[Math.max(initialCapacity, 4)];
+            this.scores = new float[nodes.length];
+            this.minHeap = minHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            if (size > 0) {
+                int lastNode = nodes[size];
+                float lastScore = scores[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                        child++;
+                    }
+                    if (!before(scores[child], lastScore)) {
+                        break;
+                    }
+                    nodes[i] = nodes[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                nodes[i] = lastNode;
+                scores[i] = lastScore;
+            }
+            return top;
+        }
+
+        /**
+         * 按分数降序返回全部节点（不修改堆）
+         */
+        int[] sortedNodesDescending() {
+            int[] sortedNodes = Arrays.copyOf(nodes, size);
+            float[] sortedScores = Arrays.copyOf(scores, size);
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(sortedScores[b], sortedScores[a]));
+            int[] result = new int[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = sortedNodes[order[i]];
+            }
+            return result;
+        }
+
+        private boolean before(float a, float b) {
+            return minHeap ? a < b : a > b;
+        }
+    }
+}
@@ -0,0 +1,1003 @@
+package com.example.customerservice.vector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * IVF-PQ向量索引（倒排文件 + 乘积量化）
+ *
+ * 面向int8量化也放不进堆内存的超大语料：
+ * <ol>
+ *   <li>粗量化：k-means训练 nlist 个粗聚类中心，每个向量归入最近的中心对应的倒排列表</li>
+ *   <li>细量化：向量减去所属中心得到残差，残差用 {@link ProductQuantizer} 编码为 m 个字节</li>
+ * </ol>
+ * 768维向量取 m=32 时每个分块只占32字节编码加两个long，约为int8的1/20。
+ *
+ * 检索时只扫描与查询最近的 nprobe 个倒排列表，近似内积 = 查询与中心的内积 + 残差内积查表之和；
+ * 设置 {@link VectorLoader} 后保留 topK * oversample 个候选，加载全精度向量重排序，与int8引擎一致。
+ *
+ * 训练：索引为空时没有码本，写入的向量先以全精度暂存并精确检索；
+ * 暂存数量达到 trainSize 时以暂存向量为样本训练粗聚类中心和码本，随后将暂存向量全部编码。
+ * 码本和倒排列表可通过 {@link #save(Path)} 持久化，重启后通过 {@link #loadCodebooks(Path)}
+ * 和 {@link #loadLists(Path)} 恢复，不需要重新训练和编码。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class IvfPqVectorIndex implements VectorSearchEngine {
+
+    /**
+     * 引擎名称
+     */
+    public static final String ENGINE_NAME = "ivfpq";
+
+    /**
+     * 码本文件名
+     */
+    public static final String CODEBOOK_FILE = "codebooks.bin";
+
+    /**
+     * 倒排列表快照文件名
+     */
+    public static final String LISTS_FILE = "lists.bin";
+
+    private static final int CODEBOOK_MAGIC = 0x43505649;
+
+    private static final int LISTS_MAGIC = 0x4C505649;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * 暴力精确检索时每批加载的全精度向量数量
+     */
+    private static final int EXACT_LOAD_BATCH = 1000;
+
+    private static final long TRAINING_SEED = 42L;
+
+    private final int nlist;
+    private final int requestedSubspaces;
+    private final int nprobe;
+    private final int trainSize;
+    private final int iterations;
+    private final int oversample;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 分块位置：已编码的分块为 (列表编号 << 32 | 列表内位置)，暂存的分块为 -1 - 暂存槽位
+     */
+    private final Map<Long, Long> locationByChunkId = new HashMap<>();
+
+    /**
+     * 训练前暂存的归一化向量，第i行占用 [i * dimension, (i + 1) * dimension)
+     */
+    private float[] pendingMatrix = new float[0];
+    private long[] pendingChunkIds = new long[0];
+    private long[] pendingDocumentIds = new long[0];
+    private int pendingSize;
+
+    /**
+     * 粗聚类中心矩阵，为null表示尚未训练
+     */
+    private float[] coarseCentroids;
+
+    /**
+     * 每个粗聚类中心模长平方的一半，用于按欧氏距离选择倒排列表
+     */
+    private float[] coarseHalfNorms;
+
+    private ProductQuantizer quantizer;
+
+    private InvertedList[] lists = new InvertedList[0];
+
+    /**
+     * 训练标识，倒排列表快照只能与同一次训练产生的码本配合使用
+     */
+    private long trainingId;
+    private long savedTrainingId;
+
+    private int dimension;
+    private int encodedSize;
+    private long watermark;
+    private long modifications;
+
+    private volatile VectorLoader vectorLoader;
+
+    /**
+     * 构造函数
+     *
+     * @param nlist 粗聚类中心数量
+     * @param subspaces 乘积量化子空间数量，不能整除维度时取不超过该值的最大约数
+     * @param nprobe 检索时扫描的倒排列表数量
+     * @param trainSize 触发训练的暂存向量数量
+     * @param iterations k-means迭代次数
+     * @param oversample 重排序候选放大倍数
+     * @throws IllegalArgumentException 当参数小于1时抛出
+     */
+    public IvfPqVectorIndex(int nlist, int subspaces, int nprobe, int trainSize, int iterations, int oversample) {
+        if (nlist < 1 || subspaces < 1 || nprobe < 1 || trainSize < 1 || iterations < 1) {
+            throw new IllegalArgumentException("IVF-PQ参数必须大于0");
+        }
+        this.nlist = nlist;
+        this.requestedSubspaces = subspaces;
+        this.nprobe = nprobe;
+        this.trainSize = trainSize;
+        this.iterations = iterations;
+        this.oversample = Math.max(oversample, 1);
+    }
+
+    /**
+     * 设置全精度向量加载器，用于重排序
+     *
+     * @param vectorLoader 向量加载器
+     */
+    public void setVectorLoader(VectorLoader vectorLoader) {
+        this.vectorLoader = vectorLoader;
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (size() > 0 && vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+            }
+            write(new long[]{chunkId}, new long[]{documentId}, new float[][]{vector});
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int upsertBatch(long[] batchChunkIds, long[] batchDocumentIds, float[][] vectors) {
+        lock.writeLock().lock();
+        try {
+            return write(batchChunkIds, batchDocumentIds, vectors);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Long location = locationByChunkId.remove(chunkId);
+            if (location == null) {
+                return false;
+            }
+            removeLocation(location);
+            modifications++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int slot = pendingSize - 1; slot >= 0; slot--) {
+                if (pendingDocumentIds[slot] == documentId) {
+                    locationByChunkId.remove(pendingChunkIds[slot]);
+                    removePending(slot);
+                    removed++;
+                }
+            }
+            for (int list = 0; list < lists.length; list++) {
+                InvertedList entries = lists[list];
+                for (int pos = entries.size - 1; pos >= 0; pos--) {
+                    if (entries.documentIds[pos] == documentId) {
+                        locationByChunkId.remove(entries.chunkIds[pos]);
+                        removeEncoded(list, pos);
+                        removed++;
+                    }
+                }
+            }
+            modifications += removed;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空全部向量，保留已训练的码本
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            locationByChunkId.clear();
+            pendingMatrix = new float[0];
+            pendingChunkIds = new long[0];
+            pendingDocumentIds = new long[0];
+            pendingSize = 0;
+            for (int list = 0; list < lists.length; list++) {
+                lists[list] = new InvertedList();
+            }
+            encodedSize = 0;
+            watermark = 0L;
+            modifications++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        return search(query, topK, minScore, excludeChunkId, filter, false);
+    }
+
+    /**
+     * 精确检索：分批加载全部全精度向量后暴力计算
+     * 代价较高，仅用于召回率评估；未设置加载器时退化为扫描全部倒排列表、不截断候选的量化检索
+     */
+    @Override
+    public List<VectorSearchHit> searchExact(float[] query, int topK, double minScore, long excludeChunkId) {
+        VectorLoader loader = vectorLoader;
+        if (loader == null) {
+            return search(query, topK, minScore, excludeChunkId, null, true);
+        }
+        if (query == null || topK <= 0) {
+            return new ArrayList<>();
+        }
+        float[] normalizedQuery = VectorMath.normalize(query);
+        if (normalizedQuery == null) {
+            return new ArrayList<>();
+        }
+
+        long[] allChunkIds;
+        long[] allDocumentIds;
+        lock.readLock().lock();
+        try {
+            int total = size();
+            allChunkIds = new long[total];
+            allDocumentIds = new long[total];
+            System.arraycopy(pendingChunkIds, 0, allChunkIds, 0, pendingSize);
+            System.arraycopy(pendingDocumentIds, 0, allDocumentIds, 0, pendingSize);
+            int offset = pendingSize;
+            for (InvertedList entries : lists) {
+                System.arraycopy(entries.chunkIds, 0, allChunkIds, offset, entries.size);
+                System.arraycopy(entries.documentIds, 0, allDocumentIds, offset, entries.size);
+                offset += entries.size;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        TopKCollector collector = new TopKCollector(topK, minScore);
+        for (int start = 0; start < allChunkIds.length; start += EXACT_LOAD_BATCH) {
+            int end = Math.min(start + EXACT_LOAD_BATCH, allChunkIds.length);
+            Map<Long, float[]> vectors = loader.load(Arrays.copyOfRange(allChunkIds, start, end));
+            for (int i = start; i < end; i++) {
+                float[] vector = vectors.get(allChunkIds[i]);
+                if (vector != null && vector.length == normalizedQuery.length && allChunkIds[i] != excludeChunkId) {
+                    collector.offer(i, cosine(normalizedQuery, vector));
+                }
+            }
+        }
+        return toHits(collector, allChunkIds, allDocumentIds);
+    }
+
+    /**
+     * 获取分块向量
+     * 注意：已编码的分块返回由中心和码字重建的近似向量
+     *
+     * @param chunkId 分块ID
+     * @return 向量，不存在时返回null
+     */
+    @Override
+    public float[] getVector(long chunkId) {
+        lock.readLock().lock();
+        try {
+            Long location = locationByChunkId.get(chunkId);
+            if (location == null) {
+                return null;
+            }
+            if (location < 0) {
+                int slot = (int) (-1L - location);
+                return Arrays.copyOfRange(pendingMatrix, slot * dimension, (slot + 1) * dimension);
+            }
+            int list = (int) (location >>> 32);
+            int pos = (int) (long) location;
+            float[] vector = Arrays.copyOfRange(coarseCentroids, list * dimension, (list + 1) * dimension);
+            quantizer.decodeAdd(lists[list].codes, pos * quantizer.subspaces(), vector);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long chunkId) {
+        lock.readLock().lock();
+        try {
+            return locationByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] chunkIds() {
+        lock.readLock().lock();
+        try {
+            long[] ids = Arrays.copyOf(pendingChunkIds, size());
+            int offset = pendingSize;
+            for (InvertedList entries : lists) {
+                System.arraycopy(entries.chunkIds, 0, ids, offset, entries.size);
+                offset += entries.size;
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return encodedSize + pendingSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 是否已训练码本
+     *
+     * @return 已训练时返回true
+     */
+    public boolean isTrained() {
+        lock.readLock().lock();
+        try {
+            return quantizer != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取写入过的最大分块ID，保存为倒排列表快照的水位线
+     *
+     * @return 水位线
+     */
+    public long getWatermark() {
+        lock.readLock().lock();
+        try {
+            return watermark;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取写入和删除的累计次数，用于判断快照是否需要重新保存
+     *
+     * @return 修改次数
+     */
+    public long getModificationCount() {
+        lock.readLock().lock();
+        try {
+            return modifications;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取倒排列表数量，未训练时为0
+     *
+     * @return 倒排列表数量
+     */
+    public int listCount() {
+        lock.readLock().lock();
+        try {
+            return lists.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取已编码分块占用的编码字节数
+     *
+     * @return 编码字节数
+     */
+    public long codeBytes() {
+        lock.readLock().lock();
+        try {
+            return quantizer == null ? 0L : (long) encodedSize * quantizer.subspaces();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNprobe() {
+        return nprobe;
+    }
+
+    public int getOversample() {
+        return oversample;
+    }
+
+    /**
+     * 保存码本和倒排列表快照
+     * 各文件先写临时文件并刷盘，再原子重命名；码本只在重新训练后重写。
+     * 保存期间持有读锁，写入会被阻塞
+     *
+     * @param directory 目标目录
+     * @return 未训练时不保存并返回false
+     * @throws IOException 写入失败时抛出
+     */
+    public boolean save(Path directory) throws IOException {
+        lock.readLock().lock();
+        try {
+            if (quantizer == null) {
+                return false;
+            }
+            Files.createDirectories(directory);
+            if (savedTrainingId != trainingId || !Files.exists(directory.resolve(CODEBOOK_FILE))) {
+                writeAtomically(directory.resolve(CODEBOOK_FILE), out -> {
+                    out.writeInt(CODEBOOK_MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeLong(trainingId);
+                    out.writeInt(lists.length);
+                    quantizer.writeTo(out);
+                    for (float value : coarseCentroids) {
+                        out.writeFloat(value);
+                    }
+                });
+            }
+            int codeLength = quantizer.subspaces();
+            writeAtomically(directory.resolve(LISTS_FILE), out -> {
+                out.writeInt(LISTS_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(trainingId);
+                out.writeLong(watermark);
+                out.writeInt(lists.length);
+                for (InvertedList entries : lists) {
+                    out.writeInt(entries.size);
+                    for (int pos = 0; pos < entries.size; pos++) {
+                        out.writeLong(entries.chunkIds[pos]);
+                        out.writeLong(entries.documentIds[pos]);
+                    }
+                    out.write(entries.codes, 0, entries.size * codeLength);
+                }
+            });
+            savedTrainingId = trainingId;
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从目录加载码本，加载后写入的向量直接编码，不再暂存和训练
+     *
+     * @param directory 码本所在目录
+     * @return 码本文件不存在时返回false
+     * @throws IOException 读取失败或文件格式无效时抛出
+     * @throws IllegalStateException 当索引非空时抛出
+     */
+    public boolean loadCodebooks(Path directory) throws IOException {
+        Path file = directory.resolve(CODEBOOK_FILE);
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != CODEBOOK_MAGIC) {
+                throw new IOException("不是IVF-PQ码本文件: " + file);
+            }
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("不支持的IVF-PQ码本版本: " + file);
+            }
+            long fileTrainingId = in.readLong();
+            int listCount = in.readInt();
+            ProductQuantizer loadedQuantizer = ProductQuantizer.readFrom(in);
+            if (listCount < 1) {
+                throw new IOException("无效的倒排列表数量: " + listCount);
+            }
+            float[] centroids = new float[listCount * loadedQuantizer.dimension()];
+            for (int i = 0; i < centroids.length; i++) {
+                centroids[i] = in.readFloat();
+            }
+
+            lock.writeLock().lock();
+            try {
+                if (encodedSize + pendingSize > 0) {
+                    throw new IllegalStateException("只能在空索引上加载码本");
+                }
+                dimension = loadedQuantizer.dimension();
+                installCodebooks(centroids, listCount, loadedQuantizer, fileTrainingId);
+                savedTrainingId = fileTrainingId;
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 从目录加载倒排列表快照，替换当前全部已编码向量
+     *
+     * @param directory 快照所在目录
+     * @return 加载的分块数量；快照不存在或与当前码本不匹配时返回-1
+     * @throws IOException 读取失败或文件格式无效时抛出
+     */
+    public int loadLists(Path directory) throws IOException {
+        Path file = directory.resolve(LISTS_FILE);
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != LISTS_MAGIC) {
+                throw new IOException("不是IVF-PQ倒排列表文件: " + file);
+            }
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("不支持的IVF-PQ倒排列表版本: " + file);
+            }
+            long fileTrainingId = in.readLong();
+            long fileWatermark = in.readLong();
+            int listCount = in.readInt();
+
+            lock.writeLock().lock();
+            try {
+                if (quantizer == null || fileTrainingId != trainingId || listCount != lists.length) {
+                    return -1;
+                }
+                int codeLength = quantizer.subspaces();
+                InvertedList[] loadedLists = new InvertedList[listCount];
+                Map<Long, Long> locations = new HashMap<>();
+                int total = 0;
+                for (int list = 0; list < listCount; list++) {
+                    int count = in.readInt();
+                    if (count < 0) {
+                        throw new IOException("倒排列表长度无效: " + count);
+                    }
+                    InvertedList entries = new InvertedList();
+                    entries.ensureCapacity(count, codeLength);
+                    for (int pos = 0; pos < count; pos++) {
+                        entries.chunkIds[pos] = in.readLong();
+                        entries.documentIds[pos] = in.readLong();
+                        locations.put(entries.chunkIds[pos], ((long) list << 32) | pos);
+                    }
+                    in.readFully(entries.codes, 0, count * codeLength);
+                    entries.size = count;
+                    loadedLists[list] = entries;
+                    total += count;
+                }
+
+                locationByChunkId.values().removeIf(location -> location >= 0);
+                locationByChunkId.putAll(locations);
+                lists = loadedLists;
+                encodedSize = total;
+                watermark = Math.max(watermark, fileWatermark);
+                modifications++;
+                return total;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                         DocumentFilter filter, boolean probeAll) {
+        if (query == null || topK <= 0 || (filter != null && filter.isEmpty())) {
+            return new ArrayList<>();
+        }
+
+        VectorLoader loader = probeAll ? null : vectorLoader;
+        float[] normalizedQuery;
+        long[] candidateChunkIds;
+        long[] candidateDocumentIds;
+        float[] candidateScores;
+        boolean[] exact;
+
+        // 1. 暂存向量精确打分，倒排列表查表粗排（持有读锁）
+        lock.readLock().lock();
+        try {
+            if (encodedSize + pendingSize == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+            normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return new ArrayList<>();
+            }
+
+            TopKCollector pending = new TopKCollector(Math.min(topK, pendingSize), minScore);
+            for (int slot = 0, offset = 0; slot < pendingSize; slot++, offset += dimension) {
+                if (pendingChunkIds[slot] == excludeChunkId
+                        || (filter != null && !filter.accepts(pendingDocumentIds[slot]))) {
+                    continue;
+                }
+                pending.offer(slot, VectorMath.dot(normalizedQuery, 0, pendingMatrix, offset, dimension));
+            }
+
+            TopKCollector encoded = null;
+            if (quantizer != null && encodedSize > 0) {
+                int candidateCount = (int) Math.min(loader != null ? (long) topK * oversample : topK, encodedSize);
+                encoded = new TopKCollector(candidateCount, loader != null ? Double.NEGATIVE_INFINITY : minScore);
+                scanLists(normalizedQuery, probeAll ? lists.length : nprobe, excludeChunkId, filter, encoded);
+            }
+
+            int pendingFound = pending.sortDescending();
+            int encodedFound = encoded != null ? encoded.sortDescending() : 0;
+            candidateChunkIds = new long[pendingFound + encodedFound];
+            candidateDocumentIds = new long[candidateChunkIds.length];
+            candidateScores = new float[candidateChunkIds.length];
+            exact = new boolean[candidateChunkIds.length];
+            for (int rank = 0; rank < pendingFound; rank++) {
+                int slot = (int) pending.id(rank);
+                candidateChunkIds[rank] = pendingChunkIds[slot];
+                candidateDocumentIds[rank] = pendingDocumentIds[slot];
+                candidateScores[rank] = (float) pending.score(rank);
+                exact[rank] = true;
+            }
+            for (int rank = 0; rank < encodedFound; rank++) {
+                long location = encoded.id(rank);
+                InvertedList entries = lists[(int) (location >>> 32)];
+                int pos = (int) location;
+                candidateChunkIds[pendingFound + rank] = entries.chunkIds[pos];
+                candidateDocumentIds[pendingFound + rank] = entries.documentIds[pos];
+                candidateScores[pendingFound + rank] = (float) encoded.score(rank);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 2. 全精度重排序（不持有锁，加载器可能访问数据库）
+        Map<Long, float[]> exactVectors = Map.of();
+        if (loader != null) {
+            long[] toLoad = new long[candidateChunkIds.length];
+            int count = 0;
+            for (int i = 0; i < candidateChunkIds.length; i++) {
+                if (!exact[i]) {
+                    toLoad[count++] = candidateChunkIds[i];
+                }
+            }
+            if (count > 0) {
+                exactVectors = loader.load(Arrays.copyOf(toLoad, count));
+            }
+        }
+
+        TopKCollector collector = new TopKCollector(topK, minScore);
+        for (int i = 0; i < candidateChunkIds.length; i++) {
+            float[] vector = exact[i] ? null : exactVectors.get(candidateChunkIds[i]);
+            collector.offer(i, vector != null && vector.length == normalizedQuery.length
+                    ? cosine(normalizedQuery, vector) : candidateScores[i]);
+        }
+        return toHits(collector, candidateChunkIds, candidateDocumentIds);
+    }
+
+    /**
+     * 选出与查询最近的若干倒排列表，按查表得到的近似内积收集候选（调用方持有读锁）
+     * 收集器中的ID为 (列表编号 << 32 | 列表内位置)
+     */
+    private void scanLists(float[] normalizedQuery, int probes, long excludeChunkId, DocumentFilter filter,
+                           TopKCollector collector) {
+        // 欧氏距离最小等价于 <q, c> - |c|^2 / 2 最大
+        float[] centroidDots = new float[lists.length];
+        TopKCollector nearest = new TopKCollector(Math.min(probes, lists.length));
+        for (int list = 0; list < lists.length; list++) {
+            centroidDots[list] = VectorMath.dot(normalizedQuery, 0, coarseCentroids, list * dimension, dimension);
+            if (lists[list].size > 0) {
+                nearest.offer(list, centroidDots[list] - coarseHalfNorms[list]);
+            }
+        }
+
+        float[] table = quantizer.innerProductTable(normalizedQuery);
+        int codeLength = quantizer.subspaces();
+        int probed = nearest.sortDescending();
+        for (int rank = 0; rank < probed; rank++) {
+            int list = (int) nearest.id(rank);
+            InvertedList entries = lists[list];
+            float base = centroidDots[list];
+            for (int pos = 0, codeOffset = 0; pos < entries.size; pos++, codeOffset += codeLength) {
+                if (entries.chunkIds[pos] == excludeChunkId
+                        || (filter != null && !filter.accepts(entries.documentIds[pos]))) {
+                    continue;
+                }
+                collector.offer(((long) list << 32) | pos, base + quantizer.score(table, entries.codes, codeOffset));
+            }
+        }
+    }
+
+    /**
+     * 写入一批向量（调用方持有写锁）
+     * 维度不一致或无法归一化的向量被跳过；未训练时暂存，暂存数量达到阈值后训练
+     */
+    private int write(long[] batchChunkIds, long[] batchDocumentIds, float[][] vectors) {
+        if (encodedSize + pendingSize == 0) {
+            for (float[] vector : vectors) {
+                if (vector != null && vector.length > 0) {
+                    if (dimension != vector.length) {
+                        resetDimension(vector.length);
+                    }
+                    break;
+                }
+            }
+        }
+
+        int written = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            float[] vector = vectors[i];
+            if (vector == null || vector.length != dimension) {
+                continue;
+            }
+            float[] normalized = VectorMath.normalize(vector);
+            if (normalized == null) {
+                continue;
+            }
+            Long existing = locationByChunkId.remove(batchChunkIds[i]);
+            if (existing != null) {
+                removeLocation(existing);
+            }
+            if (quantizer == null) {
+                appendPending(batchChunkIds[i], batchDocumentIds[i], normalized);
+            } else {
+                encode(batchChunkIds[i], batchDocumentIds[i], normalized, 0);
+            }
+            watermark = Math.max(watermark, batchChunkIds[i]);
+            written++;
+        }
+        modifications += written;
+
+        if (quantizer == null && pendingSize >= trainSize) {
+            trainOnPending();
+        }
+        return written;
+    }
+
+    /**
+     * 以暂存向量为样本训练粗聚类中心和码本，并编码全部暂存向量（调用方持有写锁）
+     */
+    private void trainOnPending() {
+        int n = pendingSize;
+        float[] data = Arrays.copyOf(pendingMatrix, n * dimension);
+        int listCount = Math.min(nlist, n);
+        float[] centroids = KMeans.train(data, n, dimension, listCount, iterations, TRAINING_SEED);
+
+        float[] residuals = new float[n * dimension];
+        for (int i = 0, offset = 0; i < n; i++, offset += dimension) {
+            int list = KMeans.nearest(centroids, 0, listCount, dimension, data, offset);
+            int centroidOffset = list * dimension;
+            for (int d = 0; d < dimension; d++) {
+                residuals[offset + d] = data[offset + d] - centroids[centroidOffset + d];
+            }
+        }
+        int subspaces = ProductQuantizer.resolveSubspaces(dimension, requestedSubspaces);
+        ProductQuantizer trained = ProductQuantizer.train(residuals, n, dimension, subspaces,
+                Math.min(ProductQuantizer.MAX_CENTROIDS, n), iterations, TRAINING_SEED);
+        installCodebooks(centroids, listCount, trained, ThreadLocalRandom.current().nextLong());
+
+        long[] ids = Arrays.copyOf(pendingChunkIds, n);
+        long[] documents = Arrays.copyOf(pendingDocumentIds, n);
+        pendingMatrix = new float[0];
+        pendingChunkIds = new long[0];
+        pendingDocumentIds = new long[0];
+        pendingSize = 0;
+        for (int i = 0; i < n; i++) {
+            encode(ids[i], documents[i], data, i * dimension);
+        }
+    }
+
+    private void installCodebooks(float[] centroids, int listCount, ProductQuantizer trained, long id) {
+        coarseCentroids = centroids;
+        coarseHalfNorms = new float[listCount];
+        for (int list = 0; list < listCount; list++) {
+            float norm = VectorMath.dot(centroids, list * dimension, centroids, list * dimension, dimension);
+            coarseHalfNorms[list] = norm * 0.5f;
+        }
+        quantizer = trained;
+        lists = new InvertedList[listCount];
+        for (int list = 0; list < listCount; list++) {
+            lists[list] = new InvertedList();
+        }
+        trainingId = id;
+    }
+
+    /**
+     * 编码单条已归一化的向量并追加到最近的倒排列表（调用方持有写锁，分块不在索引中）
+     */
+    private void encode(long chunkId, long documentId, float[] normalized, int offset) {
+        int list = KMeans.nearest(coarseCentroids, 0, lists.length, dimension, normalized, offset);
+        float[] residual = new float[dimension];
+        int centroidOffset = list * dimension;
+        for (int d = 0; d < dimension; d++) {
+            residual[d] = normalized[offset + d] - coarseCentroids[centroidOffset + d];
+        }
+
+        int codeLength = quantizer.subspaces();
+        InvertedList entries = lists[list];
+        entries.ensureCapacity(entries.size + 1, codeLength);
+        int pos = entries.size++;
+        quantizer.encode(residual, 0, entries.codes, pos * codeLength);
+        entries.chunkIds[pos] = chunkId;
+        entries.documentIds[pos] = documentId;
+        locationByChunkId.put(chunkId, ((long) list << 32) | pos);
+        encodedSize++;
+    }
+
+    private void appendPending(long chunkId, long documentId, float[] normalized) {
+        if (pendingSize == pendingChunkIds.length) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, pendingChunkIds.length * 2);
+            pendingMatrix = Arrays.copyOf(pendingMatrix, newCapacity * dimension);
+            pendingChunkIds = Arrays.copyOf(pendingChunkIds, newCapacity);
+            pendingDocumentIds = Arrays.copyOf(pendingDocumentIds, newCapacity);
+        }
+        int slot = pendingSize++;
+        System.arraycopy(normalized, 0, pendingMatrix, slot * dimension, dimension);
+        pendingChunkIds[slot] = chunkId;
+        pendingDocumentIds[slot] = documentId;
+        locationByChunkId.put(chunkId, -1L - slot);
+    }
+
+    /**
+     * 按位置删除一行，位置映射已由调用方移除
+     */
+    private void removeLocation(long location) {
+        if (location < 0) {
+            removePending((int) (-1L - location));
+        } else {
+            removeEncoded((int) (location >>> 32), (int) location);
+        }
+    }
+
+    /**
+     * 用末行填补被删除的暂存行
+     */
+    private void removePending(int slot) {
+        int last = pendingSize - 1;
+        if (slot != last) {
+            System.arraycopy(pendingMatrix, last * dimension, pendingMatrix, slot * dimension, dimension);
+            pendingChunkIds[slot] = pendingChunkIds[last];
+            pendingDocumentIds[slot] = pendingDocumentIds[last];
+            locationByChunkId.put(pendingChunkIds[slot], -1L - slot);
+        }
+        pendingSize--;
+    }
+
+    /**
+     * 用列表末行填补被删除的编码行
+     */
+    private void removeEncoded(int list, int pos) {
+        InvertedList entries = lists[list];
+        int last = entries.size - 1;
+        if (pos != last) {
+            int codeLength = quantizer.subspaces();
+            System.arraycopy(entries.codes, last * codeLength, entries.codes, pos * codeLength, codeLength);
+            entries.chunkIds[pos] = entries.chunkIds[last];
+            entries.documentIds[pos] = entries.documentIds[last];
+            locationByChunkId.put(entries.chunkIds[pos], ((long) list << 32) | pos);
+        }
+        entries.size--;
+        encodedSize--;
+    }
+
+    /**
+     * 维度变化时丢弃码本，重新进入暂存阶段
+     */
+    private void resetDimension(int newDimension) {
+        locationByChunkId.clear();
+        dimension = newDimension;
+        pendingMatrix = new float[0];
+        pendingChunkIds = new long[0];
+        pendingDocumentIds = new long[0];
+        pendingSize = 0;
+        coarseCentroids = null;
+        coarseHalfNorms = null;
+        quantizer = null;
+        lists = new InvertedList[0];
+        encodedSize = 0;
+        trainingId = 0L;
+    }
+
+    /**
+     * 将以候选下标为ID的收集结果转换为命中列表
+     */
+    private static List<VectorSearchHit> toHits(TopKCollector collector, long[] hitChunkIds, long[] hitDocumentIds) {
+        int count = collector.sortDescending();
+        List<VectorSearchHit> hits = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            int index = (int) collector.id(rank);
+            hits.add(new VectorSearchHit(hitChunkIds[index], hitDocumentIds[index], collector.score(rank)));
+        }
+        return hits;
+    }
+
+    /**
+     * 全精度向量与已归一化查询的余弦相似度
+     */
+    private static double cosine(float[] normalizedQuery, float[] vector) {
+        float norm = VectorMath.norm(vector);
+        return norm == 0.0f ? 0.0 : VectorMath.dot(normalizedQuery, vector) / norm;
+    }
+
+    /**
+     * 先写临时文件并刷盘，再原子重命名
+     */
+    private static void writeAtomically(Path file, SnapshotWriter writer) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            writer.write(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @FunctionalInterface
+    private interface SnapshotWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * 倒排列表：分块ID、文档ID和编码的并行数组
+     */
+    private static final class InvertedList {
+        private long[] chunkIds = new long[0];
+        private long[] documentIds = new long[0];
+        private byte[] codes = new byte[0];
+        private int size;
+
+        private void ensureCapacity(int required, int codeLength) {
+            if (required <= chunkIds.length) {
+                return;
+            }
+            int newCapacity = Math.max(required, Math.max(INITIAL_CAPACITY, chunkIds.length * 2));
+            chunkIds = Arrays.copyOf(chunkIds, newCapacity);
+            documentIds = Arrays.copyOf(documentIds, newCapacity);
+            codes = Arrays.copyOf(codes, newCapacity * codeLength);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.customerservice.vector;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * k-means聚类（Lloyd迭代，平方欧氏距离）
+ *
+ * 数据和质心都以行优先的扁平float[]存放，避免逐行数组对象。
+ * 初始质心从样本中无放回随机抽取；迭代中空簇用距所属质心最远的样本重新初始化。
+ * 分配步骤在公共ForkJoinPool中并行执行。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+final class KMeans {
+
+    private KMeans() {
+    }
+
+    /**
+     * 训练质心
+     *
+     * @param data 样本矩阵，n * dimension
+     * @param n 样本数量
+     * @param dimension 维度
+     * @param k 质心数量，不超过样本数量
+     * @param iterations 迭代次数
+     * @param seed 随机数种子
+     * @return 质心矩阵，k * dimension
+     * @throws IllegalArgumentException 当k不在 [1, n] 范围内时抛出
+     */
+    static float[] train(float[] data, int n, int dimension, int k, int iterations, long seed) {
+        if (k < 1 || k > n) {
+            throw new IllegalArgumentException("聚类数量必须在1到样本数量之间");
+        }
+        Random random = new Random(seed);
+        float[] centroids = new float[k * dimension];
+
+        // 部分Fisher-Yates洗牌抽取初始质心
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        for (int c = 0; c < k; c++) {
+            int j = c + random.nextInt(n - c);
+            int tmp = order[c];
+            order[c] = order[j];
+            order[j] = tmp;
+            System.arraycopy(data, order[c] * dimension, centroids, c * dimension, dimension);
+        }
+
+        int[] assignment = new int[n];
+        float[] distances = new float[n];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            float[] current = centroids;
+            IntStream.range(0, n).parallel().forEach(i -> {
+                int best = 0;
+                float bestDistance = Float.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    float distance = squaredDistance(data, i * dimension, current, c * dimension, dimension);
+                    if (distance < bestDistance) {
+                        bestDistance = distance;
+                        best = c;
+                    }
+                }
+                assignment[i] = best;
+                distances[i] = bestDistance;
+            });
+
+            float[] sums = new float[k * dimension];
+            int[] counts = new int[k];
+            for (int i = 0; i < n; i++) {
+                int c = assignment[i];
+                counts[c]++;
+                int offset = c * dimension;
+                int rowOffset = i * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    sums[offset + d] += data[rowOffset + d];
+                }
+            }
+
+            for (int c = 0; c < k; c++) {
+                int offset = c * dimension;
+                if (counts[c] == 0) {
+                    // 空簇取当前离质心最远的样本，并避免同一样本被重复选中
+                    int farthest = 0;
+                    for (int i = 1; i < n; i++) {
+                        if (distances[i] > distances[farthest]) {
+                            farthest = i;
+                        }
+                    }
+                    distances[farthest] = 0.0f;
+                    System.arraycopy(data, farthest * dimension, sums, offset, dimension);
+                    continue;
+                }
+                float inverse = 1.0f / counts[c];
+                for (int d = 0; d < dimension; d++) {
+                    sums[offset + d] *= inverse;
+                }
+            }
+            centroids = sums;
+        }
+        return centroids;
+    }
+
+    /**
+     * 查找最近的质心
+     *
+     * @param centroids 质心矩阵
+     * @param centroidsOffset 第一个质心的起始位置
+     * @param k 质心数量
+     * @param dimension 维度
+     * @param vector 向量所在数组
+     * @param offset 向量起始位置
+     * @return 最近质心的编号
+     */
+    static int nearest(float[] centroids, int centroidsOffset, int k, int dimension, float[] vector, int offset) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int c = 0; c < k; c++) {
+            float distance = squaredDistance(vector, offset, centroids, centroidsOffset + c * dimension, dimension);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    static float squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            float diff = a[aOffset + i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+}
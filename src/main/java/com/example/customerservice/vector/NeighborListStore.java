@@ -0,0 +1,409 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 预计算的k近邻列表
+ *
+ * 为每个对象（分块或文档）保存最多 capacity 个最相似对象，查询时直接读取，不再扫描向量矩阵。
+ * 对象发生变化时通过 {@link #markDirty} 登记，由后台任务用 {@link #pollDirty} 取出后重新计算并 {@link #put}；
+ * 新对象写入后还会用 {@link #offer} 把自己插入到各邻居的列表中（相似度对称），使已有列表不必全部重算。
+ *
+ * 每次登记新的待计算对象或移除对象都会递增变更序号。水位线是所有变更都已反映到列表中的最大序号：
+ * 没有待计算对象时等于当前变更序号，否则为最早未完成变更的序号减一。
+ *
+ * 列表对象不可变，更新时整体替换，读取方无需持锁。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class NeighborListStore {
+
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Long, NeighborList> lists = new HashMap<>();
+
+    /**
+     * 分组（分块所属文档）到对象ID，用于按文档整体移除
+     */
+    private final Map<Long, Set<Long>> idsByGroup = new HashMap<>();
+
+    /**
+     * 待计算对象及其首次登记时的变更序号，按登记顺序排列
+     */
+    private final LinkedHashMap<Long, Long> dirty = new LinkedHashMap<>();
+
+    /**
+     * 已取出、尚未写回的对象及其变更序号
+     */
+    private final Map<Long, Long> inFlight = new HashMap<>();
+
+    private long changeSequence;
+
+    private long lastRefreshMillis;
+
+    /**
+     * @param capacity 每个列表保留的邻居数
+     * @throws IllegalArgumentException 当capacity小于1时抛出
+     */
+    public NeighborListStore(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("近邻列表长度必须大于0");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * 登记对象需要重新计算近邻列表
+     *
+     * @param id 对象ID
+     */
+    public void markDirty(long id) {
+        lock.lock();
+        try {
+            // 已登记的对象重算时会反映后续变更，保留原序号
+            if (!dirty.containsKey(id)) {
+                dirty.put(id, ++changeSequence);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按登记顺序取出最多max个待计算对象
+     *
+     * @param max 最大数量
+     * @return 对象ID，没有待计算对象时为空数组
+     */
+    public long[] pollDirty(int max) {
+        lock.lock();
+        try {
+            int count = Math.min(max, dirty.size());
+            long[] ids = new long[count];
+            Iterator<Map.Entry<Long, Long>> iterator = dirty.entrySet().iterator();
+            for (int i = 0; i < count; i++) {
+                Map.Entry<Long, Long> entry = iterator.next();
+                ids[i] = entry.getKey();
+                inFlight.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+            return ids;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写入对象的近邻列表，并结束该对象的待计算状态
+     *
+     * @param id 对象ID
+     * @param group 对象所属分组
+     * @param hits 近邻，按相似度降序排列，超过容量的部分被截断
+     */
+    public void put(long id, long group, List<VectorSearchHit> hits) {
+        int count = Math.min(hits.size(), capacity);
+        long[] neighborIds = new long[count];
+        long[] neighborGroups = new long[count];
+        float[] scores = new float[count];
+        for (int i = 0; i < count; i++) {
+            VectorSearchHit hit = hits.get(i);
+            neighborIds[i] = hit.getChunkId();
+            neighborGroups[i] = hit.getDocumentId();
+            scores[i] = (float) hit.getScore();
+        }
+
+        lock.lock();
+        try {
+            Long sequence = inFlight.remove(id);
+            NeighborList previous = lists.put(id, new NeighborList(group, neighborIds, neighborGroups, scores,
+                sequence != null ? sequence : changeSequence));
+            if (previous != null && previous.group != group) {
+                removeFromGroup(previous.group, id);
+            }
+            idsByGroup.computeIfAbsent(group, key -> new HashSet<>()).add(id);
+            lastRefreshMillis = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 把新对象插入到已有近邻列表中
+     * 列表不存在、已包含该对象或相似度不高于列表末位（列表已满）时忽略
+     *
+     * @param id 列表所属对象ID
+     * @param neighborId 新对象ID
+     * @param neighborGroup 新对象所属分组
+     * @param score 相似度
+     */
+    public void offer(long id, long neighborId, long neighborGroup, double score) {
+        if (id == neighborId) {
+            return;
+        }
+        lock.lock();
+        try {
+            NeighborList list = lists.get(id);
+            if (list == null) {
+                return;
+            }
+            int size = list.size();
+            if (size == capacity && score <= list.scores[size - 1]) {
+                return;
+            }
+            for (int i = 0; i < size; i++) {
+                if (list.ids[i] == neighborId) {
+                    return;
+                }
+            }
+
+            int position = 0;
+            while (position < size && list.scores[position] >= score) {
+                position++;
+            }
+            int newSize = Math.min(size + 1, capacity);
+            long[] ids = new long[newSize];
+            long[] groups = new long[newSize];
+            float[] scores = new float[newSize];
+            for (int source = 0, target = 0; target < newSize; target++) {
+                if (target == position) {
+                    ids[target] = neighborId;
+                    groups[target] = neighborGroup;
+                    scores[target] = (float) score;
+                } else {
+                    ids[target] = list.ids[source];
+                    groups[target] = list.groups[source];
+                    scores[target] = list.scores[source];
+                    source++;
+                }
+            }
+            lists.put(id, new NeighborList(list.group, ids, groups, scores, list.sequence));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取对象的近邻列表
+     *
+     * @param id 对象ID
+     * @return 近邻列表，尚未计算时返回null
+     */
+    public NeighborList get(long id) {
+        lock.lock();
+        try {
+            return lists.get(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 对象是否正在等待重新计算
+     *
+     * @param id 对象ID
+     * @return 已登记或正在计算时返回true
+     */
+    public boolean isPending(long id) {
+        lock.lock();
+        try {
+            return dirty.containsKey(id) || inFlight.containsKey(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除对象的近邻列表和待计算状态
+     *
+     * @param id 对象ID
+     */
+    public void remove(long id) {
+        lock.lock();
+        try {
+            removeEntry(id);
+            changeSequence++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 移除分组内全部对象的近邻列表
+     * 其他列表中指向这些对象的条目在读取时过滤
+     *
+     * @param group 分组ID
+     * @return 移除的列表数量
+     */
+    public int removeGroup(long group) {
+        lock.lock();
+        try {
+            Set<Long> ids = idsByGroup.remove(group);
+            if (ids == null) {
+                return 0;
+            }
+            for (Long id : new ArrayList<>(ids)) {
+                lists.remove(id);
+                dirty.remove(id);
+                inFlight.remove(id);
+            }
+            changeSequence++;
+            return ids.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 清空全部列表和待计算对象
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            lists.clear();
+            idsByGroup.clear();
+            dirty.clear();
+            inFlight.clear();
+            changeSequence++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取水位线：不大于该序号的变更都已反映到近邻列表中
+     *
+     * @return 水位线
+     */
+    public long getWatermark() {
+        lock.lock();
+        try {
+            long oldest = Long.MAX_VALUE;
+            if (!dirty.isEmpty()) {
+                oldest = dirty.values().iterator().next();
+            }
+            for (Long sequence : inFlight.values()) {
+                oldest = Math.min(oldest, sequence);
+            }
+            return oldest == Long.MAX_VALUE ? changeSequence : oldest - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getChangeSequence() {
+        lock.lock();
+        try {
+            return changeSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return dirty.size() + inFlight.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLastRefreshMillis() {
+        lock.lock();
+        try {
+            return lastRefreshMillis;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return lists.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 移除单个对象（调用方持有锁）
+     */
+    private void removeEntry(long id) {
+        NeighborList previous = lists.remove(id);
+        if (previous != null) {
+            removeFromGroup(previous.group, id);
+        }
+        dirty.remove(id);
+        inFlight.remove(id);
+    }
+
+    private void removeFromGroup(long group, long id) {
+        Set<Long> ids = idsByGroup.get(group);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByGroup.remove(group);
+            }
+        }
+    }
+
+    /**
+     * 一个对象的近邻列表，按相似度降序排列
+     */
+    public static class NeighborList {
+
+        private final long group;
+        private final long[] ids;
+        private final long[] groups;
+        private final float[] scores;
+        private final long sequence;
+
+        NeighborList(long group, long[] ids, long[] groups, float[] scores, long sequence) {
+            this.group = group;
+            this.ids = ids;
+            this.groups = groups;
+            this.scores = scores;
+            this.sequence = sequence;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public long id(int rank) {
+            return ids[rank];
+        }
+
+        public long group(int rank) {
+            return groups[rank];
+        }
+
+        public float score(int rank) {
+            return scores[rank];
+        }
+
+        /**
+         * 计算该列表时对应的变更序号
+         */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+}
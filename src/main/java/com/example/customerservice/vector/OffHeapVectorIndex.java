@@ -0,0 +1,545 @@
+package com.example.customerservice.vector;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 堆外存储的精确向量索引
+ *
+ * 与 {@link FloatVectorIndex} 的检索语义相同，但向量矩阵不在Java堆上：
+ * 矩阵按固定大小的页存放在直接内存（{@link ByteBuffer#allocateDirect}）中，每页容纳整数行，
+ * 扩容时只追加新页，不复制已有数据。堆上只保留分块ID、文档ID两个long[]和ID到行号的映射，
+ * 堆占用与向量维度无关，语料增长不会扩大老年代或引发大对象复制。
+ *
+ * 打分时按行块把一段连续行批量复制到每次检索私有的小缓冲区（约 {@value FloatVectorIndex#BATCH_BLOCK_BYTES} 字节），
+ * 再用 {@link VectorMath} 的SIMD内核计算点积；批量复制是一次内存拷贝，缓冲区常驻缓存。
+ * 多查询批量检索复用同一个行块，每行在一批查询中只从直接内存读取一次。
+ *
+ * 生命周期：{@link #close()} 之后索引变为空且不可再写入，页引用立即释放，
+ * 直接内存随缓冲区对象回收归还（上限由 -XX:MaxDirectMemorySize 控制）。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class OffHeapVectorIndex implements VectorSearchEngine {
+
+    /**
+     * 引擎名称
+     */
+    public static final String ENGINE_NAME = "offheap";
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ForkJoinPool searchPool;
+
+    private final int partitionSize;
+
+    private final int parallelThreshold;
+
+    /**
+     * 每页的目标字节数
+     */
+    private final int pageBytes;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotByChunkId = new HashMap<>();
+
+    /**
+     * 矩阵页，第i行位于第 i / rowsPerPage 页的第 i % rowsPerPage 行
+     */
+    private final List<FloatBuffer> pages = new ArrayList<>();
+
+    private long[] chunkIds = new long[0];
+
+    private long[] documentIds = new long[0];
+
+    private int dimension;
+
+    private int rowsPerPage;
+
+    private int size;
+
+    private boolean closed;
+
+    /**
+     * 构造单线程检索的索引
+     *
+     * @param pageBytes 每页字节数
+     */
+    public OffHeapVectorIndex(int pageBytes) {
+        this(null, Integer.MAX_VALUE, Integer.MAX_VALUE, pageBytes);
+    }
+
+    /**
+     * 构造支持分区并行检索的索引
+     *
+     * @param searchPool 并行检索线程池，为null时始终单线程检索
+     * @param partitionSize 每个分区的最大行数
+     * @param parallelThreshold 向量数量达到该值时才并行检索
+     * @param pageBytes 每页字节数，至少容纳一行
+     */
+    public OffHeapVectorIndex(ForkJoinPool searchPool, int partitionSize, int parallelThreshold, int pageBytes) {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("分区大小必须大于0");
+        }
+        if (pageBytes <= 0) {
+            throw new IllegalArgumentException("堆外页大小必须大于0");
+        }
+        this.searchPool = searchPool;
+        this.partitionSize = partitionSize;
+        this.parallelThreshold = parallelThreshold;
+        this.pageBytes = pageBytes;
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    /**
+     * 写入或替换分块向量
+     *
+     * @param chunkId 分块ID
+     * @param documentId 文档ID
+     * @param vector 向量
+     * @throws IllegalArgumentException 当向量维度与索引不一致时抛出
+     * @throws IllegalStateException 当索引已关闭时抛出
+     */
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("堆外向量索引已关闭");
+            }
+            if (size == 0 && dimension != vector.length) {
+                dimension = vector.length;
+                rowsPerPage = Math.max(1, pageBytes / (dimension * Float.BYTES));
+                pages.clear();
+                chunkIds = new long[INITIAL_CAPACITY];
+                documentIds = new long[INITIAL_CAPACITY];
+            }
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+            }
+
+            float[] normalized = VectorMath.normalize(vector);
+            if (normalized == null) {
+                // 零向量无法参与余弦检索
+                Integer stale = slotByChunkId.remove(chunkId);
+                if (stale != null) {
+                    removeSlot(stale);
+                }
+                return;
+            }
+
+            Integer existing = slotByChunkId.get(chunkId);
+            int slot;
+            if (existing != null) {
+                slot = existing;
+            } else {
+                ensureCapacity(size + 1);
+                slot = size++;
+                slotByChunkId.put(chunkId, slot);
+            }
+
+            writeRow(slot, normalized);
+            chunkIds[slot] = chunkId;
+            documentIds[slot] = documentId;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByChunkId.remove(chunkId);
+            if (slot == null) {
+                return false;
+            }
+            removeSlot(slot);
+            releaseUnusedPages();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            // 倒序遍历，保证末行填补不会跳过尚未检查的行
+            for (int slot = size - 1; slot >= 0; slot--) {
+                if (documentIds[slot] == documentId) {
+                    slotByChunkId.remove(chunkIds[slot]);
+                    removeSlot(slot);
+                    removed++;
+                }
+            }
+            releaseUnusedPages();
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotByChunkId.clear();
+            pages.clear();
+            chunkIds = new long[0];
+            documentIds = new long[0];
+            dimension = 0;
+            rowsPerPage = 0;
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 关闭索引并释放全部页
+     * 关闭后检索返回空结果，写入抛出异常；重复关闭无副作用
+     */
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        clear();
+    }
+
+    public boolean isClosed() {
+        lock.readLock().lock();
+        try {
+            return closed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        if (query == null || topK <= 0 || (filter != null && filter.isEmpty())) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+
+            float[] normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return new ArrayList<>();
+            }
+
+            float[][] queries = {normalizedQuery};
+            int k = Math.min(topK, size);
+            TopKCollector collector = scanAll(queries, k, minScore, excludeChunkId, filter)[0];
+            return toHits(collector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<List<VectorSearchHit>> searchBatch(float[][] queries, int topK, double minScore,
+                                                   DocumentFilter filter) {
+        List<List<VectorSearchHit>> results = new ArrayList<>(queries.length);
+        if (topK <= 0 || queries.length == 0 || (filter != null && filter.isEmpty())) {
+            for (int q = 0; q < queries.length; q++) {
+                results.add(new ArrayList<>());
+            }
+            return results;
+        }
+
+        lock.readLock().lock();
+        try {
+            float[][] normalizedQueries = new float[queries.length][];
+            for (int q = 0; q < queries.length; q++) {
+                if (queries[q] == null || size == 0) {
+                    continue;
+                }
+                if (queries[q].length != dimension) {
+                    throw new IllegalArgumentException("向量维度不匹配");
+                }
+                normalizedQueries[q] = VectorMath.normalize(queries[q]);
+            }
+
+            TopKCollector[] collectors = size == 0
+                ? new TopKCollector[queries.length]
+                : scanAll(normalizedQueries, Math.min(topK, size), minScore, -1L, filter);
+            for (TopKCollector collector : collectors) {
+                results.add(collector == null ? new ArrayList<>() : toHits(collector));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public float[] getVector(long chunkId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByChunkId.get(chunkId);
+            if (slot == null) {
+                return null;
+            }
+            float[] vector = new float[dimension];
+            readRows(slot, 1, vector);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long chunkId) {
+        lock.readLock().lock();
+        try {
+            return slotByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] chunkIds() {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOf(chunkIds, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已分配的直接内存字节数
+     *
+     * @return 全部页的容量之和
+     */
+    @Override
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) pages.size() * rowsPerPage * dimension * Float.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 扫描全部行，按配置决定是否分区并行（调用方持有读锁）
+     */
+    private TopKCollector[] scanAll(float[][] normalizedQueries, int k, double minScore, long excludeChunkId,
+                                    DocumentFilter filter) {
+        if (searchPool != null && size >= parallelThreshold && size > partitionSize) {
+            return searchPool.invoke(new PartitionScanTask(normalizedQueries, k, minScore, excludeChunkId,
+                filter, 0, size));
+        }
+        return scan(normalizedQueries, k, minScore, excludeChunkId, filter, 0, size);
+    }
+
+    /**
+     * 分块扫描 [from, to) 行（调用方持有读锁）
+     * 每个行块从直接内存批量复制到私有缓冲区一次，再与批内全部查询计算点积
+     */
+    private TopKCollector[] scan(float[][] normalizedQueries, int k, double minScore, long excludeChunkId,
+                                 DocumentFilter filter, int from, int to) {
+        TopKCollector[] collectors = new TopKCollector[normalizedQueries.length];
+        for (int q = 0; q < normalizedQueries.length; q++) {
+            if (normalizedQueries[q] != null) {
+                collectors[q] = new TopKCollector(k, minScore);
+            }
+        }
+
+        int blockRows = Math.max(8, FloatVectorIndex.BATCH_BLOCK_BYTES / (dimension * Float.BYTES));
+        float[] block = new float[Math.min(blockRows, to - from) * dimension];
+        int blockStart = from;
+        while (blockStart < to) {
+            // 行块不跨页，保证一次批量复制
+            int pageEnd = (blockStart / rowsPerPage + 1) * rowsPerPage;
+            int blockEnd = Math.min(Math.min(blockStart + blockRows, to), pageEnd);
+            readRows(blockStart, blockEnd - blockStart, block);
+
+            for (int q = 0; q < normalizedQueries.length; q++) {
+                float[] query = normalizedQueries[q];
+                if (query == null) {
+                    continue;
+                }
+                TopKCollector collector = collectors[q];
+                for (int slot = blockStart, offset = 0; slot < blockEnd; slot++, offset += dimension) {
+                    if (chunkIds[slot] != excludeChunkId && (filter == null || filter.accepts(documentIds[slot]))) {
+                        collector.offer(slot, VectorMath.dot(query, 0, block, offset, dimension));
+                    }
+                }
+            }
+            blockStart = blockEnd;
+        }
+        return collectors;
+    }
+
+    /**
+     * 分区检索任务：区间超过分区大小时二分，否则顺序扫描；子任务结果按查询归并
+     * 发起检索的线程在invoke期间持有读锁，工作线程只读页，不会与写操作并发
+     */
+    @SuppressWarnings("serial")
+    private final class PartitionScanTask extends RecursiveTask<TopKCollector[]> {
+
+        private final float[][] normalizedQueries;
+        private final int k;
+        private final double minScore;
+        private final long excludeChunkId;
+        private final DocumentFilter filter;
+        private final int from;
+        private final int to;
+
+        PartitionScanTask(float[][] normalizedQueries, int k, double minScore, long excludeChunkId,
+                          DocumentFilter filter, int from, int to) {
+            this.normalizedQueries = normalizedQueries;
+            this.k = k;
+            this.minScore = minScore;
+            this.excludeChunkId = excludeChunkId;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopKCollector[] compute() {
+            if (to - from <= partitionSize) {
+                return scan(normalizedQueries, k, minScore, excludeChunkId, filter, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            PartitionScanTask left = new PartitionScanTask(
+                    normalizedQueries, k, minScore, excludeChunkId, filter, from, middle);
+            PartitionScanTask right = new PartitionScanTask(
+                    normalizedQueries, k, minScore, excludeChunkId, filter, middle, to);
+            left.fork();
+            TopKCollector[] merged = right.compute();
+            TopKCollector[] other = left.join();
+            for (int q = 0; q < merged.length; q++) {
+                if (merged[q] != null) {
+                    merged[q].addAll(other[q]);
+                }
+            }
+            return merged;
+        }
+    }
+
+    private List<VectorSearchHit> toHits(TopKCollector collector) {
+        int resultCount = collector.sortDescending();
+        List<VectorSearchHit> hits = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            int slot = (int) collector.id(rank);
+            hits.add(new VectorSearchHit(chunkIds[slot], documentIds[slot], collector.score(rank)));
+        }
+        return hits;
+    }
+
+    /**
+     * 从页中读取从slot开始的连续行，调用方保证这些行位于同一页
+     */
+    private void readRows(int slot, int rows, float[] target) {
+        FloatBuffer page = pages.get(slot / rowsPerPage);
+        page.get((slot % rowsPerPage) * dimension, target, 0, rows * dimension);
+    }
+
+    private void writeRow(int slot, float[] row) {
+        FloatBuffer page = pages.get(slot / rowsPerPage);
+        page.put((slot % rowsPerPage) * dimension, row, 0, dimension);
+    }
+
+    /**
+     * 用末行填补被删除的行
+     */
+    private void removeSlot(int slot) {
+        int last = size - 1;
+        if (slot != last) {
+            float[] row = new float[dimension];
+            readRows(last, 1, row);
+            writeRow(slot, row);
+            chunkIds[slot] = chunkIds[last];
+            documentIds[slot] = documentIds[last];
+            slotByChunkId.put(chunkIds[slot], slot);
+        }
+        size--;
+    }
+
+    /**
+     * 保证至少容纳required行：ID数组按倍数扩容，矩阵只追加新页
+     */
+    private void ensureCapacity(int required) {
+        if (required > chunkIds.length) {
+            int newCapacity = Math.max(required, chunkIds.length * 2);
+            chunkIds = Arrays.copyOf(chunkIds, newCapacity);
+            documentIds = Arrays.copyOf(documentIds, newCapacity);
+        }
+        while ((long) pages.size() * rowsPerPage < required) {
+            pages.add(ByteBuffer.allocateDirect(rowsPerPage * dimension * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer());
+        }
+    }
+
+    /**
+     * 删除后保留一个空闲页，其余尾部空页释放
+     */
+    private void releaseUnusedPages() {
+        int usedPages = (size + rowsPerPage - 1) / Math.max(rowsPerPage, 1);
+        while (pages.size() > usedPages + 1) {
+            pages.remove(pages.size() - 1);
+        }
+    }
+}
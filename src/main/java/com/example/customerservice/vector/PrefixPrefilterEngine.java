@@ -0,0 +1,114 @@
+package com.example.customerservice.vector;
+
+import java.util.List;
+
+/**
+ * 截断维度前缀预过滤检索
+ *
+ * 两阶段检索的只读视图：先在 {@link PrefixVectorIndex} 的低维前缀矩阵上精确扫描，
+ * 保留 topK * oversample 个候选，再由完整引擎用完整向量重新打分（{@link VectorSearchEngine#rescore}）。
+ * 放大倍数决定召回率与耗时的折中，可通过 {@link RecallEvaluator} 在实际语料上评估。
+ *
+ * 写入操作由前缀索引和完整引擎各自维护，本视图不支持写入；
+ * {@link #searchExact} 委托给完整引擎，作为召回率评估的基准。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class PrefixPrefilterEngine implements VectorSearchEngine {
+
+    /**
+     * 名称
+     */
+    public static final String ENGINE_NAME = "prefix-prefilter";
+
+    private final PrefixVectorIndex prefixes;
+
+    private final VectorSearchEngine fullEngine;
+
+    private final int oversample;
+
+    /**
+     * @param prefixes 前缀索引
+     * @param fullEngine 提供完整向量的引擎
+     * @param oversample 第一阶段候选数量相对topK的放大倍数
+     * @throws IllegalArgumentException 当放大倍数小于1时抛出
+     */
+    public PrefixPrefilterEngine(PrefixVectorIndex prefixes, VectorSearchEngine fullEngine, int oversample) {
+        if (oversample < 1) {
+            throw new IllegalArgumentException("候选放大倍数必须大于0");
+        }
+        this.prefixes = prefixes;
+        this.fullEngine = fullEngine;
+        this.oversample = oversample;
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME + "(" + prefixes.getPrefixLength() + ", " + fullEngine.getName() + ")";
+    }
+
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public boolean remove(long chunkId) {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public int removeDocument(long documentId) {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("预过滤视图不支持写入");
+    }
+
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        int candidates = (int) Math.min((long) topK * oversample, Integer.MAX_VALUE);
+        List<VectorSearchHit> prefiltered = prefixes.candidates(
+            query, Math.max(candidates, topK), excludeChunkId, filter);
+        return fullEngine.rescore(query, prefiltered, topK, minScore);
+    }
+
+    @Override
+    public List<VectorSearchHit> searchExact(float[] query, int topK, double minScore, long excludeChunkId) {
+        return fullEngine.searchExact(query, topK, minScore, excludeChunkId);
+    }
+
+    @Override
+    public float[] getVector(long chunkId) {
+        return fullEngine.getVector(chunkId);
+    }
+
+    @Override
+    public boolean contains(long chunkId) {
+        return fullEngine.contains(chunkId);
+    }
+
+    @Override
+    public long[] chunkIds() {
+        return fullEngine.chunkIds();
+    }
+
+    @Override
+    public int size() {
+        return fullEngine.size();
+    }
+
+    @Override
+    public int dimension() {
+        return fullEngine.dimension();
+    }
+
+    public int getOversample() {
+        return oversample;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.customerservice.vector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 截断维度前缀索引
+ *
+ * Matryoshka式训练的向量模型把大部分排序信息放在前几维：取每个向量的前L维重新归一化，
+ * 存入独立的紧凑矩阵（{@link FloatVectorIndex}），用作精确检索的第一阶段。
+ * 1536维向量取256维前缀时，第一阶段的点积计算量和内存带宽约为全量的1/6，
+ * 候选再由检索引擎用完整向量重新打分（见 {@link PrefixPrefilterEngine}）。
+ *
+ * 前缀矩阵沿用 {@link FloatVectorIndex} 的读写锁、末行填补删除和分区并行扫描。
+ * 向量维度不超过前缀长度时前缀即完整向量。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class PrefixVectorIndex {
+
+    private final int prefixLength;
+
+    private final FloatVectorIndex prefixes;
+
+    /**
+     * 完整向量维度，首个向量写入时确定
+     */
+    private volatile int dimension;
+
+    /**
+     * 构造单线程检索的前缀索引
+     *
+     * @param prefixLength 前缀维数
+     */
+    public PrefixVectorIndex(int prefixLength) {
+        this(prefixLength, new FloatVectorIndex());
+    }
+
+    /**
+     * 构造支持分区并行检索的前缀索引
+     *
+     * @param prefixLength 前缀维数
+     * @param searchPool 并行检索线程池
+     * @param partitionSize 每个分区的最大行数
+     * @param parallelThreshold 向量数量达到该值时才并行检索
+     */
+    public PrefixVectorIndex(int prefixLength, ForkJoinPool searchPool, int partitionSize, int parallelThreshold) {
+        this(prefixLength, new FloatVectorIndex(searchPool, partitionSize, parallelThreshold));
+    }
+
+    private PrefixVectorIndex(int prefixLength, FloatVectorIndex prefixes) {
+        if (prefixLength < 1) {
+            throw new IllegalArgumentException("前缀维数必须大于0");
+        }
+        this.prefixLength = prefixLength;
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * 截取向量前缀（未归一化，写入和检索时由前缀矩阵归一化）
+     *
+     * @param vector 完整向量
+     * @param length 前缀维数
+     * @return 前length维的副本，向量维度不超过length时返回完整副本
+     */
+    public static float[] prefix(float[] vector, int length) {
+        return Arrays.copyOf(vector, Math.min(vector.length, length));
+    }
+
+    /**
+     * 批量写入或替换分块前缀
+     *
+     * @param ids 分块ID
+     * @param documentIdsOfChunks 分块所属文档ID
+     * @param vectors 完整向量，为null的行被忽略
+     * @throws IllegalArgumentException 当向量维度与索引不一致时抛出
+     */
+    public synchronized void upsertBatch(long[] ids, long[] documentIdsOfChunks, float[][] vectors) {
+        float[][] truncated = new float[vectors.length][];
+        // 索引为空时由本批第一个向量确定维度
+        boolean empty = prefixes.size() == 0;
+        for (int i = 0; i < vectors.length; i++) {
+            float[] vector = vectors[i];
+            if (vector == null || vector.length == 0) {
+                continue;
+            }
+            if (empty) {
+                dimension = vector.length;
+                empty = false;
+            }
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+            }
+            truncated[i] = prefix(vector, prefixLength);
+        }
+        prefixes.upsertBatch(ids, documentIdsOfChunks, truncated);
+    }
+
+    /**
+     * 移除文档的全部分块前缀
+     *
+     * @param documentId 文档ID
+     * @return 移除的分块数量
+     */
+    public int removeDocument(long documentId) {
+        return prefixes.removeDocument(documentId);
+    }
+
+    /**
+     * 按前缀余弦相似度选出候选
+     *
+     * @param query 完整查询向量
+     * @param count 候选数量
+     * @param excludeChunkId 需要排除的分块ID，不排除时传-1
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 候选分块，分数为前缀相似度，按分数降序排列
+     * @throws IllegalArgumentException 当查询向量维度与索引不一致时抛出
+     */
+    public List<VectorSearchHit> candidates(float[] query, int count, long excludeChunkId, DocumentFilter filter) {
+        if (query != null && dimension != 0 && query.length != dimension) {
+            throw new IllegalArgumentException("向量维度不匹配");
+        }
+        return prefixes.search(query != null ? prefix(query, prefixLength) : null, count,
+                Double.NEGATIVE_INFINITY, excludeChunkId, filter);
+    }
+
+    public int getPrefixLength() {
+        return prefixLength;
+    }
+
+    public int size() {
+        return prefixes.size();
+    }
+
+    /**
+     * 前缀矩阵占用的字节数
+     *
+     * @return 字节数
+     */
+    public long prefixBytes() {
+        return (long) prefixes.size() * prefixes.dimension() * Float.BYTES;
+    }
+}
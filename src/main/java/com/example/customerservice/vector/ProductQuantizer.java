@@ -0,0 +1,192 @@
+package com.example.customerservice.vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 乘积量化器（Product Quantization）
+ *
+ * 将 dimension 维向量切分为 m 个连续的子向量，每个子空间独立用k-means训练 ksub 个码字，
+ * 向量编码为 m 个字节（每个子空间的最近码字编号）。
+ * 查询时先计算查询子向量与全部码字的内积表（m * ksub），
+ * 任意编码的近似内积只需 m 次查表累加（非对称距离计算，ADC）。
+ *
+ * 训练完成后不可变，可在多线程间共享。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+final class ProductQuantizer {
+
+    /**
+     * 每个子空间的最大码字数量，编码以无符号字节存放
+     */
+    static final int MAX_CENTROIDS = 256;
+
+    private final int dimension;
+    private final int m;
+    private final int ksub;
+    private final int dsub;
+
+    /**
+     * 码本，子空间j的第k个码字占用 [(j * ksub + k) * dsub, (j * ksub + k + 1) * dsub)
+     */
+    private final float[] codebooks;
+
+    private ProductQuantizer(int dimension, int m, int ksub, float[] codebooks) {
+        this.dimension = dimension;
+        this.m = m;
+        this.ksub = ksub;
+        this.dsub = dimension / m;
+        this.codebooks = codebooks;
+    }
+
+    /**
+     * 在样本上训练码本
+     *
+     * @param data 样本矩阵，n * dimension
+     * @param n 样本数量
+     * @param dimension 维度
+     * @param m 子空间数量，必须整除维度
+     * @param ksub 每个子空间的码字数量，不超过256和样本数量
+     * @param iterations k-means迭代次数
+     * @param seed 随机数种子
+     * @return 乘积量化器
+     * @throws IllegalArgumentException 当参数不合法时抛出
+     */
+    static ProductQuantizer train(float[] data, int n, int dimension, int m, int ksub, int iterations, long seed) {
+        if (m < 1 || dimension % m != 0) {
+            throw new IllegalArgumentException("子空间数量必须整除向量维度: dimension=" + dimension + ", m=" + m);
+        }
+        if (ksub < 1 || ksub > MAX_CENTROIDS || ksub > n) {
+            throw new IllegalArgumentException("码字数量必须在1到min(256, 样本数量)之间");
+        }
+        int dsub = dimension / m;
+        float[] codebooks = new float[m * ksub * dsub];
+        float[] subData = new float[n * dsub];
+        for (int j = 0; j < m; j++) {
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(data, i * dimension + j * dsub, subData, i * dsub, dsub);
+            }
+            float[] centroids = KMeans.train(subData, n, dsub, ksub, iterations, seed + j);
+            System.arraycopy(centroids, 0, codebooks, j * ksub * dsub, ksub * dsub);
+        }
+        return new ProductQuantizer(dimension, m, ksub, codebooks);
+    }
+
+    /**
+     * 选择不超过请求值且整除维度的最大子空间数量
+     *
+     * @param dimension 维度
+     * @param requested 请求的子空间数量
+     * @return 实际使用的子空间数量，至少为1
+     */
+    static int resolveSubspaces(int dimension, int requested) {
+        for (int m = Math.min(Math.max(requested, 1), dimension); m > 1; m--) {
+            if (dimension % m == 0) {
+                return m;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * 编码向量
+     *
+     * @param vector 向量所在数组
+     * @param offset 向量起始位置
+     * @param codes 编码输出数组
+     * @param codeOffset 编码写入位置，占用m个字节
+     */
+    void encode(float[] vector, int offset, byte[] codes, int codeOffset) {
+        for (int j = 0; j < m; j++) {
+            int code = KMeans.nearest(codebooks, j * ksub * dsub, ksub, dsub, vector, offset + j * dsub);
+            codes[codeOffset + j] = (byte) code;
+        }
+    }
+
+    /**
+     * 解码为近似向量并累加到输出
+     *
+     * @param codes 编码所在数组
+     * @param codeOffset 编码起始位置
+     * @param out 输出向量，解码结果累加到其中
+     */
+    void decodeAdd(byte[] codes, int codeOffset, float[] out) {
+        for (int j = 0; j < m; j++) {
+            int codeword = (j * ksub + (codes[codeOffset + j] & 0xFF)) * dsub;
+            for (int d = 0; d < dsub; d++) {
+                out[j * dsub + d] += codebooks[codeword + d];
+            }
+        }
+    }
+
+    /**
+     * 计算查询与全部码字的内积表
+     *
+     * @param query 查询向量
+     * @return 内积表，table[j * ksub + k] 为第j个查询子向量与子空间j第k个码字的内积
+     */
+    float[] innerProductTable(float[] query) {
+        float[] table = new float[m * ksub];
+        for (int j = 0; j < m; j++) {
+            for (int k = 0; k < ksub; k++) {
+                table[j * ksub + k] = VectorMath.dot(query, j * dsub, codebooks, (j * ksub + k) * dsub, dsub);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 按内积表计算编码的近似内积
+     *
+     * @param table 查询的内积表
+     * @param codes 编码所在数组
+     * @param codeOffset 编码起始位置
+     * @return 近似内积
+     */
+    float score(float[] table, byte[] codes, int codeOffset) {
+        float sum = 0.0f;
+        for (int j = 0, base = 0; j < m; j++, base += ksub) {
+            sum += table[base + (codes[codeOffset + j] & 0xFF)];
+        }
+        return sum;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(m);
+        out.writeInt(ksub);
+        for (float value : codebooks) {
+            out.writeFloat(value);
+        }
+    }
+
+    static ProductQuantizer readFrom(DataInput in) throws IOException {
+        int dimension = in.readInt();
+        int m = in.readInt();
+        int ksub = in.readInt();
+        if (dimension <= 0 || m < 1 || dimension % m != 0 || ksub < 1 || ksub > MAX_CENTROIDS) {
+            throw new IOException("无效的乘积量化参数: dimension=" + dimension + ", m=" + m + ", ksub=" + ksub);
+        }
+        float[] codebooks = new float[m * ksub * (dimension / m)];
+        for (int i = 0; i < codebooks.length; i++) {
+            codebooks[i] = in.readFloat();
+        }
+        return new ProductQuantizer(dimension, m, ksub, codebooks);
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int subspaces() {
+        return m;
+    }
+
+    int centroidsPerSubspace() {
+        return ksub;
+    }
+}
@@ -0,0 +1,548 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * int8标量量化向量索引
+ *
+ * 向量写入时先归一化，再按维度对称量化为int8：code[d] = round(v[d] / scale[d])，
+ * 每个分块仅占用 dimension 字节，约为float32存储的1/4。
+ * 检索分两步：
+ * <ol>
+ *   <li>将查询向量折算到量化空间后，用整数点积对全部分块粗排，保留 topK * oversample 个候选</li>
+ *   <li>通过 {@link VectorLoader} 批量读取候选的全精度向量，计算精确余弦相似度后重排序</li>
+ * </ol>
+ * 未设置加载器时直接返回量化分数。
+ *
+ * 量化参数由首个批次确定；后续批次中某些维度超出可表示范围时，
+ * 扩大这些维度的scale并将已有编码按比例重新量化，避免新向量被截断。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class QuantizedVectorIndex implements VectorSearchEngine {
+
+    /**
+     * 引擎名称
+     */
+    public static final String ENGINE_NAME = "int8";
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MAX_CODE = 127;
+
+    /**
+     * 计算量化范围时预留的余量，减少后续批次触发重新量化的次数
+     */
+    private static final float RANGE_HEADROOM = 1.2f;
+
+    /**
+     * 暴力精确检索时每批加载的全精度向量数量
+     */
+    private static final int EXACT_LOAD_BATCH = 1000;
+
+    private final int oversample;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotByChunkId = new HashMap<>();
+
+    /**
+     * 量化编码矩阵，第i行占用 [i * dimension, (i + 1) * dimension)
+     */
+    private byte[] codes = new byte[0];
+
+    private long[] chunkIds = new long[0];
+    private long[] documentIds = new long[0];
+
+    /**
+     * 每个维度的量化步长，为null表示尚未标定
+     */
+    private float[] scales;
+
+    private int dimension;
+    private int size;
+    private long requantizations;
+
+    private volatile VectorLoader vectorLoader;
+
+    /**
+     * 构造函数
+     *
+     * @param oversample 粗排候选放大倍数
+     */
+    public QuantizedVectorIndex(int oversample) {
+        this.oversample = Math.max(oversample, 1);
+    }
+
+    /**
+     * 设置全精度向量加载器，用于重排序
+     *
+     * @param vectorLoader 向量加载器
+     */
+    public void setVectorLoader(VectorLoader vectorLoader) {
+        this.vectorLoader = vectorLoader;
+    }
+
+    @Override
+    public String getName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public void upsert(long chunkId, long documentId, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (size == 0 && dimension != vector.length) {
+                resetDimension(vector.length);
+            }
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException(
+                        "向量维度不匹配: 期望 " + dimension + ", 实际 " + vector.length);
+            }
+            float[] normalized = VectorMath.normalize(vector);
+            if (normalized == null) {
+                return;
+            }
+            adjustScales(new float[][]{normalized});
+            write(chunkId, documentId, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量写入：先根据整个批次的取值范围调整量化参数，再逐条编码
+     */
+    @Override
+    public int upsertBatch(long[] batchChunkIds, long[] batchDocumentIds, float[][] vectors) {
+        lock.writeLock().lock();
+        try {
+            if (size == 0) {
+                for (float[] vector : vectors) {
+                    if (vector != null && vector.length > 0) {
+                        if (dimension != vector.length) {
+                            resetDimension(vector.length);
+                        }
+                        break;
+                    }
+                }
+            }
+
+            float[][] normalized = new float[vectors.length][];
+            for (int i = 0; i < vectors.length; i++) {
+                if (vectors[i] != null && vectors[i].length == dimension) {
+                    normalized[i] = VectorMath.normalize(vectors[i]);
+                }
+            }
+            adjustScales(normalized);
+
+            int written = 0;
+            for (int i = 0; i < normalized.length; i++) {
+                if (normalized[i] != null) {
+                    write(batchChunkIds[i], batchDocumentIds[i], normalized[i]);
+                    written++;
+                }
+            }
+            return written;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(long chunkId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByChunkId.remove(chunkId);
+            if (slot == null) {
+                return false;
+            }
+            removeSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int slot = size - 1; slot >= 0; slot--) {
+                if (documentIds[slot] == documentId) {
+                    slotByChunkId.remove(chunkIds[slot]);
+                    removeSlot(slot);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            resetDimension(0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                        DocumentFilter filter) {
+        if (query == null || topK <= 0 || (filter != null && filter.isEmpty())) {
+            return new ArrayList<>();
+        }
+
+        float[] normalizedQuery;
+        long[] candidateChunkIds;
+        long[] candidateDocumentIds;
+        float[] approximateScores;
+
+        // 1. 量化空间整数点积粗排（持有读锁）
+        lock.readLock().lock();
+        try {
+            if (size == 0) {
+                return new ArrayList<>();
+            }
+            if (query.length != dimension) {
+                throw new IllegalArgumentException("向量维度不匹配");
+            }
+            normalizedQuery = VectorMath.normalize(query);
+            if (normalizedQuery == null) {
+                return new ArrayList<>();
+            }
+
+            byte[] queryCodes = new byte[dimension];
+            float queryScale = quantizeQuery(normalizedQuery, queryCodes);
+
+            int candidateCount = (int) Math.min((long) topK * oversample, size);
+            TopKCollector collector = new TopKCollector(candidateCount);
+            for (int slot = 0, offset = 0; slot < size; slot++, offset += dimension) {
+                if (chunkIds[slot] == excludeChunkId || (filter != null && !filter.accepts(documentIds[slot]))) {
+                    continue;
+                }
+                int dot = 0;
+                for (int i = 0; i < dimension; i++) {
+                    dot += queryCodes[i] * codes[offset + i];
+                }
+                collector.offer(slot, dot * queryScale);
+            }
+
+            int found = collector.sortDescending();
+            candidateChunkIds = new long[found];
+            candidateDocumentIds = new long[found];
+            approximateScores = new float[found];
+            for (int rank = 0; rank < found; rank++) {
+                int slot = (int) collector.id(rank);
+                candidateChunkIds[rank] = chunkIds[slot];
+                candidateDocumentIds[rank] = documentIds[slot];
+                approximateScores[rank] = (float) collector.score(rank);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 2. 全精度重排序（不持有锁，加载器可能访问数据库）
+        VectorLoader loader = vectorLoader;
+        Map<Long, float[]> exactVectors = loader != null && candidateChunkIds.length > 0
+                ? loader.load(candidateChunkIds) : Map.of();
+
+        TopKCollector collector = new TopKCollector(topK, minScore);
+        for (int i = 0; i < candidateChunkIds.length; i++) {
+            float[] exact = exactVectors.get(candidateChunkIds[i]);
+            collector.offer(i, exact != null && exact.length == normalizedQuery.length
+                    ? cosine(normalizedQuery, exact) : approximateScores[i]);
+        }
+        return toHits(collector, candidateChunkIds, candidateDocumentIds);
+    }
+
+    /**
+     * 精确检索：分批加载全部全精度向量后暴力计算
+     * 代价较高，仅用于召回率评估；未设置加载器时退化为不截断候选的量化检索
+     */
+    @Override
+    public List<VectorSearchHit> searchExact(float[] query, int topK, double minScore, long excludeChunkId) {
+        VectorLoader loader = vectorLoader;
+        if (loader == null) {
+            return search(query, topK, minScore, excludeChunkId);
+        }
+        if (query == null || topK <= 0) {
+            return new ArrayList<>();
+        }
+        float[] normalizedQuery = VectorMath.normalize(query);
+        if (normalizedQuery == null) {
+            return new ArrayList<>();
+        }
+
+        long[] allChunkIds;
+        long[] allDocumentIds;
+        lock.readLock().lock();
+        try {
+            allChunkIds = Arrays.copyOf(chunkIds, size);
+            allDocumentIds = Arrays.copyOf(documentIds, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        TopKCollector collector = new TopKCollector(topK, minScore);
+        for (int start = 0; start < allChunkIds.length; start += EXACT_LOAD_BATCH) {
+            int end = Math.min(start + EXACT_LOAD_BATCH, allChunkIds.length);
+            Map<Long, float[]> vectors = loader.load(Arrays.copyOfRange(allChunkIds, start, end));
+            for (int i = start; i < end; i++) {
+                float[] vector = vectors.get(allChunkIds[i]);
+                if (vector != null && vector.length == normalizedQuery.length && allChunkIds[i] != excludeChunkId) {
+                    collector.offer(i, cosine(normalizedQuery, vector));
+                }
+            }
+        }
+        return toHits(collector, allChunkIds, allDocumentIds);
+    }
+
+    /**
+     * 获取分块向量
+     * 注意：返回的是反量化后的归一化向量，是原始向量的近似值
+     *
+     * @param chunkId 分块ID
+     * @return 向量，不存在时返回null
+     */
+    @Override
+    public float[] getVector(long chunkId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByChunkId.get(chunkId);
+            if (slot == null) {
+                return null;
+            }
+            float[] vector = new float[dimension];
+            int offset = slot * dimension;
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = codes[offset + i] * scales[i];
+            }
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(long chunkId) {
+        lock.readLock().lock();
+        try {
+            return slotByChunkId.containsKey(chunkId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] chunkIds() {
+        lock.readLock().lock();
+        try {
+            return Arrays.copyOf(chunkIds, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取因取值范围漂移而重新量化的次数
+     *
+     * @return 重新量化次数
+     */
+    public long getRequantizations() {
+        lock.readLock().lock();
+        try {
+            return requantizations;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getOversample() {
+        return oversample;
+    }
+
+    /**
+     * 根据批次取值范围标定或扩展量化参数（调用方持有写锁）
+     * 扩展某个维度时，已有编码按新旧步长之比重新量化
+     */
+    private void adjustScales(float[][] normalizedVectors) {
+        float[] batchMax = new float[dimension];
+        boolean any = false;
+        for (float[] vector : normalizedVectors) {
+            if (vector == null) {
+                continue;
+            }
+            any = true;
+            for (int i = 0; i < dimension; i++) {
+                batchMax[i] = Math.max(batchMax[i], Math.abs(vector[i]));
+            }
+        }
+        if (!any) {
+            return;
+        }
+
+        if (scales == null) {
+            scales = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                scales[i] = rangeToScale(batchMax[i]);
+            }
+            return;
+        }
+
+        boolean drifted = false;
+        for (int i = 0; i < dimension; i++) {
+            float limit = scales[i] * MAX_CODE;
+            if (batchMax[i] <= limit) {
+                continue;
+            }
+            float newScale = rangeToScale(batchMax[i]);
+            float ratio = scales[i] / newScale;
+            for (int slot = 0, offset = i; slot < size; slot++, offset += dimension) {
+                codes[offset] = (byte) Math.round(codes[offset] * ratio);
+            }
+            scales[i] = newScale;
+            drifted = true;
+        }
+        if (drifted) {
+            requantizations++;
+        }
+    }
+
+    private static float rangeToScale(float maxAbs) {
+        return Math.max(maxAbs * RANGE_HEADROOM, 1e-6f) / MAX_CODE;
+    }
+
+    /**
+     * 写入单条已归一化的向量（调用方持有写锁，量化参数已覆盖该向量的范围）
+     */
+    private void write(long chunkId, long documentId, float[] normalized) {
+        Integer existing = slotByChunkId.get(chunkId);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+        } else {
+            ensureCapacity(size + 1);
+            slot = size++;
+            slotByChunkId.put(chunkId, slot);
+        }
+
+        int offset = slot * dimension;
+        for (int i = 0; i < dimension; i++) {
+            int code = Math.round(normalized[i] / scales[i]);
+            codes[offset + i] = (byte) Math.max(-MAX_CODE, Math.min(MAX_CODE, code));
+        }
+        chunkIds[slot] = chunkId;
+        documentIds[slot] = documentId;
+    }
+
+    /**
+     * 将查询折算到量化空间：q'[d] = q[d] * scale[d]，再按向量整体量化为int8
+     *
+     * @return 查询的量化步长，整数点积乘以该值即为近似相似度
+     */
+    private float quantizeQuery(float[] normalizedQuery, byte[] queryCodes) {
+        float[] projected = new float[dimension];
+        float maxAbs = 0.0f;
+        for (int i = 0; i < dimension; i++) {
+            projected[i] = normalizedQuery[i] * scales[i];
+            maxAbs = Math.max(maxAbs, Math.abs(projected[i]));
+        }
+        if (maxAbs == 0.0f) {
+            return 0.0f;
+        }
+        float queryScale = maxAbs / MAX_CODE;
+        for (int i = 0; i < dimension; i++) {
+            queryCodes[i] = (byte) Math.round(projected[i] / queryScale);
+        }
+        return queryScale;
+    }
+
+    /**
+     * 将以候选下标为ID的收集结果转换为命中列表
+     */
+    private static List<VectorSearchHit> toHits(TopKCollector collector, long[] hitChunkIds, long[] hitDocumentIds) {
+        int count = collector.sortDescending();
+        List<VectorSearchHit> hits = new ArrayList<>(count);
+        for (int rank = 0; rank < count; rank++) {
+            int index = (int) collector.id(rank);
+            hits.add(new VectorSearchHit(hitChunkIds[index], hitDocumentIds[index], collector.score(rank)));
+        }
+        return hits;
+    }
+
+    /**
+     * 全精度向量与已归一化查询的余弦相似度；数据库中的新数据已在写入时归一化，范数约为1
+     */
+    private static double cosine(float[] normalizedQuery, float[] vector) {
+        float norm = VectorMath.norm(vector);
+        return norm == 0.0f ? 0.0 : VectorMath.dot(normalizedQuery, vector) / norm;
+    }
+
+    private void resetDimension(int newDimension) {
+        slotByChunkId.clear();
+        dimension = newDimension;
+        codes = new byte[0];
+        chunkIds = new long[0];
+        documentIds = new long[0];
+        scales = null;
+        size = 0;
+    }
+
+    private void removeSlot(int slot) {
+        int last = size - 1;
+        if (slot != last) {
+            System.arraycopy(codes, last * dimension, codes, slot * dimension, dimension);
+            chunkIds[slot] = chunkIds[last];
+            documentIds[slot] = documentIds[last];
+            slotByChunkId.put(chunkIds[slot], slot);
+        }
+        size--;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= chunkIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(required, Math.max(INITIAL_CAPACITY, chunkIds.length * 2));
+        codes = Arrays.copyOf(codes, newCapacity * dimension);
+        chunkIds = Arrays.copyOf(chunkIds, newCapacity);
+        documentIds = Arrays.copyOf(documentIds, newCapacity);
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.customerservice.vector;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 重排序特征列
+ *
+ * 与向量索引并行维护排序所需的少量数值特征，按列存放在基本类型数组中：
+ * <ul>
+ *   <li>文档列：访问次数、点赞数、优先级</li>
+ *   <li>分块列：所属文档、分块长度</li>
+ * </ul>
+ * 重排序只需要分块ID、文档ID和这几列，不必加载分块实体或初始化文档代理；
+ * 分块正文和文档标题在最终Top-K确定后再一次性查询。
+ *
+ * 删除时用末行填补空位，保持数组紧凑。读写通过读写锁保护。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class RankingFeatureColumn {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, Integer> slotByDocumentId = new HashMap<>();
+
+    private long[] documentIds = new long[INITIAL_CAPACITY];
+    private long[] viewCounts = new long[INITIAL_CAPACITY];
+    private long[] likeCounts = new long[INITIAL_CAPACITY];
+    private int[] priorities = new int[INITIAL_CAPACITY];
+    private int documentCount;
+
+    private final Map<Long, Integer> slotByChunkId = new HashMap<>();
+
+    private long[] chunkIds = new long[INITIAL_CAPACITY];
+    private long[] chunkDocumentIds = new long[INITIAL_CAPACITY];
+    private int[] chunkSizes = new int[INITIAL_CAPACITY];
+    private int chunkCount;
+
+    /**
+     * 写入或更新文档特征
+     *
+     * @param documentId 文档ID
+     * @param viewCount 访问次数
+     * @param likeCount 点赞数
+     * @param priority 优先级
+     */
+    public void putDocument(long documentId, long viewCount, long likeCount, int priority) {
+        lock.writeLock().lock();
+        try {
+            int slot = documentSlot(documentId);
+            viewCounts[slot] = viewCount;
+            likeCounts[slot] = likeCount;
+            priorities[slot] = priority;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 累加文档访问次数，文档不存在时忽略
+     *
+     * @param documentId 文档ID
+     * @param delta 增量
+     */
+    public void addViewCount(long documentId, long delta) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByDocumentId.get(documentId);
+            if (slot != null) {
+                viewCounts[slot] += delta;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 累加文档点赞数，文档不存在时忽略
+     *
+     * @param documentId 文档ID
+     * @param delta 增量
+     */
+    public void addLikeCount(long documentId, long delta) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByDocumentId.get(documentId);
+            if (slot != null) {
+                likeCounts[slot] += delta;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 批量写入或更新分块特征
+     *
+     * @param ids 分块ID
+     * @param documentIdsOfChunks 分块所属文档ID
+     * @param sizes 分块长度
+     */
+    public void putChunks(long[] ids, long[] documentIdsOfChunks, int[] sizes) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                Integer slot = slotByChunkId.get(ids[i]);
+                if (slot == null) {
+                    slot = chunkCount;
+                    if (slot == chunkIds.length) {
+                        int capacity = chunkIds.length * 2;
+                        chunkIds = Arrays.copyOf(chunkIds, capacity);
+                        chunkDocumentIds = Arrays.copyOf(chunkDocumentIds, capacity);
+                        chunkSizes = Arrays.copyOf(chunkSizes, capacity);
+                    }
+                    chunkIds[slot] = ids[i];
+                    slotByChunkId.put(ids[i], slot);
+                    chunkCount++;
+                }
+                chunkDocumentIds[slot] = documentIdsOfChunks[i];
+                chunkSizes[slot] = sizes[i];
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档及其全部分块的特征
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocument(long documentId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotByDocumentId.remove(documentId);
+            if (slot != null) {
+                int last = --documentCount;
+                if (slot != last) {
+                    documentIds[slot] = documentIds[last];
+                    viewCounts[slot] = viewCounts[last];
+                    likeCounts[slot] = likeCounts[last];
+                    priorities[slot] = priorities[last];
+                    slotByDocumentId.put(documentIds[slot], slot);
+                }
+            }
+
+            removeChunksOf(documentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 只移除文档的分块特征，文档特征保留（用于文档重新分块）
+     *
+     * @param documentId 文档ID
+     */
+    public void removeDocumentChunks(long documentId) {
+        lock.writeLock().lock();
+        try {
+            removeChunksOf(documentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除文档的全部分块行（调用方持有写锁）
+     */
+    private void removeChunksOf(long documentId) {
+        int chunkSlot = 0;
+        while (chunkSlot < chunkCount) {
+            if (chunkDocumentIds[chunkSlot] != documentId) {
+                chunkSlot++;
+                continue;
+            }
+            // 用末行填补后重新检查当前行
+            slotByChunkId.remove(chunkIds[chunkSlot]);
+            int last = --chunkCount;
+            if (chunkSlot != last) {
+                chunkIds[chunkSlot] = chunkIds[last];
+                chunkDocumentIds[chunkSlot] = chunkDocumentIds[last];
+                chunkSizes[chunkSlot] = chunkSizes[last];
+                slotByChunkId.put(chunkIds[chunkSlot], chunkSlot);
+            }
+        }
+    }
+
+    /**
+     * 清空全部特征
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotByDocumentId.clear();
+            slotByChunkId.clear();
+            documentCount = 0;
+            chunkCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按文档质量和分块长度调整相似度
+     * <ul>
+     *   <li>质量因子：1 + 访问次数 * 0.001 + 点赞数 * 0.01 + 优先级 * 0.01，最多提升50%</li>
+     *   <li>长度因子：200~800字符加分10%，不足100字符减分10%</li>
+     * </ul>
+     * 特征列中没有的文档或分块对应因子按1处理
+     *
+     * @param chunkId 分块ID
+     * @param documentId 文档ID
+     * @param score 原始相似度
+     * @return 调整后的分数
+     */
+    public double rerankScore(long chunkId, long documentId, double score) {
+        lock.readLock().lock();
+        try {
+            double adjusted = score;
+            Integer documentSlot = slotByDocumentId.get(documentId);
+            if (documentSlot != null) {
+                double qualityFactor = 1.0
+                    + viewCounts[documentSlot] * 0.001
+                    + likeCounts[documentSlot] * 0.01
+                    + priorities[documentSlot] * 0.01;
+                adjusted *= Math.min(qualityFactor, 1.5);
+            }
+
+            Integer chunkSlot = slotByChunkId.get(chunkId);
+            if (chunkSlot != null) {
+                int contentLength = chunkSizes[chunkSlot];
+                if (contentLength >= 200 && contentLength <= 800) {
+                    adjusted *= 1.1;
+                } else if (contentLength < 100) {
+                    adjusted *= 0.9;
+                }
+            }
+            return adjusted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取分块所属文档
+     *
+     * @param chunkId 分块ID
+     * @return 文档ID，分块不在特征列中时返回-1
+     */
+    public long chunkDocumentId(long chunkId) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotByChunkId.get(chunkId);
+            return slot != null ? chunkDocumentIds[slot] : -1L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int chunkCount() {
+        lock.readLock().lock();
+        try {
+            return chunkCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 获取文档所在行，不存在时追加（调用方持有写锁）
+     */
+    private int documentSlot(long documentId) {
+        Integer slot = slotByDocumentId.get(documentId);
+        if (slot != null) {
+            return slot;
+        }
+        if (documentCount == documentIds.length) {
+            int capacity = documentIds.length * 2;
+            documentIds = Arrays.copyOf(documentIds, capacity);
+            viewCounts = Arrays.copyOf(viewCounts, capacity);
+            likeCounts = Arrays.copyOf(likeCounts, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+        }
+        int newSlot = documentCount++;
+        documentIds[newSlot] = documentId;
+        slotByDocumentId.put(documentId, newSlot);
+        return newSlot;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.customerservice.vector;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * 向量检索召回率评估器
+ *
+ * 从索引中随机抽取若干分块，以其自身向量作为查询（排除自身），
+ * 对比引擎检索结果与暴力精确检索结果，计算recall@K和平均耗时。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class RecallEvaluator {
+
+    private RecallEvaluator() {
+    }
+
+    /**
+     * 评估召回率
+     *
+     * @param engine 向量检索引擎
+     * @param sampleSize 抽样查询数量
+     * @param topK 每次检索返回数量
+     * @param seed 抽样随机数种子
+     * @return 评估报告
+     */
+    public static RecallReport evaluate(VectorSearchEngine engine, int sampleSize, int topK, long seed) {
+        if (sampleSize <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("抽样数量和topK必须大于0");
+        }
+
+        long[] ids = engine.chunkIds();
+        int samples = Math.min(sampleSize, ids.length);
+
+        // 部分Fisher-Yates洗牌，取前samples个作为查询
+        Random random = new Random(seed);
+        for (int i = 0; i < samples; i++) {
+            int j = i + random.nextInt(ids.length - i);
+            long tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+
+        long engineNanos = 0;
+        long exactNanos = 0;
+        long matched = 0;
+        long expected = 0;
+        int evaluated = 0;
+
+        for (int i = 0; i < samples; i++) {
+            float[] query = engine.getVector(ids[i]);
+            if (query == null) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            List<VectorSearchHit> approximate = engine.search(query, topK, -1.0, ids[i]);
+            engineNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            List<VectorSearchHit> exact = engine.searchExact(query, topK, -1.0, ids[i]);
+            exactNanos += System.nanoTime() - start;
+
+            Set<Long> exactIds = new HashSet<>();
+            for (VectorSearchHit hit : exact) {
+                exactIds.add(hit.getChunkId());
+            }
+            for (VectorSearchHit hit : approximate) {
+                if (exactIds.contains(hit.getChunkId())) {
+                    matched++;
+                }
+            }
+            expected += exact.size();
+            evaluated++;
+        }
+
+        double recall = expected == 0 ? 1.0 : (double) matched / expected;
+        double avgEngineMs = evaluated == 0 ? 0.0 : engineNanos / 1_000_000.0 / evaluated;
+        double avgExactMs = evaluated == 0 ? 0.0 : exactNanos / 1_000_000.0 / evaluated;
+        return new RecallReport(engine.getName(), engine.size(), evaluated, topK, recall, avgEngineMs, avgExactMs);
+    }
+
+    /**
+     * 召回率评估报告
+     */
+    public static class RecallReport {
+        private final String engine;
+        private final int indexSize;
+        private final int queries;
+        private final int topK;
+        private final double recall;
+        private final double avgEngineLatencyMs;
+        private final double avgExactLatencyMs;
+
+        public RecallReport(String engine, int indexSize, int queries, int topK, double recall,
+                            double avgEngineLatencyMs, double avgExactLatencyMs) {
+            this.engine = engine;
+            this.indexSize = indexSize;
+            this.queries = queries;
+            this.topK = topK;
+            this.recall = recall;
+            this.avgEngineLatencyMs = avgEngineLatencyMs;
+            this.avgExactLatencyMs = avgExactLatencyMs;
+        }
+
+        public String getEngine() { return engine; }
+        public int getIndexSize() { return indexSize; }
+        public int getQueries() { return queries; }
+        public int getTopK() { return topK; }
+        public double getRecall() { return recall; }
+        public double getAvgEngineLatencyMs() { return avgEngineLatencyMs; }
+        public double getAvgExactLatencyMs() { return avgExactLatencyMs; }
+
+        @Override
+        public String toString() {
+            return String.format("RecallReport{engine=%s, size=%d, queries=%d, recall@%d=%.4f, engine=%.3fms, exact=%.3fms}",
+                engine, indexSize, queries, topK, recall, avgEngineLatencyMs, avgExactLatencyMs);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 倒数排名融合（Reciprocal Rank Fusion）
+ *
+ * 每个排名列表中第r名（从1开始）的结果得分 1 / (k + r)，同一ID在多个列表中的得分相加。
+ * 只依赖名次、不依赖各路检索的原始分数，因此向量相似度和关键词得分这类量纲不同的结果可以直接合并。
+ * k越大，排名靠后的结果与靠前结果的差距越小，常用取值为60。
+ *
+ * 非线程安全，每次融合创建一个实例。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class ReciprocalRankFusion {
+
+    public static final int DEFAULT_K = 60;
+
+    private final int k;
+
+    private final Map<Long, Double> scores = new HashMap<>();
+
+    /**
+     * 按ID首次出现的顺序记录，得分相同时先出现的排在前面
+     */
+    private final List<Long> order = new ArrayList<>();
+
+    public ReciprocalRankFusion() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * @param k 平滑常数
+     * @throws IllegalArgumentException 当k小于0时抛出
+     */
+    public ReciprocalRankFusion(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("RRF平滑常数不能小于0");
+        }
+        this.k = k;
+    }
+
+    /**
+     * 加入一个排名列表
+     * 同一列表中重复出现的ID只按第一次出现的名次计分
+     *
+     * @param rankedIds 按名次排列的ID
+     */
+    public void addRanking(List<Long> rankedIds) {
+        Map<Long, Boolean> seen = new HashMap<>();
+        int rank = 0;
+        for (Long id : rankedIds) {
+            if (id == null || seen.put(id, Boolean.TRUE) != null) {
+                continue;
+            }
+            rank++;
+            double contribution = 1.0 / (k + rank);
+            Double previous = scores.get(id);
+            if (previous == null) {
+                order.add(id);
+                scores.put(id, contribution);
+            } else {
+                scores.put(id, previous + contribution);
+            }
+        }
+    }
+
+    /**
+     * 融合得分
+     *
+     * @param id 结果ID
+     * @return 融合得分，未出现在任何列表中时为0
+     */
+    public double score(long id) {
+        return scores.getOrDefault(id, 0.0);
+    }
+
+    /**
+     * 按融合得分降序返回前N个ID
+     *
+     * @param topN 返回数量
+     * @return ID列表
+     */
+    public List<Long> top(int topN) {
+        TopKCollector collector = new TopKCollector(Math.max(Math.min(topN, order.size()), 0));
+        for (int i = 0; i < order.size(); i++) {
+            // 得分相同时按首次出现顺序排序：对分数加一个远小于名次间隔的递减量
+            collector.offer(i, scores.get(order.get(i)) - i * 1e-12);
+        }
+
+        int resultCount = collector.sortDescending();
+        List<Long> result = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            result.add(order.get((int) collector.id(rank)));
+        }
+        return result;
+    }
+
+    public int size() {
+        return order.size();
+    }
+}
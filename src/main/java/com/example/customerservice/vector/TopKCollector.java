@@ -0,0 +1,237 @@
+package com.example.customerservice.vector;
+
+import java.util.Arrays;
+
+/**
+ * 有界Top-K收集器
+ *
+ * 以基本类型数组实现的(分数, ID)最小堆，始终只保留分数最高的K项：
+ * 堆顶为当前第K名的分数，新候选不超过该分数时直接丢弃，不做任何堆操作或对象分配。
+ * N个候选的排序代价从 O(N log N) 降为 O(N log K)，内存占用固定为K。
+ *
+ * ID由调用方定义，可以是分块ID，也可以是候选在某个列表或矩阵中的下标。
+ * 分数相同时先到者优先保留，输出时按ID升序。收集完成后调用 {@link #sortDescending()} 按分数降序输出。
+ * 非线程安全。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class TopKCollector {
+
+    private final int capacity;
+    private final double minScore;
+
+    private final long[] ids;
+    private final double[] scores;
+    private int size;
+    private boolean sorted;
+
+    /**
+     * 构造函数
+     *
+     * @param k 保留的结果数量
+     */
+    public TopKCollector(int k) {
+        this(k, Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param k 保留的结果数量
+     * @param minScore 最低分数，低于该分数的候选直接丢弃
+     */
+    public TopKCollector(int k, double minScore) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k不能为负数");
+        }
+        this.capacity = k;
+        this.minScore = minScore;
+        this.ids = new long[k];
+        this.scores = new double[k];
+    }
+
+    /**
+     * 提交一个候选
+     *
+     * @param id 候选ID
+     * @param score 分数
+     * @return 是否被保留
+     */
+    public boolean offer(long id, double score) {
+        if (score < minScore || Double.isNaN(score) || capacity == 0) {
+            return false;
+        }
+        if (sorted) {
+            throw new IllegalStateException("排序后不能继续提交候选");
+        }
+        if (size < capacity) {
+            siftUp(size++, id, score);
+            return true;
+        }
+        if (score <= scores[0]) {
+            return false;
+        }
+        siftDown(0, id, score);
+        return true;
+    }
+
+    /**
+     * 合并另一个收集器的全部条目，用于分区并行检索后归并各分区的结果
+     *
+     * @param other 另一个收集器（未排序或已排序均可）
+     */
+    public void addAll(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ids[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * 当前的准入门槛：候选分数必须高于该值才可能被保留
+     * 调用方可据此跳过昂贵的打分计算（例如分数上界已不超过门槛时）
+     *
+     * @return 准入门槛
+     */
+    public double threshold() {
+        if (capacity == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return size < capacity ? minScore : Math.max(minScore, scores[0]);
+    }
+
+    /**
+     * 是否已收满K项
+     *
+     * @return 是否已满
+     */
+    public boolean isFull() {
+        return size >= capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 按分数降序原地排序（堆排序），之后可通过 {@link #id(int)} 和 {@link #score(int)} 按名次读取
+     *
+     * @return 结果数量
+     */
+    public int sortDescending() {
+        if (sorted) {
+            return size;
+        }
+        // 最小堆反复取出堆顶放到末尾，得到降序排列
+        for (int end = size - 1; end > 0; end--) {
+            long topId = ids[0];
+            double topScore = scores[0];
+            long lastId = ids[end];
+            double lastScore = scores[end];
+            ids[end] = topId;
+            scores[end] = topScore;
+            siftDown(0, lastId, lastScore, end);
+        }
+        sorted = true;
+        return size;
+    }
+
+    /**
+     * 获取第i名的ID（需先调用sortDescending）
+     *
+     * @param rank 名次，从0开始
+     * @return ID
+     */
+    public long id(int rank) {
+        checkSorted(rank);
+        return ids[rank];
+    }
+
+    /**
+     * 获取第i名的分数（需先调用sortDescending）
+     *
+     * @param rank 名次，从0开始
+     * @return 分数
+     */
+    public double score(int rank) {
+        checkSorted(rank);
+        return scores[rank];
+    }
+
+    /**
+     * 排序并返回按分数降序排列的ID
+     *
+     * @return ID数组
+     */
+    public long[] sortedIds() {
+        sortDescending();
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * 清空，可复用同一个收集器
+     */
+    public void clear() {
+        size = 0;
+        sorted = false;
+    }
+
+    private void checkSorted(int rank) {
+        if (!sorted) {
+            throw new IllegalStateException("需先调用sortDescending");
+        }
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("名次越界: " + rank);
+        }
+    }
+
+    private void siftUp(int index, long id, double score) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!lower(score, id, scores[parent], ids[parent])) {
+                break;
+            }
+            ids[index] = ids[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index, long id, double score) {
+        siftDown(index, id, score, size);
+    }
+
+    private void siftDown(int index, long id, double score, int heapSize) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && lower(scores[child + 1], ids[child + 1], scores[child], ids[child])) {
+                child++;
+            }
+            if (!lower(scores[child], ids[child], score, id)) {
+                break;
+            }
+            ids[index] = ids[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        ids[index] = id;
+        scores[index] = score;
+    }
+
+    /**
+     * 堆序：分数低者在上；分数相同时ID大者在上（先被淘汰、排序后排在后面）
+     */
+    private static boolean lower(double scoreA, long idA, double scoreB, long idB) {
+        return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.customerservice.vector;
+
+import java.util.Map;
+
+/**
+ * 全精度向量加载器
+ *
+ * 供不在内存中保留原始向量的索引（如量化索引）按需批量读取全精度向量，
+ * 通常由服务层基于数据库实现。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+@FunctionalInterface
+public interface VectorLoader {
+
+    /**
+     * 批量加载全精度向量
+     *
+     * @param chunkIds 分块ID数组
+     * @return 分块ID到向量的映射，缺失的分块不包含在结果中
+     */
+    Map<Long, float[]> load(long[] chunkIds);
+}
@@ -0,0 +1,124 @@
+package com.example.customerservice.vector;
+
+/**
+ * 向量计算工具类
+ *
+ * 所有索引在写入时将向量归一化为单位向量，检索时余弦相似度即为纯点积。
+ * 点积优先使用JDK Vector API（需以 --add-modules jdk.incubator.vector 启动），
+ * 模块不可用或通过系统属性 rag.vector.simd=false 关闭时回退到标量循环。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class VectorMath {
+
+    private static final boolean SIMD_ENABLED = detectSimd();
+
+    private VectorMath() {
+    }
+
+    /**
+     * 是否启用了SIMD内核
+     *
+     * @return 是否启用
+     */
+    public static boolean isSimdEnabled() {
+        return SIMD_ENABLED;
+    }
+
+    /**
+     * 计算两个完整向量的点积
+     *
+     * @param a 向量a
+     * @param b 向量b
+     * @return 点积
+     */
+    public static float dot(float[] a, float[] b) {
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * 计算两个数组指定区间的点积，用于直接在连续矩阵的某一行上计算
+     *
+     * @param a 数组a
+     * @param aOffset a的起始位置
+     * @param b 数组b
+     * @param bOffset b的起始位置
+     * @param length 计算长度
+     * @return 点积
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        if (SIMD_ENABLED) {
+            return SimdDotKernel.dot(a, aOffset, b, bOffset, length);
+        }
+        return scalarDot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * 标量点积实现
+     */
+    static float scalarDot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0.0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    /**
+     * 计算向量的L2范数
+     *
+     * @param vector 向量
+     * @return 范数
+     */
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, 0, vector, 0, vector.length));
+    }
+
+    /**
+     * 返回归一化后的新向量
+     *
+     * @param vector 向量
+     * @return 单位向量，零向量或空向量返回null
+     */
+    public static float[] normalize(float[] vector) {
+        if (vector == null || vector.length == 0) {
+            return null;
+        }
+        float norm = norm(vector);
+        if (norm == 0.0f || Float.isNaN(norm)) {
+            return null;
+        }
+        float inverse = 1.0f / norm;
+        float[] result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * inverse;
+        }
+        return result;
+    }
+
+    /**
+     * 余弦相似度，任一向量为零向量时返回0
+     *
+     * @param a 向量a
+     * @param b 向量b
+     * @return 余弦相似度
+     */
+    public static double cosine(float[] a, float[] b) {
+        float normProduct = norm(a) * norm(b);
+        return normProduct == 0.0f ? 0.0 : dot(a, b) / normProduct;
+    }
+
+    private static boolean detectSimd() {
+        if ("false".equalsIgnoreCase(System.getProperty("rag.vector.simd"))) {
+            return false;
+        }
+        try {
+            // 通道数为1时SIMD没有收益
+            return SimdDotKernel.laneCount() > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
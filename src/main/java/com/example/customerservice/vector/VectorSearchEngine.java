@@ -0,0 +1,255 @@
+package com.example.customerservice.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 向量检索引擎接口
+ *
+ * 定义内存向量索引的统一操作，便于在精确检索和近似最近邻（ANN）检索之间切换。
+ * 相似度统一采用余弦相似度，分数越大越相似。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public interface VectorSearchEngine {
+
+    /**
+     * 默认按文档折叠检索时的候选放大倍数
+     */
+    int GROUPED_OVERSAMPLE = 4;
+
+    /**
+     * 获取引擎名称
+     *
+     * @return 引擎名称，与配置项 rag.search.engine 的取值对应
+     */
+    String getName();
+
+    /**
+     * 写入或替换分块向量
+     *
+     * @param chunkId 分块ID
+     * @param documentId 文档ID
+     * @param vector 向量
+     * @throws IllegalArgumentException 当向量维度与索引不一致时抛出
+     */
+    void upsert(long chunkId, long documentId, float[] vector);
+
+    /**
+     * 批量写入或替换分块向量
+     * 默认逐条写入；需要按批次调整内部参数的引擎（如量化索引）可覆盖此方法
+     *
+     * @param chunkIds 分块ID数组
+     * @param documentIds 文档ID数组
+     * @param vectors 向量数组
+     * @return 成功写入的数量，为空或维度不一致的向量会被跳过
+     */
+    default int upsertBatch(long[] chunkIds, long[] documentIds, float[][] vectors) {
+        int written = 0;
+        for (int i = 0; i < vectors.length; i++) {
+            if (vectors[i] == null || vectors[i].length == 0) {
+                continue;
+            }
+            try {
+                upsert(chunkIds[i], documentIds[i], vectors[i]);
+                written++;
+            } catch (IllegalArgumentException e) {
+                // 跳过维度不一致的向量
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 移除分块向量
+     *
+     * @param chunkId 分块ID
+     * @return 是否移除成功
+     */
+    boolean remove(long chunkId);
+
+    /**
+     * 移除文档的全部分块向量
+     *
+     * @param documentId 文档ID
+     * @return 移除的分块数量
+     */
+    int removeDocument(long documentId);
+
+    /**
+     * 清空索引
+     */
+    void clear();
+
+    /**
+     * 相似度检索
+     *
+     * @param query 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param excludeChunkId 需要排除的分块ID，不排除时传-1
+     * @return 按相似度降序排列的命中结果
+     */
+    default List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId) {
+        return search(query, topK, minScore, excludeChunkId, null);
+    }
+
+    /**
+     * 带文档过滤的相似度检索
+     * 过滤条件在扫描或图遍历过程中逐个候选判断，返回的结果均满足过滤条件
+     *
+     * @param query 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param excludeChunkId 需要排除的分块ID，不排除时传-1
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 按相似度降序排列的命中结果
+     */
+    List<VectorSearchHit> search(float[] query, int topK, double minScore, long excludeChunkId,
+                                 DocumentFilter filter);
+
+    /**
+     * 多查询批量检索
+     * 默认逐个查询检索；按矩阵存储向量的引擎可覆盖为分块矩阵乘法，使每个向量在一批查询中只读取一次
+     *
+     * @param queries 查询向量，为null的查询返回空结果
+     * @param topK 每个查询返回的结果数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 与查询一一对应的命中结果列表
+     */
+    default List<List<VectorSearchHit>> searchBatch(float[][] queries, int topK, double minScore,
+                                                    DocumentFilter filter) {
+        List<List<VectorSearchHit>> results = new ArrayList<>(queries.length);
+        for (float[] query : queries) {
+            results.add(query == null ? new ArrayList<>() : search(query, topK, minScore, -1L, filter));
+        }
+        return results;
+    }
+
+    /**
+     * 按文档折叠的相似度检索：返回前N个不同文档，每个文档相似度最高的M个分块
+     * 默认按 N * M * {@value #GROUPED_OVERSAMPLE} 个候选检索后折叠，候选集中出现的文档不足N个时结果也会不足；
+     * 能够顺序扫描全部向量的引擎可覆盖为在打分过程中直接按文档收集
+     *
+     * @param query 查询向量
+     * @param documents 返回的文档数量
+     * @param perDocument 每个文档返回的分块数量
+     * @param minScore 最低相似度
+     * @param filter 文档过滤器，为null时不过滤
+     * @return 按相似度降序排列的命中结果
+     */
+    default List<VectorSearchHit> searchGrouped(float[] query, int documents, int perDocument, double minScore,
+                                                DocumentFilter filter) {
+        if (query == null || documents <= 0 || perDocument <= 0) {
+            return new ArrayList<>();
+        }
+        long candidates = (long) documents * perDocument * GROUPED_OVERSAMPLE;
+        List<VectorSearchHit> hits = search(query, (int) Math.min(candidates, Integer.MAX_VALUE), minScore, -1L,
+                filter);
+        GroupedTopKCollector collector = new GroupedTopKCollector(documents, perDocument, minScore);
+        for (int i = 0; i < hits.size(); i++) {
+            collector.offer(i, hits.get(i).getDocumentId(), hits.get(i).getScore());
+        }
+        int resultCount = collector.sortDescending();
+        List<VectorSearchHit> grouped = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            grouped.add(hits.get((int) collector.id(rank)));
+        }
+        return grouped;
+    }
+
+    /**
+     * 用引擎中的向量为给定候选重新打分，返回前K个
+     * 默认逐个读取向量副本；按矩阵存储向量的引擎可覆盖为直接在矩阵行上计算
+     *
+     * @param query 查询向量
+     * @param candidates 候选分块，分数被忽略；不在索引中的候选被跳过
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @return 按相似度降序排列的命中结果
+     */
+    default List<VectorSearchHit> rescore(float[] query, List<VectorSearchHit> candidates, int topK,
+                                          double minScore) {
+        float[] normalizedQuery = query != null ? VectorMath.normalize(query) : null;
+        if (normalizedQuery == null || topK <= 0 || candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TopKCollector collector = new TopKCollector(Math.min(topK, candidates.size()), minScore);
+        for (int i = 0; i < candidates.size(); i++) {
+            float[] vector = getVector(candidates.get(i).getChunkId());
+            if (vector != null && vector.length == normalizedQuery.length) {
+                collector.offer(i, VectorMath.cosine(normalizedQuery, vector));
+            }
+        }
+        int resultCount = collector.sortDescending();
+        List<VectorSearchHit> hits = new ArrayList<>(resultCount);
+        for (int rank = 0; rank < resultCount; rank++) {
+            VectorSearchHit candidate = candidates.get((int) collector.id(rank));
+            hits.add(new VectorSearchHit(candidate.getChunkId(), candidate.getDocumentId(), collector.score(rank)));
+        }
+        return hits;
+    }
+
+    /**
+     * 精确相似度检索（暴力扫描），用于评估近似检索的召回率
+     * 精确引擎直接复用search
+     *
+     * @param query 查询向量
+     * @param topK 返回结果数量
+     * @param minScore 最低相似度
+     * @param excludeChunkId 需要排除的分块ID，不排除时传-1
+     * @return 按相似度降序排列的命中结果
+     */
+    default List<VectorSearchHit> searchExact(float[] query, int topK, double minScore, long excludeChunkId) {
+        return search(query, topK, minScore, excludeChunkId);
+    }
+
+    /**
+     * 获取分块向量的副本
+     *
+     * @param chunkId 分块ID
+     * @return 向量，不存在时返回null
+     */
+    float[] getVector(long chunkId);
+
+    /**
+     * 判断索引中是否包含分块
+     *
+     * @param chunkId 分块ID
+     * @return 是否包含
+     */
+    boolean contains(long chunkId);
+
+    /**
+     * 获取当前所有分块ID的快照
+     *
+     * @return 分块ID数组
+     */
+    long[] chunkIds();
+
+    /**
+     * 获取索引中的向量数量
+     *
+     * @return 向量数量
+     */
+    int size();
+
+    /**
+     * 获取向量维度
+     *
+     * @return 向量维度，索引为空时为0
+     */
+    int dimension();
+
+    /**
+     * 获取引擎在Java堆外分配的字节数
+     *
+     * @return 堆外字节数，向量存放在堆上的引擎返回0
+     */
+    default long offHeapBytes() {
+        return 0L;
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.customerservice.vector;
+
+/**
+ * 向量索引命中结果
+ *
+ * 仅包含分块ID、文档ID和相似度分数，实体数据在排序完成后再按ID加载。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class VectorSearchHit {
+
+    private final long chunkId;
+    private final long documentId;
+    private final double score;
+
+    public VectorSearchHit(long chunkId, long documentId, double score) {
+        this.chunkId = chunkId;
+        this.documentId = documentId;
+        this.score = score;
+    }
+
+    public long getChunkId() {
+        return chunkId;
+    }
+
+    public long getDocumentId() {
+        return documentId;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("VectorSearchHit{chunkId=%d, documentId=%d, score=%.4f}",
+            chunkId, documentId, score);
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.customerservice.vector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 不可变的磁盘向量段
+ *
+ * 文件格式（小端序）：
+ * <pre>
+ * [0..3]    魔数 "VSEG"
+ * [4..7]    格式版本 int32
+ * [8..11]   向量维度 int32
+ * [12..15]  行数 int32
+ * [16..]    float32矩阵，rows * dimension
+ * [..]      分块ID int64 * rows
+ * [..]      文档ID int64 * rows
+ * </pre>
+ * 打开时通过 {@link FileChannel#map} 只读映射整个文件，不做解析和复制，
+ * 数据由操作系统页缓存按需加载。段写入后不再修改，删除由 {@link VectorSegmentStore} 的墓碑位图记录。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class VectorSegment {
+
+    /**
+     * 文件魔数 "VSEG"
+     */
+    public static final int MAGIC = 0x47455356;
+
+    public static final int FORMAT_VERSION = 1;
+
+    public static final int HEADER_BYTES = 16;
+
+    private final Path file;
+    private final int dimension;
+    private final int rows;
+    private final FloatBuffer matrix;
+    private final LongBuffer chunkIds;
+    private final LongBuffer documentIds;
+
+    private VectorSegment(Path file, int dimension, int rows, FloatBuffer matrix,
+                          LongBuffer chunkIds, LongBuffer documentIds) {
+        this.file = file;
+        this.dimension = dimension;
+        this.rows = rows;
+        this.matrix = matrix;
+        this.chunkIds = chunkIds;
+        this.documentIds = documentIds;
+    }
+
+    /**
+     * 写入新的段文件
+     * 先写临时文件并刷盘，再原子重命名，避免崩溃后留下不完整的段
+     *
+     * @param file 目标文件
+     * @param dimension 向量维度
+     * @param rows 行数
+     * @param matrix 向量矩阵（行优先，至少 rows * dimension 个元素）
+     * @param chunkIds 分块ID
+     * @param documentIds 文档ID
+     * @throws IOException 写入失败时抛出
+     */
+    public static void write(Path file, int dimension, int rows, float[] matrix,
+                             long[] chunkIds, long[] documentIds) throws IOException {
+        if (dimension <= 0 || rows < 0) {
+            throw new IllegalArgumentException("无效的段参数: dimension=" + dimension + ", rows=" + rows);
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension).putInt(rows).flip();
+            writeFully(channel, header);
+
+            // 分批写出矩阵，避免为大段分配同等大小的缓冲区
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            int floats = rows * dimension;
+            for (int i = 0; i < floats; i++) {
+                if (buffer.remaining() < Float.BYTES) {
+                    buffer.flip();
+                    writeFully(channel, buffer);
+                    buffer.clear();
+                }
+                buffer.putFloat(matrix[i]);
+            }
+            for (long[] ids : new long[][]{chunkIds, documentIds}) {
+                for (int i = 0; i < rows; i++) {
+                    if (buffer.remaining() < Long.BYTES) {
+                        buffer.flip();
+                        writeFully(channel, buffer);
+                        buffer.clear();
+                    }
+                    buffer.putLong(ids[i]);
+                }
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以只读内存映射方式打开段文件
+     *
+     * @param file 段文件
+     * @return 向量段
+     * @throws IOException 读取失败或文件格式无效时抛出
+     */
+    public static VectorSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES) {
+                throw new IOException("向量段文件长度不足: " + file);
+            }
+            // 映射在通道关闭后仍然有效
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IOException("不是向量段文件: " + file);
+            }
+            if (mapped.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("不支持的向量段版本: " + mapped.getInt(4));
+            }
+            int dimension = mapped.getInt(8);
+            int rows = mapped.getInt(12);
+            long matrixBytes = (long) rows * dimension * Float.BYTES;
+            long expected = HEADER_BYTES + matrixBytes + 2L * rows * Long.BYTES;
+            if (dimension <= 0 || rows < 0 || expected != fileSize) {
+                throw new IOException("向量段文件长度与头部不一致: " + file);
+            }
+
+            FloatBuffer matrix = slice(mapped, HEADER_BYTES, matrixBytes).asFloatBuffer();
+            LongBuffer chunkIds = slice(mapped, HEADER_BYTES + matrixBytes, (long) rows * Long.BYTES).asLongBuffer();
+            LongBuffer documentIds = slice(mapped, HEADER_BYTES + matrixBytes + (long) rows * Long.BYTES,
+                    (long) rows * Long.BYTES).asLongBuffer();
+            return new VectorSegment(file, dimension, rows, matrix, chunkIds, documentIds);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public long chunkId(int row) {
+        return chunkIds.get(row);
+    }
+
+    public long documentId(int row) {
+        return documentIds.get(row);
+    }
+
+    /**
+     * 将第row行向量读入目标数组
+     *
+     * @param row 行号
+     * @param target 目标数组
+     * @param offset 目标起始位置
+     */
+    public void readVector(int row, float[] target, int offset) {
+        matrix.get(row * dimension, target, offset, dimension);
+    }
+
+    /**
+     * 读取第row行向量
+     *
+     * @param row 行号
+     * @return 向量副本
+     */
+    public float[] readVector(int row) {
+        float[] vector = new float[dimension];
+        readVector(row, vector, 0);
+        return vector;
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer mapped, long offset, long length) {
+        if (offset + length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("向量段超过2GB，请减小刷盘阈值");
+        }
+        return mapped.slice((int) offset, (int) length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
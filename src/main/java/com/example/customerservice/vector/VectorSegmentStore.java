@@ -0,0 +1,513 @@
+package com.example.customerservice.vector;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 磁盘向量段存储
+ *
+ * 由若干不可变的 {@link VectorSegment} 和一个内存中的可变尾段组成：
+ * <ul>
+ *   <li>新向量先追加到尾段，尾段达到阈值或定时任务触发时刷写为新的不可变段</li>
+ *   <li>删除通过每个段的墓碑位图记录，并立即写入 "段名.del" 文件</li>
+ *   <li>墓碑比例过高或段数过多时合并为一个新段（compaction）</li>
+ *   <li>清单文件 segments.manifest 记录当前有效的段和水位线（已刷盘的最大分块ID），以原子替换方式更新</li>
+ * </ul>
+ * 重启时只需读取清单并映射段文件；水位线之后的分块（尾段中尚未刷盘的数据）由调用方从数据库补齐。
+ *
+ * 所有方法同步执行，非高频调用路径（检索走内存引擎，不经过存储）。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public class VectorSegmentStore {
+
+    private static final String MANIFEST = "segments.manifest";
+    private static final String SEGMENT_SUFFIX = ".vseg";
+    private static final String TOMBSTONE_SUFFIX = ".del";
+
+    /**
+     * 批量回调接口
+     */
+    @FunctionalInterface
+    public interface BatchConsumer {
+        /**
+         * 处理一批向量
+         *
+         * @param chunkIds 分块ID
+         * @param documentIds 文档ID
+         * @param vectors 向量
+         */
+        void accept(long[] chunkIds, long[] documentIds, float[][] vectors);
+    }
+
+    private final Path directory;
+
+    private final List<VectorSegment> segments = new ArrayList<>();
+    private final Map<VectorSegment, BitSet> tombstones = new HashMap<>();
+
+    private long generation;
+    private long watermark;
+    private int dimension;
+    private boolean initialized;
+
+    // 可变尾段
+    private float[] tailMatrix = new float[0];
+    private long[] tailChunkIds = new long[0];
+    private long[] tailDocumentIds = new long[0];
+    private int tailSize;
+
+    /**
+     * 构造函数
+     *
+     * @param directory 存储目录
+     */
+    public VectorSegmentStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 打开存储：读取清单、映射段文件并加载墓碑
+     * 清单不存在时视为空存储
+     *
+     * @throws IOException 读取失败时抛出
+     */
+    public synchronized void open() throws IOException {
+        closeSegments();
+        Files.createDirectories(directory);
+
+        Path manifest = directory.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            initialized = false;
+            return;
+        }
+
+        List<String> segmentNames = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            int separator = trimmed.indexOf('=');
+            String key = separator > 0 ? trimmed.substring(0, separator) : trimmed;
+            String value = separator > 0 ? trimmed.substring(separator + 1) : "";
+            switch (key) {
+                case "generation" -> generation = Long.parseLong(value);
+                case "watermark" -> watermark = Long.parseLong(value);
+                case "dimension" -> dimension = Integer.parseInt(value);
+                case "segment" -> segmentNames.add(value);
+                default -> {
+                    // 忽略未知字段，便于向后兼容
+                }
+            }
+        }
+
+        for (String name : segmentNames) {
+            VectorSegment segment = VectorSegment.open(directory.resolve(name));
+            if (segment.dimension() != dimension) {
+                throw new IOException("向量段维度与清单不一致: " + name);
+            }
+            segments.add(segment);
+            tombstones.put(segment, readTombstones(segment));
+        }
+        initialized = true;
+    }
+
+    /**
+     * 清空存储并删除所有段文件，用于与数据库不一致时重建
+     *
+     * @throws IOException 删除失败时抛出
+     */
+    public synchronized void reset() throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (VectorSegment segment : segments) {
+            files.add(segment.getFile());
+            files.add(tombstoneFile(segment));
+        }
+        closeSegments();
+        clearTail();
+        generation = 0;
+        watermark = 0;
+        dimension = 0;
+        writeManifest();
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        initialized = true;
+    }
+
+    /**
+     * 写入或替换向量
+     * 分块ID不大于水位线时可能已存在于某个段中，先将其标记删除
+     *
+     * @param chunkIds 分块ID
+     * @param documentIds 文档ID
+     * @param vectors 向量，为null或维度不一致的项被跳过
+     * @throws IOException 墓碑写入失败时抛出
+     */
+    public synchronized void upsertBatch(long[] chunkIds, long[] documentIds, float[][] vectors) throws IOException {
+        List<Long> possiblyStored = new ArrayList<>();
+        for (int i = 0; i < vectors.length; i++) {
+            float[] vector = vectors[i];
+            if (vector == null || vector.length == 0) {
+                continue;
+            }
+            if (dimension == 0) {
+                dimension = vector.length;
+            }
+            if (vector.length != dimension) {
+                continue;
+            }
+            if (chunkIds[i] <= watermark) {
+                possiblyStored.add(chunkIds[i]);
+            }
+            removeFromTail(chunkIds[i]);
+            appendToTail(chunkIds[i], documentIds[i], vector);
+        }
+        if (!possiblyStored.isEmpty()) {
+            markDeleted(possiblyStored);
+        }
+    }
+
+    /**
+     * 删除文档的全部向量
+     *
+     * @param documentId 文档ID
+     * @return 删除的向量数量
+     * @throws IOException 墓碑写入失败时抛出
+     */
+    public synchronized int removeDocument(long documentId) throws IOException {
+        int removed = 0;
+        for (int row = tailSize - 1; row >= 0; row--) {
+            if (tailDocumentIds[row] == documentId) {
+                removeTailRow(row);
+                removed++;
+            }
+        }
+
+        for (VectorSegment segment : segments) {
+            BitSet deleted = tombstones.get(segment);
+            boolean changed = false;
+            for (int row = 0; row < segment.rows(); row++) {
+                if (!deleted.get(row) && segment.documentId(row) == documentId) {
+                    deleted.set(row);
+                    changed = true;
+                    removed++;
+                }
+            }
+            if (changed) {
+                writeTombstones(segment, deleted);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * 将尾段刷写为新的不可变段，并推进水位线
+     *
+     * @return 刷写的向量数量
+     * @throws IOException 写入失败时抛出
+     */
+    public synchronized int flush() throws IOException {
+        if (tailSize == 0) {
+            return 0;
+        }
+
+        long maxChunkId = watermark;
+        for (int row = 0; row < tailSize; row++) {
+            maxChunkId = Math.max(maxChunkId, tailChunkIds[row]);
+        }
+
+        VectorSegment segment = writeSegment(tailMatrix, tailChunkIds, tailDocumentIds, tailSize);
+        segments.add(segment);
+        tombstones.put(segment, new BitSet(segment.rows()));
+        watermark = maxChunkId;
+        writeManifest();
+
+        int flushed = tailSize;
+        clearTail();
+        return flushed;
+    }
+
+    /**
+     * 将所有段中未删除的向量合并为一个新段，并删除旧段文件
+     * 尾段不参与合并
+     *
+     * @return 合并后段中的向量数量
+     * @throws IOException 写入失败时抛出
+     */
+    public synchronized int compact() throws IOException {
+        if (segments.isEmpty()) {
+            return 0;
+        }
+
+        int live = liveSegmentRows();
+        float[] matrix = new float[live * dimension];
+        long[] chunkIds = new long[live];
+        long[] documentIds = new long[live];
+        int index = 0;
+        for (VectorSegment segment : segments) {
+            BitSet deleted = tombstones.get(segment);
+            for (int row = 0; row < segment.rows(); row++) {
+                if (!deleted.get(row)) {
+                    segment.readVector(row, matrix, index * dimension);
+                    chunkIds[index] = segment.chunkId(row);
+                    documentIds[index] = segment.documentId(row);
+                    index++;
+                }
+            }
+        }
+
+        List<Path> obsolete = new ArrayList<>();
+        for (VectorSegment segment : segments) {
+            obsolete.add(segment.getFile());
+            obsolete.add(tombstoneFile(segment));
+        }
+
+        VectorSegment merged = writeSegment(matrix, chunkIds, documentIds, live);
+        closeSegments();
+        segments.add(merged);
+        tombstones.put(merged, new BitSet(merged.rows()));
+        writeManifest();
+
+        // 清单切换完成后再删除旧文件，崩溃时最多残留未引用的文件
+        for (Path file : obsolete) {
+            Files.deleteIfExists(file);
+        }
+        return live;
+    }
+
+    /**
+     * 按批遍历所有未删除的向量（段在前，尾段在后）
+     *
+     * @param batchSize 每批数量
+     * @param consumer 批量回调
+     */
+    public synchronized void forEachBatch(int batchSize, BatchConsumer consumer) {
+        int size = Math.max(batchSize, 1);
+        long[] chunkIds = new long[size];
+        long[] documentIds = new long[size];
+        float[][] vectors = new float[size][];
+        int count = 0;
+
+        for (VectorSegment segment : segments) {
+            BitSet deleted = tombstones.get(segment);
+            for (int row = 0; row < segment.rows(); row++) {
+                if (deleted.get(row)) {
+                    continue;
+                }
+                chunkIds[count] = segment.chunkId(row);
+                documentIds[count] = segment.documentId(row);
+                vectors[count] = segment.readVector(row);
+                if (++count == size) {
+                    consumer.accept(chunkIds.clone(), documentIds.clone(), vectors.clone());
+                    count = 0;
+                }
+            }
+        }
+        for (int row = 0; row < tailSize; row++) {
+            chunkIds[count] = tailChunkIds[row];
+            documentIds[count] = tailDocumentIds[row];
+            vectors[count] = Arrays.copyOfRange(tailMatrix, row * dimension, (row + 1) * dimension);
+            if (++count == size) {
+                consumer.accept(chunkIds.clone(), documentIds.clone(), vectors.clone());
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            consumer.accept(Arrays.copyOf(chunkIds, count), Arrays.copyOf(documentIds, count),
+                    Arrays.copyOf(vectors, count));
+        }
+    }
+
+    /**
+     * 是否已有清单（即之前持久化过）
+     *
+     * @return 是否已初始化
+     */
+    public synchronized boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * 已刷盘的最大分块ID
+     *
+     * @return 水位线
+     */
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized int getTailSize() {
+        return tailSize;
+    }
+
+    /**
+     * 段中未删除的向量数量（不含尾段）
+     *
+     * @return 向量数量
+     */
+    public synchronized int liveSegmentRows() {
+        int live = 0;
+        for (VectorSegment segment : segments) {
+            live += segment.rows() - tombstones.get(segment).cardinality();
+        }
+        return live;
+    }
+
+    /**
+     * 段中已删除的向量数量
+     *
+     * @return 墓碑数量
+     */
+    public synchronized int tombstoneCount() {
+        int deleted = 0;
+        for (VectorSegment segment : segments) {
+            deleted += tombstones.get(segment).cardinality();
+        }
+        return deleted;
+    }
+
+    /**
+     * 段中总行数（含已删除）
+     *
+     * @return 行数
+     */
+    public synchronized int totalSegmentRows() {
+        int rows = 0;
+        for (VectorSegment segment : segments) {
+            rows += segment.rows();
+        }
+        return rows;
+    }
+
+    /**
+     * 释放段映射
+     */
+    public synchronized void close() {
+        closeSegments();
+    }
+
+    private void markDeleted(List<Long> chunkIds) throws IOException {
+        Set<Long> targets = new HashSet<>(chunkIds);
+        for (VectorSegment segment : segments) {
+            BitSet deleted = tombstones.get(segment);
+            boolean changed = false;
+            for (int row = 0; row < segment.rows(); row++) {
+                if (!deleted.get(row) && targets.contains(segment.chunkId(row))) {
+                    deleted.set(row);
+                    changed = true;
+                }
+            }
+            if (changed) {
+                writeTombstones(segment, deleted);
+            }
+        }
+    }
+
+    private VectorSegment writeSegment(float[] matrix, long[] chunkIds, long[] documentIds, int rows)
+            throws IOException {
+        generation++;
+        Path file = directory.resolve(String.format("segment-%08d%s", generation, SEGMENT_SUFFIX));
+        VectorSegment.write(file, dimension, rows, matrix, chunkIds, documentIds);
+        return VectorSegment.open(file);
+    }
+
+    private void writeManifest() throws IOException {
+        StringBuilder content = new StringBuilder();
+        content.append("# vector segment manifest\n");
+        content.append("generation=").append(generation).append('\n');
+        content.append("watermark=").append(watermark).append('\n');
+        content.append("dimension=").append(dimension).append('\n');
+        for (VectorSegment segment : segments) {
+            content.append("segment=").append(segment.getFile().getFileName()).append('\n');
+        }
+
+        Path manifest = directory.resolve(MANIFEST);
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.writeString(temp, content.toString(), StandardCharsets.UTF_8);
+        Files.move(temp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private BitSet readTombstones(VectorSegment segment) throws IOException {
+        Path file = tombstoneFile(segment);
+        if (!Files.exists(file)) {
+            return new BitSet(segment.rows());
+        }
+        return BitSet.valueOf(Files.readAllBytes(file));
+    }
+
+    private void writeTombstones(VectorSegment segment, BitSet deleted) throws IOException {
+        Path file = tombstoneFile(segment);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(temp, deleted.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path tombstoneFile(VectorSegment segment) {
+        String name = segment.getFile().getFileName().toString();
+        return segment.getFile().resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length())
+                + TOMBSTONE_SUFFIX);
+    }
+
+    private void appendToTail(long chunkId, long documentId, float[] vector) {
+        if (tailSize == tailChunkIds.length) {
+            int capacity = Math.max(256, tailSize * 2);
+            tailMatrix = Arrays.copyOf(tailMatrix, capacity * dimension);
+            tailChunkIds = Arrays.copyOf(tailChunkIds, capacity);
+            tailDocumentIds = Arrays.copyOf(tailDocumentIds, capacity);
+        }
+        System.arraycopy(vector, 0, tailMatrix, tailSize * dimension, dimension);
+        tailChunkIds[tailSize] = chunkId;
+        tailDocumentIds[tailSize] = documentId;
+        tailSize++;
+    }
+
+    private void removeFromTail(long chunkId) {
+        for (int row = 0; row < tailSize; row++) {
+            if (tailChunkIds[row] == chunkId) {
+                removeTailRow(row);
+                return;
+            }
+        }
+    }
+
+    private void removeTailRow(int row) {
+        int last = tailSize - 1;
+        if (row != last) {
+            System.arraycopy(tailMatrix, last * dimension, tailMatrix, row * dimension, dimension);
+            tailChunkIds[row] = tailChunkIds[last];
+            tailDocumentIds[row] = tailDocumentIds[last];
+        }
+        tailSize--;
+    }
+
+    private void clearTail() {
+        tailMatrix = new float[0];
+        tailChunkIds = new long[0];
+        tailDocumentIds = new long[0];
+        tailSize = 0;
+    }
+
+    private void closeSegments() {
+        // MappedByteBuffer在被回收时释放映射
+        segments.clear();
+        tombstones.clear();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.customerservice.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DoubleArrayTrie单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class DoubleArrayTrieTest {
+
+    @Test
+    void testExactMatch() {
+        DoubleArrayTrie trie = new DoubleArrayTrie(List.of("退款", "退款申请", "退货", "订单", "a", "ab", "订单", ""));
+
+        // 重复的词和空串被忽略
+        assertEquals(6, trie.size());
+        for (int i = 0; i < trie.size(); i++) {
+            assertEquals(i, trie.exactMatch(trie.key(i)));
+        }
+        assertEquals("退款", trie.key(trie.exactMatch("退款")));
+        assertEquals(-1, trie.exactMatch("退"));
+        assertEquals(-1, trie.exactMatch("退款申"));
+        assertEquals(-1, trie.exactMatch("abc"));
+        assertEquals(-1, trie.exactMatch(""));
+
+        char[] buffer = "我要退款申请".toCharArray();
+        assertEquals(trie.exactMatch("退款"), trie.exactMatch(buffer, 2, 4));
+        assertEquals(trie.exactMatch("退款申请"), trie.exactMatch(buffer, 2, 6));
+        assertEquals(-1, trie.exactMatch(buffer, 0, 2));
+    }
+
+    @Test
+    void testLongestPrefixLength() {
+        DoubleArrayTrie trie = new DoubleArrayTrie(List.of("退款", "退款申请", "订单"));
+        char[] buffer = "退款申请单退款申订单".toCharArray();
+
+        assertEquals(4, trie.longestPrefixLength(buffer, 0, buffer.length));
+        // 结束位置限制匹配范围
+        assertEquals(2, trie.longestPrefixLength(buffer, 0, 3));
+        assertEquals(0, trie.longestPrefixLength(buffer, 4, buffer.length));
+        // 较长的词只匹配到一半时回退到最近一次完整匹配
+        assertEquals(2, trie.longestPrefixLength(buffer, 5, buffer.length));
+        assertEquals(2, trie.longestPrefixLength(buffer, 8, buffer.length));
+    }
+
+    @Test
+    void testForEachPrefixMatch() {
+        DoubleArrayTrie trie = new DoubleArrayTrie(List.of("退款", "退款申请", "订单"));
+        char[] buffer = "退款申请单".toCharArray();
+
+        List<String> matches = new ArrayList<>();
+        trie.forEachPrefixMatch(buffer, 0, buffer.length, index -> matches.add(trie.key(index)));
+        assertEquals(List.of("退款", "退款申请"), matches);
+
+        matches.clear();
+        trie.forEachPrefixMatch(buffer, 0, 3, index -> matches.add(trie.key(index)));
+        assertEquals(List.of("退款"), matches);
+
+        matches.clear();
+        trie.forEachPrefixMatch(buffer, 1, buffer.length, index -> matches.add(trie.key(index)));
+        assertTrue(matches.isEmpty());
+    }
+
+    @Test
+    void testEmptyTrie() {
+        DoubleArrayTrie trie = new DoubleArrayTrie(List.of());
+        char[] buffer = "退款".toCharArray();
+
+        assertEquals(0, trie.size());
+        assertEquals(-1, trie.exactMatch("退款"));
+        assertEquals(0, trie.longestPrefixLength(buffer, 0, buffer.length));
+    }
+
+    @Test
+    void testMatchesHashSetOnRandomWords() {
+        Random random = new Random(11L);
+        Set<String> words = new HashSet<>();
+        while (words.size() < 3000) {
+            words.add(randomWord(random));
+        }
+        DoubleArrayTrie trie = new DoubleArrayTrie(words);
+        assertEquals(words.size(), trie.size());
+
+        for (String word : words) {
+            assertEquals(word, trie.key(trie.exactMatch(word)));
+        }
+        for (int i = 0; i < 3000; i++) {
+            String probe = randomWord(random);
+            assertEquals(words.contains(probe), trie.exactMatch(probe) >= 0);
+
+            char[] buffer = probe.toCharArray();
+            int expected = 0;
+            for (int length = 1; length <= buffer.length; length++) {
+                if (words.contains(probe.substring(0, length))) {
+                    expected = length;
+                }
+            }
+            assertEquals(expected, trie.longestPrefixLength(buffer, 0, buffer.length));
+        }
+    }
+
+    /**
+     * 生成混合汉字和字母的随机词，字母表较小使词之间共享前缀
+     */
+    private static String randomWord(Random random) {
+        char[] alphabet = {'退', '款', '订', '单', '物', '流', 'a', 'b', 'z'};
+        StringBuilder builder = new StringBuilder();
+        int length = 1 + random.nextInt(6);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.customerservice.search;
+
+import com.example.customerservice.vector.DocumentFilter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * InvertedIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class InvertedIndexTest {
+
+    @Test
+    void testRanksRareTermsAndShortFieldsHigher() {
+        InvertedIndex index = new InvertedIndex(1.0f);
+        index.upsert(1L, 1L, fields("refund policy"));
+        index.upsert(2L, 2L, fields("refund order shipping delivery address invoice"));
+        index.upsert(3L, 3L, fields("order shipping"));
+
+        List<KeywordHit> hits = index.search(List.of("refund"), 10, null);
+        assertEquals(2, hits.size());
+        // 同样命中一次时，较短的条目得分更高
+        assertEquals(1L, hits.get(0).getId());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+
+        // 只在一个条目中出现的词项比出现在两个条目中的词项权重更高
+        hits = index.search(List.of("policy", "order"), 10, null);
+        assertEquals(1L, hits.get(0).getId());
+        assertEquals(3, hits.size());
+    }
+
+    @Test
+    void testFieldWeights() {
+        InvertedIndex index = new InvertedIndex(3.0f, 1.0f);
+        index.upsert(1L, 1L, Arrays.asList(tokens("shipping"), tokens("returns guide")));
+        index.upsert(2L, 2L, Arrays.asList(tokens("returns"), tokens("shipping guide")));
+
+        assertEquals(1L, index.search(List.of("shipping"), 1, null).get(0).getId());
+        assertEquals(2L, index.search(List.of("returns"), 1, null).get(0).getId());
+    }
+
+    @Test
+    void testMatchesReferenceScores() {
+        Random random = new Random(7L);
+        String[] vocabulary = new String[50];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = "t" + i;
+        }
+        InvertedIndex index = new InvertedIndex(1.2, 0.75, 2.0f, 1.0f);
+        Map<Long, List<List<String>>> entries = new HashMap<>();
+        for (long id = 0; id < 300; id++) {
+            List<List<String>> fields = new ArrayList<>();
+            for (int field = 0; field < 2; field++) {
+                List<String> tokens = new ArrayList<>();
+                int length = 1 + random.nextInt(field == 0 ? 5 : 40);
+                for (int i = 0; i < length; i++) {
+                    // 偏向低编号词项，使词频和文档频率分布不均匀
+                    tokens.add(vocabulary[(int) (vocabulary.length * Math.pow(random.nextDouble(), 2))]);
+                }
+                fields.add(tokens);
+            }
+            entries.put(id, fields);
+            index.upsert(id, id / 3, fields);
+        }
+
+        List<String> query = List.of("t3", "t17", "t40");
+        List<KeywordHit> hits = index.search(query, 20, null);
+        double[] reference = referenceScores(entries, query, new float[]{2.0f, 1.0f});
+        double[] sorted = reference.clone();
+        Arrays.sort(sorted);
+
+        assertEquals(20, hits.size());
+        for (int rank = 0; rank < hits.size(); rank++) {
+            assertEquals(reference[(int) hits.get(rank).getId()], hits.get(rank).getScore(), 1e-9);
+            assertEquals(sorted[sorted.length - 1 - rank], hits.get(rank).getScore(), 1e-9);
+            assertEquals(hits.get(rank).getId() / 3, hits.get(rank).getDocumentId());
+        }
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        InvertedIndex index = new InvertedIndex(1.0f);
+        index.upsert(1L, 1L, fields("refund policy"));
+        index.upsert(2L, 2L, fields("refund process"));
+        assertEquals(2, index.documentFrequency("refund"));
+
+        index.upsert(1L, 1L, fields("warranty policy"));
+        assertEquals(1, index.documentFrequency("refund"));
+        assertEquals(1, index.documentFrequency("warranty"));
+        assertEquals(2, index.size());
+        assertEquals(List.of(2L), ids(index.search(List.of("refund"), 10, null)));
+
+        assertTrue(index.remove(2L));
+        assertFalse(index.remove(2L));
+        assertTrue(index.search(List.of("refund"), 10, null).isEmpty());
+        assertEquals(List.of(1L), ids(index.search(List.of("warranty"), 10, null)));
+    }
+
+    @Test
+    void testRemoveDocumentAndFilter() {
+        InvertedIndex index = new InvertedIndex(1.0f);
+        index.upsert(10L, 1L, fields("refund"));
+        index.upsert(11L, 1L, fields("refund policy"));
+        index.upsert(20L, 2L, fields("refund"));
+
+        assertEquals(List.of(20L), ids(index.search(List.of("refund"), 10, DocumentFilter.of(2L))));
+
+        assertEquals(2, index.removeDocument(1L));
+        assertEquals(List.of(20L), ids(index.search(List.of("refund"), 10, null)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testCompactionKeepsResults() {
+        InvertedIndex index = new InvertedIndex(1.0f);
+        for (long id = 0; id < 5000; id++) {
+            index.upsert(id, id, fields("common " + (id % 2 == 0 ? "even" : "odd") + " unique" + id));
+        }
+        for (long id = 0; id < 4000; id++) {
+            index.remove(id);
+        }
+
+        assertEquals(1000, index.size());
+        assertEquals(1000, index.documentFrequency("common"));
+        assertEquals(500, index.documentFrequency("even"));
+        assertEquals(0, index.documentFrequency("unique10"));
+        // 压缩后已删除条目的表项和不再使用的词项被清理
+        assertTrue(index.postingCount() < 5000);
+        assertTrue(index.termCount() < 2000);
+        assertEquals(List.of(4321L), ids(index.search(List.of("unique4321"), 10, null)));
+        assertEquals(500, index.search(List.of("odd"), 1000, null).size());
+    }
+
+    @Test
+    void testPrefixExpansionAndCoverage() {
+        InvertedIndex index = new InvertedIndex(1.0f);
+        index.upsert(1L, 1L, fields("refund policy"));
+        index.upsert(2L, 2L, fields("refunds refunded policy"));
+        index.upsert(3L, 3L, fields("shipping policy"));
+
+        // 精确匹配不展开前缀
+        assertEquals(List.of(1L), ids(index.search(List.of("refund"), 10, null)));
+
+        List<KeywordHit> hits = index.search(List.of("refund", "policy"), 10, 0, null, 0.5);
+        assertEquals(List.of(1L, 2L, 3L), ids(hits));
+        // 精确命中全部查询词项时覆盖度为1，前缀命中按权重折减
+        assertEquals(1.0, hits.get(0).getCoverage(), 1e-9);
+        assertTrue(hits.get(1).getCoverage() < 1.0);
+        assertTrue(hits.get(1).getCoverage() > hits.get(2).getCoverage());
+
+        // 同一查询词项的多个前缀匹配只计一次
+        double single = index.search(List.of("refun"), 10, 0, DocumentFilter.of(1L), 0.5).get(0).getScore();
+        double multiple = index.search(List.of("refun"), 10, 0, DocumentFilter.of(2L), 0.5).get(0).getScore();
+        assertTrue(multiple < 2 * single);
+    }
+
+    @Test
+    void testGroupedSearchCollapsesByDocument() {
+        InvertedIndex index = new InvertedIndex(1.0f);
+        for (long id = 0; id < 30; id++) {
+            index.upsert(id, id / 10, fields("refund " + "word ".repeat((int) id)));
+        }
+
+        List<KeywordHit> hits = index.search(List.of("refund"), 2, 2, null, 0.0);
+        assertEquals(4, hits.size());
+        // 较短的条目得分更高，因此前两个文档是0和1，各取最短的两个条目
+        assertEquals(List.of(0L, 1L, 10L, 11L), ids(hits).stream().sorted().toList());
+    }
+
+    @Test
+    void testCoverageIntersectsCompressedPostings() {
+        Random random = new Random(13L);
+        InvertedIndex index = new InvertedIndex(1.0f);
+        Map<Long, List<String>> entries = new HashMap<>();
+        for (long id = 0; id < 20000; id++) {
+            List<String> tokens = new ArrayList<>();
+            // common出现在大多数条目中（序号位图），rare和mid较少
+            if (random.nextInt(10) < 8) {
+                tokens.add("common");
+            }
+            if (random.nextInt(50) == 0) {
+                tokens.add("rare");
+            }
+            if (random.nextInt(5) == 0) {
+                tokens.add("mid");
+            }
+            tokens.add("w" + random.nextInt(100));
+            entries.put(id, tokens);
+            index.upsert(id, id % 500, fields(String.join(" ", tokens)));
+        }
+        for (long id = 0; id < 20000; id += 7) {
+            index.remove(id);
+            entries.remove(id);
+        }
+
+        List<String> query = List.of("rare", "common", "mid");
+        List<KeywordHit> hits = index.search(query, 100000, null);
+        long expected = entries.values().stream().filter(tokens -> tokens.containsAll(query)).count();
+        // 覆盖度由命中序号与倒排表求交得出：包含全部词项的条目覆盖度为1，其余小于1
+        long complete = 0;
+        for (KeywordHit hit : hits) {
+            boolean containsAll = entries.get(hit.getId()).containsAll(query);
+            assertEquals(containsAll, hit.getCoverage() > 1.0 - 1e-9, "id " + hit.getId());
+            if (containsAll) {
+                complete++;
+            }
+        }
+        assertEquals(expected, complete);
+        assertTrue(index.postingBytes() < index.postingCount() * 9);
+    }
+
+    private static List<List<String>> fields(String text) {
+        List<List<String>> fields = new ArrayList<>();
+        fields.add(tokens(text));
+        return fields;
+    }
+
+    private static List<String> tokens(String text) {
+        return Arrays.asList(text.split(" "));
+    }
+
+    private static List<Long> ids(List<KeywordHit> hits) {
+        List<Long> ids = new ArrayList<>();
+        for (KeywordHit hit : hits) {
+            ids.add(hit.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * 按BM25F公式直接计算每个条目的分数
+     */
+    private static double[] referenceScores(Map<Long, List<List<String>>> entries, List<String> query,
+                                            float[] weights) {
+        int n = entries.size();
+        double[] averageLengths = new double[weights.length];
+        for (List<List<String>> fields : entries.values()) {
+            for (int field = 0; field < weights.length; field++) {
+                averageLengths[field] += fields.get(field).size() / (double) n;
+            }
+        }
+        double[] scores = new double[n];
+        for (String term : query) {
+            int df = 0;
+            for (List<List<String>> fields : entries.values()) {
+                if (fields.stream().anyMatch(tokens -> tokens.contains(term))) {
+                    df++;
+                }
+            }
+            double idf = Math.log(1.0 + (n - df + 0.5) / (df + 0.5));
+            for (Map.Entry<Long, List<List<String>>> entry : entries.entrySet()) {
+                double tf = 0.0;
+                for (int field = 0; field < weights.length; field++) {
+                    List<String> tokens = entry.getValue().get(field);
+                    long frequency = tokens.stream().filter(term::equals).count();
+                    tf += weights[field] * frequency
+                            / (1 - 0.75 + 0.75 * tokens.size() / averageLengths[field]);
+                }
+                if (tf > 0) {
+                    scores[entry.getKey().intValue()] += idf * tf * 2.2 / (tf + 1.2);
+                }
+            }
+        }
+        return scores;
+    }
+}
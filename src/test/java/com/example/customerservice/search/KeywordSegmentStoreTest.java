@@ -0,0 +1,298 @@
+package com.example.customerservice.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeywordSegmentStore单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class KeywordSegmentStoreTest {
+
+    private static final float[] FIELD_WEIGHTS = {2.0f, 1.0f};
+
+    private final Map<Long, List<List<String>>> entries = new HashMap<>();
+
+    private Path directory;
+    private KeywordSegmentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("keyword-segments");
+        store = newStore(directory);
+        store.open();
+    }
+
+    @Test
+    void testSegmentRoundTrip() throws IOException {
+        Path file = directory.resolve("single.kseg");
+        TreeMap<String, KeywordSegment.PostingsBuffer> postings = new TreeMap<>();
+        postings.computeIfAbsent("refund", t -> new KeywordSegment.PostingsBuffer()).add(0, 0, 1);
+        postings.get("refund").add(1, 1, 3);
+        postings.computeIfAbsent("退款", t -> new KeywordSegment.PostingsBuffer()).add(1, 0, 2);
+        KeywordSegment.write(file, 2, 2, new long[]{20L, 10L}, new long[]{2L, 1L}, new int[]{1, 0, 2, 3}, postings);
+
+        KeywordSegment segment = KeywordSegment.open(file);
+
+        assertEquals(2, segment.fieldCount());
+        assertEquals(2, segment.rows());
+        assertEquals(10L, segment.id(1));
+        assertEquals(1L, segment.documentId(1));
+        assertEquals(3, segment.fieldLength(1, 1));
+        assertEquals(1, segment.rowOf(10L));
+        assertEquals(-1, segment.rowOf(30L));
+        assertEquals(2, segment.termCount());
+        assertEquals("退款", segment.term(1));
+        assertEquals(2, segment.postingsSize(0));
+
+        KeywordSegment.Cursor cursor = segment.cursor(0);
+        cursor.next();
+        assertEquals(1, cursor.row());
+        assertEquals(1, cursor.field());
+        assertEquals(3, cursor.freq());
+        cursor.next();
+        assertEquals(PostingsList.NO_MORE_DOCS, cursor.row());
+    }
+
+    @Test
+    void testCorruptedSegmentIsRejected() throws IOException {
+        upsertRange(1L, 20);
+        store.commit();
+        Path segmentFile;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentFile = files.filter(file -> file.toString().endsWith(".kseg")).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segmentFile);
+        bytes[bytes.length / 2] ^= 0x5A;
+        Files.write(segmentFile, bytes, StandardOpenOption.TRUNCATE_EXISTING);
+
+        assertThrows(IOException.class, () -> KeywordSegment.open(segmentFile));
+        assertThrows(IOException.class, () -> newStore(directory).open());
+    }
+
+    @Test
+    void testCommitAndReopenMatchesDirectIndex() throws IOException {
+        assertFalse(store.isInitialized());
+        upsertRange(1L, 200);
+        assertEquals(200, store.commit());
+        upsertRange(201L, 100);
+        store.commit();
+        assertEquals(0, store.commit());
+        assertEquals(300L, store.getWatermark());
+        assertTrue(store.getCommitTimestamp() > 0);
+
+        KeywordSegmentStore reopened = newStore(directory);
+        reopened.open();
+
+        assertTrue(reopened.isInitialized());
+        assertEquals(2, reopened.getSegmentCount());
+        assertEquals(300, reopened.liveSegmentEntries());
+        assertIndexMatches(reopened);
+    }
+
+    @Test
+    void testDeletesAreCommittedWithReplacements() throws IOException {
+        upsertRange(1L, 100);
+        store.commit();
+
+        // 水位线之前的条目更新时旧行被标记删除，新内容进入尾段
+        upsertRange(5L, 10);
+        assertTrue(store.remove(50L));
+        entries.remove(50L);
+        assertFalse(store.remove(50L));
+        assertEquals(10, store.removeDocument(7L));
+        entries.keySet().removeIf(id -> id / 10 == 7L);
+        assertEquals(21, store.tombstoneCount());
+
+        // 未提交的删除和更新在重新打开后不可见
+        KeywordSegmentStore uncommitted = newStore(directory);
+        uncommitted.open();
+        assertEquals(100, uncommitted.liveSegmentEntries());
+        assertEquals(0, uncommitted.tombstoneCount());
+
+        store.commit();
+        KeywordSegmentStore reopened = newStore(directory);
+        reopened.open();
+        assertEquals(entries.size(), reopened.liveSegmentEntries());
+        assertIndexMatches(reopened);
+    }
+
+    @Test
+    void testTieredMergeKeepsLiveEntries() throws IOException {
+        for (int batch = 0; batch < 12; batch++) {
+            upsertRange(batch * 20L + 1, 20);
+            store.commit();
+        }
+        assertEquals(12, store.getSegmentCount());
+        for (long id = 1; id <= 240; id += 3) {
+            store.remove(id);
+            entries.remove(id);
+        }
+        store.commit();
+
+        int merges = 0;
+        while (store.maybeMerge() > 0) {
+            merges++;
+        }
+        assertTrue(merges > 0);
+        assertTrue(store.getSegmentCount() < 12);
+        assertEquals(entries.size(), store.liveSegmentEntries());
+
+        // 合并后的提交点可以直接打开，旧段文件已删除
+        KeywordSegmentStore reopened = newStore(directory);
+        reopened.open();
+        assertEquals(store.getSegmentCount(), reopened.getSegmentCount());
+        assertIndexMatches(reopened);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(reopened.getSegmentCount(),
+                    files.filter(file -> file.toString().endsWith(".kseg")).count());
+        }
+    }
+
+    @Test
+    void testDeletesDuringMergeAreCarriedOver() throws Exception {
+        for (int batch = 0; batch < 12; batch++) {
+            upsertRange(batch * 50L + 1, 50);
+            store.commit();
+        }
+
+        // 合并在后台线程执行，期间的删除和提交不被阻塞，切换时删除映射到新段
+        Thread merger = new Thread(() -> {
+            try {
+                while (store.maybeMerge() > 0) {
+                    // 合并到策略不再选出段为止
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        merger.start();
+        for (long id = 2; id <= 600; id += 5) {
+            store.remove(id);
+            entries.remove(id);
+            if (id % 100 == 2) {
+                store.commit();
+            }
+        }
+        merger.join();
+        store.commit();
+
+        assertEquals(entries.size(), store.liveSegmentEntries());
+        KeywordSegmentStore reopened = newStore(directory);
+        reopened.open();
+        assertEquals(entries.size(), reopened.liveSegmentEntries());
+        assertIndexMatches(reopened);
+    }
+
+    @Test
+    void testUnreferencedFilesAreRemovedOnOpen() throws IOException {
+        upsertRange(1L, 10);
+        store.commit();
+        Files.writeString(directory.resolve("segment-99999999.kseg"), "partial");
+        Files.writeString(directory.resolve("segments.manifest.tmp"), "partial");
+
+        KeywordSegmentStore reopened = newStore(directory);
+        reopened.open();
+
+        assertFalse(Files.exists(directory.resolve("segment-99999999.kseg")));
+        assertFalse(Files.exists(directory.resolve("segments.manifest.tmp")));
+        assertEquals(10, reopened.liveSegmentEntries());
+    }
+
+    @Test
+    void testResetAndFieldCountMismatch() throws IOException {
+        upsertRange(1L, 10);
+        store.commit();
+
+        assertThrows(IOException.class, () -> new KeywordSegmentStore(directory, 3,
+                new TieredMergePolicy(10, 10, 100, 1000, 20.0)).open());
+
+        store.reset();
+        assertTrue(store.isInitialized());
+        assertEquals(0, store.getSegmentCount());
+        assertEquals(0L, store.getWatermark());
+        KeywordSegmentStore reopened = newStore(directory);
+        reopened.open();
+        assertTrue(reopened.isInitialized());
+        assertEquals(0, reopened.liveSegmentEntries());
+    }
+
+    private static KeywordSegmentStore newStore(Path directory) {
+        return new KeywordSegmentStore(directory, FIELD_WEIGHTS.length, new TieredMergePolicy(4, 4, 1, 1000, 30.0));
+    }
+
+    /**
+     * 写入ID为 [first, first + count) 的条目，文档ID为条目ID / 10
+     */
+    private void upsertRange(long first, int count) {
+        Random random = new Random(first);
+        for (long id = first; id < first + count; id++) {
+            List<List<String>> fields = new ArrayList<>();
+            fields.add(tokens(random, 1 + random.nextInt(4)));
+            fields.add(tokens(random, 1 + random.nextInt(30)));
+            entries.put(id, fields);
+            store.upsert(id, id / 10, fields);
+        }
+    }
+
+    private static List<String> tokens(Random random, int length) {
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            tokens.add("t" + (int) (40 * Math.pow(random.nextDouble(), 2)));
+        }
+        return tokens;
+    }
+
+    /**
+     * 从存储载入的索引与直接写入同样条目的索引，检索结果和分数一致
+     */
+    private void assertIndexMatches(KeywordSegmentStore source) {
+        InvertedIndex loaded = new InvertedIndex(FIELD_WEIGHTS);
+        assertEquals(entries.size(), source.loadInto(loaded));
+        InvertedIndex expected = new InvertedIndex(FIELD_WEIGHTS);
+        for (Map.Entry<Long, List<List<String>>> entry : entries.entrySet()) {
+            expected.upsert(entry.getKey(), entry.getKey() / 10, entry.getValue());
+        }
+
+        assertEquals(expected.size(), loaded.size());
+        for (List<String> query : Arrays.asList(List.of("t0"), List.of("t3", "t17"), List.of("t1", "t25", "t39"))) {
+            Map<Long, Double> expectedScores = scores(expected.search(query, 10000, null));
+            Map<Long, Double> loadedScores = scores(loaded.search(query, 10000, null));
+            assertEquals(expectedScores.keySet(), loadedScores.keySet());
+            for (Map.Entry<Long, Double> entry : expectedScores.entrySet()) {
+                assertEquals(entry.getValue(), loadedScores.get(entry.getKey()), 1e-9);
+            }
+            assertEquals(expected.documentFrequency(query.get(0)), loaded.documentFrequency(query.get(0)));
+        }
+
+        // 载入的条目可以正常删除和更新
+        long anyId = entries.keySet().iterator().next();
+        assertTrue(loaded.remove(anyId));
+        assertFalse(loaded.contains(anyId));
+    }
+
+    private static Map<Long, Double> scores(List<KeywordHit> hits) {
+        Map<Long, Double> scores = new HashMap<>();
+        for (KeywordHit hit : hits) {
+            scores.put(hit.getId(), hit.getScore());
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.customerservice.search;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 倒排表压缩与求交基准
+ *
+ * 按给定的条目总数生成一组密度不同的倒排表（从约一半条目都包含的高频词项到极少出现的低频词项），
+ * 同时以 {@link PostingsList}（差分变长整数分块、跳表、高频位图）和未压缩的平行数组
+ * （int[] 序号、byte[] 字段、int[] 词频，即压缩前的存储方式）存放，报告：
+ * <ul>
+ *   <li>每个表项占用的字节数；</li>
+ *   <li>两两求交的吞吐量：压缩倒排表用跳表前跳和位图成员判断，平行数组用双指针归并。</li>
+ * </ul>
+ * 两种方式的求交结果数量必须一致，否则抛出异常。
+ *
+ * @author AI Assistant
+ * @version 1.0.0
+ * @since 2025-07-06
+ */
+public final class PostingsBenchmark {
+
+    /**
+     * 各倒排表包含条目的比例
+     */
+    private static final double[] DENSITIES = {0.5, 0.1, 0.02, 0.004, 0.0008};
+
+    private PostingsBenchmark() {
+    }
+
+    /**
+     * 运行基准
+     *
+     * @param entryCount 条目总数（序号范围）
+     * @param iterations 每对倒排表的求交次数
+     * @param seed 随机数种子
+     * @return 基准报告
+     */
+    public static BenchmarkReport run(int entryCount, int iterations, long seed) {
+        if (entryCount <= 0 || iterations <= 0) {
+            throw new IllegalArgumentException("条目总数和求交次数必须大于0");
+        }
+
+        Random random = new Random(seed);
+        int listCount = DENSITIES.length;
+        PostingsList[] compressed = new PostingsList[listCount];
+        int[][] arrays = new int[listCount][];
+        long postings = 0;
+        long compressedBytes = 0;
+        for (int list = 0; list < listCount; list++) {
+            PostingsList postingsList = new PostingsList();
+            int[] docs = new int[entryCount];
+            int size = 0;
+            for (int ordinal = 0; ordinal < entryCount; ordinal++) {
+                if (random.nextDouble() < DENSITIES[list]) {
+                    // 词频偏向1，与实际文本一致
+                    int frequency = 1 + (int) (3 * Math.pow(random.nextDouble(), 4));
+                    postingsList.add(ordinal, 0, frequency);
+                    docs[size++] = ordinal;
+                }
+            }
+            postingsList.trimToSize();
+            compressed[list] = postingsList;
+            arrays[list] = Arrays.copyOf(docs, size);
+            postings += size;
+            compressedBytes += postingsList.memoryBytes();
+        }
+        // 平行数组：序号4字节、字段1字节、词频4字节
+        long arrayBytes = postings * (Integer.BYTES + Byte.BYTES + Integer.BYTES);
+
+        long compressedNanos = 0;
+        long arrayNanos = 0;
+        long scanned = 0;
+        long matches = 0;
+        int intersections = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < listCount; i++) {
+                for (int j = i + 1; j < listCount; j++) {
+                    // 较短的倒排表在后（密度递减），作为主导
+                    long start = System.nanoTime();
+                    int compressedMatches = intersect(compressed[j], compressed[i]);
+                    compressedNanos += System.nanoTime() - start;
+
+                    start = System.nanoTime();
+                    int arrayMatches = intersect(arrays[j], arrays[i]);
+                    arrayNanos += System.nanoTime() - start;
+
+                    if (compressedMatches != arrayMatches) {
+                        throw new IllegalStateException("求交结果不一致: " + compressedMatches + " != " + arrayMatches);
+                    }
+                    scanned += arrays[i].length + arrays[j].length;
+                    matches += arrayMatches;
+                    intersections++;
+                }
+            }
+        }
+
+        return new BenchmarkReport(postings, (double) compressedBytes / postings, (double) arrayBytes / postings,
+                intersections, matches, scanned * 1e3 / Math.max(compressedNanos, 1),
+                scanned * 1e3 / Math.max(arrayNanos, 1));
+    }
+
+    /**
+     * 压缩倒排表求交：以较短的倒排表为主导，另一方有位图时查位图，否则借助跳表前跳
+     *
+     * @return 交集大小
+     */
+    static int intersect(PostingsList shorter, PostingsList longer) {
+        PostingsList.Cursor lead = shorter.cursor();
+        PostingsList.Cursor other = longer.cursor();
+        RoaringBitmap bitmap = longer.docBitmap();
+        int count = 0;
+        int doc = lead.doc();
+        while (doc != PostingsList.NO_MORE_DOCS) {
+            int next = doc + 1;
+            if (bitmap != null) {
+                if (bitmap.contains(doc)) {
+                    count++;
+                }
+            } else {
+                other.advance(doc);
+                if (other.doc() == doc) {
+                    count++;
+                } else {
+                    next = other.doc();
+                }
+            }
+            if (next == PostingsList.NO_MORE_DOCS) {
+                break;
+            }
+            lead.advance(next);
+            doc = lead.doc();
+        }
+        return count;
+    }
+
+    /**
+     * 有序int数组双指针归并求交
+     *
+     * @return 交集大小
+     */
+    static int intersect(int[] a, int[] b) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 基准报告
+     */
+    public static class BenchmarkReport {
+        private final long postings;
+        private final double compressedBytesPerPosting;
+        private final double arrayBytesPerPosting;
+        private final int intersections;
+        private final long matches;
+        private final double compressedMillionPostingsPerSecond;
+        private final double arrayMillionPostingsPerSecond;
+
+        public BenchmarkReport(long postings, double compressedBytesPerPosting, double arrayBytesPerPosting,
+                               int intersections, long matches, double compressedMillionPostingsPerSecond,
+                               double arrayMillionPostingsPerSecond) {
+            this.postings = postings;
+            this.compressedBytesPerPosting = compressedBytesPerPosting;
+            this.arrayBytesPerPosting = arrayBytesPerPosting;
+            this.intersections = intersections;
+            this.matches = matches;
+            this.compressedMillionPostingsPerSecond = compressedMillionPostingsPerSecond;
+            this.arrayMillionPostingsPerSecond = arrayMillionPostingsPerSecond;
+        }
+
+        public long getPostings() { return postings; }
+        public double getCompressedBytesPerPosting() { return compressedBytesPerPosting; }
+        public double getArrayBytesPerPosting() { return arrayBytesPerPosting; }
+        public int getIntersections() { return intersections; }
+        public long getMatches() { return matches; }
+        public double getCompressedMillionPostingsPerSecond() { return compressedMillionPostingsPerSecond; }
+        public double getArrayMillionPostingsPerSecond() { return arrayMillionPostingsPerSecond; }
+
+        @Override
+        public String toString() {
+            return String.format("BenchmarkReport{postings=%d, bytes/posting: compressed=%.2f, array=%.2f, "
+                    + "intersections=%d, matches=%d, Mpostings/s: compressed=%.1f, array=%.1f}",
+                postings, compressedBytesPerPosting, arrayBytesPerPosting, intersections, matches,
+                compressedMillionPostingsPerSecond, arrayMillionPostingsPerSecond);
+        }
+    }
+}
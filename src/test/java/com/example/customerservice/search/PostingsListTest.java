@@ -0,0 +1,101 @@
+package com.example.customerservice.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PostingsList单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class PostingsListTest {
+
+    @Test
+    void testRoundTripAndAdvance() {
+        Random random = new Random(3L);
+        PostingsList postings = new PostingsList();
+        List<int[]> entries = new ArrayList<>();
+        int ordinal = 0;
+        for (int i = 0; i < 2000; i++) {
+            ordinal += random.nextInt(4) == 0 ? random.nextInt(100000) : random.nextInt(3);
+            int field = random.nextInt(4);
+            int frequency = 1 + random.nextInt(random.nextInt(10) == 0 ? 1000 : 3);
+            postings.add(ordinal, field, frequency);
+            entries.add(new int[]{ordinal, field, frequency});
+        }
+        assertEquals(entries.size(), postings.size());
+
+        PostingsList.Cursor cursor = postings.cursor();
+        for (int[] entry : entries) {
+            assertEquals(entry[0], cursor.doc());
+            assertEquals(entry[1], cursor.field());
+            assertEquals(entry[2], cursor.freq());
+            cursor.next();
+        }
+        assertEquals(PostingsList.NO_MORE_DOCS, cursor.doc());
+
+        // 前跳定位到第一个序号不小于目标的表项（同一序号的第一个表项）
+        for (int probe = 0; probe < 300; probe++) {
+            int target = random.nextInt(ordinal + 10);
+            int expected = PostingsList.NO_MORE_DOCS;
+            int expectedField = -1;
+            for (int[] entry : entries) {
+                if (entry[0] >= target) {
+                    expected = entry[0];
+                    expectedField = entry[1];
+                    break;
+                }
+            }
+            PostingsList.Cursor probeCursor = postings.cursor();
+            probeCursor.advance(target);
+            assertEquals(expected, probeCursor.doc());
+            if (expected != PostingsList.NO_MORE_DOCS) {
+                assertEquals(expectedField, probeCursor.field());
+            }
+            assertEquals(expected == target, postings.containsDoc(target));
+        }
+        assertThrows(IllegalArgumentException.class, () -> postings.add(0, 0, 1));
+    }
+
+    @Test
+    void testHighFrequencyBitmapAndRemap() {
+        PostingsList postings = new PostingsList();
+        for (int ordinal = 0; ordinal < 20000; ordinal += 2) {
+            postings.add(ordinal, 0, 1);
+        }
+        assertNotNull(postings.docBitmap());
+        assertEquals(10000, postings.docBitmap().cardinality());
+        assertTrue(postings.containsDoc(19998));
+        assertFalse(postings.containsDoc(19999));
+
+        // 只保留序号能被4整除的表项，重新编号为 序号 / 4
+        int[] remap = new int[20000];
+        for (int ordinal = 0; ordinal < remap.length; ordinal++) {
+            remap[ordinal] = ordinal % 4 == 0 ? ordinal / 4 : -1;
+        }
+        postings.remap(remap);
+        assertEquals(5000, postings.size());
+        assertTrue(postings.containsDoc(4999));
+        assertFalse(postings.containsDoc(5000));
+        assertEquals(5000, postings.docBitmap().cardinality());
+    }
+
+    @Test
+    void testBenchmarkReport() {
+        PostingsBenchmark.BenchmarkReport report = PostingsBenchmark.run(200000, 2, 9L);
+
+        assertTrue(report.getPostings() > 100000);
+        assertEquals(20, report.getIntersections());
+        assertTrue(report.getMatches() > 0);
+        // 压缩后每个表项不到平行数组的三分之一
+        assertEquals(9.0, report.getArrayBytesPerPosting(), 1e-9);
+        assertTrue(report.getCompressedBytesPerPosting() < 3.0, report.toString());
+        assertTrue(report.getCompressedMillionPostingsPerSecond() > 0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.customerservice.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RoaringBitmap单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class RoaringBitmapTest {
+
+    @Test
+    void testAddContainsAndNextValue() {
+        RoaringBitmap bitmap = RoaringBitmap.of(5, 70000, 3, 5, 1 << 20);
+
+        assertEquals(4, bitmap.cardinality());
+        assertTrue(bitmap.contains(3));
+        assertTrue(bitmap.contains(70000));
+        assertFalse(bitmap.contains(4));
+        assertFalse(bitmap.contains(-1));
+        assertArrayEquals(new int[]{3, 5, 70000, 1 << 20}, bitmap.toArray());
+
+        assertEquals(3, bitmap.nextValue(0));
+        assertEquals(5, bitmap.nextValue(4));
+        // 跨桶查找
+        assertEquals(70000, bitmap.nextValue(6));
+        assertEquals(1 << 20, bitmap.nextValue(70001));
+        assertEquals(-1, bitmap.nextValue((1 << 20) + 1));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    @Test
+    void testMatchesBitSetAcrossContainerTypes() {
+        Random random = new Random(5L);
+        RoaringBitmap dense = new RoaringBitmap();
+        RoaringBitmap sparse = new RoaringBitmap();
+        BitSet denseReference = new BitSet();
+        BitSet sparseReference = new BitSet();
+        for (int i = 0; i < 200000; i++) {
+            // 前两个桶稠密（位图容器），之后稀疏（数组容器）
+            int value = random.nextInt(300000);
+            if (value < 131072 || random.nextInt(20) == 0) {
+                dense.add(value);
+                denseReference.set(value);
+            }
+            int other = random.nextInt(300000);
+            if (random.nextInt(4) == 0) {
+                sparse.add(other);
+                sparseReference.set(other);
+            }
+        }
+
+        assertEquals(denseReference.cardinality(), dense.cardinality());
+        assertArrayEquals(denseReference.stream().toArray(), dense.toArray());
+        for (int value = 0; value < 300000; value += 7) {
+            assertEquals(denseReference.get(value), dense.contains(value));
+            int expected = denseReference.nextSetBit(value);
+            assertEquals(expected, dense.nextValue(value));
+        }
+
+        BitSet intersection = (BitSet) denseReference.clone();
+        intersection.and(sparseReference);
+        RoaringBitmap and = RoaringBitmap.and(dense, sparse);
+        assertArrayEquals(intersection.stream().toArray(), and.toArray());
+        assertArrayEquals(intersection.stream().toArray(), RoaringBitmap.and(sparse, dense).toArray());
+        // 稠密集合的位图容器比每个值2字节的数组更省空间
+        assertTrue(dense.memoryBytes() < 2L * dense.cardinality());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.customerservice.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TextAnalyzer单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class TextAnalyzerTest {
+
+    private final TextAnalyzer analyzer = new TextAnalyzer(
+            List.of("退款", "退款申请", "订单", "物流", "查询"), List.of("的", "我", "了", "the"));
+
+    @Test
+    void testDictionaryMaximumMatching() {
+        // 取最长的词典词，停用词切分出来后被过滤
+        assertEquals(List.of("退款申请", "订单"), analyzer.terms("我的退款申请订单"));
+        assertEquals(List.of("退款", "订单", "物流"), analyzer.terms("退款订单的物流"));
+    }
+
+    @Test
+    void testBigramFallbackForUnknownText() {
+        // 词典未覆盖的连续汉字按二元切分，单个字保留单字
+        assertEquals(List.of("快递", "递员", "查询"), analyzer.terms("快递员查询"));
+        assertEquals(List.of("退款", "慢"), analyzer.terms("退款慢"));
+    }
+
+    @Test
+    void testNormalizationAndMixedScripts() {
+        // 全角字母数字转半角并转小写，英文和数字按连续片段切分
+        assertEquals(List.of("iphone15", "退款"), analyzer.terms("ＩＰｈｏｎｅ１５退款"));
+        assertEquals(List.of("order", "123", "refund"), analyzer.terms("The Order #123, refund!"));
+        assertEquals(List.of("订单", "查询"), analyzer.terms("订单　查询"));
+        assertTrue(analyzer.terms("").isEmpty());
+        assertTrue(analyzer.terms(null).isEmpty());
+    }
+
+    @Test
+    void testOffsetsMatchOriginalText() {
+        String text = "ＡＢ，我的退款申请";
+        List<int[]> spans = new ArrayList<>();
+        analyzer.analyze(text, (buffer, start, end) -> spans.add(new int[]{start, end}));
+
+        assertEquals(2, spans.size());
+        assertArrayEquals(new int[]{0, 2}, spans.get(0));
+        assertEquals("退款申请", text.substring(spans.get(1)[0], spans.get(1)[1]));
+    }
+
+    @Test
+    void testFiltersAndExtraWords() {
+        TextAnalyzer filtered = analyzer.withFilter(TokenFilter.minLength(2));
+        assertEquals(List.of("退款"), filtered.terms("退款慢"));
+
+        TextAnalyzer extended = analyzer.withWords(List.of("快递员"));
+        assertTrue(extended.isDictionaryWord("快递员"));
+        assertFalse(analyzer.isDictionaryWord("快递员"));
+        assertEquals(List.of("快递员", "查询"), extended.terms("快递员查询"));
+
+        TokenFilter noRefund = TokenFilter.stopWords(new DoubleArrayTrie(List.of("退款")));
+        assertEquals(List.of("订单"), analyzer.withFilter(noRefund).terms("退款订单"));
+    }
+
+    @Test
+    void testDefaultAnalyzerLoadsBundledDictionary() {
+        TextAnalyzer defaults = TextAnalyzer.defaultAnalyzer();
+
+        assertFalse(TextAnalyzer.readWords(TextAnalyzer.DICTIONARY_RESOURCE).isEmpty());
+        assertTrue(defaults.isDictionaryWord("优惠券"));
+        assertEquals(List.of("怎么", "申请", "退款"), defaults.terms("我的怎么申请退款？"));
+        assertSame(defaults, TextAnalyzer.defaultAnalyzer());
+    }
+}
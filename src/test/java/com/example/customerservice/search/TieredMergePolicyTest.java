@@ -0,0 +1,72 @@
+package com.example.customerservice.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TieredMergePolicy单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class TieredMergePolicyTest {
+
+    private final TieredMergePolicy policy = new TieredMergePolicy(4, 4, 100, 1_000_000, 20.0);
+
+    @Test
+    void testNoMergeWithinTierBudget() {
+        assertNull(policy.findMerge(new int[0], new int[0]));
+        assertNull(policy.findMerge(new int[]{100, 100, 100, 100}, new int[4]));
+        // 每层最多4个段：一个400的段加上4个100的段仍在配额内
+        assertNull(policy.findMerge(new int[]{400, 100, 100, 100, 100}, new int[5]));
+    }
+
+    @Test
+    void testMergesSmallestSimilarSegments() {
+        int[] entries = {1600, 400, 10, 10, 10, 10, 10, 10, 10, 10, 10, 10};
+        int[] merge = policy.findMerge(entries, new int[entries.length]);
+
+        assertNotNull(merge);
+        assertEquals(4, merge.length);
+        // 大小相近的小段优先合并，大段不参与
+        for (int index : merge) {
+            assertEquals(10, entries[index]);
+        }
+        for (int i = 1; i < merge.length; i++) {
+            assertTrue(merge[i] > merge[i - 1]);
+        }
+    }
+
+    @Test
+    void testRewritesSegmentWithTooManyDeletes() {
+        assertArrayEquals(new int[]{1}, policy.findMerge(new int[]{1000, 1000}, new int[]{100, 300}));
+        assertArrayEquals(new int[]{0}, policy.findMerge(new int[]{50}, new int[]{50}));
+    }
+
+    @Test
+    void testLargeSegmentsAreNotMerged() {
+        TieredMergePolicy capped = new TieredMergePolicy(2, 2, 10, 1000, 50.0);
+        assertNull(capped.findMerge(new int[]{900, 800, 700}, new int[3]));
+
+        int[] merge = capped.findMerge(new int[]{900, 100, 100, 100, 100, 100}, new int[6]);
+        assertNotNull(merge);
+        for (int index : merge) {
+            assertTrue(index > 0);
+        }
+    }
+
+    @Test
+    void testAllowedSegmentCountGrowsLogarithmically() {
+        assertEquals(4, policy.allowedSegmentCount(400, 100));
+        // 第一层4个100的段，第二层每段400
+        assertEquals(6, policy.allowedSegmentCount(1200, 100));
+        assertTrue(policy.allowedSegmentCount(1_000_000, 100) < 30);
+    }
+
+    @Test
+    void testInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new TieredMergePolicy(1, 4, 100, 1000, 20.0));
+        assertThrows(IllegalArgumentException.class, () -> new TieredMergePolicy(4, 4, 100, 1000, 0.0));
+    }
+}
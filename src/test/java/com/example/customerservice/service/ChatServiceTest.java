@@ -245,4 +245,23 @@ class ChatServiceTest {
         assertEquals(1, assistantCount, "应该有1条助手消息");
         assertEquals(1, systemCount, "应该有1条系统消息");
     }
+
+    @Test
+    @DisplayName("测试用户意图识别")
+    void testAnalyzeUserIntent() {
+        // 关键词按子串匹配，包含在更长的词典词中也能识别
+        assertEquals("售后服务", ChatService.analyzeUserIntent("怎么取消订单"));
+        assertEquals("投诉处理", ChatService.analyzeUserIntent("这个差评"));
+        assertEquals("价格咨询", ChatService.analyzeUserIntent("这个套餐多少钱"));
+        assertEquals("产品咨询", ChatService.analyzeUserIntent("请介绍一下新功能"));
+        assertEquals("技术支持", ChatService.analyzeUserIntent("登录不能用了"));
+
+        // 多个意图命中时取优先级最高的意图
+        assertEquals("价格咨询", ChatService.analyzeUserIntent("产品价格是多少"));
+        assertEquals("投诉处理", ChatService.analyzeUserIntent("我要退货，质量太差"));
+
+        assertEquals("一般咨询", ChatService.analyzeUserIntent("你好"));
+        assertEquals("一般咨询", ChatService.analyzeUserIntent(""));
+        assertEquals("一般咨询", ChatService.analyzeUserIntent(null));
+    }
 }
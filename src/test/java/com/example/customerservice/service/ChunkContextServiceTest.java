@@ -0,0 +1,145 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.entity.KnowledgeDocument;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.service.VectorStoreService.SimilaritySearchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ChunkContextService单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class ChunkContextServiceTest {
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    @InjectMocks
+    private ChunkContextService chunkContextService;
+
+    private KnowledgeDocument testDocument;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(chunkContextService, "cacheSize", 100);
+
+        testDocument = new KnowledgeDocument();
+        testDocument.setId(1L);
+        testDocument.setTitle("Test Document");
+    }
+
+    @Test
+    void testMergeRangeJoinsOverlappingAndAdjacentRanges() {
+        TreeMap<Integer, Integer> ranges = new TreeMap<>();
+        ChunkContextService.mergeRange(ranges, 0, 2);
+        ChunkContextService.mergeRange(ranges, 6, 8);
+        ChunkContextService.mergeRange(ranges, 3, 4);
+
+        assertEquals(2, ranges.size());
+        assertEquals(4, ranges.get(0));
+        assertEquals(8, ranges.get(6));
+
+        ChunkContextService.mergeRange(ranges, 4, 6);
+        assertEquals(1, ranges.size());
+        assertEquals(8, ranges.get(0));
+    }
+
+    @Test
+    void testExpandMergesWindowsWithSingleQuery() {
+        when(chunkRepository.findChunkViewsByPositions(anyCollection(), anyCollection()))
+            .thenReturn(rows(0, 6));
+
+        List<SimilaritySearchResult> results = List.of(
+            new SimilaritySearchResult(chunk(2), 0.9),
+            new SimilaritySearchResult(chunk(3), 0.8));
+
+        List<ChunkContextService.ContextWindow> windows = chunkContextService.expand(results, 1);
+
+        // 序号2和3的窗口 [1,3]、[2,4] 合并为一个区间
+        assertEquals(1, windows.size());
+        assertEquals(1, windows.get(0).getFromIndex());
+        assertEquals(4, windows.get(0).getToIndex());
+        assertEquals(4, windows.get(0).getChunks().size());
+        assertEquals(2, windows.get(0).getHits().size());
+        assertEquals(0.9, windows.get(0).getMaxSimilarity(), 1e-9);
+        assertEquals("chunk 1\nchunk 2\nchunk 3", results.get(0).getContextualContent(1));
+        verify(chunkRepository, times(1)).findChunkViewsByPositions(anyCollection(), anyCollection());
+    }
+
+    @Test
+    void testExpandReusesCachedNeighborhood() {
+        when(chunkRepository.findChunkViewsByPositions(anyCollection(), anyCollection()))
+            .thenReturn(rows(0, 2));
+
+        // 序号1的窗口 [0,2] 覆盖文档全部分块，越界位置不存在
+        chunkContextService.expand(List.of(new SimilaritySearchResult(chunk(1), 0.9)), 1);
+        List<ChunkContextService.ContextWindow> windows =
+            chunkContextService.expand(List.of(new SimilaritySearchResult(chunk(1), 0.9)), 1);
+
+        assertEquals(3, windows.get(0).getChunks().size());
+        verify(chunkRepository, times(1)).findChunkViewsByPositions(anyCollection(), anyCollection());
+
+        chunkContextService.invalidateDocument(1L);
+        assertEquals(0, chunkContextService.cachedPositions());
+    }
+
+    @Test
+    void testNeighborsShareHitDocumentView() {
+        testDocument.setSummary("Test summary");
+        when(chunkRepository.findChunkViewsByPositions(anyCollection(), anyCollection()))
+            .thenReturn(rows(1, 3));
+
+        List<ChunkContextService.ContextWindow> windows =
+            chunkContextService.expand(List.of(new SimilaritySearchResult(chunk(2), 0.9)), 1);
+
+        // 相邻分块查询只返回文档ID，窗口和相邻分块使用命中结果的文档视图
+        assertSame(testDocument, windows.get(0).getDocument());
+        for (DocumentChunk neighbor : windows.get(0).getChunks()) {
+            assertEquals("Test summary", neighbor.getDocument().getSummary());
+        }
+    }
+
+    @Test
+    void testExpandDisabled() {
+        List<SimilaritySearchResult> results = List.of(new SimilaritySearchResult(chunk(2), 0.9));
+
+        assertTrue(chunkContextService.expand(results, 0).isEmpty());
+        assertEquals("chunk 2", results.get(0).getContextualContent(1));
+        verifyNoInteractions(chunkRepository);
+    }
+
+    private DocumentChunk chunk(int index) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(100L + index);
+        chunk.setDocument(testDocument);
+        chunk.setChunkIndex(index);
+        chunk.setContent("chunk " + index);
+        return chunk;
+    }
+
+    private List<Object[]> rows(int fromIndex, int toIndex) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int index = fromIndex; index <= toIndex; index++) {
+            rows.add(new Object[]{100L + index, 1L, index, "chunk " + index, 7});
+        }
+        return rows;
+    }
+}
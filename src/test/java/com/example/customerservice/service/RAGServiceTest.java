@@ -13,6 +13,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
 import java.util.List;
@@ -43,6 +44,9 @@ class RAGServiceTest {
     
     @Mock
     private VectorStoreService vectorStoreService;
+
+    @Mock
+    private ChunkContextService chunkContextService;
     
     @InjectMocks
     private RAGService ragService;
@@ -99,6 +103,75 @@ class RAGServiceTest {
         verify(vectorStoreService).hybridSearch(eq(query), anyInt());
     }
     
+    @Test
+    void testContextIncludesSummaryOfProjectedDocuments() {
+        String query = "test query";
+        ReflectionTestUtils.setField(ragService, "includeMetadata", true);
+        ReflectionTestUtils.setField(ragService, "maxContextLength", 2000);
+
+        // 检索结果中的文档是只读视图，只填充了ID、标题、摘要和分类
+        KnowledgeDocument view = new KnowledgeDocument();
+        view.setId(1L);
+        view.setTitle("Test Document");
+        view.setSummary("Test summary");
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(1L);
+        chunk.setDocument(view);
+        chunk.setChunkIndex(0);
+        chunk.setContent("This is the first chunk");
+        when(vectorStoreService.hybridSearch(eq(query), anyInt())).thenReturn(List.of(
+            new VectorStoreService.SimilaritySearchResult(chunk, 0.9)));
+
+        RAGService.RAGContext result = ragService.retrieveAndGenerate(query);
+
+        assertTrue(result.getContext().contains("【文档：Test Document】"));
+        assertTrue(result.getContext().contains("摘要：Test summary"));
+        assertTrue(result.getContext().contains("This is the first chunk"));
+    }
+
+    @Test
+    void testWindowedContextIncludesSummary() {
+        String query = "test query";
+        ReflectionTestUtils.setField(ragService, "includeMetadata", true);
+        ReflectionTestUtils.setField(ragService, "maxContextLength", 2000);
+        ReflectionTestUtils.setField(ragService, "contextWindowSize", 1);
+        testDocument.setSummary("Test summary");
+
+        List<VectorStoreService.SimilaritySearchResult> mockResults = List.of(
+            new VectorStoreService.SimilaritySearchResult(testChunk1, 0.9));
+        when(vectorStoreService.hybridSearch(eq(query), anyInt())).thenReturn(mockResults);
+        when(chunkContextService.expand(mockResults, 1)).thenReturn(List.of(
+            new ChunkContextService.ContextWindow(testDocument, 0, 1, List.of(testChunk1, testChunk2))));
+
+        RAGService.RAGContext result = ragService.retrieveAndGenerate(query);
+
+        assertTrue(result.getContext().contains("摘要：Test summary"));
+        assertTrue(result.getContext().contains("This is the first chunk\nThis is the second chunk"));
+    }
+
+    @Test
+    void testRetrieveAndGenerateGroupsByDocument() {
+        String query = "test query";
+        ReflectionTestUtils.setField(ragService, "enableDeduplication", true);
+        ReflectionTestUtils.setField(ragService, "maxRetrievalChunks", 5);
+        ReflectionTestUtils.setField(ragService, "chunksPerDocument", 1);
+        ReflectionTestUtils.setField(ragService, "maxContextLength", 2000);
+
+        // 分组检索已按文档折叠，构建上下文时每个文档仍最多保留配置数量的片段
+        List<VectorStoreService.SimilaritySearchResult> mockResults = Arrays.asList(
+            new VectorStoreService.SimilaritySearchResult(testChunk1, 0.9),
+            new VectorStoreService.SimilaritySearchResult(testChunk2, 0.8)
+        );
+        when(vectorStoreService.hybridSearchGrouped(query, 5, 1, null)).thenReturn(mockResults);
+
+        RAGService.RAGContext result = ragService.retrieveAndGenerate(query);
+
+        assertTrue(result.getContext().contains("This is the first chunk"));
+        assertFalse(result.getContext().contains("This is the second chunk"));
+        verify(vectorStoreService).hybridSearchGrouped(query, 5, 1, null);
+        verify(vectorStoreService, never()).hybridSearch(anyString(), anyInt());
+    }
+
     @Test
     void testRetrieveAndGenerateWithEmptyQuery() {
         String query = "";
@@ -168,7 +241,7 @@ class RAGServiceTest {
         // 执行获取文档块
         List<DocumentChunk> chunks = ragService.getDocumentChunks(documentId, maxChunks);
         
-        // 验证结果 - 当前实现返回空列表
+        // 验证结果 - 文档没有分块时返回空列表
         assertNotNull(chunks);
         assertTrue(chunks.isEmpty());
     }
@@ -0,0 +1,147 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.DocumentChunk;
+import com.example.customerservice.entity.KnowledgeDocument;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.repository.KnowledgeCategoryRepository;
+import com.example.customerservice.repository.KnowledgeDocumentRepository;
+import com.example.customerservice.vector.EmbeddingCodec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * VectorIndexService单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class VectorIndexServiceTest {
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    @Mock
+    private KnowledgeDocumentRepository documentRepository;
+
+    @Mock
+    private KnowledgeCategoryRepository categoryRepository;
+
+    @InjectMocks
+    private VectorIndexService vectorIndexService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(vectorIndexService, "loadBatchSize", 100);
+        ReflectionTestUtils.setField(vectorIndexService, "engineName", "exact");
+        ReflectionTestUtils.setField(vectorIndexService, "searchParallelism", 1);
+    }
+
+    @Test
+    void testDocumentRemovedDuringLoadStaysRemoved() {
+        // 新引擎读取文档1的分块之后、换入之前，文档1被删除
+        when(chunkRepository.findReadyEmbeddingsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            List<Object[]> rows = rows();
+            vectorIndexService.removeDocument(1L);
+            return rows;
+        });
+
+        vectorIndexService.loadIndex();
+
+        assertEquals(1, vectorIndexService.size());
+        assertNull(vectorIndexService.getVector(10L));
+        assertNull(vectorIndexService.getDocumentCentroid(1L));
+        assertNotNull(vectorIndexService.getVector(20L));
+        assertNotNull(vectorIndexService.getDocumentCentroid(2L));
+    }
+
+    @Test
+    void testChunksIndexedDuringLoadAreKept() {
+        // 分块在新引擎读取数据库之后提交，只经由增量更新写入
+        when(chunkRepository.findReadyEmbeddingsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            vectorIndexService.indexChunks(List.of(chunk(30L, 3L, new float[]{0.0f, 0.0f, 1.0f})));
+            return rows();
+        });
+
+        vectorIndexService.loadIndex();
+
+        assertEquals(3, vectorIndexService.size());
+        assertNotNull(vectorIndexService.getVector(30L));
+        assertNotNull(vectorIndexService.getDocumentCentroid(3L));
+
+        // 换入之后的更新直接写入新索引
+        vectorIndexService.removeDocument(3L);
+        assertNull(vectorIndexService.getVector(30L));
+        assertEquals(2, vectorIndexService.size());
+    }
+
+    @Test
+    void testFilterAttributesRemovedDuringLoadStayRemoved() {
+        List<Object[]> attributes = new ArrayList<>();
+        attributes.add(new Object[]{1L, null, "PUBLISHED", null});
+        attributes.add(new Object[]{2L, null, "PUBLISHED", null});
+        when(documentRepository.findFilterAttributes()).thenReturn(attributes);
+        vectorIndexService.loadIndex();
+        assertTrue(vectorIndexService.resolveFilter(null, List.of("PUBLISHED"), null).accepts(1L));
+
+        // 重新加载时文档1在属性读取之前被删除，新位图仍读到旧数据，换入后重放删除
+        when(chunkRepository.findReadyEmbeddingsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            vectorIndexService.removeDocumentAttributes(1L);
+            return rows();
+        });
+        vectorIndexService.loadIndex();
+
+        assertFalse(vectorIndexService.resolveFilter(null, List.of("PUBLISHED"), null).accepts(1L));
+        assertTrue(vectorIndexService.resolveFilter(null, List.of("PUBLISHED"), null).accepts(2L));
+    }
+
+    @Test
+    void testLikesDuringLoadAreCountedOnce() {
+        // 读取向量时提交的点赞已计入数据库中的点赞数，读取重排序特征之后提交的点赞需要重放
+        when(chunkRepository.findReadyEmbeddingsAfter(eq(0L), any())).thenAnswer(invocation -> {
+            vectorIndexService.recordLike(1L);
+            return rows();
+        });
+        when(documentRepository.findRankingFeatures()).thenAnswer(invocation -> {
+            List<Object[]> features = new ArrayList<>();
+            features.add(new Object[]{1L, 0L, 5L, 0});
+            vectorIndexService.recordLike(1L);
+            return features;
+        });
+
+        vectorIndexService.loadIndex();
+
+        // 质量因子为 1 + 点赞数 * 0.01
+        assertEquals(1.06, vectorIndexService.rerankScore(99L, 1L, 1.0), 1e-9);
+    }
+
+    private static List<Object[]> rows() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{10L, 1L, EmbeddingCodec.encode(new float[]{1.0f, 0.0f, 0.0f}), null});
+        rows.add(new Object[]{20L, 2L, EmbeddingCodec.encode(new float[]{0.0f, 1.0f, 0.0f}), null});
+        return rows;
+    }
+
+    private static DocumentChunk chunk(long chunkId, long documentId, float[] vector) {
+        KnowledgeDocument document = new KnowledgeDocument();
+        document.setId(documentId);
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(chunkId);
+        chunk.setDocument(document);
+        chunk.setStatus(DocumentChunk.ChunkStatus.READY);
+        chunk.setEmbeddingArray(vector);
+        return chunk;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.customerservice.service;
+
+import com.example.customerservice.entity.KnowledgeDocument;
+import com.example.customerservice.repository.DocumentChunkRepository;
+import com.example.customerservice.service.VectorStoreService.SimilaritySearchResult;
+import com.example.customerservice.vector.VectorSearchHit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * VectorStoreService单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+@ExtendWith(MockitoExtension.class)
+class VectorStoreServiceTest {
+
+    @Mock
+    private DocumentChunkRepository chunkRepository;
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    @Mock
+    private VectorIndexService vectorIndexService;
+
+    @Mock
+    private ChunkKeywordIndexService chunkKeywordIndexService;
+
+    @InjectMocks
+    private VectorStoreService vectorStoreService;
+
+    @Test
+    void testResultsCarryProjectedDocumentFields() {
+        when(vectorIndexService.findChunkNeighbors(eq(1L), anyInt(), anyDouble())).thenReturn(List.of(
+            new VectorSearchHit(12L, 2L, 0.9),
+            new VectorSearchHit(11L, 1L, 0.8)));
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{11L, 0, "退款流程说明", 6, 1L, "退款政策", null, "七天无理由退款"});
+        rows.add(new Object[]{12L, 3, "配送时效说明", 6, 2L, "配送说明", null, null});
+        when(chunkRepository.findSearchViewsByIds(anyCollection())).thenReturn(rows);
+
+        List<SimilaritySearchResult> results = vectorStoreService.findSimilarChunks(1L, 2);
+
+        // 结果按命中顺序排列，文档视图带上标题和摘要
+        assertEquals(2, results.size());
+        assertEquals(12L, results.get(0).getChunk().getId());
+        assertEquals(3, results.get(0).getChunk().getChunkIndex());
+        assertNull(results.get(0).getChunk().getDocument().getSummary());
+
+        KnowledgeDocument document = results.get(1).getChunk().getDocument();
+        assertEquals(1L, document.getId());
+        assertEquals("退款政策", document.getTitle());
+        assertEquals("七天无理由退款", document.getSummary());
+        verify(chunkRepository).findSearchViewsByIds(anyCollection());
+        verify(chunkRepository, never()).findById(anyLong());
+    }
+}
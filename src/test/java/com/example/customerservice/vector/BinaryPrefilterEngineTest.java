@@ -0,0 +1,91 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinarySignatureIndex与BinaryPrefilterEngine单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class BinaryPrefilterEngineTest {
+
+    @Test
+    void testSignaturePacksSignBits() {
+        float[] vector = new float[70];
+        vector[0] = 0.5f;
+        vector[63] = 1.0f;
+        vector[64] = 2.0f;
+        vector[69] = -1.0f;
+
+        long[] signature = BinarySignatureIndex.signature(vector);
+
+        assertEquals(2, signature.length);
+        assertEquals(1L | (1L << 63), signature[0]);
+        assertEquals(1L, signature[1]);
+    }
+
+    @Test
+    void testCandidatesOrderedByHammingDistance() {
+        BinarySignatureIndex signatures = new BinarySignatureIndex();
+        signatures.upsertBatch(new long[]{1L, 2L, 3L, 4L}, new long[]{10L, 10L, 20L, 20L}, new float[][]{
+            {1f, 1f, 1f, 1f},
+            {1f, 1f, 1f, -1f},
+            {-1f, -1f, 1f, -1f},
+            {-1f, -1f, -1f, -1f}
+        });
+
+        List<VectorSearchHit> hits = signatures.candidates(new float[]{1f, 1f, 1f, 1f}, 3, -1L, null);
+        assertEquals(List.of(1L, 2L, 3L), hits.stream().map(VectorSearchHit::getChunkId).toList());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-9);
+        assertEquals(Math.cos(Math.PI / 4), hits.get(1).getScore(), 1e-9);
+
+        List<VectorSearchHit> filtered = signatures.candidates(new float[]{1f, 1f, 1f, 1f}, 3, 1L, DocumentFilter.of(10L));
+        assertEquals(1, filtered.size());
+        assertEquals(2L, filtered.get(0).getChunkId());
+
+        assertEquals(2, signatures.removeDocument(10L));
+        assertEquals(2, signatures.size());
+        assertEquals(2L * Long.BYTES, signatures.signatureBytes());
+        assertThrows(IllegalArgumentException.class,
+                () -> signatures.upsertBatch(new long[]{5L}, new long[]{30L}, new float[][]{{1f, 1f}}));
+    }
+
+    @Test
+    void testRescoredPrefilterRecallOnRandomCorpus() {
+        FloatVectorIndex full = new FloatVectorIndex();
+        BinarySignatureIndex signatures = new BinarySignatureIndex();
+        Random random = new Random(11);
+        int count = 2000;
+        long[] chunkIds = new long[count];
+        long[] documentIds = new long[count];
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            chunkIds[i] = i;
+            documentIds[i] = i / 10;
+            vectors[i] = new float[64];
+            for (int d = 0; d < 64; d++) {
+                vectors[i][d] = (float) random.nextGaussian();
+            }
+        }
+        full.upsertBatch(chunkIds, documentIds, vectors);
+        signatures.upsertBatch(chunkIds, documentIds, vectors);
+
+        // 候选覆盖全部数据时与精确检索完全一致
+        BinaryPrefilterEngine exhaustive = new BinaryPrefilterEngine(signatures, full, count);
+        float[] query = full.getVector(5L);
+        assertEquals(full.search(query, 10, -1.0, 5L).stream().map(VectorSearchHit::getChunkId).toList(),
+                exhaustive.search(query, 10, -1.0, 5L).stream().map(VectorSearchHit::getChunkId).toList());
+
+        BinaryPrefilterEngine prefilter = new BinaryPrefilterEngine(signatures, full, 400);
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(prefilter, 50, 10, 3L);
+        assertEquals(50, report.getQueries());
+        assertTrue(report.getRecall() > 0.8, "recall=" + report.getRecall());
+        assertThrows(UnsupportedOperationException.class, () -> prefilter.remove(1L));
+    }
+}
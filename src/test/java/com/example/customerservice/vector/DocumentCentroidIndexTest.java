@@ -0,0 +1,68 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DocumentCentroidIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class DocumentCentroidIndexTest {
+
+    private DocumentCentroidIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new DocumentCentroidIndex();
+        index.addBatch(new long[]{1L, 1L, 2L},
+            new float[][]{{2.0f, 0.0f, 0.0f}, {0.0f, 3.0f, 0.0f}, {0.0f, 0.0f, 1.0f}});
+    }
+
+    @Test
+    void testCentroidIsNormalizedMeanOfUnitVectors() {
+        float[] centroid = index.getCentroid(1L);
+
+        // 分块向量先归一化，长度不同的分块权重相同
+        float expected = (float) (1.0 / Math.sqrt(2.0));
+        assertArrayEquals(new float[]{expected, expected, 0.0f}, centroid, 1e-6f);
+        assertEquals(2, index.chunkCount(1L));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void testIncrementalAddMovesCentroid() {
+        index.addBatch(new long[]{2L}, new float[][]{{0.0f, 1.0f, 0.0f}});
+
+        float expected = (float) (1.0 / Math.sqrt(2.0));
+        assertArrayEquals(new float[]{0.0f, expected, expected}, index.getCentroid(2L), 1e-6f);
+    }
+
+    @Test
+    void testSearchDocumentsRanksByCentroidAndHonoursFilter() {
+        List<VectorSearchHit> hits = index.searchDocuments(new float[]{0.0f, 0.1f, 1.0f}, 2, null);
+
+        assertEquals(2, hits.size());
+        assertEquals(2L, hits.get(0).getDocumentId());
+        assertEquals(1L, hits.get(1).getDocumentId());
+
+        List<VectorSearchHit> filtered = index.searchDocuments(new float[]{0.0f, 0.1f, 1.0f}, 2, DocumentFilter.of(1L));
+        assertEquals(1, filtered.size());
+        assertEquals(1L, filtered.get(0).getDocumentId());
+    }
+
+    @Test
+    void testRemoveDocumentStartsFresh() {
+        index.removeDocument(1L);
+        assertNull(index.getCentroid(1L));
+
+        index.addBatch(new long[]{1L}, new float[][]{{0.0f, 0.0f, 5.0f}});
+        assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f}, index.getCentroid(1L), 1e-6f);
+        assertEquals(1, index.chunkCount(1L));
+    }
+}
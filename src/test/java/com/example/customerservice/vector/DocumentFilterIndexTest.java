@@ -0,0 +1,82 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DocumentFilterIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class DocumentFilterIndexTest {
+
+    private DocumentFilterIndex filterIndex;
+
+    @BeforeEach
+    void setUp() {
+        filterIndex = new DocumentFilterIndex();
+        // 分类树: 1 -> 2 -> 3, 1 -> 4, 5
+        filterIndex.putCategory(1L, null);
+        filterIndex.putCategory(2L, 1L);
+        filterIndex.putCategory(3L, 2L);
+        filterIndex.putCategory(4L, 1L);
+        filterIndex.putCategory(5L, null);
+
+        filterIndex.putDocument(100L, 1L, "PUBLISHED", List.of("退款"));
+        filterIndex.putDocument(101L, 3L, "PUBLISHED", List.of("物流", "退款"));
+        filterIndex.putDocument(102L, 4L, "DRAFT", List.of("物流"));
+        filterIndex.putDocument(103L, 5L, "PUBLISHED", null);
+    }
+
+    @Test
+    void testNoCriteriaMeansNoFilter() {
+        assertNull(filterIndex.resolve(null, null, List.of()));
+    }
+
+    @Test
+    void testCategoryFilterIncludesSubtree() {
+        DocumentFilter filter = filterIndex.resolve(1L, null, null);
+
+        assertEquals(3, filter.cardinality());
+        assertTrue(filter.accepts(101L));
+        assertFalse(filter.accepts(103L));
+        assertEquals(Set.of(2L, 3L), filterIndex.subtree(2L));
+    }
+
+    @Test
+    void testDimensionsAreIntersected() {
+        DocumentFilter filter = filterIndex.resolve(1L, List.of("published"), List.of(" 物流 "));
+
+        assertEquals(1, filter.cardinality());
+        assertTrue(filter.accepts(101L));
+    }
+
+    @Test
+    void testUpdatesReplacePreviousAttributes() {
+        filterIndex.putDocument(102L, 5L, "PUBLISHED", List.of());
+        filterIndex.removeDocument(100L);
+
+        assertEquals(1, filterIndex.resolve(1L, null, null).cardinality());
+        assertTrue(filterIndex.resolve(null, null, List.of("物流")).accepts(101L));
+        assertFalse(filterIndex.resolve(null, null, List.of("物流")).accepts(102L));
+
+        // 移动分类后子树随之变化
+        filterIndex.putCategory(3L, 5L);
+        assertEquals(0, filterIndex.resolve(1L, null, null).cardinality());
+        assertEquals(3, filterIndex.resolve(5L, null, null).cardinality());
+    }
+
+    @Test
+    void testUnknownCategoryMatchesNothing() {
+        DocumentFilter filter = filterIndex.resolve(99L, null, null);
+
+        assertTrue(filter.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> filterIndex.putDocument(-1L, 1L, null, null));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EmbeddingCodec单元测试
+ * 
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class EmbeddingCodecTest {
+    
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        float[] vector = {0.125f, -1.5f, 3.0e-7f, Float.MAX_VALUE};
+        
+        byte[] data = EmbeddingCodec.encode(vector);
+        
+        // 8字节头部 + 4字节 * 维度
+        assertEquals(EmbeddingCodec.HEADER_BYTES + 16, data.length);
+        assertEquals(4, EmbeddingCodec.dimension(data));
+        assertArrayEquals(vector, EmbeddingCodec.decode(data));
+    }
+    
+    @Test
+    void testEncodingIsLittleEndian() {
+        byte[] data = EmbeddingCodec.encode(new float[]{1.0f});
+        
+        // 1.0f = 0x3F800000，小端序存储为 00 00 80 3F
+        assertEquals(EmbeddingCodec.FORMAT_VERSION, data[0]);
+        assertEquals(1, data[4]);
+        assertEquals((byte) 0x00, data[8]);
+        assertEquals((byte) 0x80, data[10]);
+        assertEquals((byte) 0x3F, data[11]);
+    }
+    
+    @Test
+    void testDecodeIntoAndFloatBufferView() {
+        byte[] data = EmbeddingCodec.encode(new float[]{1.0f, 2.0f});
+        
+        float[] target = new float[5];
+        assertEquals(2, EmbeddingCodec.decodeInto(data, target, 3));
+        assertEquals(1.0f, target[3]);
+        assertEquals(2.0f, target[4]);
+        
+        FloatBuffer view = EmbeddingCodec.asFloatBuffer(data);
+        assertEquals(2, view.remaining());
+        assertEquals(2.0f, view.get(1));
+    }
+    
+    @Test
+    void testInvalidDataIsRejected() {
+        byte[] data = EmbeddingCodec.encode(new float[]{1.0f, 2.0f});
+        
+        byte[] truncated = java.util.Arrays.copyOf(data, data.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decode(truncated));
+        
+        data[0] = 99;
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decode(data));
+    }
+    
+    @Test
+    void testParseLegacyText() {
+        assertArrayEquals(new float[]{0.1f, -0.2f, 3.0f}, EmbeddingCodec.parseText("[0.1, -0.2,3.0]"));
+        assertArrayEquals(new float[]{0.5f}, EmbeddingCodec.parseText(" [0.5] "));
+        assertNull(EmbeddingCodec.parseText("[]"));
+        assertNull(EmbeddingCodec.parseText("[0.1,abc]"));
+        assertNull(EmbeddingCodec.parseText(null));
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * FloatVectorIndex单元测试
+ * 
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class FloatVectorIndexTest {
+    
+    private FloatVectorIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new FloatVectorIndex();
+        index.upsert(1L, 10L, new float[]{1.0f, 0.0f, 0.0f});
+        index.upsert(2L, 10L, new float[]{0.9f, 0.1f, 0.0f});
+        index.upsert(3L, 20L, new float[]{0.0f, 1.0f, 0.0f});
+        index.upsert(4L, 30L, new float[]{0.0f, 0.0f, 1.0f});
+    }
+    
+    @Test
+    void testSearchReturnsTopKInScoreOrder() {
+        List<VectorSearchHit> hits = index.search(new float[]{1.0f, 0.0f, 0.0f}, 2, 0.0, -1L);
+        
+        assertEquals(2, hits.size());
+        assertEquals(1L, hits.get(0).getChunkId());
+        assertEquals(2L, hits.get(1).getChunkId());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        assertTrue(hits.get(0).getScore() >= hits.get(1).getScore());
+    }
+    
+    @Test
+    void testSearchAppliesThresholdAndExclusion() {
+        List<VectorSearchHit> hits = index.search(new float[]{1.0f, 0.0f, 0.0f}, 10, 0.5, 1L);
+        
+        // 排除参考分块后只剩下一个满足阈值的结果
+        assertEquals(1, hits.size());
+        assertEquals(2L, hits.get(0).getChunkId());
+        assertEquals(10L, hits.get(0).getDocumentId());
+    }
+    
+    @Test
+    void testUpsertReplacesExistingVector() {
+        index.upsert(4L, 30L, new float[]{1.0f, 0.0f, 0.0f});
+        
+        assertEquals(4, index.size());
+        assertArrayEquals(new float[]{1.0f, 0.0f, 0.0f}, index.getVector(4L));
+    }
+    
+    @Test
+    void testRemoveKeepsRemainingRowsAddressable() {
+        assertTrue(index.remove(1L));
+        assertFalse(index.remove(1L));
+        
+        assertEquals(3, index.size());
+        assertNull(index.getVector(1L));
+        // 末行被移动到空出的位置后仍能正确读取
+        assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f}, index.getVector(4L));
+    }
+    
+    @Test
+    void testRemoveDocument() {
+        assertEquals(2, index.removeDocument(10L));
+        
+        assertEquals(2, index.size());
+        assertFalse(index.contains(1L));
+        assertFalse(index.contains(2L));
+        assertTrue(index.contains(3L));
+        assertTrue(index.contains(4L));
+    }
+    
+    @Test
+    void testDimensionMismatchIsRejected() {
+        assertThrows(IllegalArgumentException.class, 
+            () -> index.upsert(5L, 40L, new float[]{1.0f, 0.0f}));
+        assertThrows(IllegalArgumentException.class, 
+            () -> index.search(new float[]{1.0f, 0.0f}, 1, 0.0, -1L));
+    }
+    
+    @Test
+    void testCapacityStaysWithinSingleArray() {
+        int dimension = 1536;
+        int maxRows = FloatVectorIndex.MAX_ARRAY_LENGTH / dimension;
+        assertEquals(1024, FloatVectorIndex.grownCapacity(0, 1, dimension));
+        assertEquals(4096, FloatVectorIndex.grownCapacity(2048, 2049, dimension));
+        // 两倍增长会越界时截断到上限，超出上限时提示改用其他引擎
+        assertEquals(maxRows, FloatVectorIndex.grownCapacity(maxRows - 1, maxRows, dimension));
+        assertThrows(IllegalStateException.class,
+                () -> FloatVectorIndex.grownCapacity(maxRows, maxRows + 1, dimension));
+    }
+    
+    @Test
+    void testFilterRestrictsCandidatesBeforeRanking() {
+        List<VectorSearchHit> hits = index.search(new float[]{1.0f, 0.0f, 0.0f}, 2, -1.0, -1L,
+                DocumentFilter.of(20L, 30L));
+
+        // 文档10的两个分块最相似，但被过滤后仍能返回满额的结果
+        assertEquals(2, hits.size());
+        assertTrue(hits.stream().noneMatch(hit -> hit.getDocumentId() == 10L));
+        assertTrue(index.search(new float[]{1.0f, 0.0f, 0.0f}, 2, -1.0, -1L, DocumentFilter.of()).isEmpty());
+    }
+    
+    @Test
+    void testParallelSearchMatchesSingleThreadedSearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // 分区大小和阈值设得很小，强制走并行路径
+            FloatVectorIndex parallelIndex = new FloatVectorIndex(pool, 64, 100);
+            FloatVectorIndex serialIndex = new FloatVectorIndex();
+            Random random = new Random(7L);
+            for (long chunkId = 1; chunkId <= 2000; chunkId++) {
+                float[] vector = new float[16];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+                parallelIndex.upsert(chunkId, chunkId, vector);
+                serialIndex.upsert(chunkId, chunkId, vector);
+            }
+            
+            float[] query = serialIndex.getVector(123L);
+            List<VectorSearchHit> expected = serialIndex.search(query, 20, 0.1, 123L);
+            List<VectorSearchHit> actual = parallelIndex.search(query, 20, 0.1, 123L);
+            
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getChunkId(), actual.get(i).getChunkId());
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-9);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    void testBatchSearchMatchesPerQuerySearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FloatVectorIndex parallelIndex = new FloatVectorIndex(pool, 64, 100);
+            FloatVectorIndex serialIndex = new FloatVectorIndex();
+            Random random = new Random(11L);
+            for (long chunkId = 1; chunkId <= 2000; chunkId++) {
+                float[] vector = new float[16];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+                parallelIndex.upsert(chunkId, chunkId / 10, vector);
+                serialIndex.upsert(chunkId, chunkId / 10, vector);
+            }
+            
+            float[][] queries = new float[5][];
+            for (int q = 0; q < 4; q++) {
+                queries[q] = serialIndex.getVector(100L + q * 97);
+            }
+            // 空查询对应空结果，不影响其他查询
+            queries[4] = null;
+            DocumentFilter filter = DocumentFilter.of(10L, 20L, 30L, 40L, 50L);
+            
+            for (FloatVectorIndex target : List.of(serialIndex, parallelIndex)) {
+                for (DocumentFilter f : Arrays.asList(null, filter)) {
+                    List<List<VectorSearchHit>> batch = target.searchBatch(queries, 10, 0.0, f);
+                    assertEquals(queries.length, batch.size());
+                    assertTrue(batch.get(4).isEmpty());
+                    for (int q = 0; q < 4; q++) {
+                        List<VectorSearchHit> expected = serialIndex.search(queries[q], 10, 0.0, -1L, f);
+                        List<VectorSearchHit> actual = batch.get(q);
+                        assertEquals(expected.size(), actual.size());
+                        for (int i = 0; i < expected.size(); i++) {
+                            assertEquals(expected.get(i).getChunkId(), actual.get(i).getChunkId());
+                            assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-6);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    @Test
+    void testGroupedSearchCollapsesByDocument() {
+        List<VectorSearchHit> hits = index.searchGrouped(new float[]{1.0f, 0.2f, 0.0f}, 2, 1, 0.0, null);
+        
+        // 文档10的两个分块只保留最相似的一个，第二个名额让给文档20
+        assertEquals(2, hits.size());
+        assertEquals(10L, hits.get(0).getDocumentId());
+        assertEquals(20L, hits.get(1).getDocumentId());
+        
+        List<VectorSearchHit> twoPerDocument = index.searchGrouped(new float[]{1.0f, 0.2f, 0.0f}, 1, 2, 0.0, null);
+        assertEquals(2, twoPerDocument.size());
+        assertTrue(twoPerDocument.stream().allMatch(hit -> hit.getDocumentId() == 10L));
+    }
+    
+    @Test
+    void testParallelGroupedSearchMatchesSingleThreadedSearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FloatVectorIndex parallelIndex = new FloatVectorIndex(pool, 64, 100);
+            FloatVectorIndex serialIndex = new FloatVectorIndex();
+            Random random = new Random(13L);
+            for (long chunkId = 1; chunkId <= 2000; chunkId++) {
+                float[] vector = new float[16];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = (float) random.nextGaussian();
+                }
+                parallelIndex.upsert(chunkId, chunkId % 50, vector);
+                serialIndex.upsert(chunkId, chunkId % 50, vector);
+            }
+            
+            float[] query = serialIndex.getVector(321L);
+            List<VectorSearchHit> expected = serialIndex.searchGrouped(query, 5, 3, 0.0, null);
+            List<VectorSearchHit> actual = parallelIndex.searchGrouped(query, 5, 3, 0.0, null);
+            
+            // 文档集合和每个文档的最高分是精确的，与分区方式无关
+            assertEquals(bestByDocument(expected), bestByDocument(actual));
+            assertEquals(5, bestByDocument(actual).size());
+            assertEquals(expected.get(0).getChunkId(), actual.get(0).getChunkId());
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    private static Map<Long, Double> bestByDocument(List<VectorSearchHit> hits) {
+        Map<Long, Double> best = new HashMap<>();
+        for (VectorSearchHit hit : hits) {
+            best.merge(hit.getDocumentId(), hit.getScore(), Math::max);
+        }
+        return best;
+    }
+}
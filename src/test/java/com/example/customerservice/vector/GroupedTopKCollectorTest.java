@@ -0,0 +1,114 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GroupedTopKCollector单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class GroupedTopKCollectorTest {
+
+    @Test
+    void testKeepsBestGroupsAndBestItemsPerGroup() {
+        GroupedTopKCollector collector = new GroupedTopKCollector(2, 2);
+        // 文档10的五个分块都比其他文档高，但最多只保留两个
+        collector.offer(1L, 10L, 0.99);
+        collector.offer(2L, 10L, 0.98);
+        collector.offer(3L, 10L, 0.97);
+        collector.offer(4L, 10L, 0.96);
+        collector.offer(5L, 20L, 0.80);
+        collector.offer(6L, 30L, 0.70);
+        collector.offer(7L, 20L, 0.85);
+        collector.offer(8L, 20L, 0.60);
+
+        assertEquals(2, collector.groupCount());
+        assertEquals(4, collector.sortDescending());
+        long[] expectedIds = {1L, 2L, 7L, 5L};
+        long[] expectedGroups = {10L, 10L, 20L, 20L};
+        for (int rank = 0; rank < expectedIds.length; rank++) {
+            assertEquals(expectedIds[rank], collector.id(rank));
+            assertEquals(expectedGroups[rank], collector.group(rank));
+        }
+        assertThrows(IllegalStateException.class, () -> collector.offer(9L, 40L, 1.0));
+    }
+
+    @Test
+    void testGroupSetAndBestScoresAreExact() {
+        Random random = new Random(3L);
+        int groups = 5;
+        int perGroup = 3;
+        long[] groupOf = new long[5_000];
+        double[] scores = new double[groupOf.length];
+        GroupedTopKCollector collector = new GroupedTopKCollector(groups, perGroup);
+        for (int i = 0; i < scores.length; i++) {
+            groupOf[i] = random.nextInt(200);
+            scores[i] = random.nextDouble();
+            collector.offer(i, groupOf[i], scores[i]);
+        }
+
+        // 按组取最高分，期望的组集合为最高分排前G名的组
+        Map<Long, Double> bestByGroup = new HashMap<>();
+        for (int i = 0; i < scores.length; i++) {
+            bestByGroup.merge(groupOf[i], scores[i], Math::max);
+        }
+        List<Map.Entry<Long, Double>> ranked = new ArrayList<>(bestByGroup.entrySet());
+        ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed());
+        Map<Long, Double> expected = new HashMap<>();
+        for (Map.Entry<Long, Double> entry : ranked.subList(0, groups)) {
+            expected.put(entry.getKey(), entry.getValue());
+        }
+
+        int resultCount = collector.sortDescending();
+        Map<Long, Double> actual = new HashMap<>();
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int rank = 0; rank < resultCount; rank++) {
+            assertEquals(scores[(int) collector.id(rank)], collector.score(rank), 0.0);
+            if (rank > 0) {
+                assertTrue(collector.score(rank - 1) >= collector.score(rank));
+            }
+            actual.merge(collector.group(rank), collector.score(rank), Math::max);
+            counts.merge(collector.group(rank), 1, Integer::sum);
+        }
+        assertEquals(expected, actual);
+        assertTrue(counts.values().stream().allMatch(count -> count <= perGroup));
+    }
+
+    @Test
+    void testAddAllMergesPartitions() {
+        GroupedTopKCollector left = new GroupedTopKCollector(2, 1);
+        GroupedTopKCollector right = new GroupedTopKCollector(2, 1);
+        left.offer(1L, 10L, 0.9);
+        left.offer(2L, 20L, 0.5);
+        right.offer(3L, 30L, 0.7);
+        right.offer(4L, 10L, 0.95);
+
+        right.addAll(left);
+
+        assertEquals(2, right.sortDescending());
+        assertEquals(4L, right.id(0));
+        assertEquals(3L, right.id(1));
+    }
+
+    @Test
+    void testMinScoreAndZeroCapacity() {
+        GroupedTopKCollector collector = new GroupedTopKCollector(3, 2, 0.5);
+        assertFalse(collector.offer(1L, 10L, 0.4));
+        assertTrue(collector.offer(2L, 10L, 0.6));
+        assertEquals(1, collector.sortDescending());
+
+        GroupedTopKCollector empty = new GroupedTopKCollector(0, 2);
+        assertFalse(empty.offer(1L, 10L, 1.0));
+        assertEquals(0, empty.sortDescending());
+        assertThrows(IllegalArgumentException.class, () -> new GroupedTopKCollector(-1, 1));
+    }
+}
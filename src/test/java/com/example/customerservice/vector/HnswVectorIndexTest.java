@@ -0,0 +1,146 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HnswVectorIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class HnswVectorIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    private HnswVectorIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new HnswVectorIndex(8, 100, 50);
+        Random random = new Random(1L);
+        for (long chunkId = 1; chunkId <= 1000; chunkId++) {
+            index.upsert(chunkId, chunkId / 10, randomVector(random));
+        }
+    }
+
+    @Test
+    void testRecallAgainstExactSearch() {
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(index, 50, 10, 3L);
+
+        assertEquals(HnswVectorIndex.ENGINE_NAME, report.getEngine());
+        assertEquals(50, report.getQueries());
+        assertTrue(report.getRecall() >= 0.9, "recall过低: " + report.getRecall());
+    }
+
+    @Test
+    void testSearchFindsSelfAndHonoursExclusion() {
+        float[] query = index.getVector(500L);
+
+        List<VectorSearchHit> hits = index.search(query, 5, 0.0, -1L);
+        assertEquals(500L, hits.get(0).getChunkId());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-5);
+
+        hits = index.search(query, 5, -1.0, 500L);
+        assertEquals(5, hits.size());
+        assertTrue(hits.stream().noneMatch(hit -> hit.getChunkId() == 500L));
+    }
+
+    @Test
+    void testRemovedChunksAreNotReturned() {
+        float[] query = index.getVector(42L);
+
+        assertTrue(index.remove(42L));
+        assertFalse(index.contains(42L));
+        assertEquals(10, index.removeDocument(50L));
+        assertEquals(989, index.size());
+
+        List<VectorSearchHit> hits = index.search(query, 20, -1.0, -1L);
+        assertTrue(hits.stream().noneMatch(hit -> hit.getChunkId() == 42L || hit.getDocumentId() == 50L));
+    }
+
+    @Test
+    void testUpsertReplacesVector() {
+        float[] vector = new float[DIMENSION];
+        vector[0] = 1.0f;
+        index.upsert(7L, 0L, vector);
+
+        assertEquals(1000, index.size());
+        List<VectorSearchHit> hits = index.search(vector, 1, 0.0, -1L);
+        assertEquals(7L, hits.get(0).getChunkId());
+    }
+
+    @Test
+    void testDeletedNodesAreCompacted() {
+        for (long chunkId = 1; chunkId <= 400; chunkId++) {
+            index.remove(chunkId);
+        }
+
+        // 墓碑超过30%时触发重建
+        assertEquals(600, index.size());
+        assertTrue(index.deletedCount() < 300);
+        assertEquals(600, index.chunkIds().length);
+    }
+
+    @Test
+    void testSelectiveFilterReturnsOnlyAcceptedDocuments() {
+        float[] query = index.getVector(500L);
+
+        // 只有10个分块满足条件，走暴力打分路径
+        List<VectorSearchHit> hits = index.search(query, 20, -1.0, -1L, DocumentFilter.of(7L));
+
+        assertEquals(10, hits.size());
+        assertTrue(hits.stream().allMatch(hit -> hit.getDocumentId() == 7L));
+        assertTrue(index.search(query, 5, -1.0, -1L, DocumentFilter.of(5000L)).isEmpty());
+    }
+
+    @Test
+    void testBroadFilterTraversesGraphWithHighRecall() {
+        long[] documentIds = new long[101];
+        int count = 0;
+        for (long documentId = 0; documentId <= 100; documentId++) {
+            if (documentId % 3 != 0) {
+                documentIds[count++] = documentId;
+            }
+        }
+        DocumentFilter filter = DocumentFilter.of(Arrays.copyOf(documentIds, count));
+
+        Random random = new Random(9L);
+        int found = 0;
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector(random);
+            List<VectorSearchHit> hits = index.search(query, 10, -1.0, -1L, filter);
+            assertEquals(10, hits.size());
+            assertTrue(hits.stream().allMatch(hit -> filter.accepts(hit.getDocumentId())));
+
+            Set<Long> expected = new HashSet<>();
+            for (VectorSearchHit hit : index.searchExact(query, 200, -1.0, -1L)) {
+                if (filter.accepts(hit.getDocumentId()) && expected.size() < 10) {
+                    expected.add(hit.getChunkId());
+                }
+            }
+            for (VectorSearchHit hit : hits) {
+                if (expected.contains(hit.getChunkId())) {
+                    found++;
+                }
+            }
+        }
+        assertTrue(found >= 180, "过滤检索召回率过低: " + found / 200.0);
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
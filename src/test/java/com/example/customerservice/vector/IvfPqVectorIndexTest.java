@@ -0,0 +1,133 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IvfPqVectorIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class IvfPqVectorIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void testPendingVectorsSearchedExactlyBeforeTraining() {
+        IvfPqVectorIndex index = new IvfPqVectorIndex(4, 4, 2, 100, 5, 4);
+        index.upsert(1L, 10L, new float[]{1.0f, 0.0f, 0.0f, 0.0f});
+        index.upsert(2L, 10L, new float[]{0.0f, 1.0f, 0.0f, 0.0f});
+        index.upsert(3L, 20L, new float[]{0.6f, 0.8f, 0.0f, 0.0f});
+
+        assertFalse(index.isTrained());
+        List<VectorSearchHit> hits = index.search(new float[]{1.0f, 0.0f, 0.0f, 0.0f}, 2, 0.0, -1L, null);
+        assertEquals(List.of(1L, 3L), hits.stream().map(VectorSearchHit::getChunkId).toList());
+        assertEquals(0.6, hits.get(1).getScore(), 1e-6);
+
+        assertEquals(2, index.removeDocument(10L));
+        assertEquals(1, index.size());
+        assertThrows(IllegalArgumentException.class, () -> index.upsert(4L, 20L, new float[]{1.0f, 0.0f}));
+    }
+
+    @Test
+    void testTrainsAtThresholdAndKeepsRecall() {
+        IvfPqVectorIndex index = new IvfPqVectorIndex(16, 8, 4, 1000, 8, 4);
+        Map<Long, float[]> vectors = fillClustered(index, 2000, 7);
+
+        assertTrue(index.isTrained());
+        assertEquals(16, index.listCount());
+        assertEquals(2000, index.size());
+        assertEquals(2000L * 8, index.codeBytes());
+
+        // 重建向量与原向量方向一致
+        float[] original = VectorMath.normalize(vectors.get(5L));
+        assertTrue(VectorMath.dot(original, VectorMath.normalize(index.getVector(5L))) > 0.8);
+
+        index.setVectorLoader(ids -> {
+            Map<Long, float[]> loaded = new HashMap<>();
+            for (long id : ids) {
+                loaded.put(id, vectors.get(id));
+            }
+            return loaded;
+        });
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(index, 50, 10, 3L);
+        assertTrue(report.getRecall() > 0.8, "recall=" + report.getRecall());
+
+        List<VectorSearchHit> hits = index.search(vectors.get(5L), 1, 0.0, -1L, null);
+        assertEquals(5L, hits.get(0).getChunkId());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-5);
+
+        assertTrue(index.remove(5L));
+        assertFalse(index.contains(5L));
+        assertEquals(1999, index.chunkIds().length);
+    }
+
+    @Test
+    void testSaveAndLoadWithoutRetraining() throws Exception {
+        IvfPqVectorIndex index = new IvfPqVectorIndex(8, 4, 8, 500, 5, 4);
+        Map<Long, float[]> vectors = fillClustered(index, 800, 13);
+        Path tempDir = Files.createTempDirectory("ivfpq");
+        assertTrue(index.save(tempDir));
+
+        IvfPqVectorIndex restored = new IvfPqVectorIndex(8, 4, 8, 500, 5, 4);
+        assertTrue(restored.loadCodebooks(tempDir));
+        assertTrue(restored.isTrained());
+        assertEquals(800, restored.loadLists(tempDir));
+        assertEquals(index.getWatermark(), restored.getWatermark());
+        assertArrayEquals(index.getVector(42L), restored.getVector(42L));
+
+        float[] query = vectors.get(42L);
+        assertEquals(index.search(query, 10, -1.0, -1L, null).stream().map(VectorSearchHit::getChunkId).toList(),
+                restored.search(query, 10, -1.0, -1L, null).stream().map(VectorSearchHit::getChunkId).toList());
+
+        // 已加载码本时新向量直接编码
+        restored.upsert(5000L, 1L, query);
+        assertEquals(801, restored.size());
+        assertEquals(5000L, restored.getWatermark());
+
+        // 与其他训练结果的快照不匹配
+        IvfPqVectorIndex other = new IvfPqVectorIndex(8, 4, 8, 500, 5, 4);
+        fillClustered(other, 600, 17);
+        assertEquals(-1, other.loadLists(tempDir));
+        assertThrows(IllegalStateException.class, () -> other.loadCodebooks(tempDir));
+    }
+
+    /**
+     * 写入围绕若干随机中心分布的向量，分块ID从0开始
+     */
+    private static Map<Long, float[]> fillClustered(IvfPqVectorIndex index, int count, long seed) {
+        Random random = new Random(seed);
+        float[][] centers = new float[20][DIMENSION];
+        for (float[] center : centers) {
+            for (int d = 0; d < DIMENSION; d++) {
+                center[d] = (float) random.nextGaussian();
+            }
+        }
+        Map<Long, float[]> vectors = new HashMap<>();
+        long[] chunkIds = new long[count];
+        long[] documentIds = new long[count];
+        float[][] batch = new float[count][];
+        for (int i = 0; i < count; i++) {
+            float[] center = centers[random.nextInt(centers.length)];
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = center[d] + 0.5f * (float) random.nextGaussian();
+            }
+            chunkIds[i] = i;
+            documentIds[i] = i / 10;
+            batch[i] = vector;
+            vectors.put((long) i, vector);
+        }
+        assertEquals(count, index.upsertBatch(chunkIds, documentIds, batch));
+        return vectors;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NeighborListStore单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class NeighborListStoreTest {
+
+    private NeighborListStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new NeighborListStore(3);
+    }
+
+    @Test
+    void testPutTruncatesToCapacity() {
+        store.put(1L, 10L, List.of(
+            new VectorSearchHit(2L, 20L, 0.9),
+            new VectorSearchHit(3L, 30L, 0.8),
+            new VectorSearchHit(4L, 40L, 0.7),
+            new VectorSearchHit(5L, 50L, 0.6)));
+
+        NeighborListStore.NeighborList list = store.get(1L);
+        assertEquals(3, list.size());
+        assertEquals(2L, list.id(0));
+        assertEquals(40L, list.group(2));
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void testOfferInsertsInScoreOrder() {
+        store.put(1L, 10L, List.of(
+            new VectorSearchHit(2L, 20L, 0.9),
+            new VectorSearchHit(3L, 30L, 0.5)));
+
+        store.offer(1L, 4L, 40L, 0.7);
+        store.offer(1L, 5L, 50L, 0.95);
+        // 列表已满且不高于末位
+        store.offer(1L, 6L, 60L, 0.6);
+        // 已存在
+        store.offer(1L, 2L, 20L, 0.99);
+        // 没有列表的对象忽略
+        store.offer(9L, 4L, 40L, 0.7);
+
+        NeighborListStore.NeighborList list = store.get(1L);
+        assertEquals(3, list.size());
+        assertEquals(5L, list.id(0));
+        assertEquals(2L, list.id(1));
+        assertEquals(4L, list.id(2));
+        assertNull(store.get(9L));
+    }
+
+    @Test
+    void testWatermarkTracksOldestPendingChange() {
+        store.markDirty(1L);
+        store.markDirty(2L);
+        store.markDirty(1L);
+        assertEquals(2, store.getChangeSequence());
+        assertEquals(0, store.getWatermark());
+
+        long[] polled = store.pollDirty(1);
+        assertArrayEquals(new long[]{1L}, polled);
+        assertTrue(store.isPending(1L));
+        assertEquals(0, store.getWatermark());
+
+        store.put(1L, 10L, List.of());
+        assertEquals(1, store.getWatermark());
+        assertEquals(1, store.get(1L).getSequence());
+
+        store.pollDirty(10);
+        store.put(2L, 10L, List.of());
+        assertEquals(2, store.getWatermark());
+        assertEquals(0, store.pendingCount());
+    }
+
+    @Test
+    void testRemoveGroupDropsListsAndPendingEntries() {
+        store.put(1L, 10L, List.of());
+        store.put(2L, 10L, List.of());
+        store.put(3L, 20L, List.of());
+        store.markDirty(2L);
+
+        assertEquals(2, store.removeGroup(10L));
+        assertNull(store.get(1L));
+        assertNull(store.get(2L));
+        assertNotNull(store.get(3L));
+        assertEquals(0, store.pendingCount());
+        assertEquals(0, store.removeGroup(10L));
+    }
+
+    @Test
+    void testInvalidCapacityIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new NeighborListStore(0));
+    }
+}
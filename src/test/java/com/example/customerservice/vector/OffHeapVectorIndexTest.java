@@ -0,0 +1,115 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OffHeapVectorIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class OffHeapVectorIndexTest {
+
+    /**
+     * 每页容纳4个三维向量，小数据量即可覆盖跨页
+     */
+    private static final int PAGE_BYTES = 4 * 3 * Float.BYTES;
+
+    private OffHeapVectorIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new OffHeapVectorIndex(PAGE_BYTES);
+        index.upsert(1L, 10L, new float[]{1.0f, 0.0f, 0.0f});
+        index.upsert(2L, 10L, new float[]{0.0f, 1.0f, 0.0f});
+        index.upsert(3L, 20L, new float[]{0.7f, 0.7f, 0.0f});
+        index.upsert(4L, 20L, new float[]{2.0f, 0.0f, 0.0f});
+        index.upsert(5L, 30L, new float[]{0.0f, 0.0f, 1.0f});
+    }
+
+    @Test
+    void testSearchAcrossPages() {
+        List<VectorSearchHit> hits = index.search(new float[]{1.0f, 0.0f, 0.0f}, 3, 0.5, -1L, null);
+
+        assertEquals(3, hits.size());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        assertEquals(3L, hits.get(2).getChunkId());
+        assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f}, index.getVector(5L));
+        assertEquals(2L * PAGE_BYTES, index.offHeapBytes());
+    }
+
+    @Test
+    void testRemoveDocumentMovesLastRowAndReleasesPages() {
+        assertEquals(2, index.removeDocument(10L));
+
+        assertEquals(3, index.size());
+        assertNull(index.getVector(1L));
+        assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f}, index.getVector(5L));
+        List<VectorSearchHit> hits = index.search(new float[]{0.0f, 0.0f, 1.0f}, 1, 0.0, -1L, null);
+        assertEquals(5L, hits.get(0).getChunkId());
+
+        // 扩到三页后删除，只保留一个已用页和一个空闲页
+        for (long chunkId = 6L; chunkId <= 11L; chunkId++) {
+            index.upsert(chunkId, 40L, new float[]{1.0f, 1.0f, 1.0f});
+        }
+        assertEquals(3L * PAGE_BYTES, index.offHeapBytes());
+        assertEquals(6, index.removeDocument(40L));
+        assertEquals(2L * PAGE_BYTES, index.offHeapBytes());
+    }
+
+    @Test
+    void testMatchesHeapIndexWithParallelAndBatchSearch() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            OffHeapVectorIndex offHeap = new OffHeapVectorIndex(pool, 500, 1000, 64 * 1024);
+            FloatVectorIndex heap = new FloatVectorIndex();
+            Random random = new Random(7);
+            for (int i = 0; i < 3000; i++) {
+                float[] vector = new float[32];
+                for (int d = 0; d < vector.length; d++) {
+                    vector[d] = (float) random.nextGaussian();
+                }
+                offHeap.upsert(i, i % 50, vector);
+                heap.upsert(i, i % 50, vector);
+            }
+
+            float[][] queries = {heap.getVector(17L), heap.getVector(2999L), null};
+            DocumentFilter filter = DocumentFilter.of(1L, 2L, 3L);
+            for (float[] query : new float[][]{queries[0], queries[1]}) {
+                assertSameHits(heap.search(query, 10, -1.0, 17L, filter),
+                        offHeap.search(query, 10, -1.0, 17L, filter));
+            }
+            List<List<VectorSearchHit>> batch = offHeap.searchBatch(queries, 10, -1.0, null);
+            assertSameHits(heap.search(queries[1], 10, -1.0, -1L, null), batch.get(1));
+            assertTrue(batch.get(2).isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testCloseReleasesPagesAndRejectsWrites() {
+        index.close();
+
+        assertTrue(index.isClosed());
+        assertEquals(0, index.size());
+        assertEquals(0L, index.offHeapBytes());
+        assertTrue(index.search(new float[]{1.0f, 0.0f, 0.0f}, 3, 0.0, -1L, null).isEmpty());
+        assertThrows(IllegalStateException.class, () -> index.upsert(6L, 10L, new float[]{1.0f, 0.0f, 0.0f}));
+    }
+
+    private static void assertSameHits(List<VectorSearchHit> expected, List<VectorSearchHit> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getChunkId(), actual.get(i).getChunkId());
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-6);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PrefixVectorIndex与PrefixPrefilterEngine单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class PrefixPrefilterEngineTest {
+
+    @Test
+    void testCandidatesRankedByRenormalizedPrefix() {
+        PrefixVectorIndex prefixes = new PrefixVectorIndex(2);
+        prefixes.upsertBatch(new long[]{1L, 2L, 3L}, new long[]{10L, 10L, 20L}, new float[][]{
+            {1f, 0f, 5f, 5f},
+            {0.6f, 0.8f, 0f, 0f},
+            {0f, 1f, 0f, 0f}
+        });
+
+        // 只比较前两维：后两维的大分量不影响排序，前缀重新归一化后分数为前缀余弦
+        List<VectorSearchHit> hits = prefixes.candidates(new float[]{1f, 0f, -3f, 0f}, 2, -1L, null);
+        assertEquals(List.of(1L, 2L), hits.stream().map(VectorSearchHit::getChunkId).toList());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+        assertEquals(0.6, hits.get(1).getScore(), 1e-6);
+
+        List<VectorSearchHit> filtered = prefixes.candidates(new float[]{1f, 0f, 0f, 0f}, 3, 1L, DocumentFilter.of(10L));
+        assertEquals(1, filtered.size());
+        assertEquals(2L, filtered.get(0).getChunkId());
+
+        assertEquals(2, prefixes.removeDocument(10L));
+        assertEquals(1, prefixes.size());
+        assertEquals(2L * Float.BYTES, prefixes.prefixBytes());
+        assertThrows(IllegalArgumentException.class,
+                () -> prefixes.upsertBatch(new long[]{4L}, new long[]{30L}, new float[][]{{1f, 1f}}));
+        assertThrows(IllegalArgumentException.class, () -> new PrefixVectorIndex(0));
+    }
+
+    @Test
+    void testRescoredPrefixRecallOnRandomCorpus() {
+        FloatVectorIndex full = new FloatVectorIndex();
+        PrefixVectorIndex prefixes = new PrefixVectorIndex(32);
+        Random random = new Random(17);
+        int count = 2000;
+        long[] chunkIds = new long[count];
+        long[] documentIds = new long[count];
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            chunkIds[i] = i;
+            documentIds[i] = i / 10;
+            vectors[i] = new float[128];
+            for (int d = 0; d < 128; d++) {
+                // 模拟前几维方差更大的向量：信号集中在前缀
+                vectors[i][d] = (float) (random.nextGaussian() * (d < 32 ? 1.0 : 0.2));
+            }
+        }
+        full.upsertBatch(chunkIds, documentIds, vectors);
+        prefixes.upsertBatch(chunkIds, documentIds, vectors);
+
+        // 候选覆盖全部数据时与精确检索完全一致
+        PrefixPrefilterEngine exhaustive = new PrefixPrefilterEngine(prefixes, full, count);
+        float[] query = full.getVector(5L);
+        assertEquals(full.search(query, 10, -1.0, 5L).stream().map(VectorSearchHit::getChunkId).toList(),
+                exhaustive.search(query, 10, -1.0, 5L).stream().map(VectorSearchHit::getChunkId).toList());
+
+        PrefixPrefilterEngine prefilter = new PrefixPrefilterEngine(prefixes, full, 10);
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(prefilter, 50, 10, 3L);
+        assertEquals(50, report.getQueries());
+        assertTrue(report.getRecall() > 0.8, "recall=" + report.getRecall());
+        assertThrows(UnsupportedOperationException.class, () -> prefilter.remove(1L));
+        assertThrows(IllegalArgumentException.class, () -> new PrefixPrefilterEngine(prefixes, full, 0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QuantizedVectorIndex单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    private final Map<Long, float[]> store = new HashMap<>();
+
+    private QuantizedVectorIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new QuantizedVectorIndex(4);
+        index.setVectorLoader(chunkIds -> {
+            Map<Long, float[]> vectors = new HashMap<>();
+            for (long chunkId : chunkIds) {
+                if (store.containsKey(chunkId)) {
+                    vectors.put(chunkId, store.get(chunkId));
+                }
+            }
+            return vectors;
+        });
+        upsertRandomBatch(1L, 500, 0.0f, new Random(1L));
+    }
+
+    @Test
+    void testRescoredResultsMatchExactSearch() {
+        RecallEvaluator.RecallReport report = RecallEvaluator.evaluate(index, 30, 10, 5L);
+
+        assertEquals(QuantizedVectorIndex.ENGINE_NAME, report.getEngine());
+        assertTrue(report.getRecall() >= 0.95, "recall过低: " + report.getRecall());
+    }
+
+    @Test
+    void testRescoringUsesFullPrecisionScores() {
+        List<VectorSearchHit> hits = index.search(store.get(42L), 3, 0.0, -1L);
+
+        assertEquals(42L, hits.get(0).getChunkId());
+        assertEquals(1.0, hits.get(0).getScore(), 1e-6);
+    }
+
+    @Test
+    void testDriftedBatchTriggersRequantization() {
+        assertEquals(0, index.getRequantizations());
+
+        // 第0维整体偏移，超出首批标定的量化范围
+        upsertRandomBatch(1001L, 500, 20.0f, new Random(2L));
+
+        assertEquals(1, index.getRequantizations());
+        assertEquals(1000, index.size());
+        List<VectorSearchHit> hits = index.search(store.get(7L), 1, 0.0, -1L);
+        assertEquals(7L, hits.get(0).getChunkId());
+        hits = index.search(store.get(1007L), 1, 0.0, -1L);
+        assertEquals(1007L, hits.get(0).getChunkId());
+    }
+
+    @Test
+    void testWithoutLoaderReturnsApproximateScores() {
+        index.setVectorLoader(null);
+
+        List<VectorSearchHit> hits = index.search(store.get(42L), 5, -1.0, 42L);
+
+        assertEquals(5, hits.size());
+        assertTrue(hits.stream().noneMatch(hit -> hit.getChunkId() == 42L));
+    }
+
+    @Test
+    void testRemoveDocument() {
+        assertEquals(10, index.removeDocument(3L));
+        assertEquals(490, index.size());
+        assertFalse(index.contains(35L));
+    }
+
+    private void upsertRandomBatch(long firstChunkId, int count, float shift, Random random) {
+        long[] chunkIds = new long[count];
+        long[] documentIds = new long[count];
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            vector[0] += shift;
+            chunkIds[i] = firstChunkId + i;
+            documentIds[i] = chunkIds[i] / 10;
+            vectors[i] = vector;
+            store.put(chunkIds[i], vector);
+        }
+        assertEquals(count, index.upsertBatch(chunkIds, documentIds, vectors));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RankingFeatureColumn单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class RankingFeatureColumnTest {
+
+    private RankingFeatureColumn features;
+
+    @BeforeEach
+    void setUp() {
+        features = new RankingFeatureColumn();
+        features.putDocument(1L, 100L, 10L, 0);
+        features.putDocument(2L, 0L, 0L, 0);
+        features.putChunks(new long[]{11L, 12L, 21L}, new long[]{1L, 1L, 2L}, new int[]{500, 50, 1000});
+    }
+
+    @Test
+    void testRerankScoreAppliesQualityAndLengthFactors() {
+        // 质量因子 1 + 0.1 + 0.1 = 1.2，长度因子 1.1
+        assertEquals(0.8 * 1.2 * 1.1, features.rerankScore(11L, 1L, 0.8), 1e-9);
+        // 过短分块减分
+        assertEquals(0.8 * 1.2 * 0.9, features.rerankScore(12L, 1L, 0.8), 1e-9);
+        // 没有加权特征的文档保持原分
+        assertEquals(0.8, features.rerankScore(21L, 2L, 0.8), 1e-9);
+        // 未知文档和分块按1处理
+        assertEquals(0.8, features.rerankScore(99L, 9L, 0.8), 1e-9);
+    }
+
+    @Test
+    void testQualityFactorIsCapped() {
+        features.putDocument(3L, 100000L, 0L, 5);
+        assertEquals(1.5, features.rerankScore(99L, 3L, 1.0), 1e-9);
+    }
+
+    @Test
+    void testIncrementsUpdateFeatures() {
+        features.addViewCount(2L, 100L);
+        features.addLikeCount(2L, 10L);
+        features.addViewCount(9L, 100L);
+
+        assertEquals(1.2 * 1.0, features.rerankScore(21L, 2L, 1.0), 1e-9);
+        assertEquals(2, features.documentCount());
+    }
+
+    @Test
+    void testRemoveDocumentDropsItsChunks() {
+        features.removeDocument(1L);
+
+        assertEquals(1, features.documentCount());
+        assertEquals(1, features.chunkCount());
+        assertEquals(1.0, features.rerankScore(11L, 1L, 1.0), 1e-9);
+        // 被移动到空位的行仍可按ID访问
+        features.putDocument(2L, 0L, 20L, 0);
+        assertEquals(1.2, features.rerankScore(21L, 2L, 1.0), 1e-9);
+    }
+
+    @Test
+    void testRemoveDocumentChunksKeepsDocumentFeatures() {
+        features.removeDocumentChunks(1L);
+
+        assertEquals(1, features.chunkCount());
+        assertEquals(2, features.documentCount());
+        // 文档质量因子仍生效，长度因子不再生效
+        assertEquals(1.2, features.rerankScore(11L, 1L, 1.0), 1e-9);
+        assertEquals(-1L, features.chunkDocumentId(11L));
+        assertEquals(2L, features.chunkDocumentId(21L));
+    }
+}
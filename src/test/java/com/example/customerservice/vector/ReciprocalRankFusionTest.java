@@ -0,0 +1,55 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ReciprocalRankFusion单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class ReciprocalRankFusionTest {
+
+    @Test
+    void testResultsInBothRankingsRankFirst() {
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion(60);
+        fusion.addRanking(List.of(1L, 2L, 3L));
+        fusion.addRanking(List.of(3L, 4L, 2L));
+
+        List<Long> top = fusion.top(10);
+
+        // 2和3出现在两个列表中，3的名次之和更小
+        assertEquals(List.of(3L, 2L, 1L, 4L), top);
+        assertEquals(1.0 / 63 + 1.0 / 61, fusion.score(3L), 1e-12);
+        assertEquals(0.0, fusion.score(99L));
+        assertEquals(4, fusion.size());
+    }
+
+    @Test
+    void testTiesKeepFirstSeenOrder() {
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion();
+        fusion.addRanking(List.of(5L, 6L));
+        fusion.addRanking(List.of(6L, 5L));
+        fusion.addRanking(List.of(7L));
+
+        assertEquals(List.of(5L, 6L), fusion.top(2));
+    }
+
+    @Test
+    void testDuplicateIdsInOneRankingCountOnce() {
+        ReciprocalRankFusion fusion = new ReciprocalRankFusion(0);
+        fusion.addRanking(List.of(1L, 1L, 2L));
+
+        assertEquals(1.0, fusion.score(1L), 1e-12);
+        assertEquals(0.5, fusion.score(2L), 1e-12);
+    }
+
+    @Test
+    void testNegativeKIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ReciprocalRankFusion(-1));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TopKCollector单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class TopKCollectorTest {
+
+    @Test
+    void testKeepsHighestScoresInDescendingOrder() {
+        Random random = new Random(1L);
+        double[] scores = new double[10_000];
+        TopKCollector collector = new TopKCollector(10);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextDouble();
+            collector.offer(i, scores[i]);
+        }
+
+        double[] expected = scores.clone();
+        Arrays.sort(expected);
+
+        assertEquals(10, collector.sortDescending());
+        for (int rank = 0; rank < 10; rank++) {
+            assertEquals(expected[expected.length - 1 - rank], collector.score(rank), 0.0);
+            assertEquals(scores[(int) collector.id(rank)], collector.score(rank), 0.0);
+        }
+    }
+
+    @Test
+    void testMinScoreAndThreshold() {
+        TopKCollector collector = new TopKCollector(2, 0.5);
+
+        assertFalse(collector.offer(1L, 0.4));
+        assertEquals(0.5, collector.threshold(), 0.0);
+        assertTrue(collector.offer(2L, 0.6));
+        assertTrue(collector.offer(3L, 0.9));
+        assertTrue(collector.isFull());
+        assertEquals(0.6, collector.threshold(), 0.0);
+
+        // 不高于门槛的候选直接丢弃
+        assertFalse(collector.offer(4L, 0.6));
+        assertTrue(collector.offer(5L, 0.7));
+
+        assertArrayEquals(new long[]{3L, 5L}, collector.sortedIds());
+    }
+
+    @Test
+    void testFewerCandidatesThanK() {
+        TopKCollector collector = new TopKCollector(5);
+        collector.offer(7L, 0.1);
+        collector.offer(8L, 0.3);
+
+        assertArrayEquals(new long[]{8L, 7L}, collector.sortedIds());
+        assertThrows(IllegalStateException.class, () -> collector.offer(9L, 1.0));
+
+        collector.clear();
+        assertEquals(0, collector.size());
+        assertTrue(collector.offer(9L, 1.0));
+    }
+
+    @Test
+    void testZeroCapacity() {
+        TopKCollector collector = new TopKCollector(0);
+
+        assertFalse(collector.offer(1L, 1.0));
+        assertEquals(0, collector.sortDescending());
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VectorMath单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class VectorMathTest {
+
+    @Test
+    void testDotMatchesScalarImplementation() {
+        Random random = new Random(1L);
+        // 覆盖小于、等于和不整除SIMD通道数的长度
+        for (int length : new int[]{1, 3, 8, 17, 64, 1536}) {
+            float[] a = new float[length + 5];
+            float[] b = new float[length + 3];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = (float) random.nextGaussian();
+            }
+            for (int i = 0; i < b.length; i++) {
+                b[i] = (float) random.nextGaussian();
+            }
+
+            float expected = VectorMath.scalarDot(a, 5, b, 3, length);
+            float actual = VectorMath.dot(a, 5, b, 3, length);
+            assertEquals(expected, actual, 1e-3f * Math.max(1.0f, Math.abs(expected)));
+        }
+    }
+
+    @Test
+    void testNormalize() {
+        float[] normalized = VectorMath.normalize(new float[]{3.0f, 4.0f});
+
+        assertArrayEquals(new float[]{0.6f, 0.8f}, normalized, 1e-6f);
+        assertEquals(1.0f, VectorMath.norm(normalized), 1e-6f);
+        assertNull(VectorMath.normalize(new float[]{0.0f, 0.0f}));
+        assertNull(VectorMath.normalize(new float[0]));
+    }
+
+    @Test
+    void testCosine() {
+        assertEquals(1.0, VectorMath.cosine(new float[]{1.0f, 1.0f}, new float[]{2.0f, 2.0f}), 1e-6);
+        assertEquals(0.0, VectorMath.cosine(new float[]{1.0f, 0.0f}, new float[]{0.0f, 5.0f}), 1e-6);
+        assertEquals(0.0, VectorMath.cosine(new float[]{0.0f, 0.0f}, new float[]{1.0f, 0.0f}), 1e-6);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.customerservice.vector;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VectorSegmentStore单元测试
+ *
+ * @author AI Customer Service Team
+ * @since 1.0.0
+ */
+class VectorSegmentStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    private final Map<Long, float[]> vectors = new HashMap<>();
+
+    private Path directory;
+    private VectorSegmentStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("vector-segments");
+        store = new VectorSegmentStore(directory);
+        store.open();
+    }
+
+    @Test
+    void testSegmentRoundTrip() throws IOException {
+        Path file = directory.resolve("single.vseg");
+        float[] matrix = {1f, 2f, 3f, 4f, 5f, 6f};
+        VectorSegment.write(file, 3, 2, matrix, new long[]{10L, 11L}, new long[]{1L, 2L});
+
+        VectorSegment segment = VectorSegment.open(file);
+
+        assertEquals(3, segment.dimension());
+        assertEquals(2, segment.rows());
+        assertEquals(11L, segment.chunkId(1));
+        assertEquals(2L, segment.documentId(1));
+        assertArrayEquals(new float[]{4f, 5f, 6f}, segment.readVector(1), 0f);
+    }
+
+    @Test
+    void testFlushAndReopen() throws IOException {
+        assertFalse(store.isInitialized());
+        upsertRange(1L, 100);
+        assertEquals(100, store.flush());
+        assertEquals(100L, store.getWatermark());
+
+        VectorSegmentStore reopened = new VectorSegmentStore(directory);
+        reopened.open();
+
+        assertTrue(reopened.isInitialized());
+        assertEquals(1, reopened.getSegmentCount());
+        assertEquals(100, reopened.liveSegmentRows());
+        assertEquals(100L, reopened.getWatermark());
+        assertStoreMatches(reopened, 100);
+    }
+
+    @Test
+    void testTombstonesSurviveReopen() throws IOException {
+        upsertRange(1L, 100);
+        store.flush();
+
+        assertEquals(10, store.removeDocument(3L));
+        // 水位线之前的分块更新时旧副本被标记删除，新副本进入尾段
+        upsertRange(5L, 1);
+
+        VectorSegmentStore reopened = new VectorSegmentStore(directory);
+        reopened.open();
+
+        assertEquals(11, reopened.tombstoneCount());
+        assertEquals(89, reopened.liveSegmentRows());
+        assertEquals(0, reopened.getTailSize());
+    }
+
+    @Test
+    void testCompactMergesSegmentsAndDropsDeletedRows() throws IOException {
+        upsertRange(1L, 50);
+        store.flush();
+        upsertRange(51L, 50);
+        store.flush();
+        store.removeDocument(2L);
+        upsertRange(101L, 5);
+
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(90, store.compact());
+        assertEquals(1, store.getSegmentCount());
+        assertEquals(0, store.tombstoneCount());
+        assertEquals(5, store.getTailSize());
+
+        long files;
+        try (var stream = Files.list(directory)) {
+            files = stream.filter(path -> path.toString().endsWith(".vseg")).count();
+        }
+        assertEquals(1L, files);
+
+        Map<Long, float[]> seen = new HashMap<>();
+        store.forEachBatch(7, (chunkIds, documentIds, batch) -> {
+            for (int i = 0; i < chunkIds.length; i++) {
+                seen.put(chunkIds[i], batch[i]);
+            }
+        });
+        assertEquals(95, seen.size());
+        assertFalse(seen.containsKey(25L));
+        assertArrayEquals(vectors.get(103L), seen.get(103L), 0f);
+    }
+
+    @Test
+    void testResetDiscardsSegments() throws IOException {
+        upsertRange(1L, 20);
+        store.flush();
+
+        store.reset();
+
+        assertTrue(store.isInitialized());
+        assertEquals(0, store.getSegmentCount());
+        assertEquals(0L, store.getWatermark());
+    }
+
+    private void upsertRange(long firstChunkId, int count) throws IOException {
+        Random random = new Random(firstChunkId);
+        long[] chunkIds = new long[count];
+        long[] documentIds = new long[count];
+        float[][] batch = new float[count][];
+        for (int i = 0; i < count; i++) {
+            float[] vector = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+            chunkIds[i] = firstChunkId + i;
+            documentIds[i] = (chunkIds[i] - 1) / 10;
+            batch[i] = vector;
+            vectors.put(chunkIds[i], vector);
+        }
+        store.upsertBatch(chunkIds, documentIds, batch);
+    }
+
+    private void assertStoreMatches(VectorSegmentStore target, int expectedCount) {
+        int[] count = new int[1];
+        target.forEachBatch(32, (chunkIds, documentIds, batch) -> {
+            for (int i = 0; i < chunkIds.length; i++) {
+                assertArrayEquals(vectors.get(chunkIds[i]), batch[i], 0f);
+                count[0]++;
+            }
+        });
+        assertEquals(expectedCount, count[0]);
+    }
+}